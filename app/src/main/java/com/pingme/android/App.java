@@ -13,6 +13,8 @@ import com.google.firebase.auth.FirebaseUser;
 import com.pingme.android.utils.FirebaseUtil;
 import com.pingme.android.utils.NotificationUtil;
 import com.pingme.android.utils.PreferenceUtils;
+import com.pingme.android.utils.TimeFormatter;
+import com.pingme.android.utils.UploadQueue;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -35,6 +37,9 @@ public class App extends Application implements LifecycleObserver {
         // Apply saved theme
         applySavedTheme();
 
+        // Cached timestamp strings follow time zone and clock changes
+        TimeFormatter.getInstance().register(this);
+
         // Setup app lifecycle observer for presence management
         ProcessLifecycleOwner.get().getLifecycle().addObserver(this);
     }
@@ -53,6 +58,9 @@ public class App extends Application implements LifecycleObserver {
             MediaManager.init(this, config);
             Log.d(TAG, "Cloudinary initialized successfully");
 
+            // Pick up chat uploads that were still pending when the process died
+            UploadQueue.getInstance(this).restore();
+
         } catch (Exception e) {
             Log.e(TAG, "Failed to initialize Cloudinary", e);
         }
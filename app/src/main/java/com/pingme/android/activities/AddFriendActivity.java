@@ -19,7 +19,9 @@ import com.pingme.android.R;
 import com.pingme.android.adapters.FriendsAdapter;
 import com.pingme.android.databinding.ActivityAddFriendBinding;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
+import com.pingme.android.utils.SearchIndexUpdater;
 import com.google.firebase.auth.FirebaseAuth;
 
 import java.util.ArrayList;
@@ -35,6 +37,7 @@ public class AddFriendActivity extends AppCompatActivity implements FriendsAdapt
     private FriendsAdapter friendsAdapter;
     private final List<User> friends = new ArrayList<>();
     private final List<User> filteredFriends = new ArrayList<>();
+    private final SearchIndexUpdater<User> friendsIndex = SearchIndexUpdater.forUsers(index -> refilterFriends());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -86,13 +89,14 @@ public class AddFriendActivity extends AppCompatActivity implements FriendsAdapt
         FirebaseUtil.getFriendsRef(currentUserId).get()
                 .addOnSuccessListener(querySnapshot -> {
                     friends.clear();
+                    friendsIndex.submit(friends);
                     for (com.google.firebase.firestore.DocumentSnapshot doc : querySnapshot.getDocuments()) {
                         String friendId = doc.getId();
                         String personalName = doc.getString("personalName");
                         
                         FirebaseUtil.getUserRef(friendId).get().addOnSuccessListener(userDoc -> {
                             if (userDoc.exists()) {
-                                User friend = userDoc.toObject(User.class);
+                                User friend = UserCodec.fromDocument(userDoc);
                                 if (friend != null) {
                                     friend.setId(friendId);
                                     friend.setPersonalName(personalName);
@@ -101,7 +105,7 @@ public class AddFriendActivity extends AppCompatActivity implements FriendsAdapt
                                     // Load presence data respecting privacy settings
                                     loadFriendPresence(friend, () -> {
                                         friends.add(friend);
-                                        filterFriends(binding.etFriendSearch.getText() != null ? binding.etFriendSearch.getText().toString() : "");
+                                        friendsIndex.submit(friends);
                                     });
                                 }
                             }
@@ -135,15 +139,17 @@ public class AddFriendActivity extends AppCompatActivity implements FriendsAdapt
                 });
     }
 
+    // Friends arrive one by one; each arrival is indexed off the main thread and lands here
+    private void refilterFriends() {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        filterFriends(binding.etFriendSearch.getText() != null ? binding.etFriendSearch.getText().toString() : "");
+    }
+
     private void filterFriends(String query) {
         filteredFriends.clear();
-        if (query == null) query = "";
-        String q = query.toLowerCase();
-        for (User u : friends) {
-            if (u.getDisplayName().toLowerCase().contains(q) || u.getEmail().toLowerCase().contains(q)) {
-                filteredFriends.add(u);
-            }
-        }
+        filteredFriends.addAll(friendsIndex.current().search(query));
         friendsAdapter.updateFriends(new ArrayList<>(filteredFriends));
     }
 
@@ -181,7 +187,7 @@ public class AddFriendActivity extends AppCompatActivity implements FriendsAdapt
         FirebaseUtil.getUserRef(currentUserId).get()
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        currentUser = documentSnapshot.toObject(User.class);
+                        currentUser = UserCodec.fromDocument(documentSnapshot);
                         if (currentUser != null) {
                             currentUser.setId(documentSnapshot.getId());
                         }
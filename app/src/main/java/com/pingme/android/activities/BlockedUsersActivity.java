@@ -15,6 +15,7 @@ import com.google.firebase.firestore.QuerySnapshot;
 import com.pingme.android.adapters.BlockedUsersAdapter;
 import com.pingme.android.databinding.ActivityBlockedUsersBinding;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 import java.util.ArrayList;
@@ -108,7 +109,7 @@ public class BlockedUsersActivity extends AppCompatActivity {
             FirebaseUtil.getUserRef(userId).get()
                     .addOnSuccessListener(documentSnapshot -> {
                         if (documentSnapshot.exists()) {
-                            User user = documentSnapshot.toObject(User.class);
+                            User user = UserCodec.fromDocument(documentSnapshot);
                             if (user != null) {
                                 user.setId(documentSnapshot.getId());
                                 
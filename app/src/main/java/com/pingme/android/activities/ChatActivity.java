@@ -14,17 +14,18 @@ import android.view.View;
 import android.widget.Toast;
 import com.google.android.material.textfield.TextInputEditText;
 
+import androidx.annotation.Nullable;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.resource.bitmap.CircleCrop;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.ValueEventListener;
@@ -33,31 +34,58 @@ import com.pingme.android.adapters.MessageAdapter;
 import com.pingme.android.databinding.ActivityChatBinding;
 import com.pingme.android.models.Message;
 import com.pingme.android.models.User;
+import com.pingme.android.models.MessageCodec;
+import com.pingme.android.models.MessageReceipts;
+import com.pingme.android.models.UserCodec;
+import com.pingme.android.utils.AppExecutors;
+import com.pingme.android.utils.BackgroundChildEventListener;
+import com.pingme.android.utils.ChatKeyStore;
 import com.pingme.android.utils.CloudinaryUtil;
 import com.pingme.android.utils.FirebaseUtil;
 import com.pingme.android.utils.MediaPlayerUtil;
+import com.pingme.android.utils.MessageDecryptor;
+import com.pingme.android.utils.RecyclerViewImagePreloader;
+import com.pingme.android.utils.TimeFormatter;
+import com.pingme.android.utils.UnreadCounter;
+import com.pingme.android.utils.UploadQueue;
+import com.pingme.android.utils.UploadScheduler;
+import com.pingme.android.utils.VideoMetadataExtractor;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import javax.crypto.SecretKey;
 
 public class ChatActivity extends AppCompatActivity {
     private static final String TAG = "ChatActivity";
+    private static final int IMAGE_PRELOAD_ROWS = 6;
 
     private ActivityChatBinding binding;
     private String chatId;
     private String receiverId;
     private MessageAdapter adapter;
     private List<Object> items = new ArrayList<>();
+    // The rows the last queued update produced; only touched on the messages serial executor
+    private List<Object> workerRows = new ArrayList<>();
     private List<Message> messages = new ArrayList<>();
-    private ChildEventListener messageListener;
+    private BackgroundChildEventListener<Message> messageListener;
+    private BackgroundChildEventListener<MessageReceipts> receiptsListener;
+    private BackgroundChildEventListener<Map<String, Long>> flagsListener;
+    // Receipts and this user's delete/clear flags by message id; stored apart from message content
+    private final Map<String, MessageReceipts> receiptsById = new HashMap<>();
+    private final Map<String, Map<String, Long>> flagsById = new HashMap<>();
+    // Message batches waiting for decryption; each one is applied after the one before it
+    private CompletableFuture<Void> pendingDecryption = CompletableFuture.completedFuture(null);
     private ValueEventListener typingListener;
     private ValueEventListener onlineStatusListener;
-    private ValueEventListener messageStatusListener;
     private User receiver;
     private User currentUser;
     private String currentUserId;
@@ -69,9 +97,15 @@ public class ChatActivity extends AppCompatActivity {
     private String searchQuery = null;
     // Suppress auto-scroll to bottom when navigating from search to a specific message
     private boolean suppressAutoScroll = false;
+    // Attachments scheduled from this screen that have not been sent or failed yet
+    private int pendingAttachments = 0;
+    // Local bubbles for videos still uploading, removed once the real message is sent
+    private final Set<String> pendingVideoIds = new HashSet<>();
+    // Scheduler job behind each pending bubble, for cancelling it
+    private final Map<String, String> pendingJobIds = new HashMap<>();
 
     private final ActivityResultLauncher<String> imagePickerLauncher =
-            registerForActivityResult(new ActivityResultContracts.GetContent(), this::handleImageSelection);
+            registerForActivityResult(new ActivityResultContracts.GetMultipleContents(), this::handleImageSelection);
 
     private final ActivityResultLauncher<String> videoPickerLauncher =
             registerForActivityResult(new ActivityResultContracts.GetContent(), this::handleVideoSelection);
@@ -161,7 +195,6 @@ public class ChatActivity extends AppCompatActivity {
         setupMessageListener();
         setupTypingListener();
         setupOnlineStatusListener();
-        setupMessageStatusListener();
         setupClickListeners();
         markMessagesAsRead();
         
@@ -174,15 +207,21 @@ public class ChatActivity extends AppCompatActivity {
     private void setupAdapter() {
         adapter = new MessageAdapter(items, receiver);
         adapter.setContext(this);
+        adapter.setOnPendingUploadClickListener(this::confirmCancelPendingUpload);
         LinearLayoutManager layoutManager = new LinearLayoutManager(this);
         layoutManager.setStackFromEnd(true);
         binding.recyclerView.setLayoutManager(layoutManager);
         binding.recyclerView.setAdapter(adapter);
+        // Rows inflate in idle main-thread slices while the first messages load
+        adapter.prewarm(binding.recyclerView);
+        // Start image loads a few rows ahead of the scroll
+        binding.recyclerView.addOnScrollListener(
+                new RecyclerViewImagePreloader(Glide.with(this), adapter, IMAGE_PRELOAD_ROWS));
     }
     
     private void setupMessageHighlighting() {
         // Wait for messages to load, then scroll to and highlight the message
-        new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
+        AppExecutors.getInstance().postToMainDelayed(() -> {
             highlightAndScrollToMessage(highlightMessageId);
             // Keep suppressAutoScroll true to prevent auto-scrolling to bottom after search navigation
             // Only re-enable auto scroll for new messages, not when navigating from search
@@ -205,7 +244,7 @@ public class ChatActivity extends AppCompatActivity {
                     adapter.setMessageHighlight(messageId, searchQuery);
                     
                     // Clear highlight after 5 seconds
-                    new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
+                    AppExecutors.getInstance().postToMainDelayed(() -> {
                         adapter.clearMessageHighlight();
                         // Clear the highlight message ID to allow normal auto-scrolling for new messages
                         highlightMessageId = null;
@@ -366,7 +405,7 @@ public class ChatActivity extends AppCompatActivity {
         String currentUserId = firebaseUser.getUid();
         FirebaseUtil.getUserRef(currentUserId).get().addOnSuccessListener(snapshot -> {
             if (snapshot.exists()) {
-                currentUser = snapshot.toObject(User.class);
+                currentUser = UserCodec.fromDocument(snapshot);
                 if (currentUser != null) {
                     currentUser.setId(snapshot.getId());
                 }
@@ -382,7 +421,7 @@ public class ChatActivity extends AppCompatActivity {
 
         FirebaseUtil.getUserRef(receiverId).get().addOnSuccessListener(snapshot -> {
             if (snapshot.exists()) {
-                receiver = snapshot.toObject(User.class);
+                receiver = UserCodec.fromDocument(snapshot);
                 if (receiver != null) {
                     receiver.setId(snapshot.getId());
                     
@@ -530,7 +569,7 @@ public class ChatActivity extends AppCompatActivity {
                 long lastSeen = receiver.getLastSeen();
                 if (lastSeen > 0) {
                     // Enhanced last seen formatting like WhatsApp
-                    String timeAgo = getWhatsAppTimeFormat(lastSeen);
+                    String timeAgo = TimeFormatter.getInstance().formatLastSeen(lastSeen);
                     binding.tvUserStatus.setText("last seen " + timeAgo);
                     binding.tvUserStatus.setVisibility(View.VISIBLE);
                     binding.onlineIndicator.setVisibility(View.GONE);
@@ -547,32 +586,6 @@ public class ChatActivity extends AppCompatActivity {
         }
     }
 
-    // WhatsApp-like time formatting for last seen
-    private String getWhatsAppTimeFormat(long timestamp) {
-        long now = System.currentTimeMillis();
-        long diff = now - timestamp;
-        
-        long minutes = diff / (1000 * 60);
-        long hours = minutes / 60;
-        long days = hours / 24;
-        
-        if (minutes < 1) {
-            return "just now";
-        } else if (minutes < 60) {
-            return minutes + " minute" + (minutes > 1 ? "s" : "") + " ago";
-        } else if (hours < 24) {
-            return hours + " hour" + (hours > 1 ? "s" : "") + " ago";
-        } else if (days == 1) {
-            return "yesterday";
-        } else if (days < 7) {
-            return days + " day" + (days > 1 ? "s" : "") + " ago";
-        } else {
-            // For older dates, show actual date
-            SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-            return "on " + dateFormat.format(new Date(timestamp));
-        }
-    }
-
     private void updateAdapterPrivacySettings() {
         if (receiver != null && adapter != null) {
             adapter.updatePrivacySettings(
@@ -610,120 +623,245 @@ public class ChatActivity extends AppCompatActivity {
         Log.d(TAG, "Messages ref path: " + FirebaseUtil.getMessagesRef(chatId).toString());
 
         // Remove existing listener if any
-        if (messageListener != null) {
-            FirebaseUtil.getMessagesRef(chatId).removeEventListener(messageListener);
-        }
+        removeMessageListeners();
+
+        // Snapshots are parsed on this chat's serial worker, which also lays out the bubble text;
+        // changes arrive here in per-frame batches
+        MessageAdapter messageAdapter = adapter;
+        messageListener = new BackgroundChildEventListener<>(
+                AppExecutors.getInstance().serial("messages:" + chatId),
+                snapshot -> {
+                    Message message = MessageCodec.fromSnapshot(snapshot);
+                    if (message != null && !MessageDecryptor.needsDecryption(message)) {
+                        messageAdapter.prepareText(message);
+                    }
+                    return message;
+                },
+                new BackgroundChildEventListener.Callback<Message>() {
+                    @Override
+                    public void onChanges(List<BackgroundChildEventListener.Change<Message>> changes) {
+                        decryptAndApplyMessageChanges(changes, messageAdapter);
+                    }
 
-        messageListener = new ChildEventListener() {
-            @Override
-            public void onChildAdded(DataSnapshot dataSnapshot, String previousChildName) {
-                Log.d(TAG, "🔄 Message child added: " + dataSnapshot.getKey());
-                Log.d(TAG, "Raw data: " + dataSnapshot.getValue());
-                
-                Message message = dataSnapshot.getValue(Message.class);
-                if (message != null) {
-                    message.setId(dataSnapshot.getKey());
-                    Log.d(TAG, "✅ Parsed message: " + message.getText());
-
-                    FirebaseUser firebaseUser = FirebaseAuth.getInstance().getCurrentUser();
-                    if (firebaseUser == null) {
-                        Log.e(TAG, "User not authenticated");
-                        return;
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        Log.e(TAG, "Message listener cancelled", databaseError.toException());
+                        Toast.makeText(ChatActivity.this, "Failed to load messages", Toast.LENGTH_SHORT).show();
                     }
-                    
-                    String currentUserId = firebaseUser.getUid();
-                    
-                    // Process all messages, but filter blocked users
-                    if (!message.getSenderId().equals(currentUserId)) {
-                        // Check if current user blocked the sender
-                        FirebaseUtil.checkIfBlocked(currentUserId, message.getSenderId(), blocked -> {
-                            if (blocked) {
-                                Log.d(TAG, "Message filtered - sender is blocked");
-                                return;
-                            }
-                            addMessage(message);
-                        });
-                    } else {
-                        addMessage(message);
+                });
+
+        FirebaseUtil.getMessagesRef(chatId).addChildEventListener(messageListener);
+
+        // Receipts and flags change far more often than content and come from their own nodes
+        receiptsListener = new BackgroundChildEventListener<>(
+                AppExecutors.getInstance().serial("messages:" + chatId),
+                MessageReceipts::fromSnapshot,
+                new BackgroundChildEventListener.Callback<MessageReceipts>() {
+                    @Override
+                    public void onChanges(List<BackgroundChildEventListener.Change<MessageReceipts>> changes) {
+                        applyMessageStateChanges(changes, receiptsById, MessageAdapter.PAYLOAD_STATUS);
                     }
-                } else {
-                    Log.w(TAG, "❌ Failed to parse message from: " + dataSnapshot.getKey());
-                }
-            }
 
-            @Override
-            public void onChildChanged(DataSnapshot dataSnapshot, String previousChildName) {
-                Message updatedMessage = dataSnapshot.getValue(Message.class);
-                if (updatedMessage != null) {
-                    updatedMessage.setId(dataSnapshot.getKey());
-
-                    FirebaseUser firebaseUser = FirebaseAuth.getInstance().getCurrentUser();
-                    if (firebaseUser == null) {
-                        Log.e(TAG, "User not authenticated");
-                        return;
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        Log.e(TAG, "Receipts listener cancelled", databaseError.toException());
                     }
-                    
-                    String currentUserId = firebaseUser.getUid();
-                    
-                    // Update message status for all messages
-                    if (!updatedMessage.getSenderId().equals(currentUserId)) {
-                        FirebaseUtil.checkIfBlocked(currentUserId, updatedMessage.getSenderId(), blocked -> {
-                            if (!blocked) {
-                                updateMessageInList(updatedMessage);
-                            }
-                        });
-                    } else {
-                        updateMessageInList(updatedMessage);
+                });
+        FirebaseUtil.getMessageReceiptsRef(chatId).addChildEventListener(receiptsListener);
+
+        if (currentUserId.isEmpty()) return;
+        flagsListener = new BackgroundChildEventListener<>(
+                AppExecutors.getInstance().serial("messages:" + chatId),
+                MessageCodec::userFlagsFromSnapshot,
+                new BackgroundChildEventListener.Callback<Map<String, Long>>() {
+                    @Override
+                    public void onChanges(List<BackgroundChildEventListener.Change<Map<String, Long>>> changes) {
+                        // Deleted-for-me rows change view type, so they rebind in full
+                        applyMessageStateChanges(changes, flagsById, null);
                     }
-                }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        Log.e(TAG, "Message flags listener cancelled", databaseError.toException());
+                    }
+                });
+        FirebaseUtil.getMessageFlagsRef(chatId, currentUserId).addChildEventListener(flagsListener);
+    }
+
+    private void removeMessageListeners() {
+        if (messageListener != null) {
+            FirebaseUtil.getMessagesRef(chatId).removeEventListener(messageListener);
+            messageListener.dispose();
+        }
+        if (receiptsListener != null) {
+            FirebaseUtil.getMessageReceiptsRef(chatId).removeEventListener(receiptsListener);
+            receiptsListener.dispose();
+        }
+        if (flagsListener != null) {
+            FirebaseUtil.getMessageFlagsRef(chatId, currentUserId).removeEventListener(flagsListener);
+            flagsListener.dispose();
+        }
+    }
+
+    // Stores receipt/flag changes and re-applies them to the messages they belong to. Rows keep
+    // their place, so only the affected rows rebind, limited to the payload's part if given.
+    private <T> void applyMessageStateChanges(List<BackgroundChildEventListener.Change<T>> changes,
+                                              Map<String, T> byId, @Nullable Object payload) {
+        if (isFinishing() || isDestroyed()) return;
+        Set<String> changedIds = new HashSet<>();
+        for (BackgroundChildEventListener.Change<T> change : changes) {
+            if (change.value != null) {
+                byId.put(change.key, change.value);
+            } else {
+                byId.remove(change.key);
             }
+            changedIds.add(change.key);
+        }
 
-            @Override
-            public void onChildRemoved(DataSnapshot dataSnapshot) {
-                String messageId = dataSnapshot.getKey();
-                messages.removeIf(message -> message.getId().equals(messageId));
-                updateMessagesWithDateHeaders();
+        List<Message> updated = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (changedIds.contains(message.getId())) {
+                Message merged = withMessageState(message);
+                messages.set(i, merged);
+                updated.add(merged);
             }
+        }
+        if (!updated.isEmpty()) {
+            adapter.replaceMessages(updated, payload);
+        }
+    }
 
-            @Override
-            public void onChildMoved(DataSnapshot dataSnapshot, String previousChildName) {}
+    // Returns a copy with the stored receipts/flags merged in; parsed messages are shared
+    // with their listener's worker and must not be modified
+    private Message withMessageState(Message message) {
+        MessageReceipts receipts = receiptsById.get(message.getId());
+        Map<String, Long> flags = flagsById.get(message.getId());
+        if (receipts == null && flags == null) {
+            return message;
+        }
+        Message merged = new Message(message);
+        MessageCodec.applyReceipts(merged, receipts);
+        MessageCodec.applyUserFlags(merged, currentUserId, flags);
+        return merged;
+    }
+
+    // Encrypted messages are decrypted a batch at a time on the CPU pool, so the adapter only ever
+    // sees plaintext; batches are applied in arrival order even when one needs no decryption
+    private void decryptAndApplyMessageChanges(List<BackgroundChildEventListener.Change<Message>> changes,
+                                               MessageAdapter messageAdapter) {
+        List<Message> page = new ArrayList<>();
+        for (BackgroundChildEventListener.Change<Message> change : changes) {
+            if (MessageDecryptor.needsDecryption(change.value)) {
+                page.add(change.value);
+            }
+        }
+        if (page.isEmpty() && pendingDecryption.isDone()) {
+            applyMessageChanges(changes);
+            return;
+        }
 
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                Log.e(TAG, "Message listener cancelled", databaseError.toException());
-                Toast.makeText(ChatActivity.this, "Failed to load messages", Toast.LENGTH_SHORT).show();
+        SecretKey chatKey = ChatKeyStore.getInstance(this).peekChatKey(chatId);
+        MessageDecryptor decryptor = MessageDecryptor.getInstance();
+        pendingDecryption = pendingDecryption
+                .thenCompose(ignored -> decryptor.decryptPage(page, chatKey, messageAdapter::prepareText))
+                .thenAccept(decrypted -> AppExecutors.getInstance().postToMain(() -> {
+                    if (!decrypted.messages.isEmpty()) {
+                        Log.d(TAG, "Decrypted page: " + decrypted + " (" + decryptor.dumpMetrics() + ")");
+                    }
+                    // The page holds the encrypted changes' messages in the same order
+                    List<BackgroundChildEventListener.Change<Message>> plain = new ArrayList<>(changes.size());
+                    int next = 0;
+                    for (BackgroundChildEventListener.Change<Message> change : changes) {
+                        plain.add(MessageDecryptor.needsDecryption(change.value)
+                                ? change.withValue(decrypted.messages.get(next++)) : change);
+                    }
+                    applyMessageChanges(plain);
+                }));
+    }
+
+    private void applyMessageChanges(List<BackgroundChildEventListener.Change<Message>> changes) {
+        if (isFinishing() || isDestroyed()) return;
+        Log.d(TAG, "🔄 Applying " + changes.size() + " message changes");
+
+        FirebaseUser firebaseUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (firebaseUser == null) {
+            Log.e(TAG, "User not authenticated");
+            return;
+        }
+        String currentUserId = firebaseUser.getUid();
+
+        // Messages from others are held back until their sender's block status is known -
+        // one lookup per sender for the whole batch instead of one per message
+        Map<String, List<BackgroundChildEventListener.Change<Message>>> bySender = new LinkedHashMap<>();
+        boolean changed = false;
+        for (BackgroundChildEventListener.Change<Message> change : changes) {
+            Message message = change.value;
+            if (change.type == BackgroundChildEventListener.Type.REMOVED) {
+                changed |= messages.removeIf(existing -> existing.getId().equals(change.key));
+            } else if (message == null) {
+                Log.w(TAG, "❌ Failed to parse message from: " + change.key);
+            } else if (currentUserId.equals(message.getSenderId())) {
+                changed |= applyMessageChange(change, currentUserId);
+            } else {
+                List<BackgroundChildEventListener.Change<Message>> senderChanges = bySender.get(message.getSenderId());
+                if (senderChanges == null) {
+                    senderChanges = new ArrayList<>();
+                    bySender.put(message.getSenderId(), senderChanges);
+                }
+                senderChanges.add(change);
             }
-        };
+        }
+        if (changed) {
+            updateMessagesWithDateHeaders();
+        }
 
-        FirebaseUtil.getMessagesRef(chatId).addChildEventListener(messageListener);
+        for (Map.Entry<String, List<BackgroundChildEventListener.Change<Message>>> entry : bySender.entrySet()) {
+            List<BackgroundChildEventListener.Change<Message>> senderChanges = entry.getValue();
+            FirebaseUtil.checkIfBlocked(currentUserId, entry.getKey(), blocked -> {
+                if (blocked) {
+                    Log.d(TAG, "Filtered " + senderChanges.size() + " messages - sender is blocked");
+                    return;
+                }
+                boolean senderChanged = false;
+                for (BackgroundChildEventListener.Change<Message> change : senderChanges) {
+                    senderChanged |= applyMessageChange(change, currentUserId);
+                }
+                if (senderChanged) {
+                    updateMessagesWithDateHeaders();
+                }
+            });
+        }
     }
 
-    private void addMessage(Message message) {
+    // Adds or replaces one message in the list without rebuilding the adapter items
+    private boolean applyMessageChange(BackgroundChildEventListener.Change<Message> change, String currentUserId) {
+        Message message = withMessageState(change.value);
+        if (change.type == BackgroundChildEventListener.Type.CHANGED) {
+            return replaceMessage(message);
+        }
+
         // Check if message already exists in list (prevent duplicates)
-        boolean messageExists = false;
         for (Message existingMessage : messages) {
             if (existingMessage.getId().equals(message.getId())) {
-                messageExists = true;
-                break;
+                return false;
             }
         }
+        messages.add(message);
 
-        if (!messageExists) {
-            messages.add(message);
-            updateMessagesWithDateHeaders();
+        if (!currentUserId.equals(message.getSenderId()) && !message.isReadBy(currentUserId)) {
+            // Mark message as delivered immediately when received (this is correct WhatsApp behavior)
+            if (!message.isDeliveredTo(currentUserId)) {
+                FirebaseUtil.markMessageAsDelivered(chatId, message.getId(), currentUserId);
+            }
 
-            FirebaseUser firebaseUser = FirebaseAuth.getInstance().getCurrentUser();
-            if (firebaseUser != null && !message.getSenderId().equals(firebaseUser.getUid())) {
-                // Mark message as delivered immediately when received (this is correct WhatsApp behavior)
-                FirebaseUtil.markMessageAsDelivered(chatId, message.getId(), firebaseUser.getUid());
-                
-                // Only mark as read if chat is actively open and user is viewing
-                // This ensures read receipts only trigger when user actually sees the message
-                if (isChatActive()) {
-                    FirebaseUtil.markMessageAsRead(chatId, message.getId(), firebaseUser.getUid());
-                }
+            // Only mark as read if chat is actively open and user is viewing
+            // This ensures read receipts only trigger when user actually sees the message
+            if (isChatActive()) {
+                FirebaseUtil.markMessageAsRead(chatId, message.getId(), currentUserId);
             }
         }
+        return true;
     }
 
     private boolean isChatActive() {
@@ -732,14 +870,14 @@ public class ChatActivity extends AppCompatActivity {
         return !isFinishing() && !isDestroyed() && hasWindowFocus();
     }
 
-    private void updateMessageInList(Message updatedMessage) {
+    private boolean replaceMessage(Message updatedMessage) {
         for (int i = 0; i < messages.size(); i++) {
             if (messages.get(i).getId().equals(updatedMessage.getId())) {
                 messages.set(i, updatedMessage);
-                break;
+                return true;
             }
         }
-        updateMessagesWithDateHeaders();
+        return false;
     }
 
     private void setupTypingListener() {
@@ -794,33 +932,6 @@ public class ChatActivity extends AppCompatActivity {
         FirebaseUtil.getRealtimePresenceRef(receiverId).addValueEventListener(onlineStatusListener);
     }
 
-    private void setupMessageStatusListener() {
-        // Listen for real-time message status changes (delivered/read)
-        messageStatusListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                // Update message statuses in real-time
-                for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                    String messageId = messageSnapshot.getKey();
-                    if (messageId != null) {
-                        Message updatedMessage = messageSnapshot.getValue(Message.class);
-                        if (updatedMessage != null) {
-                            updatedMessage.setId(messageId);
-                            updateMessageInList(updatedMessage);
-                        }
-                    }
-                }
-            }
-
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                Log.e(TAG, "Message status listener cancelled", databaseError.toException());
-            }
-        };
-        
-        FirebaseUtil.getMessagesRef(chatId).addValueEventListener(messageStatusListener);
-    }
-
     private void setupClickListeners() {
         binding.btnSend.setOnClickListener(v -> sendTextMessage());
         binding.btnAttach.setOnClickListener(v -> showAttachmentOptions());
@@ -858,14 +969,47 @@ public class ChatActivity extends AppCompatActivity {
         }
     }
 
+    // Rows and their diff are built on this chat's serial worker, against the rows the previous
+    // update produced; the main thread only swaps the rows in and dispatches the diff, so only
+    // rows that actually changed rebind
     private void updateMessagesWithDateHeaders() {
-        MessageAdapter.addDateHeaders(items, messages);
-        adapter.notifyDataSetChanged();
+        List<Message> snapshot = new ArrayList<>(messages);
+        AppExecutors.getInstance().serial("messages:" + chatId).execute(() -> {
+            List<Object> oldRows = workerRows;
+            List<Object> newRows = MessageAdapter.withDateHeaders(snapshot);
+            DiffUtil.DiffResult diff = MessageAdapter.diffRows(oldRows, newRows);
+            workerRows = newRows;
+            AppExecutors.getInstance().postToMain(() -> applyRows(newRows, diff));
+        });
+    }
+
+    private void applyRows(List<Object> newRows, DiffUtil.DiffResult diff) {
+        if (isFinishing() || isDestroyed()) return;
+        // Receipts may have replaced some messages since the snapshot was taken; keep the newest copies
+        Map<String, Message> latest = new HashMap<>();
+        for (Message message : messages) {
+            latest.put(message.getId(), message);
+        }
+        List<Object> rows = new ArrayList<>(newRows);
+        for (int i = 0; i < rows.size(); i++) {
+            Object row = rows.get(i);
+            if (row instanceof Message) {
+                Message current = latest.get(((Message) row).getId());
+                if (current != null) {
+                    rows.set(i, current);
+                }
+            }
+        }
+
+        Object lastBefore = items.isEmpty() ? null : items.get(items.size() - 1);
+        adapter.applyRows(rows, diff);
 
         // Only auto-scroll to bottom if:
-        // 1. Not suppressing auto-scroll (e.g., when navigating from search)
-        // 2. Not highlighting a specific message from search
-        if (!items.isEmpty() && !suppressAutoScroll && highlightMessageId == null) {
+        // 1. The last row changed (a new message arrived)
+        // 2. Not suppressing auto-scroll (e.g., when navigating from search)
+        // 3. Not highlighting a specific message from search
+        if (!items.isEmpty() && items.get(items.size() - 1) != lastBefore
+                && !suppressAutoScroll && highlightMessageId == null) {
             binding.recyclerView.smoothScrollToPosition(items.size() - 1);
         }
     }
@@ -1011,8 +1155,9 @@ public class ChatActivity extends AppCompatActivity {
         FirebaseUtil.deleteMessageForEveryone(chatId, message.getId(), currentUserId);
     }
 
-    private void handleImageSelection(Uri imageUri) {
-        if (imageUri != null && !isBlocked) {
+    private void handleImageSelection(List<Uri> imageUris) {
+        if (imageUris == null || isBlocked) return;
+        for (Uri imageUri : imageUris) {
             sendImageMessage(imageUri);
         }
     }
@@ -1117,40 +1262,18 @@ public class ChatActivity extends AppCompatActivity {
         }
 
         String senderId = currentUser.getUid();
-        showLoading(true);
-
-        CloudinaryUtil.getInstance()
-                .uploadChatImage(imageUri, this)
-                .thenAccept(imageUrl -> runOnUiThread(() -> {
-                    // Check if imageUrl is null
-                    if (imageUrl == null) {
-                        Log.e(TAG, "Image URL is null");
-                        showLoading(false);
-                        Toast.makeText(this, "Failed to upload image: no URL received", Toast.LENGTH_SHORT).show();
-                        return;
+        CloudinaryUtil cloudinaryUtil = CloudinaryUtil.getInstance();
+        android.content.Context appContext = getApplicationContext();
+
+        // Several picked images upload in parallel but are sent in the order they were chosen
+        // Media data carries width/height and a BlurHash so receivers can draw a placeholder instantly
+        scheduleAttachment(imageUri, () -> cloudinaryUtil.uploadChatImageWithMetadata(imageUri, appContext)
+                .thenApply(mediaData -> {
+                    if (mediaData.get("imageUrl") == null) {
+                        throw new IllegalStateException("no URL received");
                     }
-                    
-                    Map<String, Object> mediaData = new HashMap<>();
-                    mediaData.put("imageUrl", imageUrl);
-                    
-                    FirebaseUtil.sendMessageWithDeliveryTracking(chatId, senderId, "📷 Image", Message.TYPE_IMAGE, mediaData)
-                            .addOnSuccessListener(aVoid -> {
-                                showLoading(false);
-                                Log.d(TAG, "Image message sent successfully");
-                            })
-                            .addOnFailureListener(e -> {
-                                showLoading(false);
-                                Log.e(TAG, "Failed to send image message", e);
-                                Toast.makeText(this, "Failed to send image", Toast.LENGTH_SHORT).show();
-                            });
-                }))
-                .exceptionally(throwable -> {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Toast.makeText(this, "Failed to upload image", Toast.LENGTH_SHORT).show();
-                    });
-                    return null;
-                });
+                    return mediaData;
+                }), senderId, "📷 Image", Message.TYPE_IMAGE, "Failed to upload image");
     }
 
     private void sendVideoMessage(Uri videoUri) {
@@ -1163,92 +1286,87 @@ public class ChatActivity extends AppCompatActivity {
         }
 
         String senderId = currentUser.getUid();
-        showLoading(true);
 
         // Validate video file
         try {
             String mimeType = getContentResolver().getType(videoUri);
             if (mimeType == null || !mimeType.startsWith("video/")) {
-                showLoading(false);
                 Toast.makeText(this, "Invalid video file", Toast.LENGTH_SHORT).show();
                 return;
             }
         } catch (Exception e) {
             Log.e(TAG, "Error checking video file", e);
-            showLoading(false);
             Toast.makeText(this, "Error reading video file", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        CloudinaryUtil.getInstance()
-                .uploadChatVideo(videoUri, this)
-                .thenAccept(videoData -> runOnUiThread(() -> {
-                    try {
-                        // Check if videoData is null
-                        if (videoData == null) {
-                            Log.e(TAG, "Video data is null");
-                            showLoading(false);
-                            Toast.makeText(this, "Failed to upload video: no data received", Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        
-                        Map<String, Object> mediaData = new HashMap<>();
-                        
-                        // Safely get values with null checks
-                        Object videoUrl = videoData.get("videoUrl");
-                        Object thumbnailUrl = videoData.get("thumbnailUrl");
-                        Object duration = videoData.get("duration");
-                        
-                        // Only add non-null values to mediaData
-                        if (videoUrl != null) {
-                            mediaData.put("videoUrl", videoUrl);
-                        }
-                        if (thumbnailUrl != null) {
-                            mediaData.put("thumbnailUrl", thumbnailUrl);
-                        }
-                        if (duration != null) {
-                            mediaData.put("duration", duration);
-                        }
-                        
-                        // Log the video data for debugging
-                        Log.d(TAG, "Video data received: " + videoData);
-                        Log.d(TAG, "Video URL: " + videoUrl);
-                        Log.d(TAG, "Thumbnail URL: " + thumbnailUrl);
-                        Log.d(TAG, "Duration: " + duration);
-                        
-                        // Ensure we have at least a video URL
-                        if (!mediaData.containsKey("videoUrl")) {
-                            Log.e(TAG, "No video URL in media data");
-                            showLoading(false);
-                            Toast.makeText(this, "Failed to upload video: no URL received", Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        
-                        FirebaseUtil.sendMessageWithDeliveryTracking(chatId, senderId, "🎥 Video", Message.TYPE_VIDEO, mediaData)
-                                .addOnSuccessListener(aVoid -> {
-                                    showLoading(false);
-                                    Log.d(TAG, "Video message sent successfully");
-                                    Toast.makeText(this, "Video sent successfully", Toast.LENGTH_SHORT).show();
-                                })
-                                .addOnFailureListener(e -> {
-                                    showLoading(false);
-                                    Log.e(TAG, "Failed to send video message", e);
-                                    Toast.makeText(this, "Failed to send video: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                });
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error in video upload callback", e);
-                        showLoading(false);
-                        Toast.makeText(this, "Error processing video upload", Toast.LENGTH_SHORT).show();
+        // Poster, size and duration are read on the device so the bubble shows up before the upload
+        CloudinaryUtil cloudinaryUtil = CloudinaryUtil.getInstance();
+        android.content.Context appContext = getApplicationContext();
+        String targetChatId = chatId;
+        String pendingId = "pending_" + UUID.randomUUID();
+        pendingVideoIds.add(pendingId);
+        CompletableFuture<VideoMetadataExtractor.Result> metadata = VideoMetadataExtractor.extract(appContext, videoUri)
+                .handle((result, error) -> {
+                    if (error != null) {
+                        Log.w(TAG, "Could not extract video metadata", error);
+                        return null;
                     }
-                }))
-                .exceptionally(throwable -> {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Log.e(TAG, "Video upload failed", throwable);
-                        Toast.makeText(this, "Failed to upload video: " + throwable.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
-                    return null;
+                    return result;
                 });
+        metadata.thenAccept(result -> runOnUiThread(() -> showPendingVideo(pendingId, senderId, result)));
+
+        // Upload and send are owned by the upload queue, so they finish even if this screen closes
+        attachmentStarted();
+        String jobId = UploadScheduler.getInstance(this).scheduleSelfSending(chatId, getAttachmentSize(videoUri),
+                uploadTaskId -> metadata.thenCompose(result -> cloudinaryUtil.sendChatVideoMessage(
+                        uploadTaskId, videoUri, result, appContext, targetChatId, senderId, "🎥 Video")),
+                new AttachmentListener(Message.TYPE_VIDEO, "Video sent successfully", "Failed to upload video", pendingId));
+        pendingJobIds.put(pendingId, jobId);
+    }
+
+    // Tapping a bubble that is still uploading offers to stop it before it is sent
+    private void confirmCancelPendingUpload(Message message) {
+        String pendingId = message.getId();
+        String jobId = pendingJobIds.get(pendingId);
+        if (jobId == null || isFinishing() || isDestroyed()) return;
+
+        new AlertDialog.Builder(this)
+                .setMessage("Cancel sending this video?")
+                .setPositiveButton("Cancel sending", (dialog, which) -> {
+                    if (UploadScheduler.getInstance(this).cancel(jobId)) {
+                        removePendingMessage(pendingId);
+                        attachmentFinished();
+                    } else {
+                        Toast.makeText(this, "Already sent", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Keep", null)
+                .show();
+    }
+
+    private void showPendingVideo(String pendingId, String senderId, VideoMetadataExtractor.Result metadata) {
+        if (metadata == null || isFinishing() || isDestroyed() || !pendingVideoIds.contains(pendingId)) return;
+
+        Message pending = Message.createVideoMessage(senderId, null,
+                metadata.posterFile != null ? Uri.fromFile(metadata.posterFile).toString() : null);
+        pending.setId(pendingId);
+        pending.setChatId(chatId);
+        pending.setDuration(metadata.durationMs);
+        pending.setWidth(metadata.width);
+        pending.setHeight(metadata.height);
+        pending.setBlurHash(metadata.blurHash);
+        messages.add(pending);
+        updateMessagesWithDateHeaders();
+    }
+
+    private void removePendingMessage(String pendingId) {
+        if (pendingId == null) return;
+        pendingJobIds.remove(pendingId);
+        if (!pendingVideoIds.remove(pendingId)) return;
+        if (messages.removeIf(message -> pendingId.equals(message.getId()))) {
+            updateMessagesWithDateHeaders();
+        }
     }
 
     private void sendAudioMessage(Uri audioUri) {
@@ -1261,87 +1379,22 @@ public class ChatActivity extends AppCompatActivity {
         }
 
         String senderId = currentUser.getUid();
-        showLoading(true);
 
         // Validate audio file
         try {
             String mimeType = getContentResolver().getType(audioUri);
             if (mimeType == null || !mimeType.startsWith("audio/")) {
-                showLoading(false);
                 Toast.makeText(this, "Invalid audio file", Toast.LENGTH_SHORT).show();
                 return;
             }
         } catch (Exception e) {
             Log.e(TAG, "Error checking audio file", e);
-            showLoading(false);
             Toast.makeText(this, "Error reading audio file", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        CloudinaryUtil.getInstance()
-                .uploadChatAudio(audioUri, this)
-                .thenAccept(audioData -> runOnUiThread(() -> {
-                    try {
-                        // Check if audioData is null
-                        if (audioData == null) {
-                            Log.e(TAG, "Audio data is null");
-                            showLoading(false);
-                            Toast.makeText(this, "Failed to upload audio: no data received", Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        
-                        Map<String, Object> mediaData = new HashMap<>();
-                        
-                        // Safely get values with null checks
-                        Object audioUrl = audioData.get("audioUrl");
-                        Object duration = audioData.get("duration");
-                        
-                        // Only add non-null values to mediaData
-                        if (audioUrl != null) {
-                            mediaData.put("audioUrl", audioUrl);
-                        }
-                        if (duration != null) {
-                            mediaData.put("duration", duration);
-                        }
-                        
-                        // Log the audio data for debugging
-                        Log.d(TAG, "Audio data received: " + audioData);
-                        Log.d(TAG, "Audio URL: " + audioUrl);
-                        Log.d(TAG, "Duration: " + duration);
-                        
-                        // Ensure we have at least an audio URL
-                        if (!mediaData.containsKey("audioUrl")) {
-                            Log.e(TAG, "No audio URL in media data");
-                            showLoading(false);
-                            Toast.makeText(this, "Failed to upload audio: no URL received", Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        
-                        FirebaseUtil.sendMessageWithDeliveryTracking(chatId, senderId, "🎤 Audio", Message.TYPE_AUDIO, mediaData)
-                                .addOnSuccessListener(aVoid -> {
-                                    showLoading(false);
-                                    Log.d(TAG, "Audio message sent successfully");
-                                    Toast.makeText(this, "Audio sent successfully", Toast.LENGTH_SHORT).show();
-                                })
-                                .addOnFailureListener(e -> {
-                                    showLoading(false);
-                                    Log.e(TAG, "Failed to send audio message", e);
-                                    Toast.makeText(this, "Failed to send audio: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                                });
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error in audio upload callback", e);
-                        showLoading(false);
-                        Toast.makeText(this, "Error processing audio upload", Toast.LENGTH_SHORT).show();
-                    }
-                }))
-                .exceptionally(throwable -> {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Log.e(TAG, "Audio upload failed", throwable);
-                        Toast.makeText(this, "Failed to upload audio: " + throwable.getMessage(), Toast.LENGTH_SHORT).show();
-                    });
-                    return null;
-                });
+        scheduleQueuedAttachment(audioUri, UploadQueue.KIND_AUDIO, senderId, "🎤 Audio", Message.TYPE_AUDIO,
+                "Audio sent successfully", "Failed to upload audio");
     }
 
     private void sendDocumentMessage(Uri documentUri) {
@@ -1351,72 +1404,86 @@ public class ChatActivity extends AppCompatActivity {
         if (currentUser == null) return;
 
         String senderId = currentUser.getUid();
+        scheduleQueuedAttachment(documentUri, UploadQueue.KIND_DOCUMENT, senderId, "📄 Document", Message.TYPE_DOCUMENT,
+                null, "Failed to upload document");
+    }
+
+    private void scheduleAttachment(Uri uri, Supplier<CompletableFuture<Map<String, Object>>> upload,
+                                    String senderId, String text, String type, String failureMessage) {
+        attachmentStarted();
+        UploadScheduler.getInstance(this).schedule(chatId, getAttachmentSize(uri), upload, senderId, text, type,
+                new AttachmentListener(type, null, failureMessage, null));
+    }
+
+    private void scheduleQueuedAttachment(Uri uri, String kind, String senderId, String text, String type,
+                                          String successMessage, String failureMessage) {
+        CloudinaryUtil cloudinaryUtil = CloudinaryUtil.getInstance();
+        android.content.Context appContext = getApplicationContext();
+        String targetChatId = chatId;
+        attachmentStarted();
+        UploadScheduler.getInstance(this).scheduleSelfSending(chatId, getAttachmentSize(uri),
+                uploadTaskId -> cloudinaryUtil.sendChatMediaMessage(uploadTaskId, uri, kind, appContext, targetChatId,
+                        senderId, text, type),
+                new AttachmentListener(type, successMessage, failureMessage, null));
+    }
+
+    private class AttachmentListener implements UploadScheduler.JobListener {
+        private final String type;
+        private final String successMessage;
+        private final String failureMessage;
+        private final String pendingMessageId;
+
+        AttachmentListener(String type, String successMessage, String failureMessage, String pendingMessageId) {
+            this.type = type;
+            this.successMessage = successMessage;
+            this.failureMessage = failureMessage;
+            this.pendingMessageId = pendingMessageId;
+        }
+
+        @Override
+        public void onSent(Map<String, Object> mediaData) {
+            Log.d(TAG, type + " message sent successfully: " + mediaData);
+            if (isFinishing() || isDestroyed()) return;
+            removePendingMessage(pendingMessageId);
+            attachmentFinished();
+            if (successMessage != null) {
+                Toast.makeText(ChatActivity.this, successMessage, Toast.LENGTH_SHORT).show();
+            }
+        }
+
+        @Override
+        public void onFailed(Throwable error) {
+            Log.e(TAG, type + " attachment failed", error);
+            if (isFinishing() || isDestroyed()) return;
+            removePendingMessage(pendingMessageId);
+            attachmentFinished();
+            Toast.makeText(ChatActivity.this, failureMessage, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void attachmentStarted() {
+        pendingAttachments++;
         showLoading(true);
+    }
 
-        CloudinaryUtil.getInstance()
-                .uploadChatDocument(documentUri, this)
-                .thenAccept(documentData -> runOnUiThread(() -> {
-                    // Check if documentData is null
-                    if (documentData == null) {
-                        Log.e(TAG, "Document data is null");
-                        showLoading(false);
-                        Toast.makeText(this, "Failed to upload document: no data received", Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-                    
-                    Map<String, Object> mediaData = new HashMap<>();
-                    
-                    // Safely get values with null checks
-                    Object fileUrl = documentData.get("fileUrl");
-                    Object fileName = documentData.get("fileName");
-                    Object fileSize = documentData.get("fileSize");
-                    
-                    // Only add non-null values to mediaData
-                    if (fileUrl != null) {
-                        mediaData.put("fileUrl", fileUrl);
-                    }
-                    if (fileName != null) {
-                        mediaData.put("fileName", fileName);
-                    }
-                    if (fileSize != null) {
-                        mediaData.put("fileSize", fileSize);
-                    }
-                    
-                    // Ensure we have at least a file URL
-                    if (!mediaData.containsKey("fileUrl")) {
-                        Log.e(TAG, "No file URL in media data");
-                        showLoading(false);
-                        Toast.makeText(this, "Failed to upload document: no URL received", Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-                    
-                    FirebaseUtil.sendMessageWithDeliveryTracking(chatId, senderId, "📄 Document", Message.TYPE_DOCUMENT, mediaData)
-                            .addOnSuccessListener(aVoid -> {
-                                showLoading(false);
-                                Log.d(TAG, "Document message sent successfully");
-                            })
-                            .addOnFailureListener(e -> {
-                                showLoading(false);
-                                Log.e(TAG, "Failed to send document message", e);
-                                Toast.makeText(this, "Failed to send document", Toast.LENGTH_SHORT).show();
-                            });
-                }))
-                .exceptionally(throwable -> {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Toast.makeText(this, "Failed to upload document", Toast.LENGTH_SHORT).show();
-                    });
-                    return null;
-                });
+    private void attachmentFinished() {
+        pendingAttachments = Math.max(0, pendingAttachments - 1);
+        if (pendingAttachments == 0) {
+            showLoading(false);
+        }
     }
 
-    private void updateMessageStatus(String messageId, int status) {
-        if (!isBlocked) {
-            FirebaseUtil.getMessagesRef(chatId)
-                    .child(messageId)
-                    .child("status")
-                    .setValue(status);
+    // Used only to prioritise small uploads; unknown sizes are scheduled last
+    private long getAttachmentSize(Uri uri) {
+        try (android.database.Cursor cursor = getContentResolver().query(
+                uri, new String[] {android.provider.OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read attachment size", e);
         }
+        return -1;
     }
 
     private void markMessagesAsRead() {
@@ -1435,24 +1502,8 @@ public class ChatActivity extends AppCompatActivity {
             }
         }
         
-        // Update the chat's unread count to 0 since all messages are now read
-        updateChatUnreadCount(0);
-
-        // Also clear per-user unreadCount in user_chats immediately (redundant safety)
-        FirebaseUtil.setUserChatUnreadCount(currentUserId, chatId, 0);
-    }
-    
-    private void updateChatUnreadCount(int newCount) {
-        // Update the chat's unread count in Firebase using the utility method
-        FirebaseUtil.updateChatUnreadCount(chatId, newCount);
-        
-        // Also reset per-user unread count like WhatsApp (only for current user)
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        if (currentUser != null) {
-            FirebaseUtil.setUserChatUnreadCount(currentUser.getUid(), chatId, newCount);
-        }
-
-        // Notify the chat list that this chat has been updated
+        // Everything on screen is read: reset this user's badge with one write
+        UnreadCounter.reset(currentUserId, chatId);
         notifyChatListUpdate();
     }
     
@@ -1527,8 +1578,7 @@ public class ChatActivity extends AppCompatActivity {
                 .setPositiveButton("Clear", (dialog, which) -> {
                     FirebaseUtil.clearChatHistory(chatId);
                     messages.clear();
-                    items.clear();
-                    adapter.notifyDataSetChanged();
+                    updateMessagesWithDateHeaders();
                     Toast.makeText(this, "Chat history cleared", Toast.LENGTH_SHORT).show();
                 })
                 .setNegativeButton("Cancel", null)
@@ -1610,18 +1660,13 @@ public class ChatActivity extends AppCompatActivity {
 
         Log.d(TAG, "ChatActivity destroyed, removing listeners");
 
-        if (messageListener != null) {
-            FirebaseUtil.getMessagesRef(chatId).removeEventListener(messageListener);
-        }
+        removeMessageListeners();
         if (typingListener != null) {
             FirebaseUtil.getTypingRef(chatId).removeEventListener(typingListener);
         }
         if (onlineStatusListener != null) {
             FirebaseUtil.getRealtimePresenceRef(receiverId).removeEventListener(onlineStatusListener);
         }
-        if (messageStatusListener != null) {
-            FirebaseUtil.getMessagesRef(chatId).removeEventListener(messageStatusListener);
-        }
 
         if (isTyping) {
             FirebaseUtil.setTyping(chatId, FirebaseAuth.getInstance().getUid(), false);
@@ -12,6 +12,7 @@ import com.bumptech.glide.Glide;
 import com.pingme.android.R;
 import com.pingme.android.databinding.ActivityEditProfileBinding;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.CloudinaryUtil;
 import com.pingme.android.utils.FirebaseUtil;
 import com.google.firebase.auth.FirebaseAuth;
@@ -65,7 +66,7 @@ public class EditProfileActivity extends AppCompatActivity {
         FirebaseUtil.getUserRef(userId).get().addOnSuccessListener(snapshot -> {
             showLoading(false);
             if (snapshot.exists()) {
-                currentUser = snapshot.toObject(User.class);
+                currentUser = UserCodec.fromDocument(snapshot);
                 if (currentUser != null) {
                     currentUser.setId(snapshot.getId()); // FIXED: Set ID
                     populateFields();
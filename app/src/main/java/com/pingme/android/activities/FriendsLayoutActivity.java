@@ -21,12 +21,17 @@ import com.pingme.android.R;
 import com.pingme.android.adapters.FriendsLayoutAdapter;
 import com.pingme.android.databinding.ActivityFriendsLayoutBinding;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 import com.pingme.android.utils.PersonalNameDialog;
+import com.pingme.android.utils.SearchIndexUpdater;
 import com.google.android.material.tabs.TabLayout;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 public class FriendsLayoutActivity extends AppCompatActivity implements FriendsLayoutAdapter.OnFriendClickListener {
     private static final String TAG = "FriendsLayoutActivity";
@@ -36,6 +41,7 @@ public class FriendsLayoutActivity extends AppCompatActivity implements FriendsL
     private String currentUserId;
     private List<User> friendsList = new ArrayList<>();
     private List<User> filteredFriendsList = new ArrayList<>();
+    private final SearchIndexUpdater<User> friendsIndex = SearchIndexUpdater.forUsers(index -> onFriendsIndexUpdated());
     private boolean isSearchMode = false;
     private int currentTab = 0; // 0: All Friends, 1: Online Friends, 2: Recent Contacts
     private boolean isLoadingFriends = false;
@@ -131,6 +137,7 @@ public class FriendsLayoutActivity extends AppCompatActivity implements FriendsL
                 .get()
                 .addOnSuccessListener(querySnapshot -> {
                     friendsList.clear();
+                    friendsIndex.submit(friendsList);
                     Log.d(TAG, "Found " + querySnapshot.size() + " friends");
                     
                     for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
@@ -152,7 +159,7 @@ public class FriendsLayoutActivity extends AppCompatActivity implements FriendsL
                                     .get()
                                     .addOnSuccessListener(userDoc -> {
                                         if (userDoc.exists()) {
-                                            User friend = userDoc.toObject(User.class);
+                                            User friend = UserCodec.fromDocument(userDoc);
                                             if (friend != null) {
                                                 friend.setId(friendId);
                                                 friend.setPersonalName(personalName);
@@ -161,6 +168,7 @@ public class FriendsLayoutActivity extends AppCompatActivity implements FriendsL
                                                 // Load presence data respecting privacy settings
                                                 loadFriendPresence(friend, () -> {
                                                     friendsList.add(friend);
+                                                    friendsIndex.submit(friendsList);
                                                     filterFriends(binding.searchEditText.getText().toString());
                                                 });
                                             }
@@ -206,17 +214,14 @@ public class FriendsLayoutActivity extends AppCompatActivity implements FriendsL
         
         // Then filter by search query
         filteredFriendsList.clear();
-        if (query.isEmpty()) {
+        if (query.trim().isEmpty()) {
             filteredFriendsList.addAll(tabFilteredList);
         } else {
-            String lowerQuery = query.toLowerCase();
-            for (User friend : tabFilteredList) {
-                String displayName = friend.getPersonalName() != null && !friend.getPersonalName().isEmpty() 
-                    ? friend.getPersonalName() 
-                    : friend.getName();
-                    
-                if (displayName != null && displayName.toLowerCase().contains(lowerQuery) ||
-                    (friend.getEmail() != null && friend.getEmail().toLowerCase().contains(lowerQuery))) {
+            // Keep the index ranking, restricted to friends visible in this tab
+            Set<User> inTab = Collections.newSetFromMap(new IdentityHashMap<>());
+            inTab.addAll(tabFilteredList);
+            for (User friend : friendsIndex.current().search(query)) {
+                if (inTab.contains(friend)) {
                     filteredFriendsList.add(friend);
                 }
             }
@@ -226,6 +231,13 @@ public class FriendsLayoutActivity extends AppCompatActivity implements FriendsL
         updateEmptyState();
     }
 
+    // The list changed while a search was showing - search the fresh index
+    private void onFriendsIndexUpdated() {
+        if (isSearchMode && !isFinishing() && !isDestroyed()) {
+            filterFriends(binding.searchEditText.getText().toString());
+        }
+    }
+
     private void filterFriendsByTab() {
         // Apply tab filtering with current search query
         String currentQuery = binding.searchEditText.getText().toString();
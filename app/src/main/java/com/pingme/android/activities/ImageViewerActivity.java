@@ -2,11 +2,9 @@ package com.pingme.android.activities;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
@@ -16,7 +14,6 @@ import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.content.FileProvider;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.target.CustomTarget;
@@ -25,14 +22,15 @@ import com.github.chrisbanes.photoview.PhotoView;
 import com.pingme.android.R;
 import com.pingme.android.databinding.ActivityImageViewerBinding;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
+import com.pingme.android.utils.MediaExportUtil;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.function.Consumer;
 
 public class ImageViewerActivity extends AppCompatActivity {
     private static final String TAG = "ImageViewerActivity";
@@ -295,7 +293,7 @@ public class ImageViewerActivity extends AppCompatActivity {
                         .addOnSuccessListener(documentSnapshot -> {
                             try {
                                 if (documentSnapshot != null && documentSnapshot.exists()) {
-                                    User sender = documentSnapshot.toObject(User.class);
+                                    User sender = UserCodec.fromDocument(documentSnapshot);
                                     if (sender != null && binding.tvSenderName != null) {
                                         String displayName = sender.getDisplayName();
                                         if (displayName != null && !displayName.trim().isEmpty()) {
@@ -397,63 +395,28 @@ public class ImageViewerActivity extends AppCompatActivity {
                 return;
             }
 
-            // Download image first, then share
-            Glide.with(this)
-                    .asBitmap()
-                    .load(imageUrl)
-                    .into(new CustomTarget<Bitmap>() {
-                        @Override
-                        public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
-                            shareImageBitmap(resource);
-                        }
-
-                        @Override
-                        public void onLoadCleared(@Nullable Drawable placeholder) {
-                            // Do nothing
-                        }
-
-                        @Override
-                        public void onLoadFailed(@Nullable Drawable errorDrawable) {
-                            Toast.makeText(ImageViewerActivity.this, "Failed to load image for sharing", Toast.LENGTH_SHORT).show();
-                        }
-                    });
+            // Original bytes from Glide's disk cache (downloaded only on a miss) - no decode/re-encode
+            loadOriginalFile("Failed to load image for sharing", file ->
+                    MediaExportUtil.copyForSharing(this, file)
+                            .whenComplete((contentUri, error) -> runOnUiThread(() -> {
+                                if (isFinishing() || isDestroyed()) return;
+                                if (error != null) {
+                                    Log.e(TAG, "Error sharing image", error);
+                                    Toast.makeText(this, "Failed to share image", Toast.LENGTH_SHORT).show();
+                                    return;
+                                }
+                                Intent shareIntent = new Intent(Intent.ACTION_SEND);
+                                shareIntent.setType(getContentResolver().getType(contentUri));
+                                shareIntent.putExtra(Intent.EXTRA_STREAM, contentUri);
+                                shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                                startActivity(Intent.createChooser(shareIntent, "Share Image"));
+                            })));
         } catch (Exception e) {
             Log.e(TAG, "Error sharing image", e);
             Toast.makeText(this, "Error sharing image", Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void shareImageBitmap(Bitmap bitmap) {
-        try {
-            File cachePath = new File(getCacheDir(), "images");
-            if (!cachePath.exists()) {
-                cachePath.mkdirs();
-            }
-
-            File imageFile = new File(cachePath, "shared_image_" + System.currentTimeMillis() + ".jpg");
-            FileOutputStream stream = new FileOutputStream(imageFile);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, stream);
-            stream.close();
-
-            Uri contentUri = FileProvider.getUriForFile(this,
-                    getPackageName() + ".fileprovider", imageFile);
-
-            Intent shareIntent = new Intent(Intent.ACTION_SEND);
-            shareIntent.setType("image/jpeg");
-            shareIntent.putExtra(Intent.EXTRA_STREAM, contentUri);
-            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-            startActivity(Intent.createChooser(shareIntent, "Share Image"));
-
-        } catch (IOException e) {
-            Log.e(TAG, "Error sharing image", e);
-            Toast.makeText(this, "Failed to share image", Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            Log.e(TAG, "Error sharing image", e);
-            Toast.makeText(this, "Failed to share image", Toast.LENGTH_SHORT).show();
-        }
-    }
-
     private void saveImageToGallery() {
         try {
             if (imageUrl == null || imageUrl.trim().isEmpty()) {
@@ -461,53 +424,44 @@ public class ImageViewerActivity extends AppCompatActivity {
                 return;
             }
 
-            Glide.with(this)
-                    .asBitmap()
-                    .load(imageUrl)
-                    .into(new CustomTarget<Bitmap>() {
-                        @Override
-                        public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
-                            saveImageBitmap(resource);
-                        }
-
-                        @Override
-                        public void onLoadCleared(@Nullable Drawable placeholder) {
-                            // Do nothing
-                        }
-
-                        @Override
-                        public void onLoadFailed(@Nullable Drawable errorDrawable) {
-                            Toast.makeText(ImageViewerActivity.this, "Failed to load image for saving", Toast.LENGTH_SHORT).show();
-                        }
-                    });
+            loadOriginalFile("Failed to load image for saving", file ->
+                    MediaExportUtil.saveToGallery(this, file)
+                            .whenComplete((savedUri, error) -> runOnUiThread(() -> {
+                                if (isFinishing() || isDestroyed()) return;
+                                if (error != null) {
+                                    Log.e(TAG, "Error saving image", error);
+                                    Toast.makeText(this, "Failed to save image", Toast.LENGTH_SHORT).show();
+                                } else {
+                                    Toast.makeText(this, "Image saved to gallery", Toast.LENGTH_SHORT).show();
+                                }
+                            })));
         } catch (Exception e) {
             Log.e(TAG, "Error saving image", e);
             Toast.makeText(this, "Error saving image", Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void saveImageBitmap(Bitmap bitmap) {
-        try {
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-            String imageFileName = "PingMe_" + timeStamp + ".jpg";
-
-            String savedImageURL = MediaStore.Images.Media.insertImage(
-                    getContentResolver(),
-                    bitmap,
-                    imageFileName,
-                    "Image from PingMe"
-            );
-
-            if (savedImageURL != null) {
-                Toast.makeText(this, "Image saved to gallery", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, "Failed to save image", Toast.LENGTH_SHORT).show();
-            }
+    // The cached source file for imageUrl; it was fetched for display, so this is normally a cache hit
+    private void loadOriginalFile(String failureMessage, Consumer<File> onLoaded) {
+        Glide.with(this)
+                .asFile()
+                .load(imageUrl)
+                .into(new CustomTarget<File>() {
+                    @Override
+                    public void onResourceReady(@NonNull File resource, @Nullable Transition<? super File> transition) {
+                        onLoaded.accept(resource);
+                    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving image", e);
-            Toast.makeText(this, "Failed to save image", Toast.LENGTH_SHORT).show();
-        }
+                    @Override
+                    public void onLoadCleared(@Nullable Drawable placeholder) {
+                        // Do nothing
+                    }
+
+                    @Override
+                    public void onLoadFailed(@Nullable Drawable errorDrawable) {
+                        Toast.makeText(ImageViewerActivity.this, failureMessage, Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
 
     private void forwardImage() {
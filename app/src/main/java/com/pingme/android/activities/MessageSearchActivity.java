@@ -21,6 +21,8 @@ import com.pingme.android.R;
 import com.pingme.android.adapters.MessageSearchAdapter;
 import com.pingme.android.models.Message;
 import com.pingme.android.models.User;
+import com.pingme.android.models.MessageCodec;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 import java.util.ArrayList;
@@ -87,7 +89,7 @@ public class MessageSearchActivity extends AppCompatActivity implements MessageS
             public void onDataChange(DataSnapshot dataSnapshot) {
                 allUsers.clear();
                 for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    User user = snapshot.getValue(User.class);
+                    User user = UserCodec.fromSnapshot(snapshot);
                     if (user != null) {
                         allUsers.add(user);
                     }
@@ -129,7 +131,7 @@ public class MessageSearchActivity extends AppCompatActivity implements MessageS
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
                 for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                    Message message = messageSnapshot.getValue(Message.class);
+                    Message message = MessageCodec.fromSnapshot(messageSnapshot);
                     if (message != null && !allMessages.contains(message)) {
                         allMessages.add(message);
                     }
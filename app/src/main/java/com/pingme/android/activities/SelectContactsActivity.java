@@ -16,6 +16,7 @@ import com.pingme.android.adapters.ContactSelectionAdapter;
 import com.pingme.android.databinding.ActivitySelectContactsBinding;
 import com.pingme.android.models.Broadcast;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 import java.util.ArrayList;
@@ -136,7 +137,7 @@ public class SelectContactsActivity extends AppCompatActivity {
                                 .get()
                                 .addOnSuccessListener(userDoc -> {
                                     if (userDoc.exists()) {
-                                        User user = userDoc.toObject(User.class);
+                                        User user = UserCodec.fromDocument(userDoc);
                                         if (user != null) {
                                             user.setId(userDoc.getId());
                                             contacts.add(user);
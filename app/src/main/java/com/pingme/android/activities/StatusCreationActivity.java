@@ -18,6 +18,7 @@ import com.google.firebase.auth.FirebaseUser;
 import com.pingme.android.databinding.ActivityStatusCreationBinding;
 import com.pingme.android.models.Status;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.CloudinaryUtil;
 import com.pingme.android.utils.FirebaseUtil;
 
@@ -159,7 +160,7 @@ public class StatusCreationActivity extends AppCompatActivity {
         FirebaseUtil.getUserRef(currentUserId).get()
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        currentUser = documentSnapshot.toObject(User.class);
+                        currentUser = UserCodec.fromDocument(documentSnapshot);
                         if (currentUser != null) {
                             currentUser.setId(currentUserId);
                         }
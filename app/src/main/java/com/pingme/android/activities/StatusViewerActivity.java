@@ -19,6 +19,7 @@ import com.pingme.android.R;
 import com.pingme.android.adapters.StatusViewerAdapter;
 import com.pingme.android.databinding.ActivityStatusViewerBinding;
 import com.pingme.android.models.Status;
+import com.pingme.android.models.StatusCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 import java.util.ArrayList;
@@ -139,7 +140,7 @@ public class StatusViewerActivity extends AppCompatActivity {
                     statusList.clear();
                     
                     for (com.google.firebase.firestore.DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        Status status = document.toObject(Status.class);
+                        Status status = StatusCodec.fromDocument(document);
                         if (status != null && !status.isExpired()) {
                             status.setId(document.getId());
                             statusList.add(status);
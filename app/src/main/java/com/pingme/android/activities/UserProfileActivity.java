@@ -16,6 +16,7 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.pingme.android.R;
 import com.pingme.android.databinding.ActivityUserProfileBinding;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 public class UserProfileActivity extends AppCompatActivity {
@@ -67,7 +68,7 @@ public class UserProfileActivity extends AppCompatActivity {
         FirebaseUtil.getUserRef(targetUserId).get()
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        targetUser = documentSnapshot.toObject(User.class);
+                        targetUser = UserCodec.fromDocument(documentSnapshot);
                         if (targetUser != null) {
                             displayUserProfile();
                         } else {
@@ -0,0 +1,139 @@
+package com.pingme.android.activities;
+
+import android.content.Context;
+import android.content.Intent;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.widget.MediaController;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.pingme.android.R;
+import com.pingme.android.databinding.ActivityVideoPlayerBinding;
+import com.pingme.android.utils.VideoCacheProxy;
+import com.pingme.android.utils.VideoPlayerUtil;
+
+/**
+ * In-app video playback. The video is streamed through {@link VideoCacheProxy},
+ * so it starts after the first few hundred KB instead of after a full download,
+ * and replays are served from the local range cache.
+ */
+public class VideoPlayerActivity extends AppCompatActivity {
+    private static final String TAG = "VideoPlayerActivity";
+
+    public static final String EXTRA_VIDEO_URL = "video_url";
+    private static final String STATE_POSITION = "position";
+
+    private ActivityVideoPlayerBinding binding;
+    private String videoUrl;
+    private int resumePosition = 0;
+    private long openedAt;
+
+    public static Intent createIntent(Context context, String videoUrl) {
+        Intent intent = new Intent(context, VideoPlayerActivity.class);
+        intent.putExtra(EXTRA_VIDEO_URL, videoUrl);
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        binding = ActivityVideoPlayerBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+
+        videoUrl = getIntent().getStringExtra(EXTRA_VIDEO_URL);
+        if (videoUrl == null || videoUrl.isEmpty()) {
+            Toast.makeText(this, "Invalid video URL", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        if (savedInstanceState != null) {
+            resumePosition = savedInstanceState.getInt(STATE_POSITION, 0);
+        }
+
+        binding.btnBack.setOnClickListener(v -> finish());
+        setupPlayer();
+    }
+
+    private void setupPlayer() {
+        MediaController controller = new MediaController(this);
+        controller.setAnchorView(binding.videoView);
+        binding.videoView.setMediaController(controller);
+
+        binding.videoView.setOnPreparedListener(mediaPlayer -> {
+            if (resumePosition > 0) {
+                binding.videoView.seekTo(resumePosition);
+            }
+            binding.videoView.start();
+        });
+
+        binding.videoView.setOnInfoListener((mediaPlayer, what, extra) -> {
+            switch (what) {
+                case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                    binding.progressBar.setVisibility(View.GONE);
+                    Log.d(TAG, "Time to first frame: " + (SystemClock.elapsedRealtime() - openedAt) + " ms");
+                    return true;
+                case MediaPlayer.MEDIA_INFO_BUFFERING_START:
+                    binding.progressBar.setVisibility(View.VISIBLE);
+                    return true;
+                case MediaPlayer.MEDIA_INFO_BUFFERING_END:
+                    binding.progressBar.setVisibility(View.GONE);
+                    return true;
+                default:
+                    return false;
+            }
+        });
+
+        binding.videoView.setOnCompletionListener(mediaPlayer -> resumePosition = 0);
+
+        binding.videoView.setOnErrorListener((mediaPlayer, what, extra) -> {
+            Log.e(TAG, "Playback error what=" + what + " extra=" + extra);
+            Toast.makeText(this, R.string.failed_to_play_video, Toast.LENGTH_SHORT).show();
+            // Let a system player try the original URL
+            VideoPlayerUtil.getInstance().playVideoExternally(videoUrl, this);
+            finish();
+            return true;
+        });
+
+        openedAt = SystemClock.elapsedRealtime();
+        String streamUrl = VideoCacheProxy.getInstance(this).getProxyUrl(videoUrl);
+        binding.videoView.setVideoURI(Uri.parse(streamUrl));
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (binding.videoView.isPlaying()) {
+            resumePosition = binding.videoView.getCurrentPosition();
+            binding.videoView.pause();
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (resumePosition > 0 && !binding.videoView.isPlaying()) {
+            binding.videoView.seekTo(resumePosition);
+            binding.videoView.start();
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_POSITION, resumePosition);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (binding != null) {
+            binding.videoView.stopPlayback();
+        }
+    }
+}
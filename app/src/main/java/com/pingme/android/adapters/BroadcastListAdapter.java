@@ -11,11 +11,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.pingme.android.R;
 import com.pingme.android.models.Broadcast;
+import com.pingme.android.utils.TimeFormatter;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 public class BroadcastListAdapter extends RecyclerView.Adapter<BroadcastListAdapter.BroadcastViewHolder> {
 
@@ -90,7 +88,7 @@ public class BroadcastListAdapter extends RecyclerView.Adapter<BroadcastListAdap
 
             // Show timestamp
             if (broadcast.getLastMessageTimestamp() > 0) {
-                String timeText = formatTimestamp(broadcast.getLastMessageTimestamp());
+                String timeText = TimeFormatter.getInstance().formatChatListTime(broadcast.getLastMessageTimestamp());
                 tvTimestamp.setText(timeText);
                 tvTimestamp.setVisibility(View.VISIBLE);
             } else {
@@ -111,22 +109,5 @@ public class BroadcastListAdapter extends RecyclerView.Adapter<BroadcastListAdap
                 return true;
             });
         }
-
-        private String formatTimestamp(long timestamp) {
-            Date date = new Date(timestamp);
-            long now = System.currentTimeMillis();
-            long diff = now - timestamp;
-
-            if (diff < 24 * 60 * 60 * 1000) { // Less than 24 hours
-                SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-                return timeFormat.format(date);
-            } else if (diff < 7 * 24 * 60 * 60 * 1000) { // Less than 7 days
-                SimpleDateFormat dayFormat = new SimpleDateFormat("EEE", Locale.getDefault());
-                return dayFormat.format(date);
-            } else {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-                return dateFormat.format(date);
-            }
-        }
     }
 }
\ No newline at end of file
@@ -11,10 +11,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.pingme.android.R;
 import com.pingme.android.models.Call;
+import com.pingme.android.utils.TimeFormatter;
 
-import java.text.SimpleDateFormat;
 import java.util.List;
-import java.util.Locale;
 
 public class CallsAdapter extends RecyclerView.Adapter<CallsAdapter.CallViewHolder> {
     private final List<Call> calls;
@@ -68,8 +67,7 @@ public class CallsAdapter extends RecyclerView.Adapter<CallsAdapter.CallViewHold
         void bind(Call call) {
             tvName.setText(call.getContactName());
             tvType.setText(call.getCallType());
-            SimpleDateFormat sdf = new SimpleDateFormat("h:mm a", Locale.getDefault());
-            tvTime.setText(sdf.format(call.getTimestamp()));
+            tvTime.setText(TimeFormatter.getInstance().formatTime(call.getTimestamp()));
 
             // TODO: Load profile image using Glide if available
             // Glide.with(itemView.getContext())
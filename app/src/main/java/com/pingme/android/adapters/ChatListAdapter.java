@@ -10,24 +10,32 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.PopupMenu;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.load.resource.bitmap.CircleCrop;
 import com.pingme.android.R;
 import com.pingme.android.activities.ChatActivity;
 import com.pingme.android.models.Chat;
 import com.pingme.android.models.User;
+import com.pingme.android.utils.CloudinaryUrlBuilder;
 import com.pingme.android.utils.FirebaseUtil;
+import com.pingme.android.utils.RecyclerViewImagePreloader;
+import com.pingme.android.utils.TimeFormatter;
 import com.google.firebase.auth.FirebaseAuth;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
-public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatViewHolder> {
+public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatViewHolder>
+        implements RecyclerViewImagePreloader.PreloadProvider {
+
+    // Partial rebinds for changes that touch one part of a row; the chat object is already updated
+    public static final String PAYLOAD_TYPING = "typing";
+    public static final String PAYLOAD_UNREAD_BADGE = "unread_badge";
 
     private Context context;
     private List<Chat> chats = new ArrayList<>();
@@ -56,6 +64,28 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
         holder.bind(chat);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull ChatViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        boolean typing = false, unreadBadge = false;
+        for (Object payload : payloads) {
+            if (PAYLOAD_TYPING.equals(payload)) {
+                typing = true;
+            } else if (PAYLOAD_UNREAD_BADGE.equals(payload)) {
+                unreadBadge = true;
+            } else {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+        Chat chat = chats.get(position);
+        if (typing) holder.bindLastMessage(chat);
+        if (unreadBadge) holder.bindUnreadCount(chat);
+    }
+
     @Override
     public int getItemCount() {
         return chats.size();
@@ -68,6 +98,15 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
     }
 
     public void addOrUpdateChat(Chat chat) {
+        addOrUpdateChat(chat, null);
+    }
+
+    /**
+     * Like {@link #addOrUpdateChat(Chat)}, but an existing row only rebinds the part
+     * named by {@code payload} ({@link #PAYLOAD_TYPING}, {@link #PAYLOAD_UNREAD_BADGE}),
+     * so e.g. a typing change doesn't reload the avatar or re-query the status tick.
+     */
+    public void addOrUpdateChat(Chat chat, @Nullable Object payload) {
         Log.d("ChatListAdapter", "addOrUpdateChat called for chat: " + chat.getId() + " with unread count: " + chat.getUnreadCount());
         // Avoid inserting blank items with no other user info
         if (chat.getOtherUser() == null) {
@@ -86,7 +125,7 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
         if (existingIndex != -1) {
             Log.d("ChatListAdapter", "Updating existing chat at index: " + existingIndex);
             chats.set(existingIndex, chat);
-            notifyItemChanged(existingIndex);
+            notifyItemRangeChanged(existingIndex, 1, payload);
         } else {
             Log.d("ChatListAdapter", "Adding new chat at top");
             chats.add(0, chat);
@@ -94,6 +133,31 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
         }
     }
 
+    // ivProfile in item_chat
+    private static final int PROFILE_IMAGE_DP = 50;
+
+    @NonNull
+    @Override
+    public List<RequestBuilder<?>> getPreloadRequests(int position) {
+        if (position < 0 || position >= chats.size()) {
+            return Collections.emptyList();
+        }
+        User otherUser = chats.get(position).getOtherUser();
+        if (otherUser == null || otherUser.getImageUrl() == null || otherUser.getImageUrl().trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Same visibility rule as bind()
+        boolean isCurrentUser = currentUserId.equals(otherUser.getId());
+        if (!isCurrentUser && !otherUser.isProfilePhotoEnabled()) {
+            return Collections.emptyList();
+        }
+        int size = Math.round(PROFILE_IMAGE_DP * context.getResources().getDisplayMetrics().density);
+        return Collections.singletonList(
+                CloudinaryUrlBuilder.loadAvatar(Glide.with(context), otherUser.getImageUrl(), size, size)
+                        .transform(new CircleCrop())
+                        .override(size, size));
+    }
+
     public void removeChat(String chatId) {
         for (int i = 0; i < chats.size(); i++) {
             if (chats.get(i).getId().equals(chatId)) {
@@ -151,8 +215,7 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
                 boolean shouldShowAvatar = isCurrentUser || otherUser.isProfilePhotoEnabled();
                 
                 if (shouldShowAvatar && otherUser.getImageUrl() != null && !otherUser.getImageUrl().trim().isEmpty()) {
-                    Glide.with(context)
-                            .load(otherUser.getImageUrl())
+                    CloudinaryUrlBuilder.loadAvatar(Glide.with(context), otherUser.getImageUrl(), ivProfile)
                             .transform(new CircleCrop())
                             .placeholder(R.drawable.defaultprofile)
                             .error(R.drawable.defaultprofile)
@@ -171,9 +234,6 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
                 onlineIndicator.setVisibility(View.GONE);
             }
 
-            // FIXED: Improved last message preview logic
-            tvLastMessage.setText(getLastMessagePreview(chat));
-
             // FIXED: Better time formatting and visibility logic
             String formattedTime = getFormattedTime(chat.getLastMessageTimestamp());
             if (!formattedTime.isEmpty() && hasContent(chat)) {
@@ -183,7 +243,53 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
                 tvTime.setVisibility(View.INVISIBLE);
             }
 
-            // Enhanced unread count display
+            bindUnreadCount(chat);
+
+            // Show message status for sent messages with actual status from database
+            if (isSentByCurrentUser(chat)) {
+                setMessageStatusIcon(ivMessageStatus, chat);
+            }
+            bindLastMessage(chat);
+
+            // Enhanced click listeners with null checks
+            itemView.setOnClickListener(v -> {
+                try {
+                    Intent intent = new Intent(context, ChatActivity.class);
+                    intent.putExtra("chatId", chat.getId());
+                    intent.putExtra("receiverId", otherUser.getId());
+                    context.startActivity(intent);
+                } catch (Exception e) {
+                    Log.e("ChatListAdapter", "Error opening chat", e);
+                }
+            });
+
+            // Long click for context menu
+            itemView.setOnLongClickListener(v -> {
+                showContextMenu(v, chat);
+                return true;
+            });
+        }
+
+        // Preview line and tick; also the whole of a PAYLOAD_TYPING rebind
+        void bindLastMessage(Chat chat) {
+            // FIXED: Improved last message preview logic
+            tvLastMessage.setText(getLastMessagePreview(chat));
+
+            // Enhanced typing indicator with proper styling
+            if (chat.isTyping()) {
+                tvLastMessage.setTextColor(context.getColor(R.color.colorPrimary));
+                tvLastMessage.setTypeface(null, android.graphics.Typeface.ITALIC);
+            } else {
+                tvLastMessage.setTextColor(context.getColor(R.color.textColorSecondary));
+                tvLastMessage.setTypeface(null, android.graphics.Typeface.NORMAL);
+            }
+
+            // Hide message status when typing; the icon keeps the status loaded by bind()
+            ivMessageStatus.setVisibility(isSentByCurrentUser(chat) && !chat.isTyping() ? View.VISIBLE : View.GONE);
+        }
+
+        // Enhanced unread count display
+        void bindUnreadCount(Chat chat) {
             if (chat.getUnreadCount() > 0) {
                 Log.d("ChatListAdapter", "Showing unread count: " + chat.getUnreadCount() + " for chat: " + chat.getId());
                 tvUnreadCount.setVisibility(View.VISIBLE);
@@ -213,44 +319,10 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
                 Log.d("ChatListAdapter", "Hiding unread count for chat: " + chat.getId() + " (count: " + chat.getUnreadCount() + ")");
                 tvUnreadCount.setVisibility(View.GONE);
             }
+        }
 
-            // Show message status for sent messages with actual status from database
-            if (chat.getLastMessageSenderId() != null && chat.getLastMessageSenderId().equals(currentUserId)) {
-                ivMessageStatus.setVisibility(View.VISIBLE);
-                setMessageStatusIcon(ivMessageStatus, chat);
-            } else {
-                ivMessageStatus.setVisibility(View.GONE);
-            }
-
-            // Enhanced typing indicator with proper styling
-            if (chat.isTyping()) {
-                tvLastMessage.setText("typing...");
-                tvLastMessage.setTextColor(context.getColor(R.color.colorPrimary));
-                tvLastMessage.setTypeface(null, android.graphics.Typeface.ITALIC);
-                // Hide message status when typing
-                ivMessageStatus.setVisibility(View.GONE);
-            } else {
-                tvLastMessage.setTextColor(context.getColor(R.color.textColorSecondary));
-                tvLastMessage.setTypeface(null, android.graphics.Typeface.NORMAL);
-            }
-
-            // Enhanced click listeners with null checks
-            itemView.setOnClickListener(v -> {
-                try {
-                    Intent intent = new Intent(context, ChatActivity.class);
-                    intent.putExtra("chatId", chat.getId());
-                    intent.putExtra("receiverId", otherUser.getId());
-                    context.startActivity(intent);
-                } catch (Exception e) {
-                    Log.e("ChatListAdapter", "Error opening chat", e);
-                }
-            });
-
-            // Long click for context menu
-            itemView.setOnLongClickListener(v -> {
-                showContextMenu(v, chat);
-                return true;
-            });
+        private boolean isSentByCurrentUser(Chat chat) {
+            return chat.getLastMessageSenderId() != null && chat.getLastMessageSenderId().equals(currentUserId);
         }
 
         // Enhanced last message preview logic
@@ -317,47 +389,7 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
 
         // Enhanced time formatting like WhatsApp
         private String getFormattedTime(long timestamp) {
-            if (timestamp <= 0) return "";
-
-            Calendar messageTime = Calendar.getInstance();
-            messageTime.setTimeInMillis(timestamp);
-            
-            Calendar now = Calendar.getInstance();
-            Calendar yesterday = Calendar.getInstance();
-            yesterday.add(Calendar.DAY_OF_YEAR, -1);
-            
-            // Same day - show time only
-            if (isSameDay(messageTime, now)) {
-                SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-                return timeFormat.format(new Date(timestamp));
-            }
-            // Yesterday - show "Yesterday"
-            else if (isSameDay(messageTime, yesterday)) {
-                return "Yesterday";
-            }
-            // This week - show day name
-            else if (isThisWeek(messageTime, now)) {
-                SimpleDateFormat dayFormat = new SimpleDateFormat("EEE", Locale.getDefault());
-                return dayFormat.format(new Date(timestamp));
-            }
-            // Older - show date
-            else {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-                return dateFormat.format(new Date(timestamp));
-            }
-        }
-        
-        private boolean isSameDay(Calendar cal1, Calendar cal2) {
-            return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                   cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR);
-        }
-        
-        private boolean isThisWeek(Calendar messageTime, Calendar now) {
-            Calendar weekStart = Calendar.getInstance();
-            weekStart.setTime(now.getTime());
-            weekStart.add(Calendar.DAY_OF_YEAR, -7);
-            
-            return messageTime.after(weekStart) && messageTime.before(now);
+            return TimeFormatter.getInstance().formatChatListTime(timestamp);
         }
 
         private boolean hasContent(Chat chat) {
@@ -491,12 +523,11 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
         }
         
         private void loadMessageStatusById(ImageView statusIcon, Chat chat, String messageId) {
-            FirebaseUtil.getMessagesRef(chat.getId()).child(messageId)
-                    .addListenerForSingleValueEvent(new com.google.firebase.database.ValueEventListener() {
+            FirebaseUtil.loadMessageWithReceipts(chat.getId(), messageId, new FirebaseUtil.MessageCallback() {
                 @Override
-                public void onDataChange(com.google.firebase.database.DataSnapshot dataSnapshot) {
-                    if (dataSnapshot.exists()) {
-                        processMessageStatus(statusIcon, chat, dataSnapshot);
+                public void onMessageLoaded(com.pingme.android.models.Message message) {
+                    if (message != null) {
+                        processMessageStatus(statusIcon, chat, message);
                     } else {
                         // Message not found, try fallback
                         loadMostRecentSentMessage(statusIcon, chat);
@@ -504,7 +535,7 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
                 }
 
                 @Override
-                public void onCancelled(com.google.firebase.database.DatabaseError databaseError) {
+                public void onError(String error) {
                     // Error handling - show default status
                     statusIcon.setImageResource(R.drawable.ic_sent);
                 }
@@ -512,20 +543,16 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
         }
         
         private void loadMostRecentSentMessage(ImageView statusIcon, Chat chat) {
-            // Query for the most recent message sent by current user
-            FirebaseUtil.getMessagesRef(chat.getId())
-                    .orderByChild("timestamp")
-                    .limitToLast(10) // Get last 10 messages to find the most recent sent by current user
-                    .addListenerForSingleValueEvent(new com.google.firebase.database.ValueEventListener() {
+            // Get last 10 messages to find the most recent sent by current user
+            FirebaseUtil.loadMessagesWithReceipts(chat.getId(), 10, new FirebaseUtil.MessagesCallback() {
                 @Override
-                public void onDataChange(com.google.firebase.database.DataSnapshot dataSnapshot) {
-                    com.google.firebase.database.DataSnapshot mostRecentSentMessage = null;
+                public void onMessagesLoaded(List<com.pingme.android.models.Message> messages) {
+                    com.pingme.android.models.Message mostRecentSentMessage = null;
                     
                     // Find the most recent message sent by current user
-                    for (com.google.firebase.database.DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                        String senderId = messageSnapshot.child("senderId").getValue(String.class);
-                        if (currentUserId.equals(senderId)) {
-                            mostRecentSentMessage = messageSnapshot;
+                    for (com.pingme.android.models.Message message : messages) {
+                        if (currentUserId.equals(message.getSenderId())) {
+                            mostRecentSentMessage = message;
                         }
                     }
                     
@@ -538,38 +565,34 @@ public class ChatListAdapter extends RecyclerView.Adapter<ChatListAdapter.ChatVi
                 }
 
                 @Override
-                public void onCancelled(com.google.firebase.database.DatabaseError databaseError) {
+                public void onError(String error) {
                     statusIcon.setImageResource(R.drawable.ic_sent);
                 }
             });
         }
         
-        private void processMessageStatus(ImageView statusIcon, Chat chat, com.google.firebase.database.DataSnapshot messageSnapshot) {
-            // Get message data
-            Integer status = messageSnapshot.child("status").getValue(Integer.class);
-            com.google.firebase.database.DataSnapshot deliveredTo = messageSnapshot.child("deliveredTo");
-            com.google.firebase.database.DataSnapshot readBy = messageSnapshot.child("readBy");
+        private void processMessageStatus(ImageView statusIcon, Chat chat, com.pingme.android.models.Message message) {
+            Map<String, Long> deliveredTo = message.getDeliveredTo();
+            Map<String, Long> readBy = message.getReadBy();
             
             // Check receiver's read receipts privacy setting
             User otherUser = chat.getOtherUser();
             boolean receiverAllowsReadReceipts = otherUser != null && otherUser.isReadReceiptsEnabled();
             
-            // Determine the actual status based on the message data and privacy settings
-            int actualStatus = com.pingme.android.models.Message.STATUS_SENT; // Default
+            // Determine the actual status based on the receipts and privacy settings
+            int actualStatus;
             
-            if (status != null) {
-                // Check if message has been read (blue ticks) - only if receiver allows read receipts
-                if (readBy.hasChildren() && receiverAllowsReadReceipts) {
-                    actualStatus = com.pingme.android.models.Message.STATUS_READ;
-                }
-                // Check if message has been delivered (gray double ticks)
-                else if (deliveredTo.hasChildren()) {
-                    actualStatus = com.pingme.android.models.Message.STATUS_DELIVERED;
-                }
-                // Otherwise, message is just sent (gray single tick)
-                else {
-                    actualStatus = com.pingme.android.models.Message.STATUS_SENT;
-                }
+            // Check if message has been read (blue ticks) - only if receiver allows read receipts
+            if (readBy != null && !readBy.isEmpty() && receiverAllowsReadReceipts) {
+                actualStatus = com.pingme.android.models.Message.STATUS_READ;
+            }
+            // Check if message has been delivered (gray double ticks); a read receipt implies delivery
+            else if ((deliveredTo != null && !deliveredTo.isEmpty()) || (readBy != null && !readBy.isEmpty())) {
+                actualStatus = com.pingme.android.models.Message.STATUS_DELIVERED;
+            }
+            // Otherwise, message is just sent (gray single tick)
+            else {
+                actualStatus = com.pingme.android.models.Message.STATUS_SENT;
             }
             
             // Set the appropriate icon based on actual status
@@ -7,46 +7,90 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.ProgressBar;
 import android.util.Log;
-import android.graphics.Typeface;
-import android.text.Spannable;
-import android.text.SpannableString;
-import android.text.style.BackgroundColorSpan;
-import android.text.style.StyleSpan;
+import android.util.LruCache;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.widget.AppCompatTextView;
 import androidx.core.content.ContextCompat;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
 import com.bumptech.glide.load.resource.bitmap.CircleCrop;
 import com.bumptech.glide.load.resource.bitmap.RoundedCorners;
 import com.google.firebase.auth.FirebaseUser;
 import com.pingme.android.R;
+import com.pingme.android.databinding.ItemMessageReceivedAudioBinding;
+import com.pingme.android.databinding.ItemMessageReceivedDocumentBinding;
+import com.pingme.android.databinding.ItemMessageReceivedImageBinding;
+import com.pingme.android.databinding.ItemMessageReceivedTextBinding;
+import com.pingme.android.databinding.ItemMessageReceivedVideoBinding;
+import com.pingme.android.databinding.ItemMessageSentAudioBinding;
+import com.pingme.android.databinding.ItemMessageSentDocumentBinding;
+import com.pingme.android.databinding.ItemMessageSentImageBinding;
+import com.pingme.android.databinding.ItemMessageSentTextBinding;
+import com.pingme.android.databinding.ItemMessageSentVideoBinding;
 import com.pingme.android.models.Message;
 import com.pingme.android.models.User;
+import com.pingme.android.utils.AppExecutors;
+import com.pingme.android.utils.BlurHash;
+import com.pingme.android.utils.CloudinaryUrlBuilder;
 import com.pingme.android.utils.MediaPlayerUtil;
+import com.pingme.android.utils.MessageTextCache;
+import com.pingme.android.utils.RecyclerViewImagePreloader;
+import com.pingme.android.utils.TimeFormatter;
 import com.pingme.android.utils.VideoPlayerUtil;
+import com.pingme.android.utils.ViewHolderPrewarmer;
 import com.pingme.android.utils.DocumentViewerUtil;
 import com.google.firebase.auth.FirebaseAuth;
 import android.widget.Toast;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.FutureTask;
 
-public class MessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class MessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements RecyclerViewImagePreloader.PreloadProvider {
 
     private static final int VIEW_TYPE_DATE_HEADER = 0;
-    private static final int VIEW_TYPE_MESSAGE_SENT = 1;
-    private static final int VIEW_TYPE_MESSAGE_RECEIVED = 2;
+    private static final int VIEW_TYPE_HIDDEN = 1;
+    // One type per direction and content type, each with its own layout; see contentOffset
+    private static final int VIEW_TYPE_SENT_TEXT = 10;
+    private static final int VIEW_TYPE_SENT_IMAGE = 11;
+    private static final int VIEW_TYPE_SENT_VIDEO = 12;
+    private static final int VIEW_TYPE_SENT_AUDIO = 13;
+    private static final int VIEW_TYPE_SENT_DOCUMENT = 14;
+    private static final int VIEW_TYPE_RECEIVED_TEXT = 20;
+    private static final int VIEW_TYPE_RECEIVED_IMAGE = 21;
+    private static final int VIEW_TYPE_RECEIVED_VIDEO = 22;
+    private static final int VIEW_TYPE_RECEIVED_AUDIO = 23;
+    private static final int VIEW_TYPE_RECEIVED_DOCUMENT = 24;
+
+    // {view type, holders to inflate ahead}: about a screen of mostly text rows
+    private static final int[][] PREWARM_COUNTS = {
+            {VIEW_TYPE_SENT_TEXT, 8}, {VIEW_TYPE_RECEIVED_TEXT, 8}, {VIEW_TYPE_DATE_HEADER, 2},
+            {VIEW_TYPE_SENT_IMAGE, 2}, {VIEW_TYPE_RECEIVED_IMAGE, 2},
+            {VIEW_TYPE_SENT_VIDEO, 1}, {VIEW_TYPE_RECEIVED_VIDEO, 1},
+            {VIEW_TYPE_SENT_AUDIO, 1}, {VIEW_TYPE_RECEIVED_AUDIO, 1},
+            {VIEW_TYPE_SENT_DOCUMENT, 1}, {VIEW_TYPE_RECEIVED_DOCUMENT, 1},
+    };
 
     private Context context;
     private List<Object> items;
@@ -56,119 +100,294 @@ public class MessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
     private boolean otherUserShowsLastSeen = true;
     
     // For message highlighting from search
-    private String highlightMessageId = null;
-    private String searchQuery = null;
+    private volatile String highlightMessageId = null;
+    private volatile String searchQuery = null;
+    private volatile int highlightColor;
+
+    // Highlighted and measured bubble text, prepared by prepareText off the main thread
+    private static final int TEXT_CACHE_MESSAGES = 500;
+    private final MessageTextCache textCache = new MessageTextCache(TEXT_CACHE_MESSAGES);
+    // Text metrics of the sent/received bubbles, taken from the first row of each kind
+    private volatile PrecomputedTextCompat.Params sentTextParams;
+    private volatile PrecomputedTextCompat.Params receivedTextParams;
+
+    // Partial rebinds: each payload names the only part of a message row that changed
+    public static final String PAYLOAD_STATUS = "status";
+    public static final String PAYLOAD_HIGHLIGHT = "highlight";
+    public static final String PAYLOAD_AVATAR = "avatar";
+    public static final String PAYLOAD_AUDIO_PROGRESS = "audio_progress";
+
+    // What rows last saw of the other user, to tell which parts an update touches
+    private String otherUserImageUrl;
+    private String otherUserId;
+    private boolean otherUserReadReceipts;
+
+    // Voice note playback state, rendered by bindAudioState
+    private String activeAudioMessageId = null;
+    private int activeAudioIndex = -1;
+    private int activeAudioPosition = 0;
+    private int activeAudioDuration = 0;
+    private boolean activeAudioPlaying = false;
+
+    /** Taps on a local bubble whose upload has not been sent yet. */
+    public interface OnPendingUploadClickListener {
+        void onPendingUploadClick(Message message);
+    }
+
+    private OnPendingUploadClickListener pendingUploadClickListener;
 
     public MessageAdapter(List<Object> items, User otherUser) {
         this.items = items != null ? items : new ArrayList<>();
         this.otherUser = otherUser;
+        if (otherUser != null) {
+            this.otherUserImageUrl = otherUser.getImageUrl();
+            this.otherUserId = otherUser.getId();
+            this.otherUserReadReceipts = otherUser.isReadReceiptsEnabled();
+        }
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         this.currentUserId = currentUser != null ? currentUser.getUid() : "";
     }
     
     public void setContext(Context context) {
         this.context = context;
+        this.highlightColor = ContextCompat.getColor(context, R.color.search_highlight_background);
+    }
+
+    public void setOnPendingUploadClickListener(OnPendingUploadClickListener listener) {
+        this.pendingUploadClickListener = listener;
     }
 
     public void updateOtherUser(User otherUser) {
         this.otherUser = otherUser;
-        // Refresh the adapter to reflect any privacy setting changes
-        notifyDataSetChanged();
+        // Rows only show the other user's avatar and, through the ticks, their id and
+        // read receipts setting; rebind just those parts, and only if they changed
+        String imageUrl = otherUser != null ? otherUser.getImageUrl() : null;
+        if (!Objects.equals(imageUrl, otherUserImageUrl)) {
+            otherUserImageUrl = imageUrl;
+            notifyMessageRows(false, PAYLOAD_AVATAR);
+        }
+        String id = otherUser != null ? otherUser.getId() : null;
+        boolean readReceipts = otherUser != null && otherUser.isReadReceiptsEnabled();
+        if (!Objects.equals(id, otherUserId) || readReceipts != otherUserReadReceipts) {
+            otherUserId = id;
+            otherUserReadReceipts = readReceipts;
+            notifyMessageRows(true, PAYLOAD_STATUS);
+        }
     }
 
     public void updatePrivacySettings(boolean showsProfilePhoto, boolean showsLastSeen) {
+        boolean avatarChanged = showsProfilePhoto != otherUserShowsProfilePhoto;
         this.otherUserShowsProfilePhoto = showsProfilePhoto;
         this.otherUserShowsLastSeen = showsLastSeen;
-        notifyDataSetChanged();
+        if (avatarChanged) {
+            notifyMessageRows(false, PAYLOAD_AVATAR);
+        }
     }
     
     public void setMessageHighlight(String messageId, String searchQuery) {
+        String previousId = highlightMessageId;
         this.highlightMessageId = messageId;
         this.searchQuery = searchQuery;
-        notifyDataSetChanged();
+        notifyMessageChanged(previousId, PAYLOAD_HIGHLIGHT);
+        if (messageId != null && !messageId.equals(previousId)) {
+            notifyMessageChanged(messageId, PAYLOAD_HIGHLIGHT);
+        }
     }
     
     public void clearMessageHighlight() {
+        String previousId = highlightMessageId;
         this.highlightMessageId = null;
         this.searchQuery = null;
-        notifyDataSetChanged();
+        notifyMessageChanged(previousId, PAYLOAD_HIGHLIGHT);
     }
-    
-    private CharSequence getHighlightedText(String text, String messageId) {
-        if (text == null || text.isEmpty()) return text;
-        
-        // Check if this message should be highlighted
-        boolean shouldHighlight = messageId != null && messageId.equals(highlightMessageId);
-        
-        if (shouldHighlight && searchQuery != null && !searchQuery.isEmpty() && context != null) {
-            SpannableString spannableString = new SpannableString(text);
-            String lowerText = text.toLowerCase();
-            String lowerQuery = searchQuery.toLowerCase();
-            
-            int startIndex = 0;
-            while ((startIndex = lowerText.indexOf(lowerQuery, startIndex)) != -1) {
-                int endIndex = startIndex + searchQuery.length();
-                
-                // Highlight with professional yellow background like WhatsApp
-                spannableString.setSpan(
-                    new BackgroundColorSpan(ContextCompat.getColor(context, R.color.search_highlight_background)),
-                    startIndex, 
-                    endIndex, 
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-                );
-                
-                // Make text bold for better visibility
-                spannableString.setSpan(
-                    new StyleSpan(Typeface.BOLD),
-                    startIndex,
-                    endIndex,
-                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
-                );
-                
-                startIndex = endIndex;
+
+    /**
+     * Swaps in updated copies of messages that are already in the list and
+     * rebinds their rows. With a payload only the part it names is rebound; pass
+     * null when a row may change type, e.g. a message deleted for this user.
+     */
+    public void replaceMessages(Collection<Message> updated, @Nullable Object payload) {
+        Map<String, Message> byId = new HashMap<>();
+        for (Message message : updated) {
+            byId.put(message.getId(), message);
+        }
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < items.size() && !byId.isEmpty(); i++) {
+            Object item = items.get(i);
+            if (item instanceof Message) {
+                Message replacement = byId.remove(((Message) item).getId());
+                if (replacement != null) {
+                    items.set(i, replacement);
+                    positions.add(i);
+                }
             }
-            
-            return spannableString;
         }
-        
-        return text;
+        notifyPositionsChanged(positions, payload);
+    }
+
+    private void notifyMessageChanged(String messageId, Object payload) {
+        int index = indexOfMessage(messageId);
+        if (index >= 0) {
+            notifyItemRangeChanged(index, 1, payload);
+        }
+    }
+
+    // Rebinds the payload's part of every sent (or every received) row
+    private void notifyMessageRows(boolean sent, Object payload) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Object item = items.get(i);
+            if (item instanceof Message && sent == currentUserId.equals(((Message) item).getSenderId())) {
+                positions.add(i);
+            }
+        }
+        notifyPositionsChanged(positions, payload);
+    }
+
+    // Positions must be ascending; neighbouring rows go out as one range
+    private void notifyPositionsChanged(List<Integer> positions, Object payload) {
+        int start = -1;
+        int count = 0;
+        for (int position : positions) {
+            if (start >= 0 && position == start + count) {
+                count++;
+                continue;
+            }
+            if (start >= 0) {
+                notifyItemRangeChanged(start, count, payload);
+            }
+            start = position;
+            count = 1;
+        }
+        if (start >= 0) {
+            notifyItemRangeChanged(start, count, payload);
+        }
+    }
+
+    /**
+     * Applies highlight spans to a text message and measures it for its bubble, ahead
+     * of the bind. Called on the message listener's worker, so new and edited messages
+     * reach the list already laid out. Does nothing until a text row of the message's
+     * direction exists to take the text metrics from.
+     */
+    public void prepareText(Message message) {
+        if (contentOffset(message.getType()) != 0 || isEmpty(message.getText())
+                || !message.isVisibleForUser(currentUserId)) {
+            return;
+        }
+        PrecomputedTextCompat.Params params = currentUserId.equals(message.getSenderId())
+                ? sentTextParams : receivedTextParams;
+        if (params == null) return;
+        textCache.prepare(message.getId(), message.getText(), highlightQuery(message.getId()), highlightColor, params);
+    }
+
+    // The search query while this message is the highlighted one, otherwise null
+    private String highlightQuery(String messageId) {
+        String query = searchQuery;
+        if (messageId == null || !messageId.equals(highlightMessageId) || query == null || query.isEmpty()) {
+            return null;
+        }
+        return query;
+    }
+
+    private void bindBubbleText(TextView textView, Message message, PrecomputedTextCompat.Params params) {
+        String text = message.getText();
+        String messageId = message.getId();
+        String query = highlightQuery(messageId);
+        AppCompatTextView appCompatText = textView instanceof AppCompatTextView ? (AppCompatTextView) textView : null;
+        if (appCompatText != null) {
+            // A pending future from the row's previous message must not land after this text
+            appCompatText.setTextFuture(null);
+        }
+
+        CharSequence cached = textCache.get(messageId, text, query);
+        if (cached instanceof PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(textView, (PrecomputedTextCompat) cached);
+                return;
+            } catch (IllegalArgumentException e) {
+                // Measured with other metrics than this TextView's
+                cached = null;
+            }
+        }
+
+        if (isEmpty(text) || params == null || appCompatText == null) {
+            textView.setText(cached != null ? cached : MessageTextCache.highlight(text, query, highlightColor));
+            return;
+        }
+        // Not prepared yet (e.g. a new highlight): measure on the CPU pool, which also caches it.
+        // The TextView only blocks on the result if it is measured first.
+        FutureTask<PrecomputedTextCompat> future = new FutureTask<>(() -> (PrecomputedTextCompat) textCache.prepare(
+                messageId, text, query, highlightColor, params));
+        AppExecutors.getInstance().cpu().execute(future);
+        appCompatText.setTextFuture(future);
     }
 
     @Override
     public int getItemViewType(int position) {
         Object item = items.get(position);
-        if (item instanceof String) {
+        if (!(item instanceof Message)) {
             return VIEW_TYPE_DATE_HEADER;
-        } else if (item instanceof Message) {
-            Message message = (Message) item;
-            if (message.getSenderId().equals(currentUserId)) {
-                return VIEW_TYPE_MESSAGE_SENT;
-            } else {
-                return VIEW_TYPE_MESSAGE_RECEIVED;
-            }
         }
-        return VIEW_TYPE_MESSAGE_RECEIVED;
+        Message message = (Message) item;
+        if (!message.isVisibleForUser(currentUserId)) {
+            return VIEW_TYPE_HIDDEN;
+        }
+        int base = currentUserId.equals(message.getSenderId()) ? VIEW_TYPE_SENT_TEXT : VIEW_TYPE_RECEIVED_TEXT;
+        return base + contentOffset(message.getType());
+    }
+
+    // Position of the content type within a direction's block of view types
+    private static int contentOffset(String type) {
+        if (Message.TYPE_IMAGE.equals(type)) return 1;
+        if (Message.TYPE_VIDEO.equals(type)) return 2;
+        if (Message.TYPE_AUDIO.equals(type)) return 3;
+        if (Message.TYPE_DOCUMENT.equals(type)) return 4;
+        return 0;
+    }
+
+    /**
+     * Sizes the RecyclerView's pool for chat rows and queues the first screen's
+     * worth of holders to be inflated while the main thread is idle. Call before
+     * the first layout so the initial messages bind into ready-made rows.
+     */
+    public void prewarm(RecyclerView recyclerView) {
+        ViewHolderPrewarmer.prewarm(this, recyclerView, recyclerView.getRecycledViewPool(), PREWARM_COUNTS);
     }
 
     @NonNull
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // Also called ahead of need by the prewarmer: it only inflates, binding state is not touched
         context = parent.getContext();
         LayoutInflater inflater = LayoutInflater.from(context);
 
         switch (viewType) {
             case VIEW_TYPE_DATE_HEADER:
-                View dateView = inflater.inflate(R.layout.item_date_header, parent, false);
-                return new DateHeaderViewHolder(dateView);
-            case VIEW_TYPE_MESSAGE_SENT:
-                View sentView = inflater.inflate(R.layout.item_message_sent, parent, false);
-                return new SentMessageViewHolder(sentView);
-            case VIEW_TYPE_MESSAGE_RECEIVED:
-                View receivedView = inflater.inflate(R.layout.item_message_received, parent, false);
-                return new ReceivedMessageViewHolder(receivedView);
+                return new DateHeaderViewHolder(inflater.inflate(R.layout.item_date_header, parent, false));
+            case VIEW_TYPE_HIDDEN:
+                return new HiddenMessageViewHolder(new View(context));
+            case VIEW_TYPE_SENT_TEXT:
+                return new TextMessageViewHolder(ItemMessageSentTextBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_SENT_IMAGE:
+                return new ImageMessageViewHolder(ItemMessageSentImageBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_SENT_VIDEO:
+                return new VideoMessageViewHolder(ItemMessageSentVideoBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_SENT_AUDIO:
+                return new AudioMessageViewHolder(ItemMessageSentAudioBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_SENT_DOCUMENT:
+                return new DocumentMessageViewHolder(ItemMessageSentDocumentBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_RECEIVED_IMAGE:
+                return new ImageMessageViewHolder(ItemMessageReceivedImageBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_RECEIVED_VIDEO:
+                return new VideoMessageViewHolder(ItemMessageReceivedVideoBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_RECEIVED_AUDIO:
+                return new AudioMessageViewHolder(ItemMessageReceivedAudioBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_RECEIVED_DOCUMENT:
+                return new DocumentMessageViewHolder(ItemMessageReceivedDocumentBinding.inflate(inflater, parent, false));
+            case VIEW_TYPE_RECEIVED_TEXT:
             default:
-                View defaultView = inflater.inflate(R.layout.item_message_received, parent, false);
-                return new ReceivedMessageViewHolder(defaultView);
+                return new TextMessageViewHolder(ItemMessageReceivedTextBinding.inflate(inflater, parent, false));
         }
     }
 
@@ -176,27 +395,298 @@ public class MessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         Object item = items.get(position);
 
-        if (holder instanceof DateHeaderViewHolder && item instanceof String) {
+        if (holder instanceof DateHeaderViewHolder) {
             ((DateHeaderViewHolder) holder).bind((String) item);
-        } else if (holder instanceof SentMessageViewHolder && item instanceof Message) {
-            Message message = (Message) item;
-            // Check if message is visible for current user
-            if (message.isVisibleForUser(currentUserId)) {
-                ((SentMessageViewHolder) holder).bind(message);
+        } else if (holder instanceof MessageViewHolder) {
+            ((MessageViewHolder) holder).bind((Message) item);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // Date headers and hidden rows show none of the parts payloads name
+        if (!(holder instanceof MessageViewHolder)) return;
+
+        // Payloads queue up between frames (e.g. several audio ticks); apply each part once
+        boolean status = false, highlight = false, avatar = false, audio = false;
+        for (Object payload : payloads) {
+            if (PAYLOAD_STATUS.equals(payload)) {
+                status = true;
+            } else if (PAYLOAD_HIGHLIGHT.equals(payload)) {
+                highlight = true;
+            } else if (PAYLOAD_AVATAR.equals(payload)) {
+                avatar = true;
+            } else if (PAYLOAD_AUDIO_PROGRESS.equals(payload)) {
+                audio = true;
             } else {
-                // Hide deleted/cleared messages
-                holder.itemView.setVisibility(View.GONE);
+                onBindViewHolder(holder, position);
+                return;
             }
-        } else if (holder instanceof ReceivedMessageViewHolder && item instanceof Message) {
-            Message message = (Message) item;
-            // Check if message is visible for current user
-            if (message.isVisibleForUser(currentUserId)) {
-                ((ReceivedMessageViewHolder) holder).bind(message);
-            } else {
-                // Hide deleted/cleared messages
-                holder.itemView.setVisibility(View.GONE);
+        }
+
+        MessageViewHolder row = (MessageViewHolder) holder;
+        Message message = (Message) items.get(position);
+        if (status) row.bindStatus(message);
+        if (highlight) row.bindHighlight(message);
+        if (avatar) row.bindAvatar();
+        if (audio) row.bindAudioProgress(message);
+    }
+
+    private void bindAudioState(Message message, ImageView ivPlayAudio, ProgressBar progressAudio) {
+        boolean active = message.getId() != null && message.getId().equals(activeAudioMessageId);
+        ivPlayAudio.setImageResource(active && activeAudioPlaying ? R.drawable.ic_pause_circle : R.drawable.ic_play_circle);
+        if (progressAudio == null) return;
+
+        int duration = active && activeAudioDuration > 0 ? activeAudioDuration : (int) message.getDuration();
+        if (duration > 0 && progressAudio.getMax() != duration) {
+            progressAudio.setMax(duration);
+        }
+        progressAudio.setProgress(active ? activeAudioPosition : 0);
+    }
+
+    private void toggleAudio(Message message) {
+        MediaPlayerUtil mediaPlayer = MediaPlayerUtil.getInstance();
+        String audioUrl = message.getAudioUrl();
+
+        if (mediaPlayer.isPlayingUrl(audioUrl)) {
+            mediaPlayer.pauseAudio();
+            activeAudioPlaying = false;
+            notifyAudioRowChanged();
+            return;
+        }
+
+        if (mediaPlayer.isCurrentUrl(audioUrl) && !mediaPlayer.isPlaying()) {
+            mediaPlayer.resumeAudio();
+            activeAudioPlaying = true;
+            notifyAudioRowChanged();
+            return;
+        }
+
+        // Reset the previously playing row before switching
+        String previousMessageId = activeAudioMessageId;
+        activeAudioMessageId = null;
+        notifyAudioRowChanged(previousMessageId);
+
+        activeAudioMessageId = message.getId();
+        activeAudioPosition = 0;
+        activeAudioDuration = (int) message.getDuration();
+        activeAudioPlaying = true;
+        notifyAudioRowChanged();
+
+        mediaPlayer.playAudio(audioUrl, context, new MediaPlayerUtil.MediaPlayerListener() {
+            @Override
+            public void onPrepared() {
+                int duration = mediaPlayer.getDuration();
+                if (duration > 0) activeAudioDuration = duration;
+                notifyAudioRowChanged();
+            }
+
+            @Override
+            public void onCompletion() {
+                activeAudioPlaying = false;
+                activeAudioPosition = 0;
+                notifyAudioRowChanged();
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e("MessageAdapter", "Audio playback error: " + error);
+                if (context != null) {
+                    Toast.makeText(context, "Audio playback error", Toast.LENGTH_SHORT).show();
+                }
+                activeAudioPlaying = false;
+                activeAudioPosition = 0;
+                notifyAudioRowChanged();
+            }
+
+            @Override
+            public void onProgress(int currentPosition, int duration) {
+                activeAudioPosition = currentPosition;
+                if (duration > 0) activeAudioDuration = duration;
+                notifyAudioRowChanged();
+            }
+        });
+
+        prebufferNextVoiceNote(message);
+    }
+
+    // Listeners usually play the next voice note right after this one - get it ready
+    private void prebufferNextVoiceNote(Message current) {
+        int index = indexOfMessage(current.getId());
+        if (index < 0 || context == null) return;
+        for (int i = index + 1; i < items.size(); i++) {
+            Object item = items.get(i);
+            if (item instanceof Message) {
+                Message next = (Message) item;
+                if (Message.TYPE_AUDIO.equals(next.getType()) && !currentUserId.equals(next.getSenderId())) {
+                    MediaPlayerUtil.getInstance().prebuffer(next.getAudioUrl(), context);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void notifyAudioRowChanged() {
+        notifyAudioRowChanged(activeAudioMessageId);
+    }
+
+    private void notifyAudioRowChanged(String messageId) {
+        if (messageId == null) return;
+        // Cheap check first: the row rarely moves while it is playing
+        if (activeAudioIndex < 0 || activeAudioIndex >= items.size()
+                || !(items.get(activeAudioIndex) instanceof Message)
+                || !messageId.equals(((Message) items.get(activeAudioIndex)).getId())) {
+            activeAudioIndex = indexOfMessage(messageId);
+        }
+        if (activeAudioIndex >= 0) {
+            notifyItemChanged(activeAudioIndex, PAYLOAD_AUDIO_PROGRESS);
+        }
+    }
+
+    private int indexOfMessage(String messageId) {
+        if (messageId == null) return -1;
+        for (int i = 0; i < items.size(); i++) {
+            Object item = items.get(i);
+            if (item instanceof Message && messageId.equals(((Message) item).getId())) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    // View sizes from the item_message_sent/received_* layouts (image height follows the photo), used to size preloads like the bind does
+    private static final int MESSAGE_IMAGE_DP = 200;
+    private static final int VIDEO_THUMBNAIL_WIDTH_DP = 120;
+    private static final int VIDEO_THUMBNAIL_HEIGHT_DP = 80;
+    private static final int PROFILE_IMAGE_DP = 32;
+
+    @NonNull
+    @Override
+    public List<RequestBuilder<?>> getPreloadRequests(int position) {
+        if (context == null || position < 0 || position >= items.size() || !(items.get(position) instanceof Message)) {
+            return Collections.emptyList();
+        }
+        Message message = (Message) items.get(position);
+        if (!message.isVisibleForUser(currentUserId)) {
+            return Collections.emptyList();
+        }
+        float density = context.getResources().getDisplayMetrics().density;
+        RequestManager glide = Glide.with(context);
+        List<RequestBuilder<?>> requests = new ArrayList<>(2);
+
+        if (Message.TYPE_IMAGE.equals(message.getType()) && !isEmpty(message.getImageUrl())) {
+            int width = Math.round(MESSAGE_IMAGE_DP * density);
+            int height = messageImageHeight(message, width);
+            requests.add(CloudinaryUrlBuilder.loadSized(glide, message.getImageUrl(), width, height)
+                    .transform(new RoundedCorners(24))
+                    .override(width, height));
+        } else if (Message.TYPE_VIDEO.equals(message.getType()) && !isEmpty(message.getThumbnailUrl())) {
+            int width = Math.round(VIDEO_THUMBNAIL_WIDTH_DP * density);
+            int height = Math.round(VIDEO_THUMBNAIL_HEIGHT_DP * density);
+            requests.add(CloudinaryUrlBuilder.loadAvatar(glide, message.getThumbnailUrl(), width, height)
+                    .transform(new RoundedCorners(24))
+                    .override(width, height));
+        }
+
+        // Received rows also show the sender's avatar (same URL for every row, loaded once)
+        if (!currentUserId.equals(message.getSenderId()) && otherUserShowsProfilePhoto
+                && otherUser != null && !isEmpty(otherUser.getImageUrl())) {
+            int size = Math.round(PROFILE_IMAGE_DP * density);
+            requests.add(CloudinaryUrlBuilder.loadAvatar(glide, otherUser.getImageUrl(), size, size)
+                    .transform(new CircleCrop())
+                    .override(size, size));
+        }
+        return requests;
+    }
+
+    // Image bubbles keep the layout's 200 dp width; the height follows the photo within these bounds
+    private static final float MIN_IMAGE_ASPECT = 0.5f;
+    private static final float MAX_IMAGE_ASPECT = 1.5f;
+    // BlurHash previews are decoded tiny and scaled up by the ImageView
+    private static final int BLURHASH_DECODE_SIZE = 24;
+    private final LruCache<String, Bitmap> blurHashCache = new LruCache<>(64);
+
+    private void bindMessageImage(ImageView imageView, Message message) {
+        String imageUrl = message.getImageUrl();
+        if (isEmpty(imageUrl)) return;
+
+        int width = Math.round(MESSAGE_IMAGE_DP * context.getResources().getDisplayMetrics().density);
+        int height = messageImageHeight(message, width);
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (params != null && (params.width != width || params.height != height)) {
+            params.width = width;
+            params.height = height;
+            imageView.setLayoutParams(params);
+        }
+
+        // Bubble-sized variant; the sender's BlurHash shows instantly, before any network request
+        RequestBuilder<Drawable> request = CloudinaryUrlBuilder.loadSized(Glide.with(context), imageUrl, width, height)
+                .transform(new RoundedCorners(24))
+                .override(width, height);
+        Drawable placeholder = blurHashPlaceholder(message);
+        if (placeholder != null) {
+            request.placeholder(placeholder).into(imageView);
+        } else {
+            request.placeholder(R.drawable.ic_image_placeholder).into(imageView);
+        }
+    }
+
+    private void bindVideoThumbnail(ImageView imageView, Message message) {
+        String thumbnailUrl = message.getThumbnailUrl();
+        Drawable placeholder = blurHashPlaceholder(message);
+        if (isEmpty(thumbnailUrl)) {
+            if (placeholder != null) {
+                imageView.setImageDrawable(placeholder);
+            }
+            return;
+        }
+        RequestBuilder<Drawable> request = CloudinaryUrlBuilder.loadAvatar(Glide.with(context), thumbnailUrl, imageView)
+                .transform(new RoundedCorners(24));
+        if (placeholder != null) {
+            request.placeholder(placeholder).into(imageView);
+        } else {
+            request.placeholder(R.drawable.ic_video_placeholder).into(imageView);
+        }
+    }
+
+    // Square for messages sent before dimensions were stored
+    private static int messageImageHeight(Message message, int width) {
+        if (message.getWidth() <= 0 || message.getHeight() <= 0) {
+            return width;
+        }
+        float aspect = (float) message.getHeight() / message.getWidth();
+        aspect = Math.max(MIN_IMAGE_ASPECT, Math.min(MAX_IMAGE_ASPECT, aspect));
+        return Math.round(width * aspect);
+    }
+
+    private Drawable blurHashPlaceholder(Message message) {
+        String blurHash = message.getBlurHash();
+        if (isEmpty(blurHash)) return null;
+
+        Bitmap bitmap = blurHashCache.get(blurHash);
+        if (bitmap == null) {
+            int width = BLURHASH_DECODE_SIZE;
+            int height = BLURHASH_DECODE_SIZE;
+            if (message.getWidth() > 0 && message.getHeight() > 0) {
+                height = Math.max(1, Math.round((float) BLURHASH_DECODE_SIZE * message.getHeight() / message.getWidth()));
+                height = Math.min(height, BLURHASH_DECODE_SIZE * 2);
+            }
+            bitmap = BlurHash.decodeBitmap(blurHash, width, height);
+            if (bitmap == null) {
+                Log.w("MessageAdapter", "Invalid BlurHash on message " + message.getId());
+                return null;
+            }
+            blurHashCache.put(blurHash, bitmap);
+        }
+        return new BitmapDrawable(context.getResources(), bitmap);
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
     }
 
     @Override
@@ -204,66 +694,116 @@ public class MessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         return items.size();
     }
 
-    // Static method to add date headers to messages
-    public static void addDateHeaders(List<Object> items, List<Message> messages) {
-        items.clear();
-
-        // Sort messages by timestamp
-        Collections.sort(messages, (m1, m2) -> Long.compare(m1.getTimestamp(), m2.getTimestamp()));
+    /**
+     * The rows for {@code messages}: sorted by time, with a date header wherever
+     * the day changes. Builds new lists only, so it can run on a worker.
+     */
+    public static List<Object> withDateHeaders(List<Message> messages) {
+        List<Message> sorted = new ArrayList<>(messages);
+        Collections.sort(sorted, (m1, m2) -> Long.compare(m1.getTimestamp(), m2.getTimestamp()));
 
+        List<Object> rows = new ArrayList<>(sorted.size() + 8);
         String currentDateHeader = null;
-
-        for (Message message : messages) {
+        for (Message message : sorted) {
             String messageDate = getDateHeader(message.getTimestamp());
-
             if (!messageDate.equals(currentDateHeader)) {
-                items.add(messageDate);
+                rows.add(messageDate);
                 currentDateHeader = messageDate;
             }
-
-            items.add(message);
+            rows.add(message);
         }
+        return rows;
+    }
+
+    /**
+     * Row changes from {@code oldRows} to {@code newRows}, for {@link #applyRows}.
+     * Messages are matched by id and are unchanged only if they are the same
+     * instance (updates always produce a new copy). Meant for a worker thread.
+     */
+    public static DiffUtil.DiffResult diffRows(List<Object> oldRows, List<Object> newRows) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldRows.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newRows.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                Object oldRow = oldRows.get(oldPosition);
+                Object newRow = newRows.get(newPosition);
+                if (oldRow instanceof Message && newRow instanceof Message) {
+                    return Objects.equals(((Message) oldRow).getId(), ((Message) newRow).getId());
+                }
+                return oldRow.equals(newRow);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                Object oldRow = oldRows.get(oldPosition);
+                Object newRow = newRows.get(newPosition);
+                return oldRow instanceof Message ? oldRow == newRow : oldRow.equals(newRow);
+            }
+        }, false);
+    }
+
+    /**
+     * Replaces the rows with {@code rows} and notifies only what {@code diff}
+     * says changed; {@code diff} must have been computed from the current rows.
+     */
+    public void applyRows(List<Object> rows, DiffUtil.DiffResult diff) {
+        items.clear();
+        items.addAll(rows);
+        diff.dispatchUpdatesTo(this);
     }
 
     private static String getDateHeader(long timestamp) {
-        Calendar today = Calendar.getInstance();
-        Calendar messageDate = Calendar.getInstance();
-        messageDate.setTimeInMillis(timestamp);
+        return TimeFormatter.getInstance().formatDateHeader(timestamp);
+    }
 
-        // Check if it's today
-        if (isSameDay(today, messageDate)) {
-            return "Today";
+    private void bindProfileImage(ImageView ivProfile) {
+        // Load profile image based on privacy settings
+        if (otherUserShowsProfilePhoto && otherUser != null && !isEmpty(otherUser.getImageUrl())) {
+            CloudinaryUrlBuilder.loadAvatar(Glide.with(context), otherUser.getImageUrl(), ivProfile)
+                    .transform(new CircleCrop())
+                    .placeholder(R.drawable.defaultprofile)
+                    .into(ivProfile);
+        } else {
+            ivProfile.setImageResource(R.drawable.defaultprofile);
         }
+    }
 
-        // Check if it's yesterday
-        Calendar yesterday = Calendar.getInstance();
-        yesterday.add(Calendar.DAY_OF_YEAR, -1);
-        if (isSameDay(yesterday, messageDate)) {
-            return "Yesterday";
-        }
+    private void setMessageStatus(ImageView statusIcon, Message message) {
+        // Use enhanced status calculation with recipient ID for accuracy
+        String recipientId = otherUser != null ? otherUser.getId() : null;
+        int deliveryStatus = message.getDeliveryStatus(currentUserId, recipientId);
 
-        // Check if it's this week
-        Calendar weekAgo = Calendar.getInstance();
-        weekAgo.add(Calendar.DAY_OF_YEAR, -7);
-        if (messageDate.after(weekAgo)) {
-            SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE", Locale.getDefault());
-            return dayFormat.format(new Date(timestamp));
-        }
+        // Respect receiver's read receipts privacy setting
+        boolean receiverAllowsReadReceipts = otherUser != null && otherUser.isReadReceiptsEnabled();
 
-        // Check if it's this year
-        if (today.get(Calendar.YEAR) == messageDate.get(Calendar.YEAR)) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM dd", Locale.getDefault());
-            return dateFormat.format(new Date(timestamp));
+        // If receiver has disabled read receipts, don't show blue ticks even if read
+        if (deliveryStatus == Message.STATUS_READ && !receiverAllowsReadReceipts) {
+            deliveryStatus = Message.STATUS_DELIVERED; // Show gray double tick instead
         }
 
-        // Older than this year
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM dd, yyyy", Locale.getDefault());
-        return dateFormat.format(new Date(timestamp));
-    }
-
-    private static boolean isSameDay(Calendar cal1, Calendar cal2) {
-        return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR);
+        switch (deliveryStatus) {
+            case Message.STATUS_DELIVERED:
+                statusIcon.setImageResource(R.drawable.ic_delivered); // Double gray tick
+                break;
+            case Message.STATUS_READ:
+                statusIcon.setImageResource(R.drawable.ic_read); // Double blue tick
+                break;
+            case Message.STATUS_SENT:
+            default:
+                statusIcon.setImageResource(R.drawable.ic_sent); // Single gray tick
+                break;
+        }
+        // Clear any color filter since colors are defined in drawable
+        statusIcon.clearColorFilter();
     }
 
     // Date Header ViewHolder
@@ -280,545 +820,235 @@ public class MessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         }
     }
 
-    // Sent Message ViewHolder
-    class SentMessageViewHolder extends RecyclerView.ViewHolder {
-        LinearLayout layoutTextMessage, layoutImage, layoutVideo, layoutAudio, layoutDocument;
-        TextView tvMessage, tvTime, tvImageCaption, tvImageTime, tvVideoTime, tvAudioTime, tvDocumentTime;
-        TextView tvAudioDuration, tvDocumentName, tvDocumentSize, tvVideoDuration;
-        ImageView ivStatus, ivImageStatus, ivVideoStatus, ivAudioStatus, ivDocumentStatus;
-        ImageView ivMessageImage, ivVideoThumbnail, ivPlayButton, ivPlayAudio;
-        ProgressBar progressAudio;
+    // Deleted or cleared message: an empty row with no height
+    static class HiddenMessageViewHolder extends RecyclerView.ViewHolder {
+        HiddenMessageViewHolder(@NonNull View itemView) {
+            super(itemView);
+            itemView.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0));
+        }
+    }
 
-        public SentMessageViewHolder(@NonNull View itemView) {
+    /**
+     * Views every message row has: the time, plus the ticks on sent rows or the
+     * sender's avatar on received rows. Subclasses bind one content type, from
+     * either direction's layout.
+     */
+    abstract class MessageViewHolder extends RecyclerView.ViewHolder {
+        final TextView tvTime;
+        final ImageView ivStatus;
+        final ImageView ivProfile;
+
+        MessageViewHolder(@NonNull View itemView, TextView tvTime, ImageView ivStatus, ImageView ivProfile) {
             super(itemView);
-            layoutTextMessage = itemView.findViewById(R.id.layoutTextMessage);
-            layoutImage = itemView.findViewById(R.id.layoutImage);
-            layoutVideo = itemView.findViewById(R.id.layoutVideo);
-            layoutAudio = itemView.findViewById(R.id.layoutAudio);
-            layoutDocument = itemView.findViewById(R.id.layoutDocument);
-
-            tvMessage = itemView.findViewById(R.id.tvMessage);
-            tvTime = itemView.findViewById(R.id.tvTime);
-            tvImageCaption = itemView.findViewById(R.id.tvImageCaption);
-            tvImageTime = itemView.findViewById(R.id.tvImageTime);
-            tvVideoTime = itemView.findViewById(R.id.tvVideoTime);
-            tvAudioTime = itemView.findViewById(R.id.tvAudioTime);
-            tvDocumentTime = itemView.findViewById(R.id.tvDocumentTime);
-
-            tvAudioDuration = itemView.findViewById(R.id.tvAudioDuration);
-            tvDocumentName = itemView.findViewById(R.id.tvDocumentName);
-            tvDocumentSize = itemView.findViewById(R.id.tvDocumentSize);
-            tvVideoDuration = itemView.findViewById(R.id.tvVideoDuration);
-
-            ivStatus = itemView.findViewById(R.id.ivStatus);
-            ivImageStatus = itemView.findViewById(R.id.ivImageStatus);
-            ivVideoStatus = itemView.findViewById(R.id.ivVideoStatus);
-            ivAudioStatus = itemView.findViewById(R.id.ivAudioStatus);
-            ivDocumentStatus = itemView.findViewById(R.id.ivDocumentStatus);
-
-            ivMessageImage = itemView.findViewById(R.id.ivMessageImage);
-            ivVideoThumbnail = itemView.findViewById(R.id.ivVideoThumbnail);
-            ivPlayButton = itemView.findViewById(R.id.ivPlayButton);
-            ivPlayAudio = itemView.findViewById(R.id.ivPlayAudio);
-            progressAudio = itemView.findViewById(R.id.progressAudio);
-        }
-
-        public void bind(Message message) {
-            hideAllLayouts();
-
-            String messageType = message.getType();
-            String timeText = getFormattedTime(message.getTimestamp());
-
-            switch (messageType) {
-                case Message.TYPE_TEXT:
-                    layoutTextMessage.setVisibility(View.VISIBLE);
-                    tvMessage.setText(getHighlightedText(message.getText(), message.getId()));
-                    tvTime.setText(timeText);
-                    setMessageStatus(ivStatus, message.getStatus());
-                    break;
-
-                case Message.TYPE_IMAGE:
-                    layoutImage.setVisibility(View.VISIBLE);
-                    loadMessageImage(message.getImageUrl());
-                    tvImageTime.setText(timeText);
-                    setMessageStatus(ivImageStatus, message.getStatus());
-
-                    // Set click listener to view full image in ImageViewerActivity
-                    ivMessageImage.setOnClickListener(v -> {
-                        Intent intent = com.pingme.android.activities.ImageViewerActivity.createIntent(
-                                context,
-                                message.getImageUrl(),
-                                "You", // Sender name for sent messages
-                                currentUserId,
-                                message.getTimestamp(),
-                                "" // Chat ID if needed
-                        );
-                        context.startActivity(intent);
-                    });
-                    break;
-
-                case Message.TYPE_VIDEO:
-                    layoutVideo.setVisibility(View.VISIBLE);
-                    loadVideoThumbnail(message.getThumbnailUrl());
-                    tvVideoTime.setText(timeText);
-                    setMessageStatus(ivVideoStatus, message.getStatus());
-
-                    if (message.getDuration() > 0) {
-                        tvVideoDuration.setText(formatDuration(message.getDuration()));
-                        tvVideoDuration.setVisibility(View.VISIBLE);
-                    }
+            this.tvTime = tvTime;
+            this.ivStatus = ivStatus;
+            this.ivProfile = ivProfile;
+        }
 
-                    // Set click listener to play video
-                    ivPlayButton.setOnClickListener(v -> {
-                        VideoPlayerUtil.getInstance().playVideo(message.getVideoUrl(), context);
-                    });
-                    break;
+        final void bind(Message message) {
+            tvTime.setText(getFormattedTime(message.getTimestamp()));
+            bindStatus(message);
+            bindAvatar();
+            bindContent(message);
+        }
 
-                case Message.TYPE_AUDIO:
-                    layoutAudio.setVisibility(View.VISIBLE);
-                    tvAudioTime.setText(timeText);
-                    setMessageStatus(ivAudioStatus, message.getStatus());
+        abstract void bindContent(Message message);
 
-                    if (message.getDuration() > 0) {
-                        tvAudioDuration.setText(formatDuration(message.getDuration()));
-                    }
+        final void bindStatus(Message message) {
+            if (ivStatus != null) {
+                setMessageStatus(ivStatus, message);
+            }
+        }
 
-                    // Reset progress bar and icon
-                    if (progressAudio != null) {
-                        progressAudio.setProgress(0);
-                        if (message.getDuration() > 0) {
-                            progressAudio.setMax((int) message.getDuration());
-                        }
-                    }
+        final void bindAvatar() {
+            if (ivProfile != null) {
+                bindProfileImage(ivProfile);
+            }
+        }
 
-                    // Play/Pause toggle with progress updates
-                    ivPlayAudio.setOnClickListener(v -> {
-                        MediaPlayerUtil mediaPlayer = MediaPlayerUtil.getInstance();
-                        String audioUrl = message.getAudioUrl();
-
-                        if (mediaPlayer.isPlayingUrl(audioUrl)) {
-                            mediaPlayer.pauseAudio();
-                            ivPlayAudio.setImageResource(R.drawable.ic_play_circle);
-                            return;
-                        }
-
-                        if (mediaPlayer.isCurrentUrl(audioUrl) && !mediaPlayer.isPlaying()) {
-                            mediaPlayer.resumeAudio();
-                            ivPlayAudio.setImageResource(R.drawable.ic_pause_circle);
-                            return;
-                        }
-
-                        ivPlayAudio.setImageResource(R.drawable.ic_pause_circle);
-
-                        mediaPlayer.playAudio(audioUrl, context, new MediaPlayerUtil.MediaPlayerListener() {
-                            @Override
-                            public void onPrepared() {
-                                // Initialize progress max from real duration if missing
-                                if (progressAudio != null) {
-                                    int duration = mediaPlayer.getDuration();
-                                    if (duration > 0) progressAudio.setMax(duration);
-                                }
-                            }
-
-                            @Override
-                            public void onCompletion() {
-                                itemView.post(() -> {
-                                    ivPlayAudio.setImageResource(R.drawable.ic_play_circle);
-                                    if (progressAudio != null) progressAudio.setProgress(0);
-                                });
-                            }
-
-                            @Override
-                            public void onError(String error) {
-                                Log.e("MessageAdapter", "Audio playback error: " + error);
-                                itemView.post(() -> {
-                                    Toast.makeText(context, "Audio playback error", Toast.LENGTH_SHORT).show();
-                                    ivPlayAudio.setImageResource(R.drawable.ic_play_circle);
-                                    if (progressAudio != null) progressAudio.setProgress(0);
-                                });
-                            }
-
-                            @Override
-                            public void onProgress(int currentPosition, int duration) {
-                                if (progressAudio != null) {
-                                    itemView.post(() -> {
-                                        if (progressAudio.getMax() != duration && duration > 0) {
-                                            progressAudio.setMax(duration);
-                                        }
-                                        progressAudio.setProgress(currentPosition);
-                                    });
-                                }
-                            }
-                        });
-                    });
-                    break;
-
-                case Message.TYPE_DOCUMENT:
-                    layoutDocument.setVisibility(View.VISIBLE);
-                    tvDocumentTime.setText(timeText);
-                    setMessageStatus(ivDocumentStatus, message.getStatus());
-
-                    if (tvDocumentName != null) {
-                        String name = message.getFileName() != null ? message.getFileName() : "Document";
-                        tvDocumentName.setText(name);
-                    }
-                    if (tvDocumentSize != null) {
-                        if (message.getFileSize() > 0) {
-                            tvDocumentSize.setText(DocumentViewerUtil.getInstance().formatFileSize(message.getFileSize()));
-                            tvDocumentSize.setVisibility(View.VISIBLE);
-                        } else {
-                            tvDocumentSize.setVisibility(View.GONE);
-                        }
-                    }
+        // Only rows that show the message text or play audio override these
+        void bindHighlight(Message message) {
+        }
 
-                    layoutDocument.setOnClickListener(v -> {
-                        DocumentViewerUtil.getInstance().openDocument(message.getFileUrl(), message.getFileName(), context);
-                    });
-                    break;
-            }
+        void bindAudioProgress(Message message) {
         }
+    }
 
-        private void hideAllLayouts() {
-            layoutTextMessage.setVisibility(View.GONE);
-            layoutImage.setVisibility(View.GONE);
-            layoutVideo.setVisibility(View.GONE);
-            layoutAudio.setVisibility(View.GONE);
-            layoutDocument.setVisibility(View.GONE);
+    class TextMessageViewHolder extends MessageViewHolder {
+        final TextView tvMessage;
+        final PrecomputedTextCompat.Params textParams;
+
+        TextMessageViewHolder(ItemMessageSentTextBinding binding) {
+            super(binding.getRoot(), binding.tvTime, binding.ivStatus, null);
+            tvMessage = binding.tvMessage;
+            textParams = TextViewCompat.getTextMetricsParams(tvMessage);
+            if (sentTextParams == null) sentTextParams = textParams;
         }
 
-        private void loadMessageImage(String imageUrl) {
-            if (imageUrl != null && !imageUrl.isEmpty()) {
-                Glide.with(context)
-                        .load(imageUrl)
-                        .transform(new RoundedCorners(24))
-                        .placeholder(R.drawable.ic_image_placeholder)
-                        .into(ivMessageImage);
-            }
+        TextMessageViewHolder(ItemMessageReceivedTextBinding binding) {
+            super(binding.getRoot(), binding.tvTime, null, binding.ivProfile);
+            tvMessage = binding.tvMessage;
+            textParams = TextViewCompat.getTextMetricsParams(tvMessage);
+            if (receivedTextParams == null) receivedTextParams = textParams;
         }
 
-        private void loadVideoThumbnail(String thumbnailUrl) {
-            if (thumbnailUrl != null && !thumbnailUrl.isEmpty()) {
-                Glide.with(context)
-                        .load(thumbnailUrl)
-                        .transform(new RoundedCorners(24))
-                        .placeholder(R.drawable.ic_video_placeholder)
-                        .into(ivVideoThumbnail);
-            }
+        @Override
+        void bindContent(Message message) {
+            bindHighlight(message);
         }
 
-        private void setMessageStatus(ImageView statusIcon, int status) {
-            // Use the enhanced delivery status for better accuracy
-            if (statusIcon == null) return;
-            
-            // Get the current message from the holder's position
-            int position = getAdapterPosition();
-            if (position >= 0 && position < items.size()) {
-                Object item = items.get(position);
-                if (item instanceof Message) {
-                    Message message = (Message) item;
-                    
-                    // Use enhanced status calculation with recipient ID for accuracy
-                    String recipientId = otherUser != null ? otherUser.getId() : null;
-                    int deliveryStatus = message.getDeliveryStatus(currentUserId, recipientId);
-                    
-                    // Respect receiver's read receipts privacy setting
-                    boolean receiverAllowsReadReceipts = otherUser != null && otherUser.isReadReceiptsEnabled();
-                    
-                    // If receiver has disabled read receipts, don't show blue ticks even if read
-                    if (deliveryStatus == Message.STATUS_READ && !receiverAllowsReadReceipts) {
-                        deliveryStatus = Message.STATUS_DELIVERED; // Show gray double tick instead
-                    }
-                    
-                    switch (deliveryStatus) {
-                        case Message.STATUS_SENT:
-                            statusIcon.setImageResource(R.drawable.ic_sent); // Single gray tick
-                            break;
-                        case Message.STATUS_DELIVERED:
-                            statusIcon.setImageResource(R.drawable.ic_delivered); // Double gray tick
-                            break;
-                        case Message.STATUS_READ:
-                            statusIcon.setImageResource(R.drawable.ic_read); // Double blue tick
-                            break;
-                        default:
-                            statusIcon.setImageResource(R.drawable.ic_sent);
-                            break;
-                    }
-                    // Clear any color filter since colors are defined in drawable
-                    statusIcon.clearColorFilter();
-                }
-            }
+        @Override
+        void bindHighlight(Message message) {
+            bindBubbleText(tvMessage, message, textParams);
         }
+    }
 
-        private void setMessageStatus(TextView statusText, Message message) {
-            if (statusText == null) return;
-            
-            if (message.isSentByCurrentUser(currentUserId)) {
-                String status = message.getStatusText(currentUserId);
-                statusText.setText(status);
-                
-                // Use enhanced status calculation with recipient ID for accuracy
-                String recipientId = otherUser != null ? otherUser.getId() : null;
-                int deliveryStatus = message.getDeliveryStatus(currentUserId, recipientId);
-                
-                // Respect receiver's read receipts privacy setting
-                boolean receiverAllowsReadReceipts = otherUser != null && otherUser.isReadReceiptsEnabled();
-                
-                // If receiver has disabled read receipts, don't show blue ticks even if read
-                if (deliveryStatus == Message.STATUS_READ && !receiverAllowsReadReceipts) {
-                    deliveryStatus = Message.STATUS_DELIVERED; // Show gray double tick instead
-                }
-                
-                switch (deliveryStatus) {
-                    case Message.STATUS_SENT:
-                        statusText.setTextColor(context.getResources().getColor(R.color.status_sent)); // Gray
-                        break;
-                    case Message.STATUS_DELIVERED:
-                        statusText.setTextColor(context.getResources().getColor(R.color.status_delivered)); // Gray
-                        break;
-                    case Message.STATUS_READ:
-                        statusText.setTextColor(context.getResources().getColor(R.color.status_read)); // Blue
-                        break;
-                    default:
-                        statusText.setTextColor(context.getResources().getColor(R.color.status_sent));
-                        break;
-                }
-            } else {
-                statusText.setText("");
-            }
+    class ImageMessageViewHolder extends MessageViewHolder {
+        final ImageView ivMessageImage;
+
+        ImageMessageViewHolder(ItemMessageSentImageBinding binding) {
+            super(binding.getRoot(), binding.tvImageTime, binding.ivImageStatus, null);
+            ivMessageImage = binding.ivMessageImage;
+        }
+
+        ImageMessageViewHolder(ItemMessageReceivedImageBinding binding) {
+            super(binding.getRoot(), binding.tvImageTime, null, binding.ivProfile);
+            ivMessageImage = binding.ivMessageImage;
+        }
+
+        @Override
+        void bindContent(Message message) {
+            bindMessageImage(ivMessageImage, message);
+
+            // Set click listener to view full image in ImageViewerActivity
+            ivMessageImage.setOnClickListener(v -> {
+                boolean sent = currentUserId.equals(message.getSenderId());
+                String senderName = sent ? "You" : otherUser != null ? otherUser.getDisplayName() : "Unknown";
+                Intent intent = com.pingme.android.activities.ImageViewerActivity.createIntent(
+                        context,
+                        message.getImageUrl(),
+                        senderName,
+                        message.getSenderId(),
+                        message.getTimestamp(),
+                        "" // Chat ID if needed
+                );
+                context.startActivity(intent);
+            });
         }
     }
 
-    // Received Message ViewHolder
-    class ReceivedMessageViewHolder extends RecyclerView.ViewHolder {
-        LinearLayout layoutProfile, layoutTextMessage, layoutImage, layoutVideo, layoutAudio, layoutDocument;
-        TextView tvMessage, tvTime, tvImageCaption, tvImageTime, tvVideoTime, tvAudioTime, tvDocumentTime;
-        TextView tvAudioDuration, tvDocumentName, tvDocumentSize, tvVideoDuration;
-        ImageView ivProfile, ivMessageImage, ivVideoThumbnail, ivPlayButton, ivPlayAudio;
-        ProgressBar progressAudio;
+    class VideoMessageViewHolder extends MessageViewHolder {
+        final ImageView ivVideoThumbnail, ivPlayButton;
+        final TextView tvVideoDuration;
 
-        public ReceivedMessageViewHolder(@NonNull View itemView) {
-            super(itemView);
-            layoutProfile = itemView.findViewById(R.id.layoutProfile);
-            layoutTextMessage = itemView.findViewById(R.id.layoutTextMessage);
-            layoutImage = itemView.findViewById(R.id.layoutImage);
-            layoutVideo = itemView.findViewById(R.id.layoutVideo);
-            layoutAudio = itemView.findViewById(R.id.layoutAudio);
-            layoutDocument = itemView.findViewById(R.id.layoutDocument);
-
-            ivProfile = itemView.findViewById(R.id.ivProfile);
-            tvMessage = itemView.findViewById(R.id.tvMessage);
-            tvTime = itemView.findViewById(R.id.tvTime);
-            tvImageCaption = itemView.findViewById(R.id.tvImageCaption);
-            tvImageTime = itemView.findViewById(R.id.tvImageTime);
-            tvVideoTime = itemView.findViewById(R.id.tvVideoTime);
-            tvAudioTime = itemView.findViewById(R.id.tvAudioTime);
-            tvDocumentTime = itemView.findViewById(R.id.tvDocumentTime);
-
-            tvAudioDuration = itemView.findViewById(R.id.tvAudioDuration);
-            tvDocumentName = itemView.findViewById(R.id.tvDocumentName);
-            tvDocumentSize = itemView.findViewById(R.id.tvDocumentSize);
-            tvVideoDuration = itemView.findViewById(R.id.tvVideoDuration);
-
-            ivMessageImage = itemView.findViewById(R.id.ivMessageImage);
-            ivVideoThumbnail = itemView.findViewById(R.id.ivVideoThumbnail);
-            ivPlayButton = itemView.findViewById(R.id.ivPlayButton);
-            ivPlayAudio = itemView.findViewById(R.id.ivPlayAudio);
-            progressAudio = itemView.findViewById(R.id.progressAudio);
-        }
-
-        public void bind(Message message) {
-            hideAllLayouts();
-
-            // Load profile image based on privacy settings
-            if (otherUserShowsProfilePhoto && otherUser != null &&
-                    otherUser.getImageUrl() != null && !otherUser.getImageUrl().isEmpty()) {
-                Glide.with(context)
-                        .load(otherUser.getImageUrl())
-                        .transform(new CircleCrop())
-                        .placeholder(R.drawable.defaultprofile)
-                        .into(ivProfile);
+        VideoMessageViewHolder(ItemMessageSentVideoBinding binding) {
+            super(binding.getRoot(), binding.tvVideoTime, binding.ivVideoStatus, null);
+            ivVideoThumbnail = binding.ivVideoThumbnail;
+            ivPlayButton = binding.ivPlayButton;
+            tvVideoDuration = binding.tvVideoDuration;
+        }
+
+        VideoMessageViewHolder(ItemMessageReceivedVideoBinding binding) {
+            super(binding.getRoot(), binding.tvVideoTime, null, binding.ivProfile);
+            ivVideoThumbnail = binding.ivVideoThumbnail;
+            ivPlayButton = binding.ivPlayButton;
+            tvVideoDuration = binding.tvVideoDuration;
+        }
+
+        @Override
+        void bindContent(Message message) {
+            bindVideoThumbnail(ivVideoThumbnail, message);
+
+            if (message.getDuration() > 0) {
+                tvVideoDuration.setText(formatDuration(message.getDuration()));
+                tvVideoDuration.setVisibility(View.VISIBLE);
             } else {
-                ivProfile.setImageResource(R.drawable.defaultprofile);
+                tvVideoDuration.setVisibility(View.GONE);
             }
 
-            String messageType = message.getType();
-            String timeText = getFormattedTime(message.getTimestamp());
-
-            switch (messageType) {
-                case Message.TYPE_TEXT:
-                    layoutTextMessage.setVisibility(View.VISIBLE);
-                    tvMessage.setText(getHighlightedText(message.getText(), message.getId()));
-                    tvTime.setText(timeText);
-                    break;
-
-                case Message.TYPE_IMAGE:
-                    layoutImage.setVisibility(View.VISIBLE);
-                    loadMessageImage(message.getImageUrl());
-                    tvImageTime.setText(timeText);
-
-                    // Set click listener to view full image in ImageViewerActivity
-                    ivMessageImage.setOnClickListener(v -> {
-                        String senderName = otherUser != null ? otherUser.getDisplayName() : "Unknown";
-                        Intent intent = com.pingme.android.activities.ImageViewerActivity.createIntent(
-                                context,
-                                message.getImageUrl(),
-                                senderName,
-                                message.getSenderId(),
-                                message.getTimestamp(),
-                                "" // Chat ID if needed
-                        );
-                        context.startActivity(intent);
-                    });
-                    break;
-
-                case Message.TYPE_VIDEO:
-                    layoutVideo.setVisibility(View.VISIBLE);
-                    loadVideoThumbnail(message.getThumbnailUrl());
-                    tvVideoTime.setText(timeText);
-
-                    if (message.getDuration() > 0) {
-                        tvVideoDuration.setText(formatDuration(message.getDuration()));
-                        tvVideoDuration.setVisibility(View.VISIBLE);
+            // Set click listener to play video; while it is still uploading, offer to cancel instead
+            ivPlayButton.setOnClickListener(v -> {
+                if (isEmpty(message.getVideoUrl())) {
+                    if (pendingUploadClickListener != null) {
+                        pendingUploadClickListener.onPendingUploadClick(message);
                     }
+                    return;
+                }
+                VideoPlayerUtil.getInstance().playVideo(message.getVideoUrl(), context);
+            });
+        }
+    }
 
-                    // Set click listener to play video
-                    ivPlayButton.setOnClickListener(v -> {
-                        VideoPlayerUtil.getInstance().playVideo(message.getVideoUrl(), context);
-                    });
-                    break;
+    class AudioMessageViewHolder extends MessageViewHolder {
+        final ImageView ivPlayAudio;
+        final TextView tvAudioDuration;
+        final ProgressBar progressAudio;
 
-                case Message.TYPE_AUDIO:
-                    layoutAudio.setVisibility(View.VISIBLE);
-                    tvAudioTime.setText(timeText);
+        AudioMessageViewHolder(ItemMessageSentAudioBinding binding) {
+            super(binding.getRoot(), binding.tvAudioTime, binding.ivAudioStatus, null);
+            ivPlayAudio = binding.ivPlayAudio;
+            tvAudioDuration = binding.tvAudioDuration;
+            progressAudio = binding.progressAudio;
+        }
 
-                    if (message.getDuration() > 0) {
-                        tvAudioDuration.setText(formatDuration(message.getDuration()));
-                    }
+        AudioMessageViewHolder(ItemMessageReceivedAudioBinding binding) {
+            super(binding.getRoot(), binding.tvAudioTime, null, binding.ivProfile);
+            ivPlayAudio = binding.ivPlayAudio;
+            tvAudioDuration = binding.tvAudioDuration;
+            progressAudio = binding.progressAudio;
+        }
 
-                    // Reset progress bar and icon
-                    if (progressAudio != null) {
-                        progressAudio.setProgress(0);
-                        if (message.getDuration() > 0) {
-                            progressAudio.setMax((int) message.getDuration());
-                        }
-                    }
+        @Override
+        void bindContent(Message message) {
+            tvAudioDuration.setText(message.getDuration() > 0 ? formatDuration(message.getDuration()) : "");
 
-                    ivPlayAudio.setOnClickListener(v -> {
-                        MediaPlayerUtil mediaPlayer = MediaPlayerUtil.getInstance();
-                        String audioUrl = message.getAudioUrl();
-
-                        if (mediaPlayer.isPlayingUrl(audioUrl)) {
-                            mediaPlayer.pauseAudio();
-                            ivPlayAudio.setImageResource(R.drawable.ic_play_circle);
-                            return;
-                        }
-
-                        if (mediaPlayer.isCurrentUrl(audioUrl) && !mediaPlayer.isPlaying()) {
-                            mediaPlayer.resumeAudio();
-                            ivPlayAudio.setImageResource(R.drawable.ic_pause_circle);
-                            return;
-                        }
-
-                        ivPlayAudio.setImageResource(R.drawable.ic_pause_circle);
-
-                        mediaPlayer.playAudio(audioUrl, context, new MediaPlayerUtil.MediaPlayerListener() {
-                            @Override
-                            public void onPrepared() {
-                                if (progressAudio != null) {
-                                    int duration = mediaPlayer.getDuration();
-                                    if (duration > 0) progressAudio.setMax(duration);
-                                }
-                            }
-
-                            @Override
-                            public void onCompletion() {
-                                itemView.post(() -> {
-                                    ivPlayAudio.setImageResource(R.drawable.ic_play_circle);
-                                    if (progressAudio != null) progressAudio.setProgress(0);
-                                });
-                            }
-
-                            @Override
-                            public void onError(String error) {
-                                Log.e("MessageAdapter", "Audio playback error: " + error);
-                                itemView.post(() -> {
-                                    Toast.makeText(context, "Audio playback error", Toast.LENGTH_SHORT).show();
-                                    ivPlayAudio.setImageResource(R.drawable.ic_play_circle);
-                                    if (progressAudio != null) progressAudio.setProgress(0);
-                                });
-                            }
-
-                            @Override
-                            public void onProgress(int currentPosition, int duration) {
-                                if (progressAudio != null) {
-                                    itemView.post(() -> {
-                                        if (progressAudio.getMax() != duration && duration > 0) {
-                                            progressAudio.setMax(duration);
-                                        }
-                                        progressAudio.setProgress(currentPosition);
-                                    });
-                                }
-                            }
-                        });
-                    });
-                    break;
-
-                case Message.TYPE_DOCUMENT:
-                    layoutDocument.setVisibility(View.VISIBLE);
-                    tvDocumentTime.setText(timeText);
-
-                    if (tvDocumentName != null) {
-                        String name = message.getFileName() != null ? message.getFileName() : "Document";
-                        tvDocumentName.setText(name);
-                    }
-                    if (tvDocumentSize != null) {
-                        if (message.getFileSize() > 0) {
-                            tvDocumentSize.setText(DocumentViewerUtil.getInstance().formatFileSize(message.getFileSize()));
-                            tvDocumentSize.setVisibility(View.VISIBLE);
-                        } else {
-                            tvDocumentSize.setVisibility(View.GONE);
-                        }
-                    }
+            // Icon and progress come from the shared playback state, so recycled rows stay correct
+            bindAudioProgress(message);
+            ivPlayAudio.setOnClickListener(v -> toggleAudio(message));
+        }
 
-                    layoutDocument.setOnClickListener(v -> {
-                        DocumentViewerUtil.getInstance().openDocument(message.getFileUrl(), message.getFileName(), context);
-                    });
-                    break;
-            }
+        @Override
+        void bindAudioProgress(Message message) {
+            bindAudioState(message, ivPlayAudio, progressAudio);
         }
+    }
+
+    class DocumentMessageViewHolder extends MessageViewHolder {
+        final View layoutDocument;
+        final TextView tvDocumentName, tvDocumentSize;
 
-        private void hideAllLayouts() {
-            layoutTextMessage.setVisibility(View.GONE);
-            layoutImage.setVisibility(View.GONE);
-            layoutVideo.setVisibility(View.GONE);
-            layoutAudio.setVisibility(View.GONE);
-            layoutDocument.setVisibility(View.GONE);
+        DocumentMessageViewHolder(ItemMessageSentDocumentBinding binding) {
+            super(binding.getRoot(), binding.tvDocumentTime, binding.ivDocumentStatus, null);
+            layoutDocument = binding.layoutDocument;
+            tvDocumentName = binding.tvDocumentName;
+            tvDocumentSize = binding.tvDocumentSize;
         }
 
-        private void loadMessageImage(String imageUrl) {
-            if (imageUrl != null && !imageUrl.isEmpty()) {
-                Glide.with(context)
-                        .load(imageUrl)
-                        .transform(new RoundedCorners(24))
-                        .placeholder(R.drawable.ic_image_placeholder)
-                        .into(ivMessageImage);
-            }
+        DocumentMessageViewHolder(ItemMessageReceivedDocumentBinding binding) {
+            super(binding.getRoot(), binding.tvDocumentTime, null, binding.ivProfile);
+            layoutDocument = binding.layoutDocument;
+            tvDocumentName = binding.tvDocumentName;
+            tvDocumentSize = binding.tvDocumentSize;
         }
 
-        private void loadVideoThumbnail(String thumbnailUrl) {
-            if (thumbnailUrl != null && !thumbnailUrl.isEmpty()) {
-                Glide.with(context)
-                        .load(thumbnailUrl)
-                        .transform(new RoundedCorners(24))
-                        .placeholder(R.drawable.ic_video_placeholder)
-                        .into(ivVideoThumbnail);
+        @Override
+        void bindContent(Message message) {
+            tvDocumentName.setText(message.getFileName() != null ? message.getFileName() : "Document");
+            if (message.getFileSize() > 0) {
+                tvDocumentSize.setText(DocumentViewerUtil.getInstance().formatFileSize(message.getFileSize()));
+                tvDocumentSize.setVisibility(View.VISIBLE);
+            } else {
+                tvDocumentSize.setVisibility(View.GONE);
             }
+
+            layoutDocument.setOnClickListener(v -> {
+                DocumentViewerUtil.getInstance().openDocument(message.getFileUrl(), message.getFileName(), context);
+            });
         }
     }
 
     private String getFormattedTime(long timestamp) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a", Locale.getDefault());
-        return timeFormat.format(new Date(timestamp));
+        return TimeFormatter.getInstance().formatTime(timestamp);
     }
 
     private String formatDuration(long durationMs) {
@@ -835,7 +1065,7 @@ public class MessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
     public void setReplyMode(boolean replyMode, Message message) {
         this.isReplyMode = replyMode;
         this.replyToMessage = message;
-        notifyDataSetChanged();
+        // Rows don't render reply state, only the composer hint does; nothing to rebind
     }
 
     public boolean isReplyMode() {
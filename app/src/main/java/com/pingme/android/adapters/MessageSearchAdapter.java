@@ -20,6 +20,7 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.pingme.android.R;
 import com.pingme.android.models.Message;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 import java.text.SimpleDateFormat;
@@ -152,7 +153,7 @@ public class MessageSearchAdapter extends RecyclerView.Adapter<MessageSearchAdap
             
             FirebaseUtil.getUserRef(userId).get().addOnSuccessListener(documentSnapshot -> {
                 if (documentSnapshot.exists()) {
-                    User user = documentSnapshot.toObject(User.class);
+                    User user = UserCodec.fromDocument(documentSnapshot);
                     if (user != null) {
                         boolean isCurrentUser = userId.equals(currentUserId);
                         
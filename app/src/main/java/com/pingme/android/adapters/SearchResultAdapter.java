@@ -32,12 +32,11 @@ import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.pingme.android.R;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
+import com.pingme.android.utils.TimeFormatter;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapter.SearchResultViewHolder> {
     
@@ -154,7 +153,7 @@ public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapte
 
             // Set timestamp
             if (result.getTimestamp() > 0) {
-                String timeText = formatTimestamp(result.getTimestamp());
+                String timeText = TimeFormatter.getInstance().formatChatListTime(result.getTimestamp());
                 tvTimestamp.setText(timeText);
                 tvTimestamp.setVisibility(View.VISIBLE);
             } else {
@@ -194,23 +193,6 @@ public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapte
             });
         }
 
-        private String formatTimestamp(long timestamp) {
-            Date date = new Date(timestamp);
-            long now = System.currentTimeMillis();
-            long diff = now - timestamp;
-
-            if (diff < 24 * 60 * 60 * 1000) { // Less than 24 hours
-                SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-                return timeFormat.format(date);
-            } else if (diff < 7 * 24 * 60 * 60 * 1000) { // Less than 7 days
-                SimpleDateFormat dayFormat = new SimpleDateFormat("EEE", Locale.getDefault());
-                return dayFormat.format(date);
-            } else {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-                return dateFormat.format(date);
-            }
-        }
-
         private SpannableString highlightSearchQuery(String text, String searchQuery) {
             SpannableString spannableString = new SpannableString(text);
             
@@ -251,7 +233,7 @@ public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapte
             
             FirebaseUtil.getUserRef(userId).get().addOnSuccessListener(documentSnapshot -> {
                 if (documentSnapshot.exists()) {
-                    User user = documentSnapshot.toObject(User.class);
+                    User user = UserCodec.fromDocument(documentSnapshot);
                     if (user != null) {
                         // Use class-level current user ID for efficiency
                         boolean isCurrentUser = userId.equals(currentUserId);
@@ -14,6 +14,7 @@ import com.bumptech.glide.Glide;
 import com.pingme.android.R;
 import com.pingme.android.models.Status;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.auth.FirebaseAuth;
@@ -90,7 +91,7 @@ public class StatusAdapter extends RecyclerView.Adapter<StatusAdapter.StatusView
                     .get()
                     .addOnSuccessListener(documentSnapshot -> {
                         if (documentSnapshot.exists() && userProfileImage != null) {
-                            User user = documentSnapshot.toObject(User.class);
+                            User user = UserCodec.fromDocument(documentSnapshot);
                             if (user != null) {
                                 // Get current user ID to check if this is the current user's status
                                 FirebaseUser currentFirebaseUser = FirebaseAuth.getInstance().getCurrentUser();
@@ -231,7 +232,7 @@ public class StatusAdapter extends RecyclerView.Adapter<StatusAdapter.StatusView
                     .get()
                     .addOnSuccessListener(doc -> {
                         if (doc.exists() && userNameText != null) {
-                            User user = doc.toObject(User.class);
+                            User user = UserCodec.fromDocument(doc);
                             if (user != null) {
                                 String displayName = user.getDisplayNameForUser();
                                 userNameText.setText(displayName);
@@ -17,6 +17,7 @@ import com.pingme.android.R;
 import com.pingme.android.models.Status;
 import com.pingme.android.models.StatusGroup;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.auth.FirebaseAuth;
@@ -177,7 +178,7 @@ public class StatusGroupAdapter extends RecyclerView.Adapter<StatusGroupAdapter.
                     .get()
                     .addOnSuccessListener(doc -> {
                         if (doc.exists() && userNameText != null) {
-                            User user = doc.toObject(User.class);
+                            User user = UserCodec.fromDocument(doc);
                             if (user != null) {
                                 String displayName = user.getDisplayNameForUser();
                                 userNameText.setText(displayName);
@@ -207,7 +208,7 @@ public class StatusGroupAdapter extends RecyclerView.Adapter<StatusGroupAdapter.
                 .get()
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists() && userProfileImage != null) {
-                        User user = documentSnapshot.toObject(User.class);
+                        User user = UserCodec.fromDocument(documentSnapshot);
                         if (user != null) {
                             // Get current user ID to check if this is the current user's status group
                             com.google.firebase.auth.FirebaseUser currentFirebaseUser = com.google.firebase.auth.FirebaseAuth.getInstance().getCurrentUser();
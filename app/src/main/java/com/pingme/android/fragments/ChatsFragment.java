@@ -11,6 +11,7 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
@@ -21,12 +22,19 @@ import com.pingme.android.adapters.ChatListAdapter;
 import com.pingme.android.databinding.FragmentChatsBinding;
 import com.pingme.android.models.Chat;
 import com.pingme.android.models.User;
+import com.pingme.android.utils.AppExecutors;
+import com.pingme.android.utils.BackgroundValueEventListener;
 import com.pingme.android.utils.FirebaseUtil;
+import com.pingme.android.utils.RecyclerViewImagePreloader;
+import com.pingme.android.utils.UnreadCounter;
 import com.pingme.android.models.ChatManagement;
+import com.pingme.android.models.ChatCodec;
+import com.pingme.android.models.UserCodec;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -37,15 +45,16 @@ import android.content.IntentFilter;
 
 public class ChatsFragment extends Fragment {
     private static final String TAG = "ChatsFragment";
+    private static final int AVATAR_PRELOAD_ROWS = 8;
 
     private FragmentChatsBinding binding;
     private ChatListAdapter adapter;
     private String currentUserId;
-    private ValueEventListener userChatsListener;
+    private BackgroundValueEventListener<Map<String, Integer>> userChatsListener;
     private Map<String, ValueEventListener> chatListeners = new HashMap<>();
     private Map<String, ValueEventListener> typingListeners = new HashMap<>();
     private List<Chat> chatList = new ArrayList<>();
-    // Track per-user unread counts from user_chats to avoid placeholders and prefer accurate badge values
+    // Per-user unread counters from user_chats, the only source of badge counts
     private final Map<String, Integer> perUserUnreadCounts = new HashMap<>();
     
     // Broadcast receiver for chat updates
@@ -80,6 +89,9 @@ public class ChatsFragment extends Fragment {
         adapter = new ChatListAdapter(getContext());
         binding.recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         binding.recyclerView.setAdapter(adapter);
+        // Avatars a few rows ahead of the scroll are loaded before their rows bind
+        binding.recyclerView.addOnScrollListener(
+                new RecyclerViewImagePreloader(Glide.with(this), adapter, AVATAR_PRELOAD_ROWS));
     }
 
     private void setupSwipeRefresh() {
@@ -126,7 +138,7 @@ public class ChatsFragment extends Fragment {
                 Log.d(TAG, "✅ Found chat " + chatId + " at position " + i + ", updating unread count from " + chat.getUnreadCount() + " to " + newUnreadCount);
                 chat.setUnreadCount(newUnreadCount);
                 // Update the adapter
-                adapter.addOrUpdateChat(chat);
+                adapter.addOrUpdateChat(chat, ChatListAdapter.PAYLOAD_UNREAD_BADGE);
                 Log.d(TAG, "✅ Chat updated in adapter");
                 break;
             }
@@ -162,57 +174,69 @@ public class ChatsFragment extends Fragment {
         // Remove existing listener
         if (userChatsListener != null) {
             FirebaseUtil.getUserChatsRef(currentUserId).removeEventListener(userChatsListener);
+            userChatsListener.dispose();
         }
 
-        userChatsListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d(TAG, "User chats data changed, found " + dataSnapshot.getChildrenCount() + " chat entries");
+        // user_chats is parsed on a worker; unchanged snapshots never reach the main thread
+        userChatsListener = new BackgroundValueEventListener<>(
+                AppExecutors.getInstance().serial("user_chats:" + currentUserId),
+                ChatsFragment::parseUserChats,
+                new BackgroundValueEventListener.Callback<Map<String, Integer>>() {
+                    @Override
+                    public void onData(Map<String, Integer> userChats) {
+                        if (!isAdded()) return;
+                        Log.d(TAG, "User chats data changed, found " + userChats.size() + " chat entries");
                 
-                // Clear existing chats
-                chatList.clear();
-                adapter.notifyDataSetChanged();
-                perUserUnreadCounts.clear();
+                        // Clear existing chats
+                        chatList.clear();
+                        adapter.notifyDataSetChanged();
+                        perUserUnreadCounts.clear();
                 
-                // Load active chats with messages
-                for (DataSnapshot chatSnapshot : dataSnapshot.getChildren()) {
-                    String chatId = chatSnapshot.getKey();
-                    Log.d(TAG, "Processing chat: " + chatId + " with value: " + chatSnapshot.getValue());
-                    
-                    if (chatId != null) {
-                        // Read per-user unreadCount if present under user_chats/{uid}/{chatId}/unreadCount
-                        Integer perUserUnread = chatSnapshot.child("unreadCount").getValue(Integer.class);
-                        if (perUserUnread != null) {
-                            perUserUnreadCounts.put(chatId, perUserUnread);
+                        // Load active chats with messages
+                        for (Map.Entry<String, Integer> entry : userChats.entrySet()) {
+                            String chatId = entry.getKey();
+                            int unread = entry.getValue();
+                            perUserUnreadCounts.put(chatId, unread);
                             // If chat already exists in memory, update its unread count immediately
                             Chat existing = findChatById(chatId);
-                            if (existing != null) {
-                                existing.setUnreadCount(perUserUnread);
-                                if (adapter != null) adapter.addOrUpdateChat(existing);
+                            if (existing != null && existing.getUnreadCount() != unread) {
+                                existing.setUnreadCount(unread);
+                                if (adapter != null) adapter.addOrUpdateChat(existing, ChatListAdapter.PAYLOAD_UNREAD_BADGE);
                             }
+                            // Always load from chats node to get complete data
+                            loadChatFromChatsNode(chatId);
                         }
-                        // Always load from chats node to get complete data
-                        loadChatFromChatsNode(chatId);
-                    }
-                }
                 
-                // Update empty state after processing all chats
-                new android.os.Handler().postDelayed(() -> {
-                    updateEmptyState(chatList.isEmpty());
-                    Log.d(TAG, "Final chat list size: " + chatList.size());
-                }, 1000); // Give time for async loading
-            }
+                        // Update empty state after processing all chats
+                        AppExecutors.getInstance().postToMainDelayed(() -> {
+                            if (!isAdded()) return;
+                            updateEmptyState(chatList.isEmpty());
+                            Log.d(TAG, "Final chat list size: " + chatList.size());
+                        }, 1000); // Give time for async loading
+                    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e(TAG, "Failed to load user chats", databaseError.toException());
-                updateEmptyState(true);
-            }
-        };
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        Log.e(TAG, "Failed to load user chats", databaseError.toException());
+                        updateEmptyState(true);
+                    }
+                });
 
         FirebaseUtil.getUserChatsRef(currentUserId).addValueEventListener(userChatsListener);
     }
 
+    // Runs on a worker: chat id -> per-user unread count, in key order
+    private static Map<String, Integer> parseUserChats(DataSnapshot dataSnapshot) {
+        Map<String, Integer> userChats = new LinkedHashMap<>();
+        for (DataSnapshot chatSnapshot : dataSnapshot.getChildren()) {
+            String chatId = chatSnapshot.getKey();
+            if (chatId != null) {
+                userChats.put(chatId, UnreadCounter.read(chatSnapshot));
+            }
+        }
+        return userChats;
+    }
+
     private void checkChatVisibility(Chat chat) {
         // Check if chat is deleted for current user
         FirebaseUtil.getChatManagementRef(chat.getId()).get()
@@ -252,7 +276,7 @@ public class ChatsFragment extends Fragment {
         FirebaseUtil.getUserRef(otherUserId).get()
                 .addOnSuccessListener(userSnapshot -> {
                     if (userSnapshot.exists()) {
-                        User otherUser = userSnapshot.toObject(User.class);
+                        User otherUser = UserCodec.fromDocument(userSnapshot);
                         if (otherUser != null) {
                             otherUser.setId(otherUserId);
                             
@@ -334,7 +358,6 @@ public class ChatsFragment extends Fragment {
                 String lastMessageId = dataSnapshot.child("lastMessageId").getValue(String.class);
                 // Use utility method to safely convert active status
                 boolean isActive = FirebaseUtil.safeBooleanValue(dataSnapshot.child("isActive").getValue());
-                Integer unreadCount = dataSnapshot.child("unreadCount").getValue(Integer.class);
 
                 DataSnapshot participantsSnapshot = dataSnapshot.child("participants");
                 String otherUserId = null;
@@ -401,26 +424,13 @@ public class ChatsFragment extends Fragment {
                             existingChat.setActive(isActive ? isActive : true);
                         }
                         
-                        // Prefer per-user unread count from user_chats; fallback to chat-level or calculated
-                        Integer perUser = perUserUnreadCounts.get(chatId);
-                        if (perUser != null) {
-                            existingChat.setUnreadCount(perUser);
-                            Log.d(TAG, "✅ Applied per-user unread count for existing chat " + chatId + ": " + perUser);
-                        } else if (unreadCount != null && unreadCount > 0) {
-                            existingChat.setUnreadCount(unreadCount);
-                            Log.d(TAG, "✅ Updated existing chat " + chatId + " unread count from database: " + unreadCount);
-                        } else {
-                            // Only calculate unread count if not already set from any source
-                            if (existingChat.getUnreadCount() == 0) {
-                                calculateUnreadCount(existingChat);
-                            }
-                        }
+                        existingChat.setUnreadCount(unreadCountFor(chatId));
                         
                         updateChatInList(existingChat);
                         } else {
                             loadOtherUserDetails(chatId, finalOtherUserId, lastMessage,
                                     lastMessageTimestamp != null ? lastMessageTimestamp : 0,
-                                    lastMessageSenderId, lastMessageType, lastMessageId, unreadCount);
+                                    lastMessageSenderId, lastMessageType, lastMessageId);
                         }
                     }); // Close friendship check callback
                 }
@@ -438,7 +448,7 @@ public class ChatsFragment extends Fragment {
     }
 
     private void loadOtherUserDetails(String chatId, String otherUserId, String lastMessage,
-                                      long lastMessageTimestamp, String lastMessageSenderId, String lastMessageType, String lastMessageId, Integer unreadCount) {
+                                      long lastMessageTimestamp, String lastMessageSenderId, String lastMessageType, String lastMessageId) {
         Log.d(TAG, "Loading other user details: " + otherUserId + " for chat: " + chatId);
 
         // First verify friendship before loading user details
@@ -452,7 +462,7 @@ public class ChatsFragment extends Fragment {
             FirebaseUtil.getUserRef(otherUserId).get()
                     .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User otherUser = documentSnapshot.toObject(User.class);
+                        User otherUser = UserCodec.fromDocument(documentSnapshot);
                         if (otherUser != null) {
                             otherUser.setId(documentSnapshot.getId());
 
@@ -483,26 +493,12 @@ public class ChatsFragment extends Fragment {
                                         chat.setLastMessageType(lastMessageType != null ? lastMessageType : "text");
                                         chat.setLastMessageId(lastMessageId != null ? lastMessageId : "");
                                         
-                                        // Prefer per-user unread count from user_chats; fallback to chat-level
-                                        Integer perUser = perUserUnreadCounts.get(chatId);
-                                        if (perUser != null) {
-                                            chat.setUnreadCount(perUser);
-                                            Log.d(TAG, "✅ Applied per-user unread count for chat " + chatId + ": " + perUser);
-                                        } else if (unreadCount != null && unreadCount > 0) {
-                                            chat.setUnreadCount(unreadCount);
-                                            Log.d(TAG, "✅ Set unread count from database for chat " + chatId + ": " + unreadCount);
-                                        } else {
-                                            Log.d(TAG, "No unread count available for chat " + chatId + ", will calculate later if needed");
-                                        }
+                                        chat.setUnreadCount(unreadCountFor(chatId));
 
                                         // Load real-time presence from Realtime Database
                                         loadUserPresence(otherUser, () -> {
                                             // Update or add chat to list
                                             updateChatInList(chat);
-                                            // Only calculate unread count if not already set from database
-                                            if (chat.getUnreadCount() == 0) {
-                                                calculateUnreadCount(chat);
-                                            }
                                         });
                                     })
                                     .addOnFailureListener(e -> {
@@ -517,26 +513,12 @@ public class ChatsFragment extends Fragment {
                                         chat.setLastMessageType(lastMessageType != null ? lastMessageType : "text");
                                         chat.setLastMessageId(lastMessageId != null ? lastMessageId : "");
                                         
-                                        // Prefer per-user unread count from user_chats; fallback to chat-level
-                                        Integer perUser = perUserUnreadCounts.get(chatId);
-                                        if (perUser != null) {
-                                            chat.setUnreadCount(perUser);
-                                            Log.d(TAG, "✅ Applied per-user unread count for chat " + chatId + ": " + perUser);
-                                        } else if (unreadCount != null && unreadCount > 0) {
-                                            chat.setUnreadCount(unreadCount);
-                                            Log.d(TAG, "✅ Set unread count from database for chat " + chatId + ": " + unreadCount);
-                                        } else {
-                                            Log.d(TAG, "No unread count available for chat " + chatId + ", will calculate later if needed");
-                                        }
+                                        chat.setUnreadCount(unreadCountFor(chatId));
 
                                         // Load real-time presence from Realtime Database
                                         loadUserPresence(otherUser, () -> {
                                             // Update or add chat to list
                                             updateChatInList(chat);
-                                            // Only calculate unread count if not already set from database
-                                            if (chat.getUnreadCount() == 0) {
-                                                calculateUnreadCount(chat);
-                                            }
                                         });
                                     });
                         }
@@ -591,95 +573,16 @@ public class ChatsFragment extends Fragment {
             }
         }
 
+        // Typing snapshots arrive often; only a change in state touches the row
+        if (chat.isTyping() == isOtherUserTyping) return;
         chat.setTyping(isOtherUserTyping);
-        adapter.addOrUpdateChat(chat);
+        adapter.addOrUpdateChat(chat, ChatListAdapter.PAYLOAD_TYPING);
     }
 
-    private void calculateUnreadCount(Chat chat) {
-        Log.d(TAG, "Calculating unread count for chat: " + chat.getId());
-        
-        // Use a more efficient query - only get recent messages and those not read by current user
-        FirebaseUtil.getMessagesRef(chat.getId())
-                .orderByChild("timestamp")
-                .limitToLast(100) // Only check last 100 messages for efficiency
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                        int unreadCount = 0;
-                        
-                        for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                            String senderId = messageSnapshot.child("senderId").getValue(String.class);
-                            Long timestamp = messageSnapshot.child("timestamp").getValue(Long.class);
-                            
-                            // Only count messages from other users that haven't been read
-                            if (senderId != null && !currentUserId.equals(senderId)) {
-                                // Check if message has been read by current user
-                                DataSnapshot readBySnapshot = messageSnapshot.child("readBy");
-                                if (!readBySnapshot.hasChild(currentUserId)) {
-                                    // Also check if the message is not too old (within last 7 days)
-                                    if (timestamp != null && timestamp > (System.currentTimeMillis() - (7 * 24 * 60 * 60 * 1000))) {
-                                        unreadCount++;
-                                    }
-                                }
-                            }
-                        }
-                        
-                        // Cap unread count at 999 like WhatsApp
-                        unreadCount = Math.min(unreadCount, 999);
-                        
-                        chat.setUnreadCount(unreadCount);
-                        Log.d(TAG, "Unread count for " + chat.getId() + ": " + unreadCount);
-                        
-                        // Update the chat in the adapter
-                        if (adapter != null) {
-                            adapter.addOrUpdateChat(chat);
-                            Log.d(TAG, "✅ Updated chat in adapter with unread count: " + unreadCount);
-                        } else {
-                            Log.w(TAG, "Adapter is null, cannot update chat");
-                        }
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError databaseError) {
-                        Log.e(TAG, "Failed to calculate unread count", databaseError.toException());
-                        // Set unread count to 0 on error
-                        chat.setUnreadCount(0);
-                        if (adapter != null) {
-                            adapter.addOrUpdateChat(chat);
-                        }
-                    }
-                });
-    }
-
-    private void loadUnreadCount(String chatId, Chat chat) {
-        // Calculate unread count by checking messages not read by current user
-        FirebaseUtil.getMessagesRef(chatId)
-                .orderByChild("timestamp")
-                .startAfter(chat.getLastMessageTimestamp())
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                        int unreadCount = 0;
-                        
-                        for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                            com.pingme.android.models.Message message = messageSnapshot.getValue(com.pingme.android.models.Message.class);
-                            if (message != null && !message.getSenderId().equals(currentUserId)) {
-                                // Check if message is not read by current user
-                                if (message.getReadBy() == null || !message.getReadBy().containsKey(currentUserId)) {
-                                    unreadCount++;
-                                }
-                            }
-                        }
-                        
-                        chat.setUnreadCount(unreadCount);
-                        adapter.notifyDataSetChanged();
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError databaseError) {
-                        Log.e(TAG, "Failed to load unread count for chat: " + chatId, databaseError.toException());
-                    }
-                });
+    // Badges come only from the per-user counter; a chat without one has nothing unread
+    private int unreadCountFor(String chatId) {
+        Integer count = perUserUnreadCounts.get(chatId);
+        return count != null ? count : 0;
     }
 
     private void updateChatInList(Chat updatedChat) {
@@ -715,9 +618,11 @@ public class ChatsFragment extends Fragment {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
-                    Chat updatedChat = dataSnapshot.getValue(Chat.class);
+                    Chat updatedChat = ChatCodec.fromSnapshot(dataSnapshot);
                     if (updatedChat != null) {
                         updatedChat.setId(chatId);
+                        // The chats node is shared by both participants; it has no badge for this user
+                        updatedChat.setUnreadCount(unreadCountFor(chatId));
                         updateChatInList(updatedChat);
                     }
                 }
@@ -767,6 +672,7 @@ public class ChatsFragment extends Fragment {
         // Clean up listeners when fragment is not visible
         if (userChatsListener != null) {
             FirebaseUtil.getUserChatsRef(currentUserId).removeEventListener(userChatsListener);
+            userChatsListener.dispose();
         }
     }
 
@@ -777,6 +683,7 @@ public class ChatsFragment extends Fragment {
         // Remove listeners
         if (userChatsListener != null) {
             FirebaseUtil.getUserChatsRef(currentUserId).removeEventListener(userChatsListener);
+            userChatsListener.dispose();
         }
         
         for (ValueEventListener listener : chatListeners.values()) {
@@ -866,21 +773,12 @@ public class ChatsFragment extends Fragment {
                         Long lastMessageTimestamp = dataSnapshot.child("lastMessageTimestamp").getValue(Long.class);
                         String lastMessageSenderId = dataSnapshot.child("lastMessageSenderId").getValue(String.class);
                         String lastMessageType = dataSnapshot.child("lastMessageType").getValue(String.class);
-                        Integer chatLevelUnread = dataSnapshot.child("unreadCount").getValue(Integer.class);
                         
                         chat.setLastMessage(lastMessage != null ? lastMessage : "");
                         chat.setLastMessageTimestamp(lastMessageTimestamp != null ? lastMessageTimestamp : 0);
                         chat.setLastMessageSenderId(lastMessageSenderId != null ? lastMessageSenderId : "");
                         chat.setLastMessageType(lastMessageType != null ? lastMessageType : "text");
-                        // Apply unread count preference: per-user > chat-level
-                        Integer perUser = perUserUnreadCounts.get(chatId);
-                        if (perUser != null) {
-                            chat.setUnreadCount(perUser);
-                            Log.d(TAG, "✅ Applied per-user unread count in chats node load for " + chatId + ": " + perUser);
-                        } else if (chatLevelUnread != null && chatLevelUnread > 0) {
-                            chat.setUnreadCount(chatLevelUnread);
-                            Log.d(TAG, "✅ Applied chat-level unread count in chats node load for " + chatId + ": " + chatLevelUnread);
-                        }
+                        chat.setUnreadCount(unreadCountFor(chatId));
                         
                         Log.d(TAG, "Chat " + chatId + " - lastMessage: " + lastMessage + ", timestamp: " + lastMessageTimestamp);
                         
@@ -22,7 +22,9 @@ import com.pingme.android.activities.ChatActivity;
 import com.pingme.android.adapters.FriendsAdapter;
 import com.pingme.android.databinding.FragmentFriendsBinding;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
+import com.pingme.android.utils.SearchIndexUpdater;
 import com.pingme.android.utils.PersonalNameDialog;
 
 import java.util.ArrayList;
@@ -36,6 +38,7 @@ public class FriendsFragment extends Fragment implements FriendsAdapter.OnFriend
     private String currentUserId;
     private List<User> friendsList = new ArrayList<>();
     private List<User> filteredFriendsList = new ArrayList<>();
+    private final SearchIndexUpdater<User> friendsIndex = SearchIndexUpdater.forUsers(index -> onFriendsIndexUpdated());
     private boolean isSearchMode = false;
 
     @Override
@@ -93,6 +96,7 @@ public class FriendsFragment extends Fragment implements FriendsAdapter.OnFriend
                 .get()
                 .addOnSuccessListener(querySnapshot -> {
                     friendsList.clear();
+                    friendsIndex.submit(friendsList);
                     Log.d(TAG, "Found " + querySnapshot.size() + " friends");
                     
                     for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
@@ -115,7 +119,7 @@ public class FriendsFragment extends Fragment implements FriendsAdapter.OnFriend
         FirebaseUtil.getUserRef(friendId).get()
                 .addOnSuccessListener(userSnapshot -> {
                     if (userSnapshot.exists()) {
-                        User friend = userSnapshot.toObject(User.class);
+                        User friend = UserCodec.fromDocument(userSnapshot);
                         if (friend != null) {
                             friend.setId(friendId);
                             
@@ -138,6 +142,7 @@ public class FriendsFragment extends Fragment implements FriendsAdapter.OnFriend
                                 // Load presence data respecting privacy settings
                                 loadFriendPresence(friend, () -> {
                                     friendsList.add(friend);
+                                    friendsIndex.submit(friendsList);
                                     Log.d(TAG, "Added friend: " + friend.getDisplayName() + " (Online: " + friend.isOnline() + ", Last seen enabled: " + friend.isLastSeenEnabled() + ")");
                                     
                                     // Check if all friends are loaded by getting the total count
@@ -146,6 +151,7 @@ public class FriendsFragment extends Fragment implements FriendsAdapter.OnFriend
                                             if (friendsList.size() == querySnapshot.size()) {
                                                 // Sort friends by display name (personal name or regular name)
                                                 friendsList.sort((f1, f2) -> f1.getDisplayName().compareToIgnoreCase(f2.getDisplayName()));
+                                                friendsIndex.submit(friendsList);
                                                 
                                                 // Initially show all friends
                                                 filteredFriendsList.clear();
@@ -183,48 +189,15 @@ public class FriendsFragment extends Fragment implements FriendsAdapter.OnFriend
     }
 
     private void filterFriends(String query) {
-        isSearchMode = !query.isEmpty();
+        isSearchMode = !query.trim().isEmpty();
         
         filteredFriendsList.clear();
-        if (query.isEmpty()) {
+        if (!isSearchMode) {
             filteredFriendsList.addAll(friendsList);
         } else {
-            String lowerQuery = query.toLowerCase();
-            for (User friend : friendsList) {
-                // Enhanced search - check personal name, original name, and email
-                String personalName = friend.getPersonalName();
-                String originalName = friend.getName();
-                String email = friend.getEmail();
-                
-                boolean matches = false;
-                
-                // Check personal name first (priority)
-                if (personalName != null && !personalName.trim().isEmpty()) {
-                    if (personalName.toLowerCase().contains(lowerQuery)) {
-                        matches = true;
-                    }
-                }
-                
-                // Check original name
-                if (!matches && originalName != null && !originalName.trim().isEmpty()) {
-                    if (originalName.toLowerCase().contains(lowerQuery)) {
-                        matches = true;
-                    }
-                }
-                
-                // Check email
-                if (!matches && email != null && !email.trim().isEmpty()) {
-                    if (email.toLowerCase().contains(lowerQuery)) {
-                        matches = true;
-                    }
-                }
-                
-                if (matches) {
-                    filteredFriendsList.add(friend);
-                }
-            }
+            // Index matches personal name, original name and email
+            filteredFriendsList.addAll(friendsIndex.current().search(query));
         }
-        
         // Sort friends list like WhatsApp (online first, then alphabetical)
         sortFriendsList();
         
@@ -232,6 +205,13 @@ public class FriendsFragment extends Fragment implements FriendsAdapter.OnFriend
         updateUI();
     }
     
+    // The list changed while a search was showing - search the fresh index
+    private void onFriendsIndexUpdated() {
+        if (binding != null && isSearchMode) {
+            filterFriends(binding.searchEditText.getText().toString());
+        }
+    }
+
     private void sortFriendsList() {
         filteredFriendsList.sort((friend1, friend2) -> {
             // First priority: Online status (if privacy allows)
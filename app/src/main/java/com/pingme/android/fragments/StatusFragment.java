@@ -26,6 +26,8 @@ import com.pingme.android.adapters.StatusGroupAdapter;
 import com.pingme.android.models.Status;
 import com.pingme.android.models.StatusGroup;
 import com.pingme.android.models.User;
+import com.pingme.android.models.StatusCodec;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 import com.pingme.android.activities.StatusViewerActivity;
 
@@ -110,7 +112,7 @@ public class StatusFragment extends Fragment implements StatusGroupAdapter.OnSta
                     final int totalCount = documents.size();
 
                     for (DocumentSnapshot document : documents) {
-                        Status status = document.toObject(Status.class);
+                        Status status = StatusCodec.fromDocument(document);
                         if (status != null) {
                             status.setId(document.getId());
                             // Only show statuses from friends or current user
@@ -220,7 +222,7 @@ public class StatusFragment extends Fragment implements StatusGroupAdapter.OnSta
             .get()
             .addOnSuccessListener(documentSnapshot -> {
                 if (documentSnapshot.exists()) {
-                    User user = documentSnapshot.toObject(User.class);
+                    User user = UserCodec.fromDocument(documentSnapshot);
                     if (user != null && user.getImageUrl() != null && !user.getImageUrl().isEmpty()) {
                         try {
                             Glide.with(this)
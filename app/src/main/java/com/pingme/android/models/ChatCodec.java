@@ -0,0 +1,77 @@
+package com.pingme.android.models;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.pingme.android.models.CodecValues.booleanMap;
+import static com.pingme.android.models.CodecValues.booleanValue;
+import static com.pingme.android.models.CodecValues.has;
+import static com.pingme.android.models.CodecValues.intValue;
+import static com.pingme.android.models.CodecValues.longValue;
+import static com.pingme.android.models.CodecValues.putIfNotNull;
+import static com.pingme.android.models.CodecValues.string;
+
+/**
+ * Reads and writes the stored fields of a chats/{chatId} node as a {@link Chat}
+ * without the reflection-based class mapper. The other user is not stored on
+ * the chat and is left null.
+ */
+public final class ChatCodec {
+
+    private ChatCodec() {
+    }
+
+    /**
+     * Parses a chats/{chatId} snapshot; the id is taken from the key.
+     */
+    public static Chat fromSnapshot(DataSnapshot snapshot) {
+        Chat chat = fromMap(CodecValues.asMap(snapshot.getValue()));
+        if (chat != null && snapshot.getKey() != null) {
+            chat.setId(snapshot.getKey());
+        }
+        return chat;
+    }
+
+    public static Chat fromMap(Map<String, Object> data) {
+        if (data == null) return null;
+        Chat chat = new Chat();
+        chat.setId(string(data, "id"));
+        chat.setLastMessage(string(data, "lastMessage"));
+        chat.setLastMessageTimestamp(longValue(data, "lastMessageTimestamp", 0));
+        chat.setLastMessageSenderId(string(data, "lastMessageSenderId"));
+        chat.setLastMessageType(string(data, "lastMessageType"));
+        chat.setLastMessageId(string(data, "lastMessageId"));
+        chat.setUnreadCount(intValue(data, "unreadCount", 0));
+        chat.setTyping(booleanValue(data, "typing", false));
+        chat.setTypingUserId(string(data, "typingUserId"));
+        chat.setCreatedAt(longValue(data, "createdAt", 0));
+        // Written as "isActive"; "active" is the bean name the mapper used
+        chat.setActive(has(data, "isActive")
+                ? booleanValue(data, "isActive", false)
+                : booleanValue(data, "active", false));
+        Map<String, Boolean> participants = booleanMap(data, "participants");
+        if (participants != null) {
+            chat.setParticipants(participants);
+        }
+        return chat;
+    }
+
+    public static Map<String, Object> toMap(Chat chat) {
+        Map<String, Object> data = new HashMap<>(24);
+        putIfNotNull(data, "id", chat.getId());
+        putIfNotNull(data, "lastMessage", chat.getLastMessage());
+        data.put("lastMessageTimestamp", chat.getLastMessageTimestamp());
+        putIfNotNull(data, "lastMessageSenderId", chat.getLastMessageSenderId());
+        putIfNotNull(data, "lastMessageType", chat.getLastMessageType());
+        putIfNotNull(data, "lastMessageId", chat.getLastMessageId());
+        data.put("unreadCount", chat.getUnreadCount());
+        data.put("typing", chat.isTyping());
+        putIfNotNull(data, "typingUserId", chat.getTypingUserId());
+        data.put("createdAt", chat.getCreatedAt());
+        data.put("isActive", chat.isActive());
+        putIfNotNull(data, "participants", chat.getParticipants());
+        return data;
+    }
+}
@@ -0,0 +1,106 @@
+package com.pingme.android.models;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lenient conversions from the raw values Firebase hands back (Long/Double for
+ * numbers, Boolean, String, nested Map) to model field types. Shared by the
+ * model codecs; a value of the wrong type reads as "absent" instead of failing
+ * the whole object like the reflection mapper does.
+ */
+final class CodecValues {
+
+    private CodecValues() {
+    }
+
+    static String string(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        if (value instanceof String) return (String) value;
+        // The mapper stringifies numbers and booleans too
+        if (value instanceof Number || value instanceof Boolean) return String.valueOf(value);
+        return null;
+    }
+
+    static long longValue(Map<String, Object> data, String key, long fallback) {
+        Object value = data.get(key);
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+        return fallback;
+    }
+
+    static int intValue(Map<String, Object> data, String key, int fallback) {
+        return (int) longValue(data, key, fallback);
+    }
+
+    static boolean booleanValue(Map<String, Object> data, String key, boolean fallback) {
+        Object value = data.get(key);
+        if (value instanceof Boolean) return (Boolean) value;
+        if (value instanceof String) return Boolean.parseBoolean((String) value);
+        return fallback;
+    }
+
+    /**
+     * Reads a flag stored under either its bean name ("edited") or the "is"-prefixed
+     * name some writers use ("isEdited"); true if either says so.
+     */
+    static boolean flag(Map<String, Object> data, String beanKey, String prefixedKey, boolean fallback) {
+        if (!data.containsKey(beanKey) && !data.containsKey(prefixedKey)) return fallback;
+        return booleanValue(data, beanKey, false) || booleanValue(data, prefixedKey, false);
+    }
+
+    static boolean has(Map<String, Object> data, String key) {
+        return data.get(key) != null;
+    }
+
+    /**
+     * userId -> timestamp maps. Entries written as {@code true} (e.g. deletedFor/uid) keep
+     * their key with a 0 timestamp; membership is what callers check.
+     */
+    static Map<String, Long> longMap(Map<String, Object> data, String key) {
+        return longMap(data.get(key));
+    }
+
+    static Map<String, Long> longMap(Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> raw = (Map<?, ?>) value;
+        Map<String, Long> result = new HashMap<>(Math.max(4, raw.size() * 2));
+        for (Map.Entry<?, ?> entry : raw.entrySet()) {
+            Object entryValue = entry.getValue();
+            if (entry.getKey() == null || entryValue == null) continue;
+            result.put(entry.getKey().toString(), entryValue instanceof Number ? ((Number) entryValue).longValue() : 0L);
+        }
+        return result;
+    }
+
+    static Map<String, Boolean> booleanMap(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> raw = (Map<?, ?>) value;
+        Map<String, Boolean> result = new HashMap<>(Math.max(4, raw.size() * 2));
+        for (Map.Entry<?, ?> entry : raw.entrySet()) {
+            Object entryValue = entry.getKey() != null ? entry.getValue() : null;
+            if (entryValue instanceof Boolean) {
+                result.put(entry.getKey().toString(), (Boolean) entryValue);
+            }
+        }
+        return result;
+    }
+
+    static void putIfNotNull(Map<String, Object> data, String key, Object value) {
+        if (value != null) {
+            data.put(key, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+}
@@ -44,6 +44,9 @@ public class Message {
     private long fileSize; // For media files in bytes
     private String fileName; // For documents/files
     private String fileUrl; // For documents/files
+    private int width; // Pixel size of the image/video, 0 if unknown
+    private int height;
+    private String blurHash; // Tiny placeholder shown while image/video thumbnail loads
 
     // Message actions and metadata
     private String action = ACTION_NONE;
@@ -89,6 +92,47 @@ public class Message {
         this.action = ACTION_NONE;
     }
 
+    // Shallow copy; receipt and flag maps are shared until replaced through their setters
+    public Message(Message other) {
+        this.id = other.id;
+        this.senderId = other.senderId;
+        this.text = other.text;
+        this.timestamp = other.timestamp;
+        this.status = other.status;
+        this.type = other.type;
+        this.chatId = other.chatId;
+        this.otherUserId = other.otherUserId;
+        this.imageUrl = other.imageUrl;
+        this.videoUrl = other.videoUrl;
+        this.audioUrl = other.audioUrl;
+        this.thumbnailUrl = other.thumbnailUrl;
+        this.duration = other.duration;
+        this.fileSize = other.fileSize;
+        this.fileName = other.fileName;
+        this.fileUrl = other.fileUrl;
+        this.width = other.width;
+        this.height = other.height;
+        this.blurHash = other.blurHash;
+        this.action = other.action;
+        this.replyToMessageId = other.replyToMessageId;
+        this.originalMessageId = other.originalMessageId;
+        this.editedText = other.editedText;
+        this.editTimestamp = other.editTimestamp;
+        this.isEdited = other.isEdited;
+        this.isForwarded = other.isForwarded;
+        this.isReply = other.isReply;
+        this.deletedAt = other.deletedAt;
+        this.deletedBy = other.deletedBy;
+        this.isDeletedForMe = other.isDeletedForMe;
+        this.isDeletedForEveryone = other.isDeletedForEveryone;
+        this.deliveredTo = other.deliveredTo;
+        this.readBy = other.readBy;
+        this.deletedFor = other.deletedFor;
+        this.clearedFor = other.clearedFor;
+        this.isEncrypted = other.isEncrypted;
+        this.encryptedContent = other.encryptedContent;
+    }
+
     // Constructor for text messages
     public static Message createTextMessage(String senderId, String text) {
         Message message = new Message();
@@ -166,6 +210,9 @@ public class Message {
         message.setFileUrl(originalMessage.getFileUrl());
         message.setFileName(originalMessage.getFileName());
         message.setFileSize(originalMessage.getFileSize());
+        message.setWidth(originalMessage.getWidth());
+        message.setHeight(originalMessage.getHeight());
+        message.setBlurHash(originalMessage.getBlurHash());
         message.setOriginalMessageId(originalMessage.getId());
         message.setAction(ACTION_FORWARD);
         message.setForwarded(true);
@@ -216,6 +263,15 @@ public class Message {
     public String getFileUrl() { return fileUrl; }
     public void setFileUrl(String fileUrl) { this.fileUrl = fileUrl; }
 
+    public int getWidth() { return width; }
+    public void setWidth(int width) { this.width = width; }
+
+    public int getHeight() { return height; }
+    public void setHeight(int height) { this.height = height; }
+
+    public String getBlurHash() { return blurHash; }
+    public void setBlurHash(String blurHash) { this.blurHash = blurHash; }
+
     // Message actions getters and setters
     public String getAction() { return action != null ? action : ACTION_NONE; }
     public void setAction(String action) { this.action = action; }
@@ -496,6 +552,8 @@ public class Message {
                 status == message.status &&
                 duration == message.duration &&
                 fileSize == message.fileSize &&
+                width == message.width &&
+                height == message.height &&
                 editTimestamp == message.editTimestamp &&
                 isEdited == message.isEdited &&
                 isForwarded == message.isForwarded &&
@@ -514,6 +572,7 @@ public class Message {
                 Objects.equals(thumbnailUrl, message.thumbnailUrl) &&
                 Objects.equals(fileName, message.fileName) &&
                 Objects.equals(fileUrl, message.fileUrl) &&
+                Objects.equals(blurHash, message.blurHash) &&
                 Objects.equals(action, message.action) &&
                 Objects.equals(replyToMessageId, message.replyToMessageId) &&
                 Objects.equals(originalMessageId, message.originalMessageId) &&
@@ -530,6 +589,7 @@ public class Message {
     public int hashCode() {
         return Objects.hash(id, senderId, text, timestamp, status, type, imageUrl,
                 videoUrl, audioUrl, thumbnailUrl, duration, fileSize, fileName, fileUrl,
+                width, height, blurHash,
                 action, replyToMessageId, originalMessageId, editedText, editTimestamp,
                 isEdited, isForwarded, isReply, deletedAt, deletedBy, isDeletedForMe,
                 isDeletedForEveryone, isEncrypted, encryptedContent, deliveredTo, readBy,
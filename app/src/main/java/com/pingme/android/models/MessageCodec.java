@@ -0,0 +1,456 @@
+package com.pingme.android.models;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.pingme.android.models.CodecValues.booleanValue;
+import static com.pingme.android.models.CodecValues.flag;
+import static com.pingme.android.models.CodecValues.has;
+import static com.pingme.android.models.CodecValues.intValue;
+import static com.pingme.android.models.CodecValues.longMap;
+import static com.pingme.android.models.CodecValues.longValue;
+import static com.pingme.android.models.CodecValues.putIfNotNull;
+import static com.pingme.android.models.CodecValues.string;
+
+/**
+ * Reads and writes {@link Message} without Firebase's reflection-based class
+ * mapper. {@code getValue(Message.class)} looks up ~40 properties by reflection
+ * for every message; here each field is a plain map lookup.
+ *
+ * New messages are written in the compact version 2 wire schema
+ * ({@link #toWireMap}): short keys, no id (it is the node key), no status and
+ * no receipt maps. Delivery/read receipts live under message_receipts and
+ * per-user deletes/clears under message_flags, so a message node is only
+ * written again for an edit or a delete-for-everyone.
+ *
+ * Messages without a "v" key are the legacy schema, read with the keys the
+ * mapper used (bean names such as "edited") and the "is"-prefixed names the
+ * app's own writers used ("isEdited", "isForwarded"). Edits and deletes made
+ * to legacy messages since v2 are written with v2 keys and read on top.
+ *
+ * Until the minimum supported app version reads v2, new messages are sent with
+ * {@link #toTransitionMap}: the v2 keys plus the legacy ones older clients read
+ * through {@code getValue(Message.class)}. Edit and delete updates carry both
+ * sets too, and edits, deletes and receipts those older clients write onto a v2
+ * node under legacy keys are read back. Once the cutover is made, senders switch
+ * to {@link #toWireMap} and the legacy writes can be dropped.
+ */
+public final class MessageCodec {
+    public static final int SCHEMA_VERSION = 2;
+
+    // Version 2 wire keys
+    static final String KEY_VERSION = "v";
+    static final String KEY_SENDER = "s";
+    static final String KEY_TIMESTAMP = "ts";
+    static final String KEY_TYPE = "k";
+    static final String KEY_TEXT = "t";
+    // Media URL; which Message field it fills follows the type
+    static final String KEY_URL = "u";
+    static final String KEY_THUMBNAIL = "th";
+    static final String KEY_DURATION = "d";
+    static final String KEY_FILE_SIZE = "z";
+    static final String KEY_FILE_NAME = "n";
+    static final String KEY_WIDTH = "w";
+    static final String KEY_HEIGHT = "h";
+    static final String KEY_BLUR_HASH = "bh";
+    static final String KEY_REPLY_TO = "re";
+    static final String KEY_FORWARDED = "fw";
+    static final String KEY_ORIGINAL = "of";
+    static final String KEY_EDITED_AT = "ea";
+    static final String KEY_DELETED_AT = "xa";
+    static final String KEY_DELETED_BY = "xb";
+    static final String KEY_ENCRYPTED = "enc";
+
+    // message_receipts/{chatId}/{messageId}/{d|r}/{userId} = timestamp
+    public static final String RECEIPT_DELIVERED = "d";
+    public static final String RECEIPT_READ = "r";
+    // message_flags/{chatId}/{userId}/{messageId}/{d|c} = timestamp
+    public static final String FLAG_DELETED = "d";
+    public static final String FLAG_CLEARED = "c";
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Parses a messages/{chatId}/{messageId} snapshot; the id is taken from the key.
+     * Returns null if the snapshot holds no object.
+     */
+    public static Message fromSnapshot(DataSnapshot snapshot) {
+        Message message = fromMap(CodecValues.asMap(snapshot.getValue()));
+        if (message != null && snapshot.getKey() != null) {
+            message.setId(snapshot.getKey());
+        }
+        return message;
+    }
+
+    /**
+     * Decodes either schema; see the class comment.
+     */
+    public static Message fromMap(Map<String, Object> data) {
+        if (data == null) return null;
+        if (intValue(data, KEY_VERSION, 1) >= SCHEMA_VERSION) {
+            return fromWireMap(data);
+        }
+        Message message = fromLegacyMap(data);
+        applyContentUpdates(message, data);
+        return message;
+    }
+
+    private static Message fromWireMap(Map<String, Object> data) {
+        Message message = new Message();
+        message.setSenderId(string(data, KEY_SENDER));
+        message.setTimestamp(longValue(data, KEY_TIMESTAMP, 0));
+        if (has(data, KEY_TYPE)) message.setType(string(data, KEY_TYPE));
+        message.setText(string(data, KEY_TEXT));
+
+        String url = string(data, KEY_URL);
+        switch (message.getType()) {
+            case Message.TYPE_IMAGE:
+                message.setImageUrl(url);
+                break;
+            case Message.TYPE_VIDEO:
+                message.setVideoUrl(url);
+                break;
+            case Message.TYPE_AUDIO:
+                message.setAudioUrl(url);
+                break;
+            case Message.TYPE_DOCUMENT:
+                message.setFileUrl(url);
+                break;
+            default:
+                break;
+        }
+        message.setThumbnailUrl(string(data, KEY_THUMBNAIL));
+        message.setDuration(longValue(data, KEY_DURATION, 0));
+        message.setFileSize(longValue(data, KEY_FILE_SIZE, 0));
+        message.setFileName(string(data, KEY_FILE_NAME));
+        message.setWidth(intValue(data, KEY_WIDTH, 0));
+        message.setHeight(intValue(data, KEY_HEIGHT, 0));
+        message.setBlurHash(string(data, KEY_BLUR_HASH));
+
+        String replyTo = string(data, KEY_REPLY_TO);
+        if (replyTo != null) {
+            message.setReplyToMessageId(replyTo);
+            message.setReply(true);
+            message.setAction(Message.ACTION_REPLY);
+        }
+        if (booleanValue(data, KEY_FORWARDED, false)) {
+            message.setForwarded(true);
+            message.setOriginalMessageId(string(data, KEY_ORIGINAL));
+            message.setAction(Message.ACTION_FORWARD);
+        }
+        String encrypted = string(data, KEY_ENCRYPTED);
+        if (encrypted != null) {
+            message.setEncrypted(true);
+            message.setEncryptedContent(encrypted);
+        }
+        // Written once by the sender; receipts may raise it later
+        message.setStatus(Message.STATUS_SENT);
+        applyLegacyWrites(message, data);
+        applyContentUpdates(message, data);
+        return message;
+    }
+
+    // What clients from before v2 write onto a transition node with legacy keys
+    private static void applyLegacyWrites(Message message, Map<String, Object> data) {
+        if (flag(data, "edited", "isEdited", false)) {
+            message.setText(string(data, "text"));
+            message.setEdited(true);
+            message.setEditTimestamp(longValue(data, "editTimestamp", 0));
+        }
+        if (flag(data, "deletedForEveryone", "isDeletedForEveryone", false)
+                || booleanValue(data, "isDeleted", false)) {
+            message.setDeletedForEveryone(true);
+            message.setDeletedAt(longValue(data, "deletedAt", 0));
+            message.setDeletedBy(string(data, "deletedBy"));
+        }
+        message.setStatus(Math.max(message.getStatus(), intValue(data, "status", 0)));
+        message.setDeliveredTo(longMap(data, "deliveredTo"));
+        message.setReadBy(longMap(data, "readBy"));
+        message.setDeletedFor(longMap(data, "deletedFor"));
+        message.setClearedFor(longMap(data, "clearedFor"));
+    }
+
+    // The two mutations a message node still gets: edit and delete-for-everyone
+    private static void applyContentUpdates(Message message, Map<String, Object> data) {
+        long editedAt = longValue(data, KEY_EDITED_AT, 0);
+        // A later edit from an older client only updated the legacy keys
+        if (editedAt > 0 && editedAt >= message.getEditTimestamp()) {
+            message.setText(string(data, KEY_TEXT));
+            message.setEdited(true);
+            message.setEditTimestamp(editedAt);
+        }
+        long deletedAt = longValue(data, KEY_DELETED_AT, 0);
+        if (deletedAt > 0) {
+            message.setDeletedForEveryone(true);
+            message.setDeletedAt(deletedAt);
+            message.setDeletedBy(string(data, KEY_DELETED_BY));
+        }
+    }
+
+    private static Message fromLegacyMap(Map<String, Object> data) {
+        Message message = new Message();
+
+        if (has(data, "id")) message.setId(string(data, "id"));
+        if (has(data, "senderId")) message.setSenderId(string(data, "senderId"));
+        if (has(data, "text")) message.setText(string(data, "text"));
+        if (has(data, "timestamp")) message.setTimestamp(longValue(data, "timestamp", message.getTimestamp()));
+        if (has(data, "status")) message.setStatus(intValue(data, "status", message.getStatus()));
+        if (has(data, "type")) message.setType(string(data, "type"));
+        if (has(data, "chatId")) message.setChatId(string(data, "chatId"));
+        if (has(data, "otherUserId")) message.setOtherUserId(string(data, "otherUserId"));
+
+        message.setImageUrl(string(data, "imageUrl"));
+        message.setVideoUrl(string(data, "videoUrl"));
+        message.setAudioUrl(string(data, "audioUrl"));
+        message.setThumbnailUrl(string(data, "thumbnailUrl"));
+        message.setDuration(longValue(data, "duration", 0));
+        message.setFileSize(longValue(data, "fileSize", 0));
+        message.setFileName(string(data, "fileName"));
+        message.setFileUrl(string(data, "fileUrl"));
+        message.setWidth(intValue(data, "width", 0));
+        message.setHeight(intValue(data, "height", 0));
+        message.setBlurHash(string(data, "blurHash"));
+
+        if (has(data, "action")) message.setAction(string(data, "action"));
+        message.setReplyToMessageId(string(data, "replyToMessageId"));
+        message.setOriginalMessageId(string(data, "originalMessageId"));
+        message.setEditedText(string(data, "editedText"));
+        message.setEditTimestamp(longValue(data, "editTimestamp", 0));
+        message.setEdited(flag(data, "edited", "isEdited", false));
+        message.setForwarded(flag(data, "forwarded", "isForwarded", false));
+        message.setReply(flag(data, "reply", "isReply", false));
+
+        message.setDeletedAt(longValue(data, "deletedAt", 0));
+        message.setDeletedBy(string(data, "deletedBy"));
+        message.setDeletedForMe(flag(data, "deletedForMe", "isDeletedForMe", false));
+        message.setDeletedForEveryone(flag(data, "deletedForEveryone", "isDeletedForEveryone", false)
+                || booleanValue(data, "isDeleted", false));
+
+        message.setDeliveredTo(longMap(data, "deliveredTo"));
+        message.setReadBy(longMap(data, "readBy"));
+        message.setDeletedFor(longMap(data, "deletedFor"));
+        message.setClearedFor(longMap(data, "clearedFor"));
+
+        message.setEncrypted(flag(data, "encrypted", "isEncrypted", false));
+        message.setEncryptedContent(string(data, "encryptedContent"));
+        return message;
+    }
+
+    /**
+     * Same keys {@code setValue(message)} would write, minus derived getters
+     * (mediaUrl, displayText) and null fields.
+     */
+    public static Map<String, Object> toMap(Message message) {
+        Map<String, Object> data = new HashMap<>(64);
+        putIfNotNull(data, "id", message.getId());
+        putIfNotNull(data, "senderId", message.getSenderId());
+        data.put("text", message.getText());
+        data.put("timestamp", message.getTimestamp());
+        data.put("status", message.getStatus());
+        data.put("type", message.getType());
+        putIfNotNull(data, "chatId", message.getChatId());
+        putIfNotNull(data, "otherUserId", message.getOtherUserId());
+
+        putIfNotNull(data, "imageUrl", message.getImageUrl());
+        putIfNotNull(data, "videoUrl", message.getVideoUrl());
+        putIfNotNull(data, "audioUrl", message.getAudioUrl());
+        putIfNotNull(data, "thumbnailUrl", message.getThumbnailUrl());
+        data.put("duration", message.getDuration());
+        data.put("fileSize", message.getFileSize());
+        putIfNotNull(data, "fileName", message.getFileName());
+        putIfNotNull(data, "fileUrl", message.getFileUrl());
+        data.put("width", message.getWidth());
+        data.put("height", message.getHeight());
+        putIfNotNull(data, "blurHash", message.getBlurHash());
+
+        data.put("action", message.getAction());
+        putIfNotNull(data, "replyToMessageId", message.getReplyToMessageId());
+        putIfNotNull(data, "originalMessageId", message.getOriginalMessageId());
+        putIfNotNull(data, "editedText", message.getEditedText());
+        data.put("editTimestamp", message.getEditTimestamp());
+        data.put("edited", message.isEdited());
+        data.put("forwarded", message.isForwarded());
+        data.put("reply", message.isReply());
+
+        data.put("deletedAt", message.getDeletedAt());
+        putIfNotNull(data, "deletedBy", message.getDeletedBy());
+        data.put("deletedForMe", message.isDeletedForMe());
+        data.put("deletedForEveryone", message.isDeletedForEveryone());
+
+        putIfNotNull(data, "deliveredTo", message.getDeliveredTo());
+        putIfNotNull(data, "readBy", message.getReadBy());
+        putIfNotNull(data, "deletedFor", message.getDeletedFor());
+        putIfNotNull(data, "clearedFor", message.getClearedFor());
+
+        data.put("encrypted", message.isEncrypted());
+        putIfNotNull(data, "encryptedContent", message.getEncryptedContent());
+        return data;
+    }
+
+    /**
+     * Version 2 content for messages/{chatId}/{messageId}. Only non-default fields are
+     * written; id, status, receipts and per-user flags are not part of the node.
+     */
+    public static Map<String, Object> toWireMap(Message message) {
+        Map<String, Object> data = new HashMap<>(16);
+        data.put(KEY_VERSION, SCHEMA_VERSION);
+        putIfNotNull(data, KEY_SENDER, message.getSenderId());
+        data.put(KEY_TIMESTAMP, message.getTimestamp());
+        if (!Message.TYPE_TEXT.equals(message.getType())) {
+            data.put(KEY_TYPE, message.getType());
+        }
+        if (!message.getText().isEmpty()) {
+            data.put(KEY_TEXT, message.getText());
+        }
+
+        putIfNotNull(data, KEY_URL, message.getMediaUrl());
+        putIfNotNull(data, KEY_THUMBNAIL, message.getThumbnailUrl());
+        putIfPositive(data, KEY_DURATION, message.getDuration());
+        putIfPositive(data, KEY_FILE_SIZE, message.getFileSize());
+        putIfNotNull(data, KEY_FILE_NAME, message.getFileName());
+        putIfPositive(data, KEY_WIDTH, message.getWidth());
+        putIfPositive(data, KEY_HEIGHT, message.getHeight());
+        putIfNotNull(data, KEY_BLUR_HASH, message.getBlurHash());
+
+        putIfNotNull(data, KEY_REPLY_TO, message.getReplyToMessageId());
+        if (message.isForwarded()) {
+            data.put(KEY_FORWARDED, true);
+            putIfNotNull(data, KEY_ORIGINAL, message.getOriginalMessageId());
+        }
+        if (message.isEncrypted()) {
+            putIfNotNull(data, KEY_ENCRYPTED, message.getEncryptedContent());
+        }
+        return data;
+    }
+
+    /**
+     * {@link #toWireMap} plus the legacy content keys, for clients that still read
+     * messages with {@code getValue(Message.class)}. Status is written as sent so those
+     * clients show a tick; receipts still go to message_receipts.
+     */
+    public static Map<String, Object> toTransitionMap(Message message) {
+        Map<String, Object> data = toWireMap(message);
+        putIfNotNull(data, "senderId", message.getSenderId());
+        data.put("text", message.getText());
+        data.put("timestamp", message.getTimestamp());
+        data.put("status", Message.STATUS_SENT);
+        data.put("type", message.getType());
+
+        putIfNotNull(data, "imageUrl", message.getImageUrl());
+        putIfNotNull(data, "videoUrl", message.getVideoUrl());
+        putIfNotNull(data, "audioUrl", message.getAudioUrl());
+        putIfNotNull(data, "fileUrl", message.getFileUrl());
+        putIfNotNull(data, "thumbnailUrl", message.getThumbnailUrl());
+        putIfPositive(data, "duration", message.getDuration());
+        putIfPositive(data, "fileSize", message.getFileSize());
+        putIfNotNull(data, "fileName", message.getFileName());
+        putIfPositive(data, "width", message.getWidth());
+        putIfPositive(data, "height", message.getHeight());
+        putIfNotNull(data, "blurHash", message.getBlurHash());
+
+        if (!Message.ACTION_NONE.equals(message.getAction())) {
+            data.put("action", message.getAction());
+        }
+        if (message.getReplyToMessageId() != null) {
+            data.put("replyToMessageId", message.getReplyToMessageId());
+            data.put("reply", true);
+        }
+        if (message.isForwarded()) {
+            data.put("forwarded", true);
+            putIfNotNull(data, "originalMessageId", message.getOriginalMessageId());
+        }
+        if (message.isEncrypted()) {
+            data.put("encrypted", true);
+            putIfNotNull(data, "encryptedContent", message.getEncryptedContent());
+        }
+        return data;
+    }
+
+    /**
+     * Update for messages/{chatId}/{messageId} that edits its text. Works for both schemas
+     * and writes the legacy keys too, for clients that read with the mapper.
+     */
+    public static Map<String, Object> editUpdates(String newText, long editedAt) {
+        Map<String, Object> updates = new HashMap<>(8);
+        updates.put(KEY_TEXT, newText);
+        updates.put(KEY_EDITED_AT, editedAt);
+        updates.put("text", newText);
+        updates.put("edited", true);
+        updates.put("editTimestamp", editedAt);
+        return updates;
+    }
+
+    /**
+     * Update for messages/{chatId}/{messageId} that deletes it for everyone: content and
+     * media are removed and the deletion recorded. Works for both schemas.
+     */
+    public static Map<String, Object> deleteForEveryoneUpdates(String userId, long deletedAt) {
+        Map<String, Object> updates = new HashMap<>(16);
+        updates.put(KEY_TEXT, null);
+        updates.put(KEY_URL, null);
+        updates.put(KEY_THUMBNAIL, null);
+        updates.put(KEY_DELETED_AT, deletedAt);
+        updates.put(KEY_DELETED_BY, userId);
+        // Legacy message nodes keep these under their long names
+        updates.put("text", null);
+        updates.put("imageUrl", null);
+        updates.put("videoUrl", null);
+        updates.put("audioUrl", null);
+        updates.put("fileUrl", null);
+        updates.put("thumbnailUrl", null);
+        updates.put("deletedForEveryone", true);
+        updates.put("deletedAt", deletedAt);
+        updates.put("deletedBy", userId);
+        return updates;
+    }
+
+    /**
+     * Merges a message_receipts/{chatId}/{messageId} node into {@code message}. Legacy
+     * messages may carry receipts of their own; both sets are kept. The status is raised
+     * to match, never lowered.
+     */
+    public static void applyReceipts(Message message, MessageReceipts receipts) {
+        if (receipts == null) return;
+        message.setDeliveredTo(merge(message.getDeliveredTo(), receipts.getDeliveredTo()));
+        message.setReadBy(merge(message.getReadBy(), receipts.getReadBy()));
+        message.setStatus(Math.max(message.getStatus(), receipts.getStatus()));
+    }
+
+    /**
+     * Reads message_flags/{chatId}/{userId}/{messageId}: {@link #FLAG_DELETED} and
+     * {@link #FLAG_CLEARED} to timestamps. Returns null if the snapshot holds no object.
+     */
+    public static Map<String, Long> userFlagsFromSnapshot(DataSnapshot snapshot) {
+        return longMap(snapshot.getValue());
+    }
+
+    public static void applyUserFlags(Message message, String userId, Map<String, Long> flags) {
+        if (flags == null || userId == null) return;
+        Long deletedAt = flags.get(FLAG_DELETED);
+        if (deletedAt != null) {
+            message.setDeletedFor(merge(message.getDeletedFor(), Collections.singletonMap(userId, deletedAt)));
+        }
+        Long clearedAt = flags.get(FLAG_CLEARED);
+        if (clearedAt != null) {
+            message.setClearedFor(merge(message.getClearedFor(), Collections.singletonMap(userId, clearedAt)));
+        }
+    }
+
+    private static Map<String, Long> merge(Map<String, Long> current, Map<String, Long> extra) {
+        if (extra == null || extra.isEmpty()) return current;
+        if (current == null || current.isEmpty()) return new HashMap<>(extra);
+        Map<String, Long> merged = new HashMap<>(current);
+        merged.putAll(extra);
+        return merged;
+    }
+
+    private static void putIfPositive(Map<String, Object> data, String key, long value) {
+        if (value > 0) {
+            data.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.pingme.android.models;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+import java.util.Objects;
+
+import static com.pingme.android.models.CodecValues.longMap;
+
+/**
+ * Delivery and read receipts of one message, stored apart from its content at
+ * message_receipts/{chatId}/{messageId} as {"d": {userId: ts}, "r": {userId: ts}}.
+ * A receipt only touches this small node, so listeners on the messages
+ * themselves see no change.
+ */
+public final class MessageReceipts {
+    private final Map<String, Long> deliveredTo;
+    private final Map<String, Long> readBy;
+
+    public MessageReceipts(Map<String, Long> deliveredTo, Map<String, Long> readBy) {
+        this.deliveredTo = deliveredTo;
+        this.readBy = readBy;
+    }
+
+    /**
+     * Returns null if the snapshot holds no object.
+     */
+    public static MessageReceipts fromSnapshot(DataSnapshot snapshot) {
+        return fromMap(CodecValues.asMap(snapshot.getValue()));
+    }
+
+    public static MessageReceipts fromMap(Map<String, Object> data) {
+        if (data == null) return null;
+        return new MessageReceipts(longMap(data, MessageCodec.RECEIPT_DELIVERED), longMap(data, MessageCodec.RECEIPT_READ));
+    }
+
+    public Map<String, Long> getDeliveredTo() { return deliveredTo; }
+
+    public Map<String, Long> getReadBy() { return readBy; }
+
+    public boolean isDeliveredTo(String userId) {
+        return deliveredTo != null && deliveredTo.containsKey(userId);
+    }
+
+    public boolean isReadBy(String userId) {
+        return readBy != null && readBy.containsKey(userId);
+    }
+
+    /**
+     * Status the receipts imply: read by anyone, delivered to anyone, or only sent.
+     */
+    public int getStatus() {
+        if (readBy != null && !readBy.isEmpty()) return Message.STATUS_READ;
+        if (deliveredTo != null && !deliveredTo.isEmpty()) return Message.STATUS_DELIVERED;
+        return Message.STATUS_SENT;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageReceipts that = (MessageReceipts) o;
+        return Objects.equals(deliveredTo, that.deliveredTo) && Objects.equals(readBy, that.readBy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(deliveredTo, readBy);
+    }
+}
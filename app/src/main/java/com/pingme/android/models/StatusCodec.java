@@ -0,0 +1,82 @@
+package com.pingme.android.models;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.pingme.android.models.CodecValues.booleanValue;
+import static com.pingme.android.models.CodecValues.has;
+import static com.pingme.android.models.CodecValues.intValue;
+import static com.pingme.android.models.CodecValues.longMap;
+import static com.pingme.android.models.CodecValues.longValue;
+import static com.pingme.android.models.CodecValues.putIfNotNull;
+import static com.pingme.android.models.CodecValues.string;
+
+/**
+ * Reads and writes {@link Status} documents without the reflection-based class
+ * mapper. The legacy "text", "mediaUrl" and "mediaType" keys are still read
+ * through the model's compatibility setters.
+ */
+public final class StatusCodec {
+
+    private StatusCodec() {
+    }
+
+    /**
+     * Returns null if the document does not exist, like {@code toObject(Status.class)}.
+     */
+    public static Status fromDocument(DocumentSnapshot document) {
+        if (document == null || !document.exists()) return null;
+        return fromMap(document.getData());
+    }
+
+    public static Status fromMap(Map<String, Object> data) {
+        if (data == null) return null;
+        Status status = new Status();
+
+        // Legacy keys first so the current ones win
+        if (has(data, "text")) status.setText(string(data, "text"));
+        if (has(data, "mediaUrl")) status.setMediaUrl(string(data, "mediaUrl"));
+        if (has(data, "mediaType")) status.setMediaType(string(data, "mediaType"));
+
+        if (has(data, "id")) status.setId(string(data, "id"));
+        if (has(data, "userId")) status.setUserId(string(data, "userId"));
+        if (has(data, "userName")) status.setUserName(string(data, "userName"));
+        if (has(data, "userImageUrl")) status.setUserImageUrl(string(data, "userImageUrl"));
+        if (has(data, "content")) status.setContent(string(data, "content"));
+        if (has(data, "imageUrl")) status.setImageUrl(string(data, "imageUrl"));
+        if (has(data, "videoUrl")) status.setVideoUrl(string(data, "videoUrl"));
+        if (has(data, "timestamp")) status.setTimestamp(longValue(data, "timestamp", status.getTimestamp()));
+        if (has(data, "expiryTime")) status.setExpiryTime(longValue(data, "expiryTime", status.getExpiryTime()));
+        if (has(data, "backgroundColor")) status.setBackgroundColor(string(data, "backgroundColor"));
+        if (has(data, "type")) status.setType(string(data, "type"));
+        Map<String, Long> viewers = longMap(data, "viewers");
+        if (viewers != null) status.setViewers(viewers);
+        status.setViewed(booleanValue(data, "viewed", false));
+        status.setViewerCount(intValue(data, "viewerCount", 0));
+        status.setHasUnviewedStatus(booleanValue(data, "hasUnviewedStatus", false));
+        status.setTotalStatusCount(intValue(data, "totalStatusCount", 1));
+        return status;
+    }
+
+    /**
+     * The fields StatusCreationActivity stores; per-viewer display state is not written.
+     */
+    public static Map<String, Object> toMap(Status status) {
+        Map<String, Object> data = new HashMap<>(24);
+        putIfNotNull(data, "id", status.getId());
+        putIfNotNull(data, "userId", status.getUserId());
+        putIfNotNull(data, "userName", status.getUserName());
+        putIfNotNull(data, "userImageUrl", status.getUserImageUrl());
+        putIfNotNull(data, "content", status.getContent());
+        putIfNotNull(data, "imageUrl", status.getImageUrl());
+        putIfNotNull(data, "videoUrl", status.getVideoUrl());
+        putIfNotNull(data, "type", status.getType());
+        putIfNotNull(data, "backgroundColor", status.getBackgroundColor());
+        data.put("timestamp", status.getTimestamp());
+        data.put("expiryTime", status.getExpiryTime());
+        data.put("viewers", status.getViewers() != null ? status.getViewers() : new HashMap<String, Long>());
+        return data;
+    }
+}
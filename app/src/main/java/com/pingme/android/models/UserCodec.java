@@ -0,0 +1,116 @@
+package com.pingme.android.models;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.pingme.android.models.CodecValues.booleanValue;
+import static com.pingme.android.models.CodecValues.has;
+import static com.pingme.android.models.CodecValues.longValue;
+import static com.pingme.android.models.CodecValues.putIfNotNull;
+import static com.pingme.android.models.CodecValues.string;
+
+/**
+ * Reads and writes {@link User} without the reflection-based class mapper.
+ *
+ * User documents carry some flags under two names: the @PropertyName name the
+ * settings screens update directly ("read_receipts_enabled", "isOnline") and
+ * the bean name a whole-object {@code set(user)} writes ("readReceiptsEnabled",
+ * "online"). The annotated name wins when both are present.
+ */
+public final class UserCodec {
+
+    private UserCodec() {
+    }
+
+    /**
+     * Returns null if the document does not exist, like {@code toObject(User.class)}.
+     */
+    public static User fromDocument(DocumentSnapshot document) {
+        if (document == null || !document.exists()) return null;
+        return fromMap(document.getData());
+    }
+
+    public static User fromSnapshot(DataSnapshot snapshot) {
+        return fromMap(CodecValues.asMap(snapshot.getValue()));
+    }
+
+    public static User fromMap(Map<String, Object> data) {
+        if (data == null) return null;
+        User user = new User();
+
+        user.setId(string(data, "id"));
+        user.setName(string(data, "name"));
+        user.setEmail(string(data, "email"));
+        user.setPhoneNumber(string(data, "phoneNumber"));
+        user.setImageUrl(string(data, "imageUrl"));
+        if (has(data, "about")) user.setAbout(string(data, "about"));
+        user.setOnline(preferred(data, "isOnline", "online", false));
+        if (has(data, "lastSeen")) user.setLastSeen(longValue(data, "lastSeen", 0));
+        user.setFcmToken(string(data, "fcmToken"));
+        if (has(data, "joinedAt")) user.setJoinedAt(longValue(data, "joinedAt", user.getJoinedAt()));
+        user.setBlocked(booleanValue(data, "blocked", false));
+        if (has(data, "friendshipStatus")) user.setFriendshipStatus(string(data, "friendshipStatus"));
+        user.setPersonalName(string(data, "personalName"));
+
+        user.setProfilePhotoEnabled(preferred(data, "profile_photo_enabled", "profilePhotoEnabled", true));
+        user.setLastSeenEnabled(preferred(data, "last_seen_enabled", "lastSeenEnabled", true));
+        user.setAboutEnabled(preferred(data, "about_enabled", "aboutEnabled", true));
+        user.setReadReceiptsEnabled(preferred(data, "read_receipts_enabled", "readReceiptsEnabled", true));
+
+        user.setDisplayName(string(data, "displayName"));
+        user.setOnlineStatus(string(data, "onlineStatus"));
+        user.setNotificationsEnabled(booleanValue(data, "notificationsEnabled", true));
+        user.setFriend(booleanValue(data, "friend", false));
+        user.setValidEmail(booleanValue(data, "validEmail", true));
+        if (has(data, "theme")) user.setTheme(string(data, "theme"));
+        user.setBlockedByMe(booleanValue(data, "blockedByMe", false));
+        user.setDisplayAbout(string(data, "displayAbout"));
+        user.setComplete(booleanValue(data, "complete", false));
+        return user;
+    }
+
+    /**
+     * Stored profile fields under the names {@link #fromMap} prefers; derived
+     * getters (displayNameForUser, emailValid, ...) are not written.
+     */
+    public static Map<String, Object> toMap(User user) {
+        Map<String, Object> data = new HashMap<>(48);
+        putIfNotNull(data, "id", user.getId());
+        data.put("name", user.getName());
+        data.put("email", user.getEmail());
+        data.put("phoneNumber", user.getPhoneNumber());
+        putIfNotNull(data, "imageUrl", user.getImageUrl());
+        data.put("about", user.getAbout());
+        data.put("isOnline", user.isOnline());
+        data.put("lastSeen", user.getLastSeen());
+        putIfNotNull(data, "fcmToken", user.getFcmToken());
+        data.put("joinedAt", user.getJoinedAt());
+        data.put("blocked", user.isBlocked());
+        putIfNotNull(data, "friendshipStatus", user.getFriendshipStatus());
+        putIfNotNull(data, "personalName", user.getPersonalName());
+
+        data.put("profile_photo_enabled", user.isProfilePhotoEnabled());
+        data.put("last_seen_enabled", user.isLastSeenEnabled());
+        data.put("about_enabled", user.isAboutEnabled());
+        data.put("read_receipts_enabled", user.isReadReceiptsEnabled());
+
+        putIfNotNull(data, "displayName", user.getDisplayName());
+        putIfNotNull(data, "onlineStatus", user.getOnlineStatus());
+        data.put("notificationsEnabled", user.isNotificationsEnabled());
+        data.put("friend", user.isFriend());
+        data.put("validEmail", user.isValidEmail());
+        putIfNotNull(data, "theme", user.getTheme());
+        data.put("blockedByMe", user.isBlockedByMe());
+        putIfNotNull(data, "displayAbout", user.getDisplayAbout());
+        data.put("complete", user.isComplete());
+        return data;
+    }
+
+    private static boolean preferred(Map<String, Object> data, String key, String fallbackKey, boolean fallback) {
+        if (has(data, key)) return booleanValue(data, key, fallback);
+        return booleanValue(data, fallbackKey, fallback);
+    }
+}
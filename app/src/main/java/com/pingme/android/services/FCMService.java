@@ -20,6 +20,7 @@ import com.pingme.android.R;
 import com.pingme.android.activities.ChatActivity;
 import com.pingme.android.activities.MainActivity;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 import java.util.Map;
@@ -138,7 +139,7 @@ public class FCMService extends FirebaseMessagingService {
                 .get()
                 .addOnSuccessListener(snapshot -> {
                     if (snapshot.exists()) {
-                        User sender = snapshot.toObject(User.class);
+                        User sender = UserCodec.fromDocument(snapshot);
                         if (sender != null) {
                             String title = sender.getDisplayName();
                             String body = getMessagePreview(message, messageType);
@@ -0,0 +1,176 @@
+package com.pingme.android.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The app's shared background threads. Utilities run their work here instead of
+ * creating their own pools, so the total thread count stays bounded no matter
+ * how many downloads, uploads and decodes are in flight.
+ *
+ *  - {@link #io()}: blocking disk and network work (downloads, file copies, hashing)
+ *  - {@link #cpu()}: CPU-bound work (bitmap scaling, BlurHash, parsing), sized to the cores
+ *  - {@link #serial(String)}: ordered work for one key, e.g. one chat's snapshot
+ *    parsing, on the CPU pool so busy IO threads never hold up incoming messages
+ *  - {@link #streaming()}: long-lived video proxy connections, kept apart so a few
+ *    open players can't occupy the IO pool
+ *  - {@link #mainThread()}: posts back to the UI thread
+ *
+ * Every pool records queue depth and wait/run times ({@link #dumpMetrics()}),
+ * logs tasks that waited or ran unusually long, and reports exceptions that
+ * escape a task.
+ */
+public class AppExecutors {
+    private static final String TAG = "AppExecutors";
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    // Leave a core for the UI thread and RenderThread
+    private static final int CPU_THREADS = Math.max(2, Math.min(CPU_COUNT - 1, 4));
+    // IO threads mostly wait on sockets and disk; enough for parallel downloads and uploads
+    private static final int IO_THREADS = 8;
+    // Each open player holds one or two proxy connections while it buffers
+    private static final int STREAMING_THREADS = 4;
+    private static final long IDLE_KEEP_ALIVE_SECONDS = 30;
+    // Queue wait or run time above this gets a log line
+    private static final long SLOW_TASK_MS = 2000;
+    // A proxy connection normally stays open for as long as its video plays
+    private static final long SLOW_STREAM_MS = 10 * 60 * 1000;
+
+    private static AppExecutors instance;
+
+    private final InstrumentedExecutor io;
+    private final InstrumentedExecutor cpu;
+    private final InstrumentedExecutor streaming;
+    private final SerialExecutor.Keyed serialExecutors;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mainThread = mainHandler::post;
+
+    private final InstrumentedExecutor.Reporter reporter = new InstrumentedExecutor.Reporter() {
+        @Override
+        public void onTaskFailed(String pool, Throwable error) {
+            Log.e(TAG, "Uncaught exception in " + pool + " task", error);
+        }
+
+        @Override
+        public void onSlowTask(String pool, long waitMs, long runMs) {
+            Log.w(TAG, "Slow " + pool + " task: waited " + waitMs + " ms, ran " + runMs + " ms");
+        }
+    };
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    private AppExecutors() {
+        io = new InstrumentedExecutor("io", newPool("io", IO_THREADS), reporter, SLOW_TASK_MS);
+        cpu = new InstrumentedExecutor("cpu", newPool("cpu", CPU_THREADS), reporter, SLOW_TASK_MS);
+        streaming = new InstrumentedExecutor("streaming", newPool("streaming", STREAMING_THREADS), reporter, SLOW_STREAM_MS);
+        serialExecutors = new SerialExecutor.Keyed(cpu);
+    }
+
+    public Executor io() {
+        return io;
+    }
+
+    public Executor cpu() {
+        return cpu;
+    }
+
+    /** Threads in the {@link #cpu()} pool, for splitting work into that many parts. */
+    public int cpuThreadCount() {
+        return CPU_THREADS;
+    }
+
+    public Executor streaming() {
+        return streaming;
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * Executor that runs tasks for {@code key} one at a time and in order, on the CPU
+     * pool. Tasks for the same key stay ordered across every executor returned for
+     * it; the queue behind a key is dropped while the key has nothing to run.
+     */
+    public Executor serial(String key) {
+        return serialExecutors.forKey(key);
+    }
+
+    public void postToMain(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+
+    public void postToMainDelayed(Runnable runnable, long delayMillis) {
+        mainHandler.postDelayed(runnable, delayMillis);
+    }
+
+    /**
+     * Dedicated thread for a loop that lives as long as the process (e.g. a server
+     * socket), which would otherwise pin a pool thread. Exceptions are reported like
+     * pool tasks.
+     */
+    public Thread newDedicatedThread(Runnable runnable, String name) {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, name);
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, error) -> reporter.onTaskFailed(name, error));
+        return thread;
+    }
+
+    public String dumpMetrics() {
+        StringBuilder builder = new StringBuilder()
+                .append(io.snapshot()).append('\n')
+                .append(cpu.snapshot()).append('\n')
+                .append(streaming.snapshot())
+                .append("\nserial: ").append(serialExecutors.size()).append(" active keys, ")
+                .append(serialExecutors.pendingCount()).append(" pending");
+        return builder.toString();
+    }
+
+    public void logMetrics() {
+        Log.d(TAG, dumpMetrics());
+    }
+
+    private ThreadPoolExecutor newPool(String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new PoolThreadFactory(name));
+        // Idle apps should not keep a dozen parked threads around
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private class PoolThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        PoolThreadFactory(String name) {
+            this.prefix = "pingme-" + name + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, prefix + count.incrementAndGet());
+            thread.setUncaughtExceptionHandler((t, error) -> reporter.onTaskFailed(t.getName(), error));
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.pingme.android.utils;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * ChildEventListener that parses snapshots on a worker instead of the main
+ * thread. Firebase still calls back on the main thread, but the listener only
+ * queues the snapshot there; parsing (reflection-based class mapping for
+ * models like Message) happens on {@code worker}, unchanged children are
+ * dropped, and the resulting changes reach {@link Callback#onChanges} on the
+ * main thread in frame-sized batches.
+ *
+ * {@code worker} must run tasks in order, e.g. {@link AppExecutors#serial(String)},
+ * so a child's changes are never reordered.
+ */
+public class BackgroundChildEventListener<T> implements ChildEventListener {
+    private static final String TAG = "BgChildEventListener";
+    private static final long FRAME_MS = 16;
+    // Enough for a screenful of rows without making a single frame long
+    private static final int MAX_CHANGES_PER_FRAME = 100;
+
+    public enum Type {
+        ADDED,
+        CHANGED,
+        REMOVED
+    }
+
+    public static class Change<T> {
+        public final Type type;
+        public final String key;
+        // Null for REMOVED, or when parsing failed
+        public final T value;
+
+        Change(Type type, String key, T value) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+        }
+
+        /** The same change carrying {@code value} instead, e.g. a decrypted copy of the parsed one. */
+        public Change<T> withValue(T value) {
+            return new Change<>(type, key, value);
+        }
+    }
+
+    public interface Callback<T> {
+        void onChanges(List<Change<T>> changes);
+
+        void onCancelled(DatabaseError error);
+    }
+
+    private final Executor worker;
+    private final SnapshotParser<T> parser;
+    private final Callback<T> callback;
+    private final FrameBatcher<Change<T>> batcher;
+    // Last parsed value per child; only touched on the worker
+    private final Map<String, T> lastValues = new HashMap<>();
+    private volatile boolean disposed;
+
+    public BackgroundChildEventListener(Executor worker, SnapshotParser<T> parser, Callback<T> callback) {
+        this.worker = worker;
+        this.parser = parser;
+        this.callback = callback;
+        this.batcher = new FrameBatcher<>(AppExecutors.getInstance()::postToMainDelayed, FRAME_MS,
+                MAX_CHANGES_PER_FRAME, this::deliver);
+    }
+
+    /**
+     * Stops delivery of anything still queued. Call after removing the listener from its reference.
+     */
+    public void dispose() {
+        disposed = true;
+        batcher.cancel();
+    }
+
+    @Override
+    public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+        worker.execute(() -> parseAndQueue(Type.ADDED, snapshot));
+    }
+
+    @Override
+    public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+        worker.execute(() -> parseAndQueue(Type.CHANGED, snapshot));
+    }
+
+    @Override
+    public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+        String key = snapshot.getKey();
+        worker.execute(() -> {
+            if (disposed) return;
+            lastValues.remove(key);
+            batcher.offer(new Change<>(Type.REMOVED, key, null));
+        });
+    }
+
+    @Override
+    public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+        // Callers order by their own fields (e.g. timestamp), not by query position
+    }
+
+    @Override
+    public void onCancelled(@NonNull DatabaseError error) {
+        if (!disposed) {
+            callback.onCancelled(error);
+        }
+    }
+
+    private void parseAndQueue(Type type, DataSnapshot snapshot) {
+        if (disposed) return;
+        String key = snapshot.getKey();
+        T value;
+        try {
+            value = parser.parse(snapshot);
+        } catch (RuntimeException e) {
+            // DatabaseException for malformed children; report it like an unparseable child
+            Log.e(TAG, "Failed to parse child " + key, e);
+            value = null;
+        }
+
+        if (value != null && type == Type.CHANGED && Objects.equals(lastValues.get(key), value)) {
+            // Nothing this side models changed (e.g. a field the app does not read)
+            return;
+        }
+        if (value != null) {
+            lastValues.put(key, value);
+        }
+        batcher.offer(new Change<>(type, key, value));
+    }
+
+    private void deliver(List<Change<T>> changes) {
+        if (!disposed) {
+            callback.onChanges(changes);
+        }
+    }
+}
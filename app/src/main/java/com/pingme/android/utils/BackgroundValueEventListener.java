@@ -0,0 +1,89 @@
+package com.pingme.android.utils;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ValueEventListener counterpart of {@link BackgroundChildEventListener}: the
+ * snapshot is parsed on {@code worker} and the result is posted to
+ * {@link Callback#onData} on the main thread. A snapshot that is superseded
+ * before its parse starts is skipped, and a result equal to the previously
+ * delivered one is not posted at all.
+ *
+ * {@code worker} must run tasks in order, e.g. {@link AppExecutors#serial(String)}.
+ */
+public class BackgroundValueEventListener<T> implements ValueEventListener {
+    private static final String TAG = "BgValueEventListener";
+
+    public interface Callback<T> {
+        void onData(T value);
+
+        void onCancelled(DatabaseError error);
+    }
+
+    private final Executor worker;
+    private final SnapshotParser<T> parser;
+    private final Callback<T> callback;
+    private final AtomicInteger generation = new AtomicInteger();
+    // Last posted value; only touched on the worker
+    private T lastValue;
+    private boolean hasLastValue;
+    private volatile boolean disposed;
+
+    public BackgroundValueEventListener(Executor worker, SnapshotParser<T> parser, Callback<T> callback) {
+        this.worker = worker;
+        this.parser = parser;
+        this.callback = callback;
+    }
+
+    /**
+     * Stops delivery of anything still queued. Call after removing the listener from its reference.
+     */
+    public void dispose() {
+        disposed = true;
+    }
+
+    @Override
+    public void onDataChange(@NonNull DataSnapshot snapshot) {
+        int snapshotGeneration = generation.incrementAndGet();
+        worker.execute(() -> {
+            if (disposed || snapshotGeneration != generation.get()) {
+                // A newer snapshot is already queued behind this one
+                return;
+            }
+            T value;
+            try {
+                value = parser.parse(snapshot);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to parse " + snapshot.getKey(), e);
+                return;
+            }
+            if (hasLastValue && Objects.equals(lastValue, value)) {
+                return;
+            }
+            lastValue = value;
+            hasLastValue = true;
+            AppExecutors.getInstance().postToMain(() -> {
+                if (!disposed) {
+                    callback.onData(value);
+                }
+            });
+        });
+    }
+
+    @Override
+    public void onCancelled(@NonNull DatabaseError error) {
+        if (!disposed) {
+            callback.onCancelled(error);
+        }
+    }
+}
@@ -14,10 +14,6 @@ import com.bumptech.glide.load.resource.bitmap.CircleCrop;
 import com.pingme.android.R;
 import de.hdodenhof.circleimageview.CircleImageView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
 public class BindingAdapters {
 
     // Unified adapter for CircleImageView
@@ -36,8 +32,7 @@ public class BindingAdapters {
         }
 
         if (imageUrl != null && !imageUrl.isEmpty()) {
-            Glide.with(view.getContext())
-                    .load(imageUrl)
+            CloudinaryUrlBuilder.loadAvatar(Glide.with(view.getContext()), imageUrl, view)
                     .transform(new CircleCrop())
                     .placeholder(placeholderDrawable)
                     .error(placeholderDrawable)
@@ -70,7 +65,7 @@ public class BindingAdapters {
 
         if (imageUrl != null && !imageUrl.isEmpty()) {
             Glide.with(view.getContext())
-                    .load(imageUrl)
+                    .load(CloudinaryUrlBuilder.limit(imageUrl, CloudinaryUrlBuilder.targetWidth(view)))
                     .placeholder(placeholderDrawable)
                     .error(placeholderDrawable)
                     .into(view);
@@ -95,8 +90,7 @@ public class BindingAdapters {
     @BindingAdapter("timestamp")
     public static void setTimestamp(TextView textView, long timestamp) {
         if (timestamp > 0) {
-            SimpleDateFormat sdf = new SimpleDateFormat("h:mm a", Locale.getDefault());
-            textView.setText(sdf.format(new Date(timestamp)));
+            textView.setText(TimeFormatter.getInstance().formatTime(timestamp));
         } else {
             textView.setText("");
         }
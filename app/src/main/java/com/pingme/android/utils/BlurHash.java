@@ -0,0 +1,266 @@
+package com.pingme.android.utils;
+
+import android.graphics.Bitmap;
+
+/**
+ * Encoder/decoder for BlurHash (https://blurha.sh) placeholders: a ~20-30
+ * character string describing an image as a few DCT components, small enough to
+ * travel inside the message node and decode into a blurred preview instantly.
+ *
+ * The pixel math works on plain ARGB int arrays so it can be unit tested; the
+ * Bitmap helpers below are thin wrappers around it.
+ */
+public class BlurHash {
+    private static final String CHARACTERS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    // Components used for message media: enough for a recognisable colour layout
+    public static final int DEFAULT_COMPONENTS_X = 4;
+    public static final int DEFAULT_COMPONENTS_Y = 3;
+    // Encoding reads every pixel per component, so work from a tiny copy
+    private static final int ENCODE_SIZE = 32;
+
+    private BlurHash() {
+    }
+
+    /**
+     * Encodes {@code bitmap} (any size) using a downscaled copy.
+     */
+    public static String encode(Bitmap bitmap) {
+        int longEdge = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        float scale = Math.min(1f, (float) ENCODE_SIZE / longEdge);
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        Bitmap small = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        try {
+            int[] pixels = new int[width * height];
+            small.getPixels(pixels, 0, width, 0, 0, width, height);
+            int componentsX = width >= height ? DEFAULT_COMPONENTS_X : DEFAULT_COMPONENTS_Y;
+            int componentsY = width >= height ? DEFAULT_COMPONENTS_Y : DEFAULT_COMPONENTS_X;
+            return encode(pixels, width, height, componentsX, componentsY);
+        } finally {
+            if (small != bitmap) {
+                small.recycle();
+            }
+        }
+    }
+
+    /**
+     * Decodes {@code hash} into a {@code width} x {@code height} bitmap, or null if
+     * the hash is malformed. Callers should keep the size tiny and let the view scale it.
+     */
+    public static Bitmap decodeBitmap(String hash, int width, int height) {
+        int[] pixels = decode(hash, width, height, 1f);
+        if (pixels == null) {
+            return null;
+        }
+        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    public static String encode(int[] pixels, int width, int height, int componentsX, int componentsY) {
+        if (componentsX < 1 || componentsX > 9 || componentsY < 1 || componentsY > 9) {
+            throw new IllegalArgumentException("Components must be between 1 and 9");
+        }
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel array smaller than " + width + "x" + height);
+        }
+
+        float[][] factors = new float[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            for (int i = 0; i < componentsX; i++) {
+                float normalisation = (i == 0 && j == 0) ? 1f : 2f;
+                factors[j * componentsX + i] = basisFactor(pixels, width, height, i, j, normalisation);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder(4 + 2 * factors.length);
+        encodeBase83((componentsX - 1) + (componentsY - 1) * 9, 1, hash);
+
+        float maximumValue;
+        if (factors.length > 1) {
+            float actualMaximum = 0f;
+            for (int k = 1; k < factors.length; k++) {
+                for (float value : factors[k]) {
+                    actualMaximum = Math.max(actualMaximum, Math.abs(value));
+                }
+            }
+            int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+            maximumValue = (quantisedMaximum + 1) / 166f;
+            encodeBase83(quantisedMaximum, 1, hash);
+        } else {
+            maximumValue = 1f;
+            encodeBase83(0, 1, hash);
+        }
+
+        encodeBase83(encodeDc(factors[0]), 4, hash);
+        for (int k = 1; k < factors.length; k++) {
+            encodeBase83(encodeAc(factors[k], maximumValue), 2, hash);
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Decodes into ARGB pixels, or null if {@code hash} is not a valid BlurHash.
+     * {@code punch} above 1 increases contrast.
+     */
+    public static int[] decode(String hash, int width, int height, float punch) {
+        if (hash == null || hash.length() < 6 || width <= 0 || height <= 0) {
+            return null;
+        }
+        int sizeFlag = decodeBase83(hash, 0, 1);
+        if (sizeFlag < 0) {
+            return null;
+        }
+        int componentsX = sizeFlag % 9 + 1;
+        int componentsY = sizeFlag / 9 + 1;
+        if (hash.length() != 4 + 2 * componentsX * componentsY) {
+            return null;
+        }
+
+        int quantisedMaximum = decodeBase83(hash, 1, 2);
+        int dc = decodeBase83(hash, 2, 6);
+        if (quantisedMaximum < 0 || dc < 0) {
+            return null;
+        }
+        float maximumValue = (quantisedMaximum + 1) / 166f * punch;
+
+        float[][] colors = new float[componentsX * componentsY][];
+        colors[0] = decodeDc(dc);
+        for (int k = 1; k < colors.length; k++) {
+            int ac = decodeBase83(hash, 4 + k * 2, 6 + k * 2);
+            if (ac < 0) {
+                return null;
+            }
+            colors[k] = decodeAc(ac, maximumValue);
+        }
+
+        // Cosine tables are shared by every row/column
+        float[] cosX = new float[width * componentsX];
+        for (int x = 0; x < width; x++) {
+            for (int i = 0; i < componentsX; i++) {
+                cosX[x * componentsX + i] = (float) Math.cos(Math.PI * x * i / width);
+            }
+        }
+        float[] cosY = new float[height * componentsY];
+        for (int y = 0; y < height; y++) {
+            for (int j = 0; j < componentsY; j++) {
+                cosY[y * componentsY + j] = (float) Math.cos(Math.PI * y * j / height);
+            }
+        }
+
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float r = 0f;
+                float g = 0f;
+                float b = 0f;
+                for (int j = 0; j < componentsY; j++) {
+                    for (int i = 0; i < componentsX; i++) {
+                        float basis = cosX[x * componentsX + i] * cosY[y * componentsY + j];
+                        float[] color = colors[j * componentsX + i];
+                        r += color[0] * basis;
+                        g += color[1] * basis;
+                        b += color[2] * basis;
+                    }
+                }
+                pixels[y * width + x] = 0xFF000000
+                        | (linearToSrgb(r) << 16)
+                        | (linearToSrgb(g) << 8)
+                        | linearToSrgb(b);
+            }
+        }
+        return pixels;
+    }
+
+    private static float[] basisFactor(int[] pixels, int width, int height, int i, int j, float normalisation) {
+        float r = 0f;
+        float g = 0f;
+        float b = 0f;
+        for (int y = 0; y < height; y++) {
+            float cosY = (float) Math.cos(Math.PI * j * y / height);
+            for (int x = 0; x < width; x++) {
+                float basis = normalisation * (float) Math.cos(Math.PI * i * x / width) * cosY;
+                int pixel = pixels[y * width + x];
+                r += basis * srgbToLinear((pixel >> 16) & 0xFF);
+                g += basis * srgbToLinear((pixel >> 8) & 0xFF);
+                b += basis * srgbToLinear(pixel & 0xFF);
+            }
+        }
+        float scale = 1f / (width * height);
+        return new float[]{r * scale, g * scale, b * scale};
+    }
+
+    private static int encodeDc(float[] color) {
+        return (linearToSrgb(color[0]) << 16) + (linearToSrgb(color[1]) << 8) + linearToSrgb(color[2]);
+    }
+
+    private static int encodeAc(float[] color, float maximumValue) {
+        int r = quantiseAc(color[0] / maximumValue);
+        int g = quantiseAc(color[1] / maximumValue);
+        int b = quantiseAc(color[2] / maximumValue);
+        return r * 19 * 19 + g * 19 + b;
+    }
+
+    private static int quantiseAc(float value) {
+        return (int) Math.max(0, Math.min(18, Math.floor(signPow(value, 0.5f) * 9 + 9.5)));
+    }
+
+    private static float[] decodeDc(int value) {
+        return new float[]{
+                srgbToLinear(value >> 16),
+                srgbToLinear((value >> 8) & 0xFF),
+                srgbToLinear(value & 0xFF)
+        };
+    }
+
+    private static float[] decodeAc(int value, float maximumValue) {
+        int r = value / (19 * 19);
+        int g = (value / 19) % 19;
+        int b = value % 19;
+        return new float[]{
+                signPow((r - 9) / 9f, 2f) * maximumValue,
+                signPow((g - 9) / 9f, 2f) * maximumValue,
+                signPow((b - 9) / 9f, 2f) * maximumValue
+        };
+    }
+
+    private static float signPow(float value, float exponent) {
+        return Math.copySign((float) Math.pow(Math.abs(value), exponent), value);
+    }
+
+    private static float srgbToLinear(int value) {
+        float v = value / 255f;
+        return v <= 0.04045f ? v / 12.92f : (float) Math.pow((v + 0.055f) / 1.055f, 2.4f);
+    }
+
+    private static int linearToSrgb(float value) {
+        float v = Math.max(0f, Math.min(1f, value));
+        if (v <= 0.0031308f) {
+            return (int) (v * 12.92f * 255f + 0.5f);
+        }
+        return (int) ((1.055f * Math.pow(v, 1 / 2.4f) - 0.055f) * 255f + 0.5f);
+    }
+
+    private static void encodeBase83(int value, int length, StringBuilder out) {
+        for (int i = 1; i <= length; i++) {
+            int divisor = 1;
+            for (int k = 0; k < length - i; k++) {
+                divisor *= 83;
+            }
+            out.append(CHARACTERS.charAt((value / divisor) % 83));
+        }
+    }
+
+    // -1 for characters outside the alphabet
+    private static int decodeBase83(String hash, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = CHARACTERS.indexOf(hash.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 83 + digit;
+        }
+        return value;
+    }
+}
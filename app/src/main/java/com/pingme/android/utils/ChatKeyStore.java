@@ -0,0 +1,244 @@
+package com.pingme.android.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Session keys for encrypted chats: each chat's AES key is unwrapped from its
+ * RSA-encrypted form once and then served from memory, so decrypting a page of
+ * messages costs one map lookup instead of an RSA private-key operation each.
+ *
+ * Unwrapped keys are kept in a bounded LRU and, re-encrypted under a key that
+ * never leaves the Android Keystore, in private preferences, so a cold start
+ * skips the RSA step too. An entry is only used while the wrapped key it came
+ * from is unchanged; a rotated chat key is unwrapped again.
+ */
+public class ChatKeyStore {
+    private static final String TAG = "ChatKeyStore";
+    private static final String PREFS_NAME = "chat_keys";
+    private static final int MAX_KEYS = 64;
+
+    private static ChatKeyStore instance;
+
+    private final KeyPersistence persistence;
+    private final KeyUnwrapper unwrapper;
+    private final Map<String, Entry> keys;
+    private final Object unwrapLock = new Object();
+
+    /** Stores unwrapped keys across process restarts. */
+    interface KeyPersistence {
+        @Nullable
+        SecretKey load(String chatId, String fingerprint);
+
+        void save(String chatId, String fingerprint, SecretKey key);
+
+        void clear();
+    }
+
+    /** The RSA step: recovers a chat's AES key from its wrapped form. */
+    interface KeyUnwrapper {
+        @Nullable
+        SecretKey unwrap(String wrappedKey, PrivateKey privateKey);
+    }
+
+    public static synchronized ChatKeyStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatKeyStore(new KeystorePersistence(context.getApplicationContext()),
+                    EncryptionUtil::decryptAESKey, MAX_KEYS);
+        }
+        return instance;
+    }
+
+    ChatKeyStore(KeyPersistence persistence, KeyUnwrapper unwrapper, int maxKeys) {
+        this.persistence = persistence;
+        this.unwrapper = unwrapper;
+        this.keys = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * The AES key for {@code chatId}, given the chat's key as stored for this
+     * user (Base64 of the RSA-encrypted AES key). Returns null if it can't be
+     * unwrapped. Safe to call from background threads; the first call for a
+     * chat may do an RSA operation, so keep it off the main thread.
+     */
+    @Nullable
+    public SecretKey getChatKey(String chatId, String wrappedKey, PrivateKey privateKey) {
+        if (chatId == null || wrappedKey == null) return null;
+        SecretKey key = cached(chatId, wrappedKey);
+        if (key != null) return key;
+
+        // One unwrap per chat even when a whole page asks at once
+        synchronized (unwrapLock) {
+            key = cached(chatId, wrappedKey);
+            if (key != null) return key;
+
+            String fingerprint = fingerprint(wrappedKey);
+            key = persistence.load(chatId, fingerprint);
+            if (key == null) {
+                if (privateKey == null) return null;
+                key = unwrapper.unwrap(wrappedKey, privateKey);
+                if (key == null) return null;
+                persistence.save(chatId, fingerprint, key);
+            }
+            synchronized (keys) {
+                keys.put(chatId, new Entry(wrappedKey, key));
+            }
+            return key;
+        }
+    }
+
+    /**
+     * The chat's key if it has already been unwrapped in this process, without
+     * doing any RSA or Keystore work; null otherwise.
+     */
+    @Nullable
+    public SecretKey peekChatKey(String chatId) {
+        synchronized (keys) {
+            Entry entry = keys.get(chatId);
+            return entry != null ? entry.key : null;
+        }
+    }
+
+    /** Drops every cached and persisted key, e.g. on sign-out. */
+    public void clear() {
+        synchronized (keys) {
+            keys.clear();
+        }
+        persistence.clear();
+    }
+
+    @Nullable
+    private SecretKey cached(String chatId, String wrappedKey) {
+        synchronized (keys) {
+            Entry entry = keys.get(chatId);
+            return entry != null && entry.wrappedKey.equals(wrappedKey) ? entry.key : null;
+        }
+    }
+
+    static String fingerprint(String wrappedKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(wrappedKey.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static final class Entry {
+        final String wrappedKey;
+        final SecretKey key;
+
+        Entry(String wrappedKey, SecretKey key) {
+            this.wrappedKey = wrappedKey;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Chat keys encrypted with an AES-GCM key generated inside the Android
+     * Keystore, stored as "fingerprint:Base64(iv || ciphertext)" per chat.
+     */
+    private static final class KeystorePersistence implements KeyPersistence {
+        private static final String KEYSTORE_PROVIDER = "AndroidKeyStore";
+        private static final String MASTER_KEY_ALIAS = "pingme_chat_keys";
+        private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+        private static final int GCM_IV_LENGTH = 12;
+        private static final int GCM_TAG_BITS = 128;
+
+        private final SharedPreferences prefs;
+        private SecretKey masterKey;
+
+        KeystorePersistence(Context context) {
+            this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        }
+
+        @Override
+        public SecretKey load(String chatId, String fingerprint) {
+            String stored = prefs.getString(chatId, null);
+            if (stored == null || !stored.startsWith(fingerprint + ":")) return null;
+            try {
+                byte[] combined = Base64.decode(stored.substring(fingerprint.length() + 1), Base64.NO_WRAP);
+                Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+                cipher.init(Cipher.DECRYPT_MODE, masterKey(), new GCMParameterSpec(GCM_TAG_BITS, combined, 0, GCM_IV_LENGTH));
+                byte[] keyBytes = cipher.doFinal(combined, GCM_IV_LENGTH, combined.length - GCM_IV_LENGTH);
+                return new SecretKeySpec(keyBytes, "AES");
+            } catch (Exception e) {
+                // Keystore key lost or replaced (e.g. after a backup restore): unwrap again
+                Log.w(TAG, "Dropping unreadable key for chat " + chatId, e);
+                prefs.edit().remove(chatId).apply();
+                return null;
+            }
+        }
+
+        @Override
+        public void save(String chatId, String fingerprint, SecretKey key) {
+            try {
+                Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+                cipher.init(Cipher.ENCRYPT_MODE, masterKey());
+                byte[] iv = cipher.getIV();
+                byte[] encrypted = cipher.doFinal(key.getEncoded());
+                byte[] combined = new byte[iv.length + encrypted.length];
+                System.arraycopy(iv, 0, combined, 0, iv.length);
+                System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+                prefs.edit().putString(chatId, fingerprint + ":" + Base64.encodeToString(combined, Base64.NO_WRAP)).apply();
+            } catch (Exception e) {
+                // Still cached in memory; the next cold start unwraps it again
+                Log.w(TAG, "Could not persist key for chat " + chatId, e);
+            }
+        }
+
+        @Override
+        public void clear() {
+            prefs.edit().clear().apply();
+        }
+
+        private synchronized SecretKey masterKey() throws Exception {
+            if (masterKey != null) return masterKey;
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE_PROVIDER);
+            keyStore.load(null);
+            KeyStore.Entry entry = keyStore.getEntry(MASTER_KEY_ALIAS, null);
+            if (entry instanceof KeyStore.SecretKeyEntry) {
+                masterKey = ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+                return masterKey;
+            }
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE_PROVIDER);
+            generator.init(new KeyGenParameterSpec.Builder(MASTER_KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            masterKey = generator.generateKey();
+            return masterKey;
+        }
+    }
+}
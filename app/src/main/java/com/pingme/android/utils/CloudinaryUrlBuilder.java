@@ -0,0 +1,129 @@
+package com.pingme.android.utils;
+
+import android.graphics.drawable.Drawable;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+
+/**
+ * Derives size-appropriate Cloudinary delivery URLs from the stored secure_url,
+ * so a 32 dp avatar or a 200 dp bubble downloads a variant sized for the view
+ * instead of the full original.
+ *
+ * Every variant requests {@code f_auto,q_auto} (WebP/AVIF where supported,
+ * perceptual quality). Widths are rounded up to a few fixed buckets so nearby
+ * view sizes share one CDN and Glide cache entry. URLs that are not plain
+ * Cloudinary image uploads are returned unchanged.
+ */
+public class CloudinaryUrlBuilder {
+    private static final String UPLOAD_SEGMENT = "/image/upload/";
+    private static final int[] WIDTH_BUCKETS = {64, 128, 256, 384, 512, 768, 1024, 1600};
+    // Blurry preview shown while the sized variant loads
+    private static final String THUMBNAIL_TRANSFORMATION = "c_limit,w_32,f_auto,q_auto:low";
+
+    private CloudinaryUrlBuilder() {
+    }
+
+    /**
+     * Variant cropped to fill {@code widthPx} x {@code heightPx} (aspect kept from the view).
+     */
+    public static String fill(String url, int widthPx, int heightPx) {
+        if (widthPx <= 0 || heightPx <= 0) {
+            return limit(url, widthPx);
+        }
+        int width = bucket(widthPx);
+        int height = Math.max(1, Math.round((float) heightPx * width / widthPx));
+        return withTransformation(url, "c_fill,g_auto,w_" + width + ",h_" + height + ",f_auto,q_auto");
+    }
+
+    /**
+     * Variant no wider than {@code widthPx}, aspect ratio preserved.
+     */
+    public static String limit(String url, int widthPx) {
+        if (widthPx <= 0) {
+            return withTransformation(url, "f_auto,q_auto");
+        }
+        return withTransformation(url, "c_limit,w_" + bucket(widthPx) + ",f_auto,q_auto");
+    }
+
+    public static String thumbnail(String url) {
+        return withTransformation(url, THUMBNAIL_TRANSFORMATION);
+    }
+
+    /**
+     * Glide request for a message bubble: a tiny blurred variant appears first,
+     * then the variant sized for {@code view}.
+     */
+    public static RequestBuilder<Drawable> loadSized(RequestManager glide, String url, ImageView view) {
+        return loadSized(glide, url, targetWidth(view), targetHeight(view));
+    }
+
+    /**
+     * Same request as {@link #loadSized(RequestManager, String, ImageView)} for a view
+     * that is not bound yet, e.g. when preloading rows ahead of the scroll.
+     */
+    public static RequestBuilder<Drawable> loadSized(RequestManager glide, String url, int widthPx, int heightPx) {
+        String sized = fill(url, widthPx, heightPx);
+        RequestBuilder<Drawable> request = glide.load(sized);
+        String preview = thumbnail(url);
+        if (!preview.equals(sized)) {
+            request = request.thumbnail(glide.load(preview));
+        }
+        return request;
+    }
+
+    /**
+     * Glide request for an avatar; small enough that a preview variant is not worth a request.
+     */
+    public static RequestBuilder<Drawable> loadAvatar(RequestManager glide, String url, ImageView view) {
+        return loadAvatar(glide, url, targetWidth(view), targetHeight(view));
+    }
+
+    public static RequestBuilder<Drawable> loadAvatar(RequestManager glide, String url, int widthPx, int heightPx) {
+        return glide.load(fill(url, widthPx, heightPx));
+    }
+
+    // Laid-out size if known, else the fixed size from the layout, in physical pixels
+    static int targetWidth(ImageView view) {
+        if (view.getWidth() > 0) return view.getWidth();
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params != null && params.width > 0) return params.width;
+        return view.getResources().getDisplayMetrics().widthPixels;
+    }
+
+    static int targetHeight(ImageView view) {
+        if (view.getHeight() > 0) return view.getHeight();
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params != null && params.height > 0) return params.height;
+        return 0;
+    }
+
+    static int bucket(int widthPx) {
+        for (int bucket : WIDTH_BUCKETS) {
+            if (widthPx <= bucket) {
+                return bucket;
+            }
+        }
+        return WIDTH_BUCKETS[WIDTH_BUCKETS.length - 1];
+    }
+
+    static String withTransformation(String url, String transformation) {
+        if (url == null || !url.contains("res.cloudinary.com")) {
+            return url;
+        }
+        int index = url.indexOf(UPLOAD_SEGMENT);
+        if (index < 0) {
+            return url;
+        }
+        int start = index + UPLOAD_SEGMENT.length();
+        int slash = url.indexOf('/', start);
+        String firstSegment = slash > 0 ? url.substring(start, slash) : "";
+        if (!firstSegment.isEmpty() && !firstSegment.matches("v\\d+") && firstSegment.matches("^[a-z]{1,3}_.*")) {
+            // Already transformed - do not stack another transformation on top
+            return url;
+        }
+        return url.substring(0, start) + transformation + "/" + url.substring(start);
+    }
+}
@@ -2,30 +2,23 @@ package com.pingme.android.utils;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
-import android.provider.MediaStore;
 import android.util.Log;
 
 import com.cloudinary.android.MediaManager;
 import com.cloudinary.android.callback.ErrorInfo;
 import com.cloudinary.android.callback.UploadCallback;
+import com.pingme.android.models.Message;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public class CloudinaryUtil {
     private static final String TAG = "CloudinaryUtil";
     private static CloudinaryUtil instance;
-    private static final int MAX_RETRY_ATTEMPTS = 3;
-    private static final long RETRY_DELAY_MS = 2000; // 2 seconds
-    private final ScheduledExecutorService retryExecutor = Executors.newScheduledThreadPool(2);
 
     public static CloudinaryUtil getInstance() {
         if (instance == null) {
@@ -35,22 +28,74 @@ public class CloudinaryUtil {
     }
 
     public CompletableFuture<String> uploadImage(Uri imageUri, String folder, Context context) {
-        CompletableFuture<String> future = new CompletableFuture<>();
+        return uploadImageWithMetadata(imageUri, folder, context)
+                .thenApply(mediaData -> (String) mediaData.get("imageUrl"));
+    }
 
-        try {
-            // Get bitmap from URI
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(context.getContentResolver(), imageUri);
+    /**
+     * Uploads an image and completes with the message media fields: "imageUrl" plus
+     * "width", "height" and "blurHash" of the uploaded variant, so receivers can show
+     * an aspect-correct blurred preview before the image itself arrives.
+     */
+    public CompletableFuture<Map<String, Object>> uploadImageWithMetadata(Uri imageUri, String folder, Context context) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        ImagePreprocessor.Spec spec = ImagePreprocessor.specForFolder(folder);
+        MediaDedupStore dedupStore = MediaDedupStore.getInstance(context);
+
+        // The uploaded bytes are fully determined by the source and the spec, so key on those
+        String keyPrefix = "image:" + spec.maxLongEdge + ":" + spec.maxBytes;
+        MediaDedupStore.contentKeyAsync(context, imageUri, keyPrefix)
+                .whenComplete((contentKey, hashError) -> {
+                    if (hashError != null) {
+                        Log.w(TAG, "Could not hash image, uploading without dedup", hashError);
+                    }
+                    Map<String, Object> existing = dedupStore.get(contentKey);
+                    if (existing != null && existing.get("imageUrl") != null) {
+                        // Entries from before placeholders were stored only carry the URL
+                        future.complete(new HashMap<>(existing));
+                        return;
+                    }
+
+                    // Downscale, fix orientation and re-encode off the caller thread
+                    ImagePreprocessor.process(context, imageUri, spec)
+                            .whenComplete((processed, error) -> {
+                                if (error != null) {
+                                    Log.e(TAG, "Error processing image", error);
+                                    future.completeExceptionally(error);
+                                    return;
+                                }
+                                uploadImageFile(processed.file, folder).whenComplete((imageUrl, uploadError) -> {
+                                    processed.delete();
+                                    if (uploadError != null) {
+                                        future.completeExceptionally(uploadError);
+                                        return;
+                                    }
+                                    Map<String, Object> mediaData = new HashMap<>();
+                                    mediaData.put("imageUrl", imageUrl);
+                                    mediaData.put("width", processed.width);
+                                    mediaData.put("height", processed.height);
+                                    if (processed.blurHash != null) {
+                                        mediaData.put("blurHash", processed.blurHash);
+                                    }
+                                    dedupStore.put(contentKey, mediaData);
+                                    future.complete(mediaData);
+                                });
+                            });
+                });
 
-            // Compress bitmap to byte array
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, stream);
-            byte[] byteArray = stream.toByteArray();
+        return future;
+    }
 
+    // Uploads an already encoded image; the caller owns (and deletes) the file
+    private CompletableFuture<String> uploadImageFile(File file, String folder) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
             // Generate unique filename
             String filename = "img_" + System.currentTimeMillis();
 
             // FIXED: Removed transformation parameter for unsigned upload
-            MediaManager.get().upload(byteArray)
+            // Upload by file path so the encoded bytes are streamed, not held in memory
+            MediaManager.get().upload(file.getAbsolutePath())
                     .unsigned("pingme_upload_preset")
                     .option("public_id", folder + "/" + filename)
                     .callback(new UploadCallback() {
@@ -97,14 +142,10 @@ public class CloudinaryUtil {
                     })
                     .dispatch();
 
-            // Clean up
-            stream.close();
-
-        } catch (IOException e) {
-            Log.e(TAG, "Error processing image", e);
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting image upload", e);
             future.completeExceptionally(e);
         }
-
         return future;
     }
 
@@ -116,216 +157,54 @@ public class CloudinaryUtil {
         return uploadImage(imageUri, "chat_images", context);
     }
 
-    public CompletableFuture<Map<String, Object>> uploadChatVideo(Uri videoUri, Context context) {
-        return uploadChatVideoWithRetry(videoUri, context, 0);
+    public CompletableFuture<Map<String, Object>> uploadChatImageWithMetadata(Uri imageUri, Context context) {
+        return uploadImageWithMetadata(imageUri, "chat_images", context);
     }
-    
-    private CompletableFuture<Map<String, Object>> uploadChatVideoWithRetry(Uri videoUri, Context context, int attemptCount) {
-        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
-        
-        // Add null checks for parameters
-        if (videoUri == null) {
-            Log.e(TAG, "Video URI is null");
-            return CompletableFuture.failedFuture(new Exception("Video URI is null"));
-        }
-        
-        if (context == null) {
-            Log.e(TAG, "Context is null");
-            return CompletableFuture.failedFuture(new Exception("Context is null"));
-        }
-        
-        // Check file size (max 100MB for videos)
-        try {
-            long fileSize = getFileSize(context, videoUri);
-            if (fileSize > 100 * 1024 * 1024) { // 100MB
-                return CompletableFuture.failedFuture(new Exception("Video file too large. Maximum size is 100MB"));
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Could not check file size", e);
-        }
-        
-        try {
-            // Get original filename and preserve extension for videos
-            String originalFilename = getFileName(context, videoUri);
-            String extension = getFileExtension(originalFilename);
-            String filename = "video_" + System.currentTimeMillis();
-            
-            Log.d(TAG, "Video upload - Original filename: " + originalFilename);
-            Log.d(TAG, "Video upload - Extracted extension: " + extension);
-            
-            // Preserve video extension if available
-            if (extension != null && !extension.isEmpty()) {
-                // Common video extensions
-                if (extension.matches("(?i)(mp4|avi|mov|wmv|flv|webm|mkv|m4v|3gp)")) {
-                    filename += "." + extension;
-                }
-            }
-            
-            Log.d(TAG, "Starting video upload for URI: " + videoUri);
-            Log.d(TAG, "Video upload - Final filename: " + filename);
-            
-            // Create a final reference to avoid potential null pointer issues
-            final CompletableFuture<Map<String, Object>> finalFuture = future;
-            
-            // Add null check for the future
-            if (finalFuture == null) {
-                Log.e(TAG, "Future is null, cannot proceed with video upload");
-                return CompletableFuture.failedFuture(new Exception("Future is null"));
-            }
-            
-            MediaManager.get().upload(videoUri)
-                    .unsigned("pingme_upload_preset")
-                    .option("public_id", "chat_videos/" + filename)
-                    .option("resource_type", "video")
-                    .callback(new UploadCallback() {
-                        @Override
-                        public void onStart(String requestId) {
-                            Log.d(TAG, "Video upload started: " + (requestId != null ? requestId : "null"));
-                        }
 
-                        @Override
-                        public void onProgress(String requestId, long bytes, long totalBytes) {
-                            double progress = (double) bytes / totalBytes * 100;
-                            Log.d(TAG, "Video upload progress: " + String.format("%.1f%%", progress));
-                        }
+    public CompletableFuture<Map<String, Object>> uploadChatVideo(Uri videoUri, Context context) {
+        return queueChatUpload(videoUri, UploadQueue.KIND_VIDEO, context, null, null, null, null, null, null);
+    }
 
-                        @Override
-                        public void onSuccess(String requestId, Map resultData) {
-                            Log.d(TAG, "Video upload successful - requestId: " + (requestId != null ? requestId : "null") + ", resultData: " + resultData);
-                            
-                            // Use a synchronized block to prevent race conditions
-                            synchronized (finalFuture) {
-                                try {
-                                    // Check if future is already completed
-                                    if (finalFuture.isDone()) {
-                                        Log.w(TAG, "Video upload future already completed, ignoring onSuccess");
-                                        return;
-                                    }
-                                    
-                                    // Check if resultData is null
-                                    if (resultData == null) {
-                                        Log.e(TAG, "Video upload resultData is null");
-                                        finalFuture.completeExceptionally(new Exception("Video upload completed but result data is null"));
-                                        return;
-                                    }
-                                    
-                                    Log.d(TAG, "Available fields in resultData: " + resultData.keySet());
-                                    
-                                    // Create a HashMap to handle null values safely
-                                    Map<String, Object> result = new HashMap<>();
-                                    
-                                    // Get secure_url, fallback to url if secure_url is null
-                                    Object videoUrl = resultData.get("secure_url");
-                                    Log.d(TAG, "secure_url from resultData: " + videoUrl);
-                                    if (videoUrl == null) {
-                                        videoUrl = resultData.get("url");
-                                        Log.d(TAG, "url from resultData (fallback): " + videoUrl);
-                                    }
-                                    
-                                    // Only add videoUrl if it's not null
-                                    if (videoUrl != null) {
-                                        result.put("videoUrl", videoUrl.toString());
-                                    }
-                                    
-                                    // Get thumbnail_url, only add if not null
-                                    Object thumbnailUrl = resultData.get("thumbnail_url");
-                                    Log.d(TAG, "thumbnail_url from resultData: " + thumbnailUrl);
-                                    if (thumbnailUrl != null) {
-                                        result.put("thumbnailUrl", thumbnailUrl.toString());
-                                    }
-                                    
-                                                                    // Get duration, only add if not null
-                                Object duration = resultData.get("duration");
-                                Log.d(TAG, "duration from resultData: " + duration);
-                                if (duration != null) {
-                                    try {
-                                        // Convert duration to long (milliseconds)
-                                        double durationSeconds = Double.parseDouble(duration.toString());
-                                        long durationMillis = (long) (durationSeconds * 1000);
-                                        result.put("duration", durationMillis);
-                                    } catch (NumberFormatException e) {
-                                        Log.w(TAG, "Could not parse duration: " + duration, e);
-                                        // Store as 0 if parsing fails
-                                        result.put("duration", 0L);
-                                    }
-                                }
-                                    
-                                    // Log the result for debugging
-                                    Log.d(TAG, "Video result map: " + result);
-                                    
-                                    // Ensure we have at least a video URL before completing
-                                    if (!result.containsKey("videoUrl") || result.get("videoUrl") == null) {
-                                        Log.e(TAG, "Video URL is null, completing with error");
-                                        finalFuture.completeExceptionally(new Exception("Video upload completed but no URL received"));
-                                    } else {
-                                        // Create a new HashMap to ensure thread safety
-                                        Map<String, Object> finalResult = new HashMap<>(result);
-                                        finalFuture.complete(finalResult);
-                                    }
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Error in onSuccess callback", e);
-                                    if (!finalFuture.isDone()) {
-                                        finalFuture.completeExceptionally(e);
-                                    }
-                                }
-                            }
-                        }
+    public CompletableFuture<Map<String, Object>> uploadChatAudio(Uri audioUri, Context context) {
+        return queueChatUpload(audioUri, UploadQueue.KIND_AUDIO, context, null, null, null, null, null, null);
+    }
 
-                        @Override
-                        public void onError(String requestId, ErrorInfo error) {
-                            Log.e(TAG, "Video upload failed - requestId: " + (requestId != null ? requestId : "null") + ", error: " + (error != null ? error.getDescription() : "null"));
-                            synchronized (finalFuture) {
-                                if (!finalFuture.isDone()) {
-                                    // Implement retry logic
-                                    if (attemptCount < MAX_RETRY_ATTEMPTS - 1) {
-                                        Log.d(TAG, "Retrying video upload, attempt " + (attemptCount + 1) + "/" + MAX_RETRY_ATTEMPTS);
-                                        retryExecutor.schedule(() -> {
-                                            uploadChatVideoWithRetry(videoUri, context, attemptCount + 1)
-                                                .thenAccept(result -> {
-                                                    if (!finalFuture.isDone()) {
-                                                        finalFuture.complete(result);
-                                                    }
-                                                })
-                                                .exceptionally(retryError -> {
-                                                    if (!finalFuture.isDone()) {
-                                                        finalFuture.completeExceptionally(retryError);
-                                                    }
-                                                    return null;
-                                                });
-                                        }, RETRY_DELAY_MS * (attemptCount + 1), TimeUnit.MILLISECONDS);
-                                    } else {
-                                        finalFuture.completeExceptionally(new Exception("Video upload failed after " + MAX_RETRY_ATTEMPTS + " attempts: " + (error != null ? error.getDescription() : "Unknown error")));
-                                    }
-                                }
-                            }
-                        }
+    public CompletableFuture<Map<String, Object>> uploadChatDocument(Uri documentUri, Context context) {
+        return queueChatUpload(documentUri, UploadQueue.KIND_DOCUMENT, context, null, null, null, null, null, null);
+    }
 
-                        @Override
-                        public void onReschedule(String requestId, ErrorInfo error) {
-                            Log.w(TAG, "Video upload rescheduled - requestId: " + (requestId != null ? requestId : "null") + ", error: " + (error != null ? error.getDescription() : "null"));
-                        }
-                    })
-                    .dispatch();
-                    
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing video", e);
-            future.completeExceptionally(e);
-        }
-        
-        return future;
+    /**
+     * Queues a video/audio/document upload and sends it as a message once it is
+     * uploaded. The upload and the send survive the calling activity and process
+     * death; the returned future only reports back to a caller that is still alive.
+     * {@code uploadTaskId} is the UploadQueue task id, for {@link UploadQueue#cancel}.
+     */
+    public CompletableFuture<Map<String, Object>> sendChatMediaMessage(String uploadTaskId, Uri mediaUri, String kind,
+                                                                     Context context, String chatId, String senderId,
+                                                                     String text, String type) {
+        return queueChatUpload(mediaUri, kind, context, chatId, senderId, text, type, null, uploadTaskId);
     }
 
-    public CompletableFuture<Map<String, Object>> uploadChatAudio(Uri audioUri, Context context) {
-        return uploadChatAudioWithRetry(audioUri, context, 0);
+    /**
+     * Like {@link #sendChatMediaMessage} for a video whose poster, size and duration were
+     * extracted on the device. The poster is uploaded first as a small image and its URL,
+     * with the local metadata, goes into the message. {@code metadata} may be null.
+     */
+    public CompletableFuture<Map<String, Object>> sendChatVideoMessage(String uploadTaskId, Uri videoUri,
+                                                                     VideoMetadataExtractor.Result metadata, Context context,
+                                                                     String chatId, String senderId, String text) {
+        return queueChatUpload(videoUri, UploadQueue.KIND_VIDEO, context, chatId, senderId, text, Message.TYPE_VIDEO, metadata,
+                uploadTaskId);
     }
-    
-    private CompletableFuture<Map<String, Object>> uploadChatAudioWithRetry(Uri audioUri, Context context, int attemptCount) {
-        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
-        
+
+    private CompletableFuture<Map<String, Object>> queueChatUpload(Uri mediaUri, String kind, Context context,
+                                                                 String chatId, String senderId, String text, String type,
+                                                                 VideoMetadataExtractor.Result videoMetadata,
+                                                                 String uploadTaskId) {
         // Add null checks for parameters
-        if (audioUri == null) {
-            Log.e(TAG, "Audio URI is null");
-            return CompletableFuture.failedFuture(new Exception("Audio URI is null"));
+        if (mediaUri == null) {
+            Log.e(TAG, "Media URI is null");
+            return CompletableFuture.failedFuture(new Exception("Media URI is null"));
         }
         
         if (context == null) {
@@ -333,299 +212,83 @@ public class CloudinaryUtil {
             return CompletableFuture.failedFuture(new Exception("Context is null"));
         }
         
-        // Check file size (max 50MB for audio)
+        // Check file size (max 100MB for videos and documents, 50MB for audio)
+        long fileSize = 0;
         try {
-            long fileSize = getFileSize(context, audioUri);
-            if (fileSize > 50 * 1024 * 1024) { // 50MB
-                return CompletableFuture.failedFuture(new Exception("Audio file too large. Maximum size is 50MB"));
+            fileSize = getFileSize(context, mediaUri);
+            long maxSize = UploadQueue.KIND_AUDIO.equals(kind) ? 50 * 1024 * 1024 : 100 * 1024 * 1024;
+            if (fileSize > maxSize) {
+                String label = UploadQueue.KIND_AUDIO.equals(kind) ? "Audio" : UploadQueue.KIND_VIDEO.equals(kind) ? "Video" : "Document";
+                return CompletableFuture.failedFuture(new Exception(label + " file too large. Maximum size is " + (maxSize / (1024 * 1024)) + "MB"));
             }
         } catch (Exception e) {
             Log.w(TAG, "Could not check file size", e);
         }
         
-        try {
-            // Get original filename and preserve extension for audio
-            String originalFilename = getFileName(context, audioUri);
-            String extension = getFileExtension(originalFilename);
-            String filename = "audio_" + System.currentTimeMillis();
-            
-            Log.d(TAG, "Audio upload - Original filename: " + originalFilename);
-            Log.d(TAG, "Audio upload - Extracted extension: " + extension);
-            
-            // Preserve audio extension if available
-            if (extension != null && !extension.isEmpty()) {
-                // Common audio extensions
-                if (extension.matches("(?i)(mp3|wav|aac|ogg|m4a|flac|wma|amr)")) {
-                    filename += "." + extension;
-                }
-            }
-            
-            Log.d(TAG, "Audio upload - Final filename: " + filename);
-            
-            // Create a final reference to avoid potential null pointer issues
-            final CompletableFuture<Map<String, Object>> finalFuture = future;
-            
-            MediaManager.get().upload(audioUri)
-                    .unsigned("pingme_upload_preset")
-                    .option("public_id", "chat_audio/" + filename)
-                    .option("resource_type", "video")
-                    .callback(new UploadCallback() {
-                        @Override
-                        public void onStart(String requestId) {
-                            Log.d(TAG, "Audio upload started: " + (requestId != null ? requestId : "null"));
-                        }
-
-                        @Override
-                        public void onProgress(String requestId, long bytes, long totalBytes) {
-                            double progress = (double) bytes / totalBytes * 100;
-                            Log.d(TAG, "Audio upload progress: " + String.format("%.1f%%", progress));
-                        }
-
-                        @Override
-                        public void onSuccess(String requestId, Map resultData) {
-                            Log.d(TAG, "Audio upload successful - requestId: " + (requestId != null ? requestId : "null") + ", resultData: " + resultData);
-                            
-                            try {
-                                // Check if resultData is null
-                                if (resultData == null) {
-                                    Log.e(TAG, "Audio upload resultData is null");
-                                    if (!finalFuture.isDone()) {
-                                        finalFuture.completeExceptionally(new Exception("Audio upload completed but result data is null"));
-                                    }
-                                    return;
-                                }
-                                
-                                // Create a HashMap to handle null values safely
-                                Map<String, Object> result = new HashMap<>();
-                                
-                                // Get secure_url, fallback to url if secure_url is null
-                                Object audioUrl = resultData.get("secure_url");
-                                if (audioUrl == null) {
-                                    audioUrl = resultData.get("url");
-                                }
-                                
-                                // Only add audioUrl if it's not null
-                                if (audioUrl != null) {
-                                    result.put("audioUrl", audioUrl.toString());
-                                }
-                                
-                                // Get duration, only add if not null
-                                Object duration = resultData.get("duration");
-                                if (duration != null) {
-                                    try {
-                                        // Convert duration to long (milliseconds)
-                                        double durationSeconds = Double.parseDouble(duration.toString());
-                                        long durationMillis = (long) (durationSeconds * 1000);
-                                        result.put("duration", durationMillis);
-                                    } catch (NumberFormatException e) {
-                                        Log.w(TAG, "Could not parse duration: " + duration, e);
-                                        // Store as 0 if parsing fails
-                                        result.put("duration", 0L);
-                                    }
-                                }
-                                
-                                // Ensure we have at least an audio URL before completing
-                                if (!result.containsKey("audioUrl") || result.get("audioUrl") == null) {
-                                    Log.e(TAG, "Audio URL is null, completing with error");
-                                    if (!finalFuture.isDone()) {
-                                        finalFuture.completeExceptionally(new Exception("Audio upload completed but no URL received"));
-                                    }
-                                } else {
-                                    if (!finalFuture.isDone()) {
-                                        // Create a new HashMap to ensure thread safety
-                                        Map<String, Object> finalResult = new HashMap<>(result);
-                                        finalFuture.complete(finalResult);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error in audio onSuccess callback", e);
-                                if (!finalFuture.isDone()) {
-                                    finalFuture.completeExceptionally(e);
-                                }
-                            }
-                        }
-
-                        @Override
-                        public void onError(String requestId, ErrorInfo error) {
-                            Log.e(TAG, "Audio upload failed - requestId: " + (requestId != null ? requestId : "null") + ", error: " + (error != null ? error.getDescription() : "null"));
-                            if (!finalFuture.isDone()) {
-                                // Implement retry logic
-                                if (attemptCount < MAX_RETRY_ATTEMPTS - 1) {
-                                    Log.d(TAG, "Retrying audio upload, attempt " + (attemptCount + 1) + "/" + MAX_RETRY_ATTEMPTS);
-                                    retryExecutor.schedule(() -> {
-                                        uploadChatAudioWithRetry(audioUri, context, attemptCount + 1)
-                                            .thenAccept(result -> {
-                                                if (!finalFuture.isDone()) {
-                                                    finalFuture.complete(result);
-                                                }
-                                            })
-                                            .exceptionally(retryError -> {
-                                                if (!finalFuture.isDone()) {
-                                                    finalFuture.completeExceptionally(retryError);
-                                                }
-                                                return null;
-                                            });
-                                    }, RETRY_DELAY_MS * (attemptCount + 1), TimeUnit.MILLISECONDS);
-                                } else {
-                                    finalFuture.completeExceptionally(new Exception("Audio upload failed after " + MAX_RETRY_ATTEMPTS + " attempts: " + (error != null ? error.getDescription() : "Unknown error")));
-                                }
-                            }
-                        }
+        String originalFilename = getFileName(context, mediaUri);
+        long totalBytes = fileSize;
+        Log.d(TAG, "Queueing " + kind + " upload - Original filename: " + originalFilename + ", size: " + fileSize);
+        
+        // Same bytes already uploaded (re-send, forward of a local file) - reuse the stored URLs
+        MediaDedupStore dedupStore = MediaDedupStore.getInstance(context);
+        return MediaDedupStore.contentKeyAsync(context, mediaUri, kind)
+                .handle((contentKey, hashError) -> {
+                    if (hashError != null) {
+                        Log.w(TAG, "Could not hash " + kind + ", uploading without dedup", hashError);
+                    }
+                    return contentKey;
+                })
+                // The queue may copy the source before it is enqueued, so stay off the main thread
+                .thenComposeAsync(contentKey -> {
+                    UploadQueue queue = UploadQueue.getInstance(context);
+                    Map<String, Object> existing = dedupStore.get(contentKey);
+                    if (existing != null) {
+                        // Sent without the queue, so check for a cancel made while hashing
+                        if (uploadTaskId != null && queue.takeCancellation(uploadTaskId)) {
+                            return CompletableFuture.failedFuture(new CancellationException("Upload cancelled"));
+                        }
+                        if (originalFilename != null && UploadQueue.KIND_DOCUMENT.equals(kind)) {
+                            existing.put("fileName", originalFilename);
+                        }
+                        return chatId == null
+                                ? CompletableFuture.completedFuture(existing)
+                                : sendReusedMedia(existing, chatId, senderId, text, type);
+                    }
+                    if (chatId == null) {
+                        return queue.enqueue(mediaUri, kind, originalFilename, totalBytes, contentKey);
+                    }
+                    return localMediaData(videoMetadata).thenComposeAsync(localMediaData ->
+                            queue.enqueueMessage(uploadTaskId, mediaUri, kind, originalFilename, totalBytes, contentKey,
+                                    chatId, senderId, text, type, localMediaData), AppExecutors.getInstance().io());
+                }, AppExecutors.getInstance().io());
+    }
 
-                        @Override
-                        public void onReschedule(String requestId, ErrorInfo error) {
-                            Log.w(TAG, "Audio upload rescheduled - requestId: " + (requestId != null ? requestId : "null") + ", error: " + (error != null ? error.getDescription() : "null"));
-                        }
-                    })
-                    .dispatch();
-                    
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing audio", e);
-            future.completeExceptionally(e);
+    // Local video metadata plus the uploaded poster's URL; a failed poster upload only costs the thumbnail
+    private CompletableFuture<Map<String, Object>> localMediaData(VideoMetadataExtractor.Result videoMetadata) {
+        if (videoMetadata == null) {
+            return CompletableFuture.completedFuture(null);
         }
-        
-        return future;
+        Map<String, Object> mediaData = videoMetadata.toMediaData();
+        if (videoMetadata.posterFile == null || !videoMetadata.posterFile.exists()) {
+            return CompletableFuture.completedFuture(mediaData);
+        }
+        return uploadImageFile(videoMetadata.posterFile, "chat_video_posters")
+                .handle((posterUrl, error) -> {
+                    if (error != null) {
+                        Log.w(TAG, "Poster upload failed, relying on the server thumbnail", error);
+                    } else {
+                        mediaData.put("thumbnailUrl", posterUrl);
+                    }
+                    return mediaData;
+                });
     }
 
-    public CompletableFuture<Map<String, Object>> uploadChatDocument(Uri documentUri, Context context) {
+    private CompletableFuture<Map<String, Object>> sendReusedMedia(Map<String, Object> mediaData, String chatId,
+                                                                   String senderId, String text, String type) {
         CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
-        
-        try {
-            // Get original filename and preserve extension
-            String originalFilename = getFileName(context, documentUri);
-            String extension = getFileExtension(originalFilename);
-            String filename = "doc_" + System.currentTimeMillis();
-            
-            Log.d(TAG, "Document upload - Original filename: " + originalFilename);
-            Log.d(TAG, "Document upload - Extracted extension: " + extension);
-            
-            // Preserve the original extension if available
-            if (extension != null && !extension.isEmpty()) {
-                filename += "." + extension;
-            }
-            
-            Log.d(TAG, "Document upload - Final filename: " + filename);
-            
-            // Create a final reference to avoid potential null pointer issues
-            final CompletableFuture<Map<String, Object>> finalFuture = future;
-            final String finalOriginalFilename = originalFilename; // Store for callback
-            final String finalExtension = extension; // Store extension for callback
-            
-            MediaManager.get().upload(documentUri)
-                    .unsigned("pingme_upload_preset")
-                    .option("public_id", "chat_documents/" + filename)
-                    .option("resource_type", "raw")
-                    .callback(new UploadCallback() {
-                        @Override
-                        public void onStart(String requestId) {
-                            Log.d(TAG, "Document upload started: " + (requestId != null ? requestId : "null"));
-                        }
-
-                        @Override
-                        public void onProgress(String requestId, long bytes, long totalBytes) {
-                            double progress = (double) bytes / totalBytes * 100;
-                            Log.d(TAG, "Document upload progress: " + String.format("%.1f%%", progress));
-                        }
-
-                        @Override
-                        public void onSuccess(String requestId, Map resultData) {
-                            Log.d(TAG, "Document upload successful - requestId: " + (requestId != null ? requestId : "null") + ", resultData: " + resultData);
-                            
-                            try {
-                                // Check if resultData is null
-                                if (resultData == null) {
-                                    Log.e(TAG, "Document upload resultData is null");
-                                    if (!finalFuture.isDone()) {
-                                        finalFuture.completeExceptionally(new Exception("Document upload completed but result data is null"));
-                                    }
-                                    return;
-                                }
-                                
-                                // Create a HashMap to handle null values safely
-                                Map<String, Object> result = new HashMap<>();
-                                
-                                // Get secure_url, fallback to url if secure_url is null
-                                Object fileUrl = resultData.get("secure_url");
-                                if (fileUrl == null) {
-                                    fileUrl = resultData.get("url");
-                                }
-                                
-                                // Only add fileUrl if it's not null
-                                if (fileUrl != null) {
-                                    result.put("fileUrl", fileUrl.toString());
-                                }
-                                
-                                // Get fileName, fallback to our stored original filename
-                                Object fileName = resultData.get("original_filename");
-                                if (fileName != null) {
-                                    result.put("fileName", fileName.toString());
-                                } else if (finalOriginalFilename != null) {
-                                    // Fallback to the filename we extracted locally
-                                    result.put("fileName", finalOriginalFilename);
-                                } else {
-                                    // Last fallback to generic name with extension
-                                    String fallbackName = "document";
-                                    if (finalExtension != null && !finalExtension.isEmpty()) {
-                                        fallbackName += "." + finalExtension;
-                                    }
-                                    result.put("fileName", fallbackName);
-                                }
-                                
-                                // Get fileSize, only add if not null
-                                Object fileSize = resultData.get("bytes");
-                                if (fileSize != null) {
-                                    try {
-                                        // Convert fileSize to long
-                                        long fileSizeBytes = Long.parseLong(fileSize.toString());
-                                        result.put("fileSize", fileSizeBytes);
-                                    } catch (NumberFormatException e) {
-                                        Log.w(TAG, "Could not parse file size: " + fileSize, e);
-                                        // Store as 0 if parsing fails
-                                        result.put("fileSize", 0L);
-                                    }
-                                }
-                                
-                                // Ensure we have at least a file URL before completing
-                                if (!result.containsKey("fileUrl") || result.get("fileUrl") == null) {
-                                    Log.e(TAG, "File URL is null, completing with error");
-                                    if (!finalFuture.isDone()) {
-                                        finalFuture.completeExceptionally(new Exception("Document upload completed but no URL received"));
-                                    }
-                                } else {
-                                    if (!finalFuture.isDone()) {
-                                        // Create a new HashMap to ensure thread safety
-                                        Map<String, Object> finalResult = new HashMap<>(result);
-                                        finalFuture.complete(finalResult);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error in document onSuccess callback", e);
-                                if (!finalFuture.isDone()) {
-                                    finalFuture.completeExceptionally(e);
-                                }
-                            }
-                        }
-
-                        @Override
-                        public void onError(String requestId, ErrorInfo error) {
-                            Log.e(TAG, "Document upload failed - requestId: " + (requestId != null ? requestId : "null") + ", error: " + (error != null ? error.getDescription() : "null"));
-                            if (!finalFuture.isDone()) {
-                                finalFuture.completeExceptionally(new Exception("Document upload failed: " + (error != null ? error.getDescription() : "Unknown error")));
-                            }
-                        }
-
-                        @Override
-                        public void onReschedule(String requestId, ErrorInfo error) {
-                            Log.w(TAG, "Document upload rescheduled - requestId: " + (requestId != null ? requestId : "null") + ", error: " + (error != null ? error.getDescription() : "null"));
-                        }
-                    })
-                    .dispatch();
-                    
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing document", e);
-            future.completeExceptionally(e);
-        }
-        
+        FirebaseUtil.sendMessageWithDeliveryTracking(chatId, senderId, text, type, mediaData)
+                .addOnSuccessListener(aVoid -> future.complete(mediaData))
+                .addOnFailureListener(future::completeExceptionally);
         return future;
     }
 
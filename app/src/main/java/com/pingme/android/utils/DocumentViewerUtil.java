@@ -8,11 +8,6 @@ import android.webkit.MimeTypeMap;
 import android.widget.Toast;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.concurrent.CompletableFuture;
 
 public class DocumentViewerUtil {
@@ -71,58 +66,12 @@ public class DocumentViewerUtil {
     }
     
     public CompletableFuture<File> downloadDocument(String documentUrl, String fileName, Context context) {
-        CompletableFuture<File> future = new CompletableFuture<>();
-        
-        new Thread(() -> {
-            try {
-                URL url = new URL(documentUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.connect();
-                
-                if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                    future.completeExceptionally(new IOException("Server returned HTTP " + connection.getResponseCode()));
-                    return;
-                }
-                
-                // Create documents directory
-                File docsDir = new File(context.getCacheDir(), "documents");
-                if (!docsDir.exists()) {
-                    docsDir.mkdirs();
-                }
-                
-                // Use provided filename or generate one
-                String outputFileName = fileName;
-                if (outputFileName == null || outputFileName.isEmpty()) {
-                    outputFileName = "document_" + System.currentTimeMillis();
-                    
-                    // Try to get extension from URL
-                    String extension = getExtensionFromUrl(documentUrl);
-                    if (extension != null) {
-                        outputFileName += "." + extension;
-                    }
-                }
-                
-                File outputFile = new File(docsDir, outputFileName);
-                
-                try (InputStream input = connection.getInputStream();
-                     FileOutputStream output = new FileOutputStream(outputFile)) {
-                    
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = input.read(buffer)) != -1) {
-                        output.write(buffer, 0, bytesRead);
-                    }
-                }
-                
-                future.complete(outputFile);
-                
-            } catch (Exception e) {
-                Log.e(TAG, "Error downloading document", e);
-                future.completeExceptionally(e);
-            }
-        }).start();
-        
-        return future;
+        // Cached files are named by URL hash; keep the extension so the MIME type still resolves
+        String extension = getExtension(fileName);
+        if (extension == null) {
+            extension = getExtensionFromUrl(documentUrl);
+        }
+        return MediaDiskCache.getInstance(context).get(documentUrl, extension);
     }
     
     private void openInBrowser(String url, Context context) {
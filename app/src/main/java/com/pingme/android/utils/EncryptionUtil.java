@@ -3,6 +3,9 @@ package com.pingme.android.utils;
 import android.util.Base64;
 import android.util.Log;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
@@ -10,6 +13,8 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
@@ -17,6 +22,17 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * RSA key exchange and AES-GCM message encryption.
+ *
+ * Ciphers are expensive to look up through the provider list, so each thread
+ * keeps one AES and one RSA {@link Cipher} and re-initialises it per call (every
+ * GCM encryption gets a fresh IV, so a reused cipher never repeats one). All
+ * calls share one {@link SecureRandom}, and keys parsed from their Base64 form
+ * are kept so the same key string goes through {@link KeyFactory} only once.
+ * Unwrapping a chat's AES key is left to {@link ChatKeyStore}, which does the
+ * RSA step once per chat.
+ */
 public class EncryptionUtil {
     private static final String TAG = "EncryptionUtil";
     private static final String ALGORITHM = "RSA";
@@ -26,6 +42,13 @@ public class EncryptionUtil {
     private static final int AES_KEY_SIZE = 256;
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_LENGTH = 16;
+    private static final int MAX_PARSED_KEYS = 16;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> AES_CIPHERS = new ThreadLocal<>();
+    private static final ThreadLocal<Cipher> RSA_CIPHERS = new ThreadLocal<>();
+    private static final Map<String, PublicKey> PUBLIC_KEYS = boundedMap();
+    private static final Map<String, PrivateKey> PRIVATE_KEYS = boundedMap();
 
     /**
      * Generate RSA key pair for user
@@ -33,7 +56,7 @@ public class EncryptionUtil {
     public static KeyPair generateKeyPair() {
         try {
             KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(ALGORITHM);
-            keyPairGenerator.initialize(2048, new SecureRandom());
+            keyPairGenerator.initialize(2048, RANDOM);
             return keyPairGenerator.generateKeyPair();
         } catch (Exception e) {
             Log.e(TAG, "Error generating key pair", e);
@@ -47,7 +70,7 @@ public class EncryptionUtil {
     public static SecretKey generateAESKey() {
         try {
             KeyGenerator keyGenerator = KeyGenerator.getInstance(AES_ALGORITHM);
-            keyGenerator.init(AES_KEY_SIZE);
+            keyGenerator.init(AES_KEY_SIZE, RANDOM);
             return keyGenerator.generateKey();
         } catch (Exception e) {
             Log.e(TAG, "Error generating AES key", e);
@@ -60,18 +83,7 @@ public class EncryptionUtil {
      */
     public static String encryptMessage(String message, SecretKey secretKey) {
         try {
-            Cipher cipher = Cipher.getInstance(AES_TRANSFORMATION);
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            new SecureRandom().nextBytes(iv);
-            
-            GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmParameterSpec);
-            
-            byte[] encryptedData = cipher.doFinal(message.getBytes());
-            byte[] combined = new byte[iv.length + encryptedData.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encryptedData, 0, combined, iv.length, encryptedData.length);
-            
+            byte[] combined = encrypt(message.getBytes(StandardCharsets.UTF_8), secretKey);
             return Base64.encodeToString(combined, Base64.DEFAULT);
         } catch (Exception e) {
             Log.e(TAG, "Error encrypting message", e);
@@ -84,34 +96,55 @@ public class EncryptionUtil {
      */
     public static String decryptMessage(String encryptedMessage, SecretKey secretKey) {
         try {
-            byte[] combined = Base64.decode(encryptedMessage, Base64.DEFAULT);
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            byte[] encryptedData = new byte[combined.length - GCM_IV_LENGTH];
-            
-            System.arraycopy(combined, 0, iv, 0, iv.length);
-            System.arraycopy(combined, iv.length, encryptedData, 0, encryptedData.length);
-            
-            Cipher cipher = Cipher.getInstance(AES_TRANSFORMATION);
-            GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
-            
-            byte[] decryptedData = cipher.doFinal(encryptedData);
-            return new String(decryptedData);
+            byte[] decryptedData = decrypt(Base64.decode(encryptedMessage, Base64.DEFAULT), secretKey);
+            return new String(decryptedData, StandardCharsets.UTF_8);
         } catch (Exception e) {
             Log.e(TAG, "Error decrypting message", e);
             return null;
         }
     }
 
+    /**
+     * AES-GCM encrypts {@code plaintext} under a fresh random IV and returns
+     * IV || ciphertext || tag, the layout {@link #decrypt} reads.
+     */
+    public static byte[] encrypt(byte[] plaintext, SecretKey secretKey) throws GeneralSecurityException {
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        RANDOM.nextBytes(iv);
+
+        Cipher cipher = aesCipher();
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv));
+        byte[] combined = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(iv, 0, combined, 0, GCM_IV_LENGTH);
+        int written = cipher.doFinal(plaintext, 0, plaintext.length, combined, GCM_IV_LENGTH);
+        if (GCM_IV_LENGTH + written != combined.length) {
+            byte[] exact = new byte[GCM_IV_LENGTH + written];
+            System.arraycopy(combined, 0, exact, 0, exact.length);
+            return exact;
+        }
+        return combined;
+    }
+
+    /**
+     * Decrypts IV || ciphertext || tag as written by {@link #encrypt}. Throws if
+     * the data was tampered with or the key is wrong.
+     */
+    public static byte[] decrypt(byte[] combined, SecretKey secretKey) throws GeneralSecurityException {
+        if (combined.length < GCM_IV_LENGTH + GCM_TAG_LENGTH) {
+            throw new GeneralSecurityException("Ciphertext too short: " + combined.length + " bytes");
+        }
+        Cipher cipher = aesCipher();
+        cipher.init(Cipher.DECRYPT_MODE, secretKey,
+                new GCMParameterSpec(GCM_TAG_LENGTH * 8, combined, 0, GCM_IV_LENGTH));
+        return cipher.doFinal(combined, GCM_IV_LENGTH, combined.length - GCM_IV_LENGTH);
+    }
+
     /**
      * Encrypt AES key with RSA public key
      */
     public static String encryptAESKey(SecretKey secretKey, PublicKey publicKey) {
         try {
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-            byte[] encryptedKey = cipher.doFinal(secretKey.getEncoded());
-            return Base64.encodeToString(encryptedKey, Base64.DEFAULT);
+            return Base64.encodeToString(wrapAESKey(secretKey, publicKey), Base64.DEFAULT);
         } catch (Exception e) {
             Log.e(TAG, "Error encrypting AES key", e);
             return null;
@@ -119,20 +152,30 @@ public class EncryptionUtil {
     }
 
     /**
-     * Decrypt AES key with RSA private key
+     * Decrypt AES key with RSA private key. This is a private-key RSA operation;
+     * for chat keys go through {@link ChatKeyStore}, which does it once per chat.
      */
     public static SecretKey decryptAESKey(String encryptedKey, PrivateKey privateKey) {
         try {
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, privateKey);
-            byte[] decryptedKeyBytes = cipher.doFinal(Base64.decode(encryptedKey, Base64.DEFAULT));
-            return new SecretKeySpec(decryptedKeyBytes, AES_ALGORITHM);
+            return unwrapAESKey(Base64.decode(encryptedKey, Base64.DEFAULT), privateKey);
         } catch (Exception e) {
             Log.e(TAG, "Error decrypting AES key", e);
             return null;
         }
     }
 
+    static byte[] wrapAESKey(SecretKey secretKey, PublicKey publicKey) throws GeneralSecurityException {
+        Cipher cipher = rsaCipher();
+        cipher.init(Cipher.ENCRYPT_MODE, publicKey, RANDOM);
+        return cipher.doFinal(secretKey.getEncoded());
+    }
+
+    static SecretKey unwrapAESKey(byte[] encryptedKey, PrivateKey privateKey) throws GeneralSecurityException {
+        Cipher cipher = rsaCipher();
+        cipher.init(Cipher.DECRYPT_MODE, privateKey);
+        return new SecretKeySpec(cipher.doFinal(encryptedKey), AES_ALGORITHM);
+    }
+
     /**
      * Convert public key to string
      */
@@ -151,11 +194,18 @@ public class EncryptionUtil {
      * Convert string to public key
      */
     public static PublicKey stringToPublicKey(String keyString) {
+        if (keyString == null) return null;
+        synchronized (PUBLIC_KEYS) {
+            PublicKey cached = PUBLIC_KEYS.get(keyString);
+            if (cached != null) return cached;
+        }
         try {
             byte[] keyBytes = Base64.decode(keyString, Base64.DEFAULT);
-            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(keyBytes);
-            java.security.KeyFactory keyFactory = java.security.KeyFactory.getInstance(ALGORITHM);
-            return keyFactory.generatePublic(keySpec);
+            PublicKey publicKey = KeyFactory.getInstance(ALGORITHM).generatePublic(new X509EncodedKeySpec(keyBytes));
+            synchronized (PUBLIC_KEYS) {
+                PUBLIC_KEYS.put(keyString, publicKey);
+            }
+            return publicKey;
         } catch (Exception e) {
             Log.e(TAG, "Error converting string to public key", e);
             return null;
@@ -166,11 +216,18 @@ public class EncryptionUtil {
      * Convert string to private key
      */
     public static PrivateKey stringToPrivateKey(String keyString) {
+        if (keyString == null) return null;
+        synchronized (PRIVATE_KEYS) {
+            PrivateKey cached = PRIVATE_KEYS.get(keyString);
+            if (cached != null) return cached;
+        }
         try {
             byte[] keyBytes = Base64.decode(keyString, Base64.DEFAULT);
-            PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(keyBytes);
-            java.security.KeyFactory keyFactory = java.security.KeyFactory.getInstance(ALGORITHM);
-            return keyFactory.generatePrivate(keySpec);
+            PrivateKey privateKey = KeyFactory.getInstance(ALGORITHM).generatePrivate(new PKCS8EncodedKeySpec(keyBytes));
+            synchronized (PRIVATE_KEYS) {
+                PRIVATE_KEYS.put(keyString, privateKey);
+            }
+            return privateKey;
         } catch (Exception e) {
             Log.e(TAG, "Error converting string to private key", e);
             return null;
@@ -181,9 +238,36 @@ public class EncryptionUtil {
      * Generate a secure random string for key exchange
      */
     public static String generateSecureRandomString(int length) {
-        SecureRandom random = new SecureRandom();
         byte[] bytes = new byte[length];
-        random.nextBytes(bytes);
+        RANDOM.nextBytes(bytes);
         return Base64.encodeToString(bytes, Base64.DEFAULT);
     }
-}
\ No newline at end of file
+
+    // Cipher lookups walk the provider list, so each thread keeps its own instance
+    private static Cipher aesCipher() throws GeneralSecurityException {
+        Cipher cipher = AES_CIPHERS.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(AES_TRANSFORMATION);
+            AES_CIPHERS.set(cipher);
+        }
+        return cipher;
+    }
+
+    private static Cipher rsaCipher() throws GeneralSecurityException {
+        Cipher cipher = RSA_CIPHERS.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+            RSA_CIPHERS.set(cipher);
+        }
+        return cipher;
+    }
+
+    private static <V> Map<String, V> boundedMap() {
+        return new LinkedHashMap<String, V>(MAX_PARSED_KEYS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_PARSED_KEYS;
+            }
+        };
+    }
+}
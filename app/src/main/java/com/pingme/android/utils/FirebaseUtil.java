@@ -9,6 +9,7 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 import androidx.annotation.Nullable;
 import com.google.firebase.firestore.CollectionReference;
@@ -21,11 +22,16 @@ import com.pingme.android.models.ChatManagement;
 import com.pingme.android.models.Message;
 import com.pingme.android.models.Status;
 import com.pingme.android.models.User;
+import com.pingme.android.models.MessageCodec;
+import com.pingme.android.models.MessageReceipts;
+import com.pingme.android.models.StatusCodec;
+import com.pingme.android.models.UserCodec;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 public class FirebaseUtil {
     private static final String TAG = "FirebaseUtil";
@@ -36,6 +42,8 @@ public class FirebaseUtil {
     // Realtime Database references for real-time features
     private static final String RT_PRESENCE = "presence";
     private static final String RT_TYPING = "typing";
+    private static final String RT_MESSAGE_RECEIPTS = "message_receipts";
+    private static final String RT_MESSAGE_FLAGS = "message_flags";
 
     // ===== FIRESTORE INSTANCE =====
     
@@ -95,6 +103,16 @@ public class FirebaseUtil {
         return getRealtimeDatabase().child("messages").child(chatId);
     }
 
+    // Delivery/read receipts per message, kept out of the message content; see MessageReceipts
+    public static DatabaseReference getMessageReceiptsRef(String chatId) {
+        return getRealtimeDatabase().child(RT_MESSAGE_RECEIPTS).child(chatId);
+    }
+
+    // One user's deleted-for-me / cleared flags per message in a chat
+    public static DatabaseReference getMessageFlagsRef(String chatId, String userId) {
+        return getRealtimeDatabase().child(RT_MESSAGE_FLAGS).child(chatId).child(userId);
+    }
+
     public static DatabaseReference getBroadcastRef(String broadcastId) {
         return getRealtimeDatabase().child("broadcasts").child(broadcastId);
     }
@@ -160,7 +178,7 @@ public class FirebaseUtil {
                     Log.d(TAG, "Search completed. Found " + querySnapshot.size() + " users");
                     
                     if (!querySnapshot.isEmpty()) {
-                        User user = querySnapshot.getDocuments().get(0).toObject(User.class);
+                        User user = UserCodec.fromDocument(querySnapshot.getDocuments().get(0));
                         if (user != null) {
                             user.setId(querySnapshot.getDocuments().get(0).getId());
                             Log.d(TAG, "User found: " + user.getDisplayName() + " (" + user.getEmail() + ")");
@@ -355,7 +373,7 @@ public class FirebaseUtil {
                     for (String blockedId : blockedUserIds) {
                         getUserRef(blockedId).get()
                                 .addOnSuccessListener(userDoc -> {
-                                    User user = userDoc.toObject(User.class);
+                                    User user = UserCodec.fromDocument(userDoc);
                                     if (user != null) {
                                         blockedUsers.add(user);
                                     }
@@ -436,7 +454,7 @@ public class FirebaseUtil {
                         String otherUserId = userIds[0].equals(senderId) ? userIds[1] : userIds[0];
                         createNewChatInRealtime(chatId, senderId, otherUserId);
                         // Wait a moment then send message
-                        new android.os.Handler().postDelayed(() -> {
+                        AppExecutors.getInstance().postToMainDelayed(() -> {
                             sendMessageToRealtime(chatId, senderId, text, type, mediaData, taskCompletionSource);
                         }, 1000);
                     } else {
@@ -477,65 +495,44 @@ public class FirebaseUtil {
         Log.d(TAG, "Generated message ID: " + messageId);
         Log.d(TAG, "Messages ref path: " + messagesRef.toString());
         
-        Map<String, Object> messageData = new HashMap<>();
-        messageData.put("id", messageId);
-        messageData.put("senderId", senderId);
-        messageData.put("text", text);
-        messageData.put("type", type != null ? type : "text");
-        messageData.put("timestamp", System.currentTimeMillis());
-        messageData.put("status", Message.STATUS_SENT); // Start with sent status
-        
-        // Add delivery tracking
-        messageData.put("deliveredTo", new HashMap<String, Long>());
-        messageData.put("readBy", new HashMap<String, Long>());
-        
+        // Callers describe media with Message field names; the node is written in the
+        // v2 schema plus the legacy keys older clients read, receipts go to message_receipts
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("senderId", senderId);
+        fields.put("text", text);
+        fields.put("type", type != null ? type : "text");
+        fields.put("timestamp", System.currentTimeMillis());
         if (mediaData != null) {
-            messageData.putAll(mediaData);
+            fields.putAll(mediaData);
         }
+        Map<String, Object> messageData = MessageCodec.toTransitionMap(MessageCodec.fromMap(fields));
         
         Log.d(TAG, "Message data: " + messageData.toString());
         
-        // Add message to chat
-        messagesRef.child(messageId).setValue(messageData)
+        // Message, chat summary and the receiver's unread counter in one atomic write
+        long now = System.currentTimeMillis();
+        String chatPath = "chats/" + chatId + "/";
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("messages/" + chatId + "/" + messageId, messageData);
+        updates.put(chatPath + "lastMessage", text);
+        updates.put(chatPath + "lastMessageTimestamp", now);
+        updates.put(chatPath + "lastMessageSenderId", senderId);
+        updates.put(chatPath + "lastMessageType", type != null ? type : "text");
+        updates.put(chatPath + "lastMessageId", messageId);
+        if (!UnreadCounter.addIncrement(updates, chatId, senderId)) {
+            Log.w(TAG, "No receiver to count unread for in chat " + chatId);
+        }
+
+        getRealtimeDatabase().updateChildren(updates)
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "✅ MESSAGE SENT SUCCESSFULLY: " + messageId);
-                    
-                    // Update chat's last message
-                    Map<String, Object> chatUpdate = new HashMap<>();
-                    chatUpdate.put("lastMessage", text);
-                    chatUpdate.put("lastMessageTimestamp", System.currentTimeMillis());
-                    chatUpdate.put("lastMessageSenderId", senderId);
-                    chatUpdate.put("lastMessageType", type != null ? type : "text");
-                    chatUpdate.put("lastMessageId", messageId);
-                    
-                    Log.d(TAG, "Updating chat with: " + chatUpdate.toString());
-                    
-                    getChatRef(chatId).updateChildren(chatUpdate)
-                            .addOnSuccessListener(aVoid2 -> {
-                                Log.d(TAG, "✅ CHAT UPDATED SUCCESSFULLY");
-                                // Trigger delivery notification to other user
-                                triggerDeliveryNotification(chatId, messageId, senderId);
-                                
-                                // Increment receiver's per-user unread count (WhatsApp-like)
-                                try {
-                                    String[] userIds = chatId.split("_");
-                                    if (userIds.length == 2) {
-                                        String receiverId = userIds[0].equals(senderId) ? userIds[1] : userIds[0];
-                                        incrementUserChatUnreadCount(receiverId, chatId, 1);
-                                    }
-                                } catch (Exception e) {
-                                    Log.w(TAG, "Could not increment user unread count", e);
-                                }
+                    // Trigger delivery notification to other user
+                    triggerDeliveryNotification(chatId, messageId, senderId);
 
-                                // Send push notification to recipient
-                                sendPushNotification(chatId, senderId, text, type);
-                                
-                                taskCompletionSource.setResult(null);
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "❌ FAILED TO UPDATE CHAT: " + e.getMessage(), e);
-                                taskCompletionSource.setException(e);
-                            });
+                    // Send push notification to recipient
+                    sendPushNotification(chatId, senderId, text, type);
+
+                    taskCompletionSource.setResult(null);
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "❌ FAILED TO SEND MESSAGE: " + e.getMessage(), e);
@@ -543,46 +540,6 @@ public class FirebaseUtil {
                 });
     }
 
-    /**
-     * Atomically increment a user's unread count for a chat. Caps at 999.
-     */
-    public static void incrementUserChatUnreadCount(String userId, String chatId, int delta) {
-        if (userId == null || chatId == null) return;
-        DatabaseReference ref = getUserChatsRef(userId).child(chatId).child("unreadCount");
-        ref.runTransaction(new com.google.firebase.database.Transaction.Handler() {
-            @NonNull
-            @Override
-            public com.google.firebase.database.Transaction.Result doTransaction(@NonNull com.google.firebase.database.MutableData currentData) {
-                Integer current = currentData.getValue(Integer.class);
-                int next = (current == null ? 0 : current) + (delta == 0 ? 1 : delta);
-                if (next < 0) next = 0;
-                if (next > 999) next = 999;
-                currentData.setValue(next);
-                return com.google.firebase.database.Transaction.success(currentData);
-            }
-
-            @Override
-            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot currentData) {
-                if (error != null) {
-                    Log.w(TAG, "incrementUserChatUnreadCount failed", error.toException());
-                } else {
-                    Log.d(TAG, "User " + userId + " unreadCount for chat " + chatId + " updated to " + (currentData != null ? currentData.getValue() : "?") );
-                }
-            }
-        });
-    }
-
-    /**
-     * Set a user's unread count for a chat explicitly (e.g., when chat opened).
-     */
-    public static void setUserChatUnreadCount(String userId, String chatId, int count) {
-        if (userId == null || chatId == null) return;
-        int safe = Math.max(0, Math.min(999, count));
-        getUserChatsRef(userId).child(chatId).child("unreadCount").setValue(safe)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Set user unreadCount for " + userId + "/" + chatId + " to " + safe))
-                .addOnFailureListener(e -> Log.e(TAG, "❌ Failed to set user unreadCount", e));
-    }
-
     private static void sendPushNotification(String chatId, String senderId, String messageText, String messageType) {
         // Get the other user ID from chat ID
         String[] userIds = chatId.split("_");
@@ -606,13 +563,13 @@ public class FirebaseUtil {
                 // Get sender's name for notification
                 getUserRef(senderId).get().addOnSuccessListener(senderSnapshot -> {
                     if (senderSnapshot.exists()) {
-                        User sender = senderSnapshot.toObject(User.class);
+                        User sender = UserCodec.fromDocument(senderSnapshot);
                         String senderName = sender != null ? sender.getDisplayName() : "Unknown";
                         
                         // Get receiver's info to check if they should receive notifications
                         getUserRef(receiverId).get().addOnSuccessListener(receiverSnapshot -> {
                             if (receiverSnapshot.exists()) {
-                                User receiver = receiverSnapshot.toObject(User.class);
+                                User receiver = UserCodec.fromDocument(receiverSnapshot);
                                 
                                 // Check if receiver has notifications enabled and has FCM token
                                 if (receiver != null && receiver.isNotificationsEnabled() && receiver.getFcmToken() != null) {
@@ -727,8 +684,9 @@ public class FirebaseUtil {
 
     // Mark the latest message in a chat as delivered to a specific user
     private static void markLatestMessageAsDelivered(String chatId, String receiverId) {
+        // Push keys sort by creation time, in both message schemas
         getMessagesRef(chatId)
-                .orderByChild("timestamp")
+                .orderByKey()
                 .limitToLast(1)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
@@ -736,12 +694,7 @@ public class FirebaseUtil {
                         for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
                             String messageId = messageSnapshot.getKey();
                             if (messageId != null) {
-                                // Update the message delivery status
-                                Map<String, Object> deliveryUpdate = new HashMap<>();
-                                deliveryUpdate.put("deliveredTo/" + receiverId, System.currentTimeMillis());
-                                deliveryUpdate.put("status", Message.STATUS_DELIVERED);
-                                
-                                getMessagesRef(chatId).child(messageId).updateChildren(deliveryUpdate)
+                                writeReceipt(chatId, messageId, receiverId, MessageCodec.RECEIPT_DELIVERED)
                                         .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Latest message marked as delivered: " + messageId))
                                         .addOnFailureListener(e -> Log.e(TAG, "❌ Failed to mark latest message as delivered", e));
                             }
@@ -769,11 +722,7 @@ public class FirebaseUtil {
         
         Log.d(TAG, "Marking specific message as delivered: " + messageId + " for user: " + receiverId);
         
-        Map<String, Object> deliveryUpdate = new HashMap<>();
-        deliveryUpdate.put("deliveredTo/" + receiverId, System.currentTimeMillis());
-        deliveryUpdate.put("status", Message.STATUS_DELIVERED);
-        
-        getMessagesRef(chatId).child(messageId).updateChildren(deliveryUpdate)
+        writeReceipt(chatId, messageId, receiverId, MessageCodec.RECEIPT_DELIVERED)
                 .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Message marked as delivered: " + messageId))
                 .addOnFailureListener(e -> Log.e(TAG, "❌ Failed to mark message as delivered: " + messageId, e));
     }
@@ -806,11 +755,7 @@ public class FirebaseUtil {
                         
                         if (isOnline) {
                             // Recipient is online, mark as delivered immediately
-                            Map<String, Object> deliveryUpdate = new HashMap<>();
-                            deliveryUpdate.put("deliveredTo/" + receiverId, System.currentTimeMillis());
-                            deliveryUpdate.put("status", Message.STATUS_DELIVERED);
-                            
-                            getMessagesRef(chatId).child(messageId).updateChildren(deliveryUpdate)
+                            writeReceipt(chatId, messageId, receiverId, MessageCodec.RECEIPT_DELIVERED)
                                     .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ DELIVERY NOTIFICATION SENT (recipient online): " + messageId))
                                     .addOnFailureListener(e -> Log.e(TAG, "❌ FAILED TO SEND DELIVERY NOTIFICATION", e));
                         } else {
@@ -830,26 +775,24 @@ public class FirebaseUtil {
     }
 
     public static void editMessage(String chatId, String messageId, String newText) {
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("text", newText);
-        updates.put("isEdited", true);
-        updates.put("editTimestamp", System.currentTimeMillis());
-        
-        getMessagesRef(chatId).child(messageId).updateChildren(updates);
+        getMessagesRef(chatId).child(messageId)
+                .updateChildren(MessageCodec.editUpdates(newText, System.currentTimeMillis()));
     }
 
     public static void deleteMessageForUser(String chatId, String messageId, String userId) {
-        getMessagesRef(chatId).child(messageId).child("deletedFor").child(userId).setValue(true);
+        getMessageFlagsRef(chatId, userId).child(messageId).child(MessageCodec.FLAG_DELETED)
+                .setValue(System.currentTimeMillis());
     }
 
     public static void deleteMessageForEveryone(String chatId, String messageId, String userId) {
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("text", "This message was deleted");
-        updates.put("isDeleted", true);
-        updates.put("deletedBy", userId);
-        updates.put("deletedAt", System.currentTimeMillis());
-        
-        getMessagesRef(chatId).child(messageId).updateChildren(updates);
+        getMessagesRef(chatId).child(messageId)
+                .updateChildren(MessageCodec.deleteForEveryoneUpdates(userId, System.currentTimeMillis()));
+    }
+
+    // Receipts only ever add entries, so concurrent writers never conflict
+    private static com.google.android.gms.tasks.Task<Void> writeReceipt(String chatId, String messageId, String userId, String kind) {
+        return getMessageReceiptsRef(chatId).child(messageId).child(kind).child(userId)
+                .setValue(System.currentTimeMillis());
     }
 
     // Enhanced method to mark messages as read (respects privacy settings)
@@ -859,50 +802,42 @@ public class FirebaseUtil {
         // First check if user has read receipts enabled
         getUserRef(userId).get().addOnSuccessListener(userSnapshot -> {
             if (userSnapshot.exists()) {
-                User user = userSnapshot.toObject(User.class);
+                User user = UserCodec.fromDocument(userSnapshot);
                 boolean readReceiptsEnabled = user != null && user.isReadReceiptsEnabled();
                 
-                getMessagesRef(chatId).orderByChild("senderId")
-                        .addListenerForSingleValueEvent(new ValueEventListener() {
-                            @Override
-                            public void onDataChange(DataSnapshot dataSnapshot) {
-                                Map<String, Object> updates = new HashMap<>();
-                                boolean hasUpdates = false;
-                                
-                                for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                                    String senderId = messageSnapshot.child("senderId").getValue(String.class);
-                                    
-                                    // Only mark messages if they're from other users
-                                    if (senderId != null && !userId.equals(senderId)) {
-                                        String messageId = messageSnapshot.getKey();
-                                        if (messageId != null) {
-                                            if (readReceiptsEnabled) {
-                                                // Mark as read (blue tick) - user can see read status
-                                                updates.put(messageId + "/readBy/" + userId, System.currentTimeMillis());
-                                                updates.put(messageId + "/status", Message.STATUS_READ);
-                                            } else {
-                                                // Only mark as delivered (double tick) - user can't see read status
-                                                updates.put(messageId + "/deliveredTo/" + userId, System.currentTimeMillis());
-                                                updates.put(messageId + "/status", Message.STATUS_DELIVERED);
-                                            }
-                                            hasUpdates = true;
-                                            Log.d(TAG, "Marking message " + messageId + " as " + (readReceiptsEnabled ? "read" : "delivered"));
-                                        }
-                                    }
-                                }
-                                
-                                if (hasUpdates) {
-                                    getMessagesRef(chatId).updateChildren(updates)
-                                            .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ MESSAGES MARKED AS " + (readReceiptsEnabled ? "READ" : "DELIVERED")))
-                                            .addOnFailureListener(e -> Log.e(TAG, "❌ FAILED TO MARK MESSAGES", e));
+                String kind = readReceiptsEnabled ? MessageCodec.RECEIPT_READ : MessageCodec.RECEIPT_DELIVERED;
+                
+                loadMessagesWithReceipts(chatId, 0, new MessagesCallback() {
+                    @Override
+                    public void onMessagesLoaded(List<Message> messages) {
+                        AppExecutors.getInstance().serial("messages:" + chatId).execute(() -> {
+                            Map<String, Object> updates = new HashMap<>();
+                            long now = System.currentTimeMillis();
+                            
+                            for (Message message : messages) {
+                                // Only mark messages from other users that do not already carry this receipt
+                                if (message.getSenderId() == null || userId.equals(message.getSenderId())) continue;
+                                boolean alreadyMarked = readReceiptsEnabled
+                                        ? message.isReadBy(userId) : message.isDeliveredTo(userId);
+                                if (!alreadyMarked) {
+                                    updates.put(message.getId() + "/" + kind + "/" + userId, now);
                                 }
                             }
-
-                            @Override
-                            public void onCancelled(DatabaseError databaseError) {
-                                Log.e(TAG, "Failed to mark messages", databaseError.toException());
+                            
+                            if (!updates.isEmpty()) {
+                                Log.d(TAG, "Marking " + updates.size() + " messages as " + (readReceiptsEnabled ? "read" : "delivered"));
+                                getMessageReceiptsRef(chatId).updateChildren(updates)
+                                        .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ MESSAGES MARKED AS " + (readReceiptsEnabled ? "READ" : "DELIVERED")))
+                                        .addOnFailureListener(e -> Log.e(TAG, "❌ FAILED TO MARK MESSAGES", e));
                             }
                         });
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        Log.e(TAG, "Failed to mark messages: " + error);
+                    }
+                });
             }
         }).addOnFailureListener(e -> {
             Log.e(TAG, "Failed to check user read receipts setting", e);
@@ -914,28 +849,21 @@ public class FirebaseUtil {
         // First get the message to find the sender
         getMessagesRef(chatId).child(messageId).get().addOnSuccessListener(messageSnapshot -> {
             if (messageSnapshot.exists()) {
-                String senderId = messageSnapshot.child("senderId").getValue(String.class);
+                Message message = MessageCodec.fromSnapshot(messageSnapshot);
+                String senderId = message != null ? message.getSenderId() : null;
                 if (senderId != null) {
                     // Check if RECEIVER has read receipts enabled (receiver controls if they can see read status)
                     getUserRef(userId).get().addOnSuccessListener(receiverSnapshot -> {
                         if (receiverSnapshot.exists()) {
-                            User receiver = receiverSnapshot.toObject(User.class);
+                            User receiver = UserCodec.fromDocument(receiverSnapshot);
                             if (receiver != null && receiver.isReadReceiptsEnabled()) {
                                 // Receiver allows read receipts, mark as read
-                                Map<String, Object> updates = new HashMap<>();
-                                updates.put("readBy/" + userId, System.currentTimeMillis());
-                                updates.put("status", Message.STATUS_READ);
-                                
-                                getMessagesRef(chatId).child(messageId).updateChildren(updates)
+                                writeReceipt(chatId, messageId, userId, MessageCodec.RECEIPT_READ)
                                         .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ MESSAGE MARKED AS READ: " + messageId))
                                         .addOnFailureListener(e -> Log.e(TAG, "❌ FAILED TO MARK MESSAGE AS READ", e));
                             } else {
                                 // Receiver has read receipts disabled, only mark as delivered
-                                Map<String, Object> updates = new HashMap<>();
-                                updates.put("deliveredTo/" + userId, System.currentTimeMillis());
-                                updates.put("status", Message.STATUS_DELIVERED);
-                                
-                                getMessagesRef(chatId).child(messageId).updateChildren(updates)
+                                writeReceipt(chatId, messageId, userId, MessageCodec.RECEIPT_DELIVERED)
                                         .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ MESSAGE MARKED AS DELIVERED: " + messageId))
                                         .addOnFailureListener(e -> Log.e(TAG, "❌ FAILED TO MARK MESSAGE AS DELIVERED", e));
                             }
@@ -943,11 +871,7 @@ public class FirebaseUtil {
                     }).addOnFailureListener(e -> {
                         Log.e(TAG, "Failed to get receiver info for read receipts", e);
                         // Fallback: mark as delivered (safer default)
-                        Map<String, Object> updates = new HashMap<>();
-                        updates.put("deliveredTo/" + userId, System.currentTimeMillis());
-                        updates.put("status", Message.STATUS_DELIVERED);
-                        
-                        getMessagesRef(chatId).child(messageId).updateChildren(updates);
+                        writeReceipt(chatId, messageId, userId, MessageCodec.RECEIPT_DELIVERED);
                     });
                 }
             }
@@ -958,26 +882,103 @@ public class FirebaseUtil {
 
     // New method to mark a specific message as delivered
     public static void markMessageAsDelivered(String chatId, String messageId, String userId) {
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("deliveredTo/" + userId, System.currentTimeMillis());
-        updates.put("status", Message.STATUS_DELIVERED);
-        
-        getMessagesRef(chatId).child(messageId).updateChildren(updates)
+        writeReceipt(chatId, messageId, userId, MessageCodec.RECEIPT_DELIVERED)
                 .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ MESSAGE MARKED AS DELIVERED: " + messageId))
                 .addOnFailureListener(e -> Log.e(TAG, "❌ FAILED TO MARK MESSAGE AS DELIVERED", e));
     }
 
-    // Enhanced method to update message status
-    public static void updateMessageStatus(String chatId, String messageId, int status) {
-        getMessagesRef(chatId).child(messageId).child("status").setValue(status)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ MESSAGE STATUS UPDATED: " + status))
-                .addOnFailureListener(e -> Log.e(TAG, "❌ FAILED TO UPDATE MESSAGE STATUS", e));
-    }
-
     public static void clearChatHistory(String chatId) {
         getMessagesRef(chatId).removeValue()
                 .addOnSuccessListener(aVoid -> Log.d(TAG, "Chat history cleared: " + chatId))
                 .addOnFailureListener(e -> Log.e(TAG, "Failed to clear chat history: " + chatId, e));
+        getMessageReceiptsRef(chatId).removeValue();
+        getRealtimeDatabase().child(RT_MESSAGE_FLAGS).child(chatId).removeValue();
+    }
+
+    /**
+     * Loads the newest {@code limit} messages of a chat (all of them if {@code limit} is 0)
+     * with their message_receipts merged in, oldest first. Decoding runs on the chat's
+     * serial worker; the callback runs on the main thread.
+     */
+    public static void loadMessagesWithReceipts(String chatId, int limit, MessagesCallback callback) {
+        // Push keys sort by creation time, in both message schemas
+        Query query = getMessagesRef(chatId).orderByKey();
+        if (limit > 0) {
+            query = query.limitToLast(limit);
+        }
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot messagesSnapshot) {
+                if (!messagesSnapshot.hasChildren()) {
+                    callback.onMessagesLoaded(new ArrayList<>());
+                    return;
+                }
+                // Receipts are keyed by message id, so the same key range covers them
+                String firstKey = messagesSnapshot.getChildren().iterator().next().getKey();
+                getMessageReceiptsRef(chatId).orderByKey().startAt(firstKey)
+                        .addListenerForSingleValueEvent(new ValueEventListener() {
+                            @Override
+                            public void onDataChange(@NonNull DataSnapshot receiptsSnapshot) {
+                                AppExecutors.getInstance().serial("messages:" + chatId).execute(() -> {
+                                    List<Message> messages = new ArrayList<>();
+                                    for (DataSnapshot messageSnapshot : messagesSnapshot.getChildren()) {
+                                        Message message = MessageCodec.fromSnapshot(messageSnapshot);
+                                        if (message == null) continue;
+                                        MessageCodec.applyReceipts(message,
+                                                MessageReceipts.fromSnapshot(receiptsSnapshot.child(message.getId())));
+                                        messages.add(message);
+                                    }
+                                    AppExecutors.getInstance().postToMain(() -> callback.onMessagesLoaded(messages));
+                                });
+                            }
+
+                            @Override
+                            public void onCancelled(@NonNull DatabaseError databaseError) {
+                                Log.e(TAG, "Failed to load receipts for chat " + chatId, databaseError.toException());
+                                callback.onError(databaseError.getMessage());
+                            }
+                        });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.e(TAG, "Failed to load messages for chat " + chatId, databaseError.toException());
+                callback.onError(databaseError.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Loads one message with its receipts merged in; the message is null if it does not exist.
+     */
+    public static void loadMessageWithReceipts(String chatId, String messageId, MessageCallback callback) {
+        getMessagesRef(chatId).child(messageId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot messageSnapshot) {
+                Message message = MessageCodec.fromSnapshot(messageSnapshot);
+                if (message == null) {
+                    callback.onMessageLoaded(null);
+                    return;
+                }
+                getMessageReceiptsRef(chatId).child(messageId).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot receiptsSnapshot) {
+                        MessageCodec.applyReceipts(message, MessageReceipts.fromSnapshot(receiptsSnapshot));
+                        callback.onMessageLoaded(message);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        callback.onError(databaseError.getMessage());
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                callback.onError(databaseError.getMessage());
+            }
+        });
     }
 
     // ===== PRESENCE & TYPING =====
@@ -1023,51 +1024,37 @@ public class FirebaseUtil {
                     String chatId = chatSnapshot.getKey();
                     if (chatId != null) {
                         // Check messages in this chat that are sent but not delivered to this user
-                        getMessagesRef(chatId).orderByChild("timestamp")
-                                .addListenerForSingleValueEvent(new ValueEventListener() {
-                                    @Override
-                                    public void onDataChange(DataSnapshot messagesSnapshot) {
-                                        Map<String, Object> batchUpdates = new HashMap<>();
-                                        int pendingCount = 0;
-                                        
-                                        for (DataSnapshot messageSnapshot : messagesSnapshot.getChildren()) {
-                                            String messageId = messageSnapshot.getKey();
-                                            String senderId = messageSnapshot.child("senderId").getValue(String.class);
-                                            Integer status = messageSnapshot.child("status").getValue(Integer.class);
-                                            
-                                            // Only process messages:
-                                            // 1. That have a valid message ID and sender
-                                            // 2. That were not sent by this user (only mark received messages as delivered)
-                                            // 3. That are currently in SENT status (not already delivered/read)
-                                            // 4. That haven't been delivered to this user yet
-                                            if (messageId != null && senderId != null && !senderId.equals(userId) &&
-                                                status != null && status == Message.STATUS_SENT) {
-                                                
-                                                DataSnapshot deliveredToSnapshot = messageSnapshot.child("deliveredTo").child(userId);
-                                                if (!deliveredToSnapshot.exists()) {
-                                                    // This message is pending delivery - mark as delivered
-                                                    batchUpdates.put(messageId + "/deliveredTo/" + userId, System.currentTimeMillis());
-                                                    batchUpdates.put(messageId + "/status", Message.STATUS_DELIVERED);
-                                                    pendingCount++;
-                                                    Log.d(TAG, "Marking message " + messageId + " as delivered for user " + userId);
-                                                }
-                                            }
-                                        }
-                                        
-                                        // Apply all updates in a single batch operation for efficiency
-                                        if (!batchUpdates.isEmpty()) {
-                                            int finalPendingCount = pendingCount;
-                                            getMessagesRef(chatId).updateChildren(batchUpdates)
-                                                    .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Marked " + finalPendingCount + " pending messages as delivered in chat " + chatId))
-                                                    .addOnFailureListener(e -> Log.e(TAG, "❌ Failed to mark pending messages as delivered in chat " + chatId, e));
+                        loadMessagesWithReceipts(chatId, 0, new MessagesCallback() {
+                            @Override
+                            public void onMessagesLoaded(List<Message> messages) {
+                                AppExecutors.getInstance().serial("messages:" + chatId).execute(() -> {
+                                    Map<String, Object> batchUpdates = new HashMap<>();
+                                    long now = System.currentTimeMillis();
+                                
+                                    for (Message message : messages) {
+                                        String senderId = message.getSenderId();
+                                        // Only received messages that this user has neither received nor read yet
+                                        if (senderId != null && !senderId.equals(userId)
+                                                && !message.isDeliveredTo(userId) && !message.isReadBy(userId)) {
+                                            batchUpdates.put(message.getId() + "/" + MessageCodec.RECEIPT_DELIVERED + "/" + userId, now);
                                         }
                                     }
-
-                                    @Override
-                                    public void onCancelled(DatabaseError databaseError) {
-                                        Log.e(TAG, "Failed to check pending messages in chat " + chatId, databaseError.toException());
+                                
+                                    // Apply all updates in a single batch operation for efficiency
+                                    if (!batchUpdates.isEmpty()) {
+                                        int pendingCount = batchUpdates.size();
+                                        getMessageReceiptsRef(chatId).updateChildren(batchUpdates)
+                                                .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Marked " + pendingCount + " pending messages as delivered in chat " + chatId))
+                                                .addOnFailureListener(e -> Log.e(TAG, "❌ Failed to mark pending messages as delivered in chat " + chatId, e));
                                     }
                                 });
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                Log.e(TAG, "Failed to check pending messages in chat " + chatId + ": " + error);
+                            }
+                        });
                     }
                 }
             }
@@ -1123,14 +1110,16 @@ public class FirebaseUtil {
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
-                        List<Broadcast> broadcasts = new ArrayList<>();
-                        for (DataSnapshot broadcastSnapshot : dataSnapshot.getChildren()) {
-                            Broadcast broadcast = broadcastSnapshot.getValue(Broadcast.class);
-                            if (broadcast != null) {
-                                broadcasts.add(broadcast);
+                        AppExecutors.getInstance().cpu().execute(() -> {
+                            List<Broadcast> broadcasts = new ArrayList<>();
+                            for (DataSnapshot broadcastSnapshot : dataSnapshot.getChildren()) {
+                                Broadcast broadcast = broadcastSnapshot.getValue(Broadcast.class);
+                                if (broadcast != null) {
+                                    broadcasts.add(broadcast);
+                                }
                             }
-                        }
-                        callback.onBroadcastsLoaded(broadcasts);
+                            AppExecutors.getInstance().postToMain(() -> callback.onBroadcastsLoaded(broadcasts));
+                        });
                     }
 
                     @Override
@@ -1160,18 +1149,20 @@ public class FirebaseUtil {
         }
         
         Log.d(TAG, "Starting notification listener for user: " + userId);
+        Executor notificationExecutor = AppExecutors.getInstance().serial("notifications:" + userId);
         
         getRealtimeDatabase().child("notifications").child(userId)
             .addChildEventListener(new com.google.firebase.database.ChildEventListener() {
                 @Override
                 public void onChildAdded(@NonNull com.google.firebase.database.DataSnapshot snapshot, String previousChildName) {
-                    handleQueuedNotification(snapshot, userId);
+                    // Parsing and showing the notification do not need the main thread
+                    notificationExecutor.execute(() -> handleQueuedNotification(snapshot, userId));
                 }
 
                 @Override
                 public void onChildChanged(@NonNull com.google.firebase.database.DataSnapshot snapshot, String previousChildName) {
                     // Handle notification updates if needed
-                    handleQueuedNotification(snapshot, userId);
+                    notificationExecutor.execute(() -> handleQueuedNotification(snapshot, userId));
                 }
 
                 @Override
@@ -1416,34 +1407,15 @@ public class FirebaseUtil {
     }
 
     private static void searchMessagesInChat(String chatId, String query, List<SearchResult> results) {
-        getMessagesRef(chatId).orderByChild("timestamp")
+        getMessagesRef(chatId).orderByKey()
                 .limitToLast(100) // Limit to recent messages for performance
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
                         for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            Object messageObj = snapshot.getValue();
-                            if (messageObj instanceof Map) {
-                                @SuppressWarnings("unchecked")
-                                Map<String, Object> messageData = (Map<String, Object>) messageObj;
-                                String text = (String) messageData.get("text");
-                                String fileName = (String) messageData.get("fileName");
-                                
-                                if ((text != null && text.toLowerCase().contains(query)) ||
-                                    (fileName != null && fileName.toLowerCase().contains(query))) {
-                                    
-                                    // Create a simple message object for search results
-                                    Message message = new Message();
-                                    message.setId(snapshot.getKey());
-                                    message.setText(text != null ? text : "");
-                                    message.setFileName(fileName);
-                                    Object timestamp = messageData.get("timestamp");
-                                    if (timestamp instanceof Long) {
-                                        message.setTimestamp((Long) timestamp);
-                                    }
-                                    
-                                    results.add(new SearchResult(chatId, message));
-                                }
+                            Message message = MessageCodec.fromSnapshot(snapshot);
+                            if (message != null && matchesSearch(message, query)) {
+                                results.add(new SearchResult(chatId, message));
                             }
                         }
                     }
@@ -1456,7 +1428,7 @@ public class FirebaseUtil {
     }
 
     private static void searchMessagesInChatEnhanced(String chatId, String query, List<SearchResult> results, String currentUserId, Runnable onComplete) {
-        getMessagesRef(chatId).orderByChild("timestamp")
+        getMessagesRef(chatId).orderByKey()
                 .limitToLast(200) // Increased limit for better search coverage
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
@@ -1464,32 +1436,9 @@ public class FirebaseUtil {
                         List<SearchResult> tempResults = new ArrayList<>();
                         
                         for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            Object messageObj = snapshot.getValue();
-                            if (messageObj instanceof Map) {
-                                @SuppressWarnings("unchecked")
-                                Map<String, Object> messageData = (Map<String, Object>) messageObj;
-                                String text = (String) messageData.get("text");
-                                String fileName = (String) messageData.get("fileName");
-                                String senderId = (String) messageData.get("senderId");
-                                
-                                if ((text != null && text.toLowerCase().contains(query)) ||
-                                    (fileName != null && fileName.toLowerCase().contains(query))) {
-                                    
-                                    // Create a message object for search results
-                                    Message message = new Message();
-                                    message.setId(snapshot.getKey());
-                                    message.setText(text != null ? text : "");
-                                    message.setFileName(fileName);
-                                    message.setSenderId(senderId);
-                                    
-                                    Object timestamp = messageData.get("timestamp");
-                                    if (timestamp instanceof Long) {
-                                        message.setTimestamp((Long) timestamp);
-                                    }
-                                    
-                                    SearchResult result = new SearchResult(chatId, message);
-                                    tempResults.add(result);
-                                }
+                            Message message = MessageCodec.fromSnapshot(snapshot);
+                            if (message != null && matchesSearch(message, query)) {
+                                tempResults.add(new SearchResult(chatId, message));
                             }
                         }
                         
@@ -1511,6 +1460,12 @@ public class FirebaseUtil {
                 });
     }
 
+    private static boolean matchesSearch(Message message, String query) {
+        String fileName = message.getFileName();
+        return message.getText().toLowerCase().contains(query)
+                || (fileName != null && fileName.toLowerCase().contains(query));
+    }
+
     private static void loadSearchResultsInfo(List<SearchResult> results, String currentUserId, Runnable onComplete) {
         if (results.isEmpty()) {
             onComplete.run();
@@ -1554,7 +1509,7 @@ public class FirebaseUtil {
                 // First load user information
                 getUserRef(senderId).get().addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
+                        User user = UserCodec.fromDocument(documentSnapshot);
                         if (user != null) {
                             // Check privacy settings for profile photo - current user should always see their avatar
                             boolean isCurrentUser = senderId.equals(currentUserId);
@@ -1649,7 +1604,7 @@ public class FirebaseUtil {
                 // First load user information
                 getUserRef(senderId).get().addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
+                        User user = UserCodec.fromDocument(documentSnapshot);
                         if (user != null) {
                             // Check privacy settings for profile photo - current user should always see their avatar
                             boolean isCurrentUser = senderId.equals(currentUserId);
@@ -1832,6 +1787,16 @@ public class FirebaseUtil {
         void onError(String error);
     }
 
+    public interface MessagesCallback {
+        void onMessagesLoaded(List<Message> messages);
+        void onError(String error);
+    }
+
+    public interface MessageCallback {
+        void onMessageLoaded(@Nullable Message message);
+        void onError(String error);
+    }
+
     public interface SearchCallback {
         void onSearchComplete(List<SearchResult> results);
         void onError(String error);
@@ -1908,7 +1873,7 @@ public class FirebaseUtil {
                 .get()
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        Status status = documentSnapshot.toObject(Status.class);
+                        Status status = StatusCodec.fromDocument(documentSnapshot);
                         if (status != null && status.getUserId().equals(userId)) {
                             // User can only delete their own status
                             documentSnapshot.getReference().delete()
@@ -1949,14 +1914,14 @@ public class FirebaseUtil {
                 // Get friend's user info
                 getUserRef(friendId).get().addOnSuccessListener(userSnapshot -> {
                     if (userSnapshot.exists()) {
-                        User friend = userSnapshot.toObject(User.class);
+                        User friend = UserCodec.fromDocument(userSnapshot);
                         
                         // Check if friend has notifications enabled
                         if (friend != null && friend.isNotificationsEnabled()) {
                             // Get current user's name
                             getUserRef(userId).get().addOnSuccessListener(currentUserSnapshot -> {
                                 if (currentUserSnapshot.exists()) {
-                                    User currentUser = currentUserSnapshot.toObject(User.class);
+                                    User currentUser = UserCodec.fromDocument(currentUserSnapshot);
                                     String userName = currentUser != null ? currentUser.getDisplayName() : "Unknown";
                                     
                                     // Show status notification
@@ -2031,13 +1996,13 @@ public class FirebaseUtil {
         // Get sender's name
         getUserRef(senderId).get().addOnSuccessListener(senderSnapshot -> {
             if (senderSnapshot.exists()) {
-                User sender = senderSnapshot.toObject(User.class);
+                User sender = UserCodec.fromDocument(senderSnapshot);
                 String senderName = sender != null ? sender.getDisplayName() : "Unknown";
                 
                 // Get receiver's info
                 getUserRef(receiverId).get().addOnSuccessListener(receiverSnapshot -> {
                     if (receiverSnapshot.exists()) {
-                        User receiver = receiverSnapshot.toObject(User.class);
+                        User receiver = UserCodec.fromDocument(receiverSnapshot);
                         
                         // Check if receiver has notifications enabled
                         if (receiver != null && receiver.isNotificationsEnabled()) {
@@ -2083,19 +2048,13 @@ public class FirebaseUtil {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
-                    // Mark all messages as cleared for this user
+                    // Mark all messages as cleared for this user, in one write to the user's flags
+                    Map<String, Object> flagUpdates = new HashMap<>();
+                    long now = System.currentTimeMillis();
                     for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                        Message message = messageSnapshot.getValue(Message.class);
-                        if (message != null) {
-                            message.markAsClearedForUser(userId);
-                            
-                            // Update message in database
-                            getMessagesRef(chatId).child(messageSnapshot.getKey())
-                                    .child("clearedFor")
-                                    .child(userId)
-                                    .setValue(System.currentTimeMillis());
-                        }
+                        flagUpdates.put(messageSnapshot.getKey() + "/" + MessageCodec.FLAG_CLEARED, now);
                     }
+                    getMessageFlagsRef(chatId, userId).updateChildren(flagUpdates);
                     
                     // Update chat management
                     updateChatClearedStatus(chatId, userId);
@@ -2150,19 +2109,13 @@ public class FirebaseUtil {
             @Override
             public void onDataChange(@NonNull DataSnapshot messageSnapshot) {
                 if (messageSnapshot.exists()) {
-                    Message message = messageSnapshot.getValue(Message.class);
+                    Message message = MessageCodec.fromSnapshot(messageSnapshot);
                     if (message != null) {
                         // Store in chat history
                         storeDeletedMessageHistory(chatId, messageId, message, userId, "delete_message");
                         
                         // Mark message as deleted for this user
-                        message.markAsDeletedForUser(userId);
-                        
-                        // Update message in database
-                        getMessagesRef(chatId).child(messageId)
-                                .child("deletedFor")
-                                .child(userId)
-                                .setValue(System.currentTimeMillis());
+                        deleteMessageForUser(chatId, messageId, userId);
                         
                         Log.d(TAG, "Message deleted successfully for user: " + userId);
                     }
@@ -2228,7 +2181,7 @@ public class FirebaseUtil {
             
             // Store all cleared messages
             for (DataSnapshot messageSnapshot : messagesSnapshot.getChildren()) {
-                Message message = messageSnapshot.getValue(Message.class);
+                Message message = MessageCodec.fromSnapshot(messageSnapshot);
                 if (message != null) {
                     ChatHistory.DeletedMessage deletedMessage = 
                         new ChatHistory.DeletedMessage(message, userId, "clear_chat");
@@ -2299,27 +2252,6 @@ public class FirebaseUtil {
         });
     }
 
-    public static void getVisibleMessages(String chatId, String userId, ValueEventListener listener) {
-        getMessagesRef(chatId).addValueEventListener(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                // Filter messages based on user's deletion/clear status
-                for (DataSnapshot messageSnapshot : dataSnapshot.getChildren()) {
-                    Message message = messageSnapshot.getValue(Message.class);
-                    if (message != null && message.isVisibleForUser(userId)) {
-                        // This message is visible for the user
-                        listener.onDataChange(messageSnapshot);
-                    }
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                listener.onCancelled(databaseError);
-            }
-        });
-    }
-
     public static void getActiveChatsForUser(String userId, ValueEventListener listener) {
         getUserChatsRef(userId).addValueEventListener(new ValueEventListener() {
             @Override
@@ -2351,22 +2283,4 @@ public class FirebaseUtil {
             }
         });
     }
-    
-    /**
-     * Update the unread count for a specific chat
-     * @param chatId The ID of the chat to update
-     * @param unreadCount The new unread count
-     */
-    public static void updateChatUnreadCount(String chatId, int unreadCount) {
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("unreadCount", unreadCount);
-        
-        getChatRef(chatId).updateChildren(updates)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "✅ Chat unread count updated successfully for " + chatId + " to " + unreadCount);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "❌ Failed to update chat unread count for " + chatId, e);
-                });
-    }
 }
\ No newline at end of file
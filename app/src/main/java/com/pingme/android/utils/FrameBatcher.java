@@ -0,0 +1,88 @@
+package com.pingme.android.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects items produced on worker threads and hands them to a sink on the
+ * main thread in batches: everything that arrives within one frame is
+ * delivered together, and no batch is larger than {@code maxPerFrame} so a
+ * burst (e.g. the initial load of a long chat) is spread over several frames
+ * instead of stalling one.
+ *
+ * Plain Java so it can be unit tested; the {@link Poster} is the main-thread
+ * handler in the app.
+ */
+class FrameBatcher<T> {
+
+    interface Poster {
+        void postDelayed(Runnable runnable, long delayMillis);
+    }
+
+    private final Poster poster;
+    private final long frameMillis;
+    private final int maxPerFrame;
+    private final Consumer<List<T>> sink;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<T> pending = new ArrayDeque<>();
+    private boolean scheduled;
+    private volatile boolean cancelled;
+
+    FrameBatcher(Poster poster, long frameMillis, int maxPerFrame, Consumer<List<T>> sink) {
+        this.poster = poster;
+        this.frameMillis = frameMillis;
+        this.maxPerFrame = maxPerFrame;
+        this.sink = sink;
+    }
+
+    void offer(T item) {
+        if (cancelled) return;
+        synchronized (lock) {
+            pending.offer(item);
+            if (scheduled) return;
+            scheduled = true;
+        }
+        // Waiting a frame lets items parsed in the meantime join this batch
+        poster.postDelayed(this::flush, frameMillis);
+    }
+
+    /**
+     * Drops pending items; nothing is delivered after this returns on the main thread.
+     */
+    void cancel() {
+        cancelled = true;
+        synchronized (lock) {
+            pending.clear();
+        }
+    }
+
+    int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void flush() {
+        List<T> batch;
+        boolean more;
+        synchronized (lock) {
+            int count = Math.min(pending.size(), maxPerFrame);
+            batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                batch.add(pending.poll());
+            }
+            more = !pending.isEmpty();
+            scheduled = more;
+        }
+        if (more) {
+            // Remainder goes out on the next frame rather than after another full frame of waiting
+            poster.postDelayed(this::flush, 0);
+        }
+        if (!cancelled && !batch.isEmpty()) {
+            sink.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.pingme.android.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Turns a picked image into an upload-ready temp file without ever holding the
+ * full-resolution bitmap in memory.
+ *
+ * Pipeline (runs on the shared CPU pool):
+ *  1. read bounds and EXIF orientation only
+ *  2. decode with a power-of-two inSampleSize close to the target long edge
+ *  3. scale down the rest of the way and apply the EXIF rotation
+ *  4. encode to a temp file, stepping quality down until it fits the byte budget
+ *  5. compute a BlurHash placeholder from the same bitmap for the message node
+ *
+ * A 48 MP camera photo therefore costs a few MB of heap instead of ~190 MB, and
+ * uploads are typically 5-10x smaller than the old full-size JPEG.
+ */
+public class ImagePreprocessor {
+    private static final String TAG = "ImagePreprocessor";
+    private static final String TEMP_DIR = "upload_tmp";
+
+    // Quality ladder tried in order until the encoded file fits the budget
+    private static final int[] QUALITY_LADDER = {85, 78, 70, 62, 55};
+
+    // Chat photos and statuses: sharp on any phone screen
+    public static final Spec CHAT_IMAGE = new Spec(1600, 450 * 1024);
+    // Profile pictures are only ever shown as avatars or a small header
+    public static final Spec PROFILE_IMAGE = new Spec(720, 150 * 1024);
+
+    public static class Spec {
+        public final int maxLongEdge;
+        public final long maxBytes;
+
+        public Spec(int maxLongEdge, long maxBytes) {
+            this.maxLongEdge = maxLongEdge;
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    public static class Result {
+        public final File file;
+        public final int width;
+        public final int height;
+        // Null if the placeholder could not be computed; the upload does not depend on it
+        public final String blurHash;
+
+        Result(File file, int width, int height, String blurHash) {
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.blurHash = blurHash;
+        }
+
+        // Temp files are ours to clean up once the upload has finished
+        public void delete() {
+            if (file != null && file.exists() && !file.delete()) {
+                Log.w(TAG, "Could not delete temp file: " + file);
+            }
+        }
+    }
+
+    public static Spec specForFolder(String folder) {
+        if (folder != null && folder.startsWith("profile_pictures")) {
+            return PROFILE_IMAGE;
+        }
+        return CHAT_IMAGE;
+    }
+
+    public static CompletableFuture<Result> process(Context context, Uri imageUri, Spec spec) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return processBlocking(appContext, imageUri, spec);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, AppExecutors.getInstance().cpu());
+    }
+
+    public static Result processBlocking(Context context, Uri imageUri, Spec spec) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+
+        // 1. Bounds only - no pixel memory allocated
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(imageUri)) {
+            if (in == null) {
+                throw new IOException("Cannot open image: " + imageUri);
+            }
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + imageUri);
+        }
+
+        int orientation = readOrientation(resolver, imageUri);
+
+        // 2. Subsampled decode
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, spec.maxLongEdge);
+        decode.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap;
+        try (InputStream in = resolver.openInputStream(imageUri)) {
+            bitmap = BitmapFactory.decodeStream(in, null, decode);
+        }
+        if (bitmap == null) {
+            throw new IOException("Failed to decode image: " + imageUri);
+        }
+
+        // 3. Exact scale + orientation in a single transform
+        Bitmap transformed = transform(bitmap, orientation, spec.maxLongEdge);
+        if (transformed != bitmap) {
+            bitmap.recycle();
+        }
+
+        Log.d(TAG, "Preprocessed " + bounds.outWidth + "x" + bounds.outHeight
+                + " (sample " + decode.inSampleSize + ", orientation " + orientation + ") -> "
+                + transformed.getWidth() + "x" + transformed.getHeight());
+
+        // 4. Encode to temp file with the quality ladder
+        try {
+            File output = createTempFile(context);
+            try {
+                encodeWithinBudget(transformed, output, spec.maxBytes);
+            } catch (IOException | RuntimeException e) {
+                // A failed encode would otherwise leave a partial JPEG in the cache dir
+                output.delete();
+                throw e;
+            }
+            return new Result(output, transformed.getWidth(), transformed.getHeight(), computeBlurHash(transformed));
+        } finally {
+            transformed.recycle();
+        }
+    }
+
+    private static String computeBlurHash(Bitmap bitmap) {
+        try {
+            return BlurHash.encode(bitmap);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "BlurHash encoding failed", e);
+            return null;
+        }
+    }
+
+    static int calculateInSampleSize(int width, int height, int maxLongEdge) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        // Largest power of two that still keeps the long edge at or above the target
+        while (longEdge / (sampleSize * 2) >= maxLongEdge) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static int readOrientation(ContentResolver resolver, Uri imageUri) {
+        try (InputStream in = resolver.openInputStream(imageUri)) {
+            if (in == null) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+            return new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (Exception e) {
+            // PNG/WebP or stripped metadata - treat as upright
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static Bitmap transform(Bitmap source, int orientation, int maxLongEdge) {
+        Matrix matrix = new Matrix();
+
+        int longEdge = Math.max(source.getWidth(), source.getHeight());
+        if (longEdge > maxLongEdge) {
+            float scale = (float) maxLongEdge / longEdge;
+            matrix.postScale(scale, scale);
+        }
+
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(270);
+                matrix.postScale(-1, 1);
+                break;
+            default:
+                break;
+        }
+
+        if (matrix.isIdentity()) {
+            return source;
+        }
+        return Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
+    }
+
+    private static void encodeWithinBudget(Bitmap bitmap, File output, long maxBytes) throws IOException {
+        for (int quality : QUALITY_LADDER) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 64 * 1024)) {
+                if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                    throw new IOException("Bitmap compression failed");
+                }
+            }
+            if (output.length() <= maxBytes) {
+                Log.d(TAG, "Encoded at quality " + quality + ": " + output.length() + " bytes");
+                return;
+            }
+        }
+        // Lowest rung still over budget - ship it anyway, it is already downscaled
+        Log.d(TAG, "Encoded at minimum quality: " + output.length() + " bytes (budget " + maxBytes + ")");
+    }
+
+    private static File createTempFile(Context context) throws IOException {
+        File dir = new File(context.getCacheDir(), TEMP_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create temp directory: " + dir);
+        }
+        return File.createTempFile("img_", ".jpg", dir);
+    }
+}
@@ -0,0 +1,141 @@
+package com.pingme.android.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor decorator that counts tasks and records how long they waited in the
+ * queue and how long they ran. Exceptions escaping a task are reported instead
+ * of silently killing the worker thread.
+ *
+ * Plain Java so it can be unit tested; {@link AppExecutors} supplies a
+ * {@link Reporter} that logs.
+ */
+class InstrumentedExecutor implements Executor {
+
+    interface Reporter {
+        void onTaskFailed(String pool, Throwable error);
+
+        void onSlowTask(String pool, long waitMs, long runMs);
+    }
+
+    private final String name;
+    private final Executor delegate;
+    private final Reporter reporter;
+    private final long slowTaskNanos;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    InstrumentedExecutor(String name, Executor delegate, Reporter reporter, long slowTaskMs) {
+        this.name = name;
+        this.delegate = delegate;
+        this.reporter = reporter;
+        this.slowTaskNanos = slowTaskMs * 1_000_000L;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long enqueuedAt = System.nanoTime();
+        submitted.incrementAndGet();
+        updateMax(maxQueued, queued.incrementAndGet());
+        try {
+            delegate.execute(() -> run(command, enqueuedAt));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void run(Runnable command, long enqueuedAt) {
+        long startedAt = System.nanoTime();
+        queued.decrementAndGet();
+        active.incrementAndGet();
+        try {
+            command.run();
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            reporter.onTaskFailed(name, t);
+        } finally {
+            long finishedAt = System.nanoTime();
+            active.decrementAndGet();
+            completed.incrementAndGet();
+
+            long wait = startedAt - enqueuedAt;
+            long run = finishedAt - startedAt;
+            totalWaitNanos.addAndGet(wait);
+            totalRunNanos.addAndGet(run);
+            updateMax(maxWaitNanos, wait);
+            updateMax(maxRunNanos, run);
+            if (wait > slowTaskNanos || run > slowTaskNanos) {
+                reporter.onSlowTask(name, wait / 1_000_000L, run / 1_000_000L);
+            }
+        }
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(name, queued.get(), maxQueued.get(), active.get(), submitted.get(), completed.get(),
+                failed.get(), totalWaitNanos.get(), maxWaitNanos.get(), totalRunNanos.get(), maxRunNanos.get());
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    static class Snapshot {
+        final String name;
+        final int queueDepth;
+        final int maxQueueDepth;
+        final int activeTasks;
+        final long submitted;
+        final long completed;
+        final long failed;
+        final long averageWaitMs;
+        final long maxWaitMs;
+        final long averageRunMs;
+        final long maxRunMs;
+
+        Snapshot(String name, int queueDepth, int maxQueueDepth, int activeTasks, long submitted, long completed,
+                 long failed, long totalWaitNanos, long maxWaitNanos, long totalRunNanos, long maxRunNanos) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.activeTasks = activeTasks;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.averageWaitMs = completed > 0 ? totalWaitNanos / completed / 1_000_000L : 0;
+            this.maxWaitMs = maxWaitNanos / 1_000_000L;
+            this.averageRunMs = completed > 0 ? totalRunNanos / completed / 1_000_000L : 0;
+            this.maxRunMs = maxRunNanos / 1_000_000L;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": queued=" + queueDepth + " (max " + maxQueueDepth + "), active=" + activeTasks
+                    + ", done=" + completed + "/" + submitted + ", failed=" + failed
+                    + ", wait avg/max=" + averageWaitMs + "/" + maxWaitMs + " ms"
+                    + ", run avg/max=" + averageRunMs + "/" + maxRunMs + " ms";
+        }
+    }
+}
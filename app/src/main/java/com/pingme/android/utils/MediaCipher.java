@@ -0,0 +1,296 @@
+package com.pingme.android.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streaming encryption for media attachments: the file is cut into fixed-size
+ * segments that are AES-GCM encrypted one at a time, so a 100 MB video is
+ * encrypted and decrypted with one segment in memory, and a reader can use
+ * each segment as soon as it has arrived and been authenticated.
+ *
+ * Layout: a {@value #HEADER_LENGTH}-byte header (magic "PMS", version, segment
+ * size, 16-byte salt, 7-byte nonce prefix) followed by the segments, each
+ * {@code segmentSize} bytes of ciphertext plus a 16-byte tag (the last one
+ * shorter). Every file gets its own AES key, derived with HKDF-SHA256 from the
+ * chat key and the salt. A segment's nonce is the prefix, its index and a flag
+ * marking the last segment, and the header is authenticated with every
+ * segment, so reordered, dropped or truncated segments fail to decrypt.
+ * Segments are independent, so any plaintext range can be decrypted by
+ * fetching only the segments that cover it.
+ *
+ * Only the format lives here: encrypting attachments on upload and decrypting
+ * them in MediaDiskCache and VideoCacheProxy needs a chat key from
+ * {@link ChatKeyStore}, and chats don't exchange keys yet. Until they do,
+ * attachments are uploaded and fetched as plaintext.
+ */
+public class MediaCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final byte[] MAGIC = {'P', 'M', 'S'};
+    private static final byte VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final byte[] KEY_INFO = "pingme media segments".getBytes(StandardCharsets.US_ASCII);
+
+    public static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + SALT_LENGTH + NONCE_PREFIX_LENGTH;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private MediaCipher() {
+    }
+
+    /** Encrypts all of {@code in} to {@code out}. Neither stream is closed. */
+    public static void encrypt(InputStream in, OutputStream out, SecretKey key)
+            throws IOException, GeneralSecurityException {
+        encrypt(in, out, key, DEFAULT_SEGMENT_SIZE);
+    }
+
+    static void encrypt(InputStream in, OutputStream out, SecretKey key, int segmentSize)
+            throws IOException, GeneralSecurityException {
+        byte[] header = new byte[HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[MAGIC.length] = VERSION;
+        writeInt(header, MAGIC.length + 1, segmentSize);
+        byte[] random = new byte[SALT_LENGTH + NONCE_PREFIX_LENGTH];
+        RANDOM.nextBytes(random);
+        System.arraycopy(random, 0, header, MAGIC.length + 5, random.length);
+        out.write(header);
+
+        Segments segments = new Segments(header, key);
+        byte[] plaintext = new byte[segmentSize];
+        byte[] ciphertext = new byte[segmentSize + TAG_LENGTH];
+        int filled = readFully(in, plaintext, 0, segmentSize);
+        for (long index = 0; ; index++) {
+            // A full segment is only the last one if nothing follows it
+            int next = filled == segmentSize ? in.read() : -1;
+            boolean last = next == -1;
+            int written = segments.encrypt(index, last, plaintext, filled, ciphertext);
+            out.write(ciphertext, 0, written);
+            if (last) {
+                return;
+            }
+            plaintext[0] = (byte) next;
+            filled = 1 + readFully(in, plaintext, 1, segmentSize - 1);
+        }
+    }
+
+    /**
+     * A stream of the plaintext of {@code in}, decrypted one segment at a time
+     * as the ciphertext arrives. Reads throw an IOException for data that was
+     * tampered with or cut short; closing it closes {@code in}.
+     */
+    public static InputStream decrypt(InputStream in, SecretKey key) {
+        return new DecryptingInputStream(in, key);
+    }
+
+    /** Parses the header of an encrypted file, for decrypting it by segment. */
+    public static Segments segments(byte[] header, SecretKey key) throws GeneralSecurityException {
+        return new Segments(header, key);
+    }
+
+    /**
+     * Segment geometry and per-segment decryption for one encrypted file.
+     * Thread-safe; segments are decrypted one at a time.
+     */
+    public static final class Segments {
+        private final byte[] header;
+        private final int segmentSize;
+        private final SecretKey fileKey;
+        private final Cipher cipher;
+        private final byte[] nonce = new byte[NONCE_LENGTH];
+
+        Segments(byte[] header, SecretKey key) throws GeneralSecurityException {
+            if (header.length < HEADER_LENGTH || header[0] != MAGIC[0] || header[1] != MAGIC[1]
+                    || header[2] != MAGIC[2] || header[3] != VERSION) {
+                throw new GeneralSecurityException("Not an encrypted media file");
+            }
+            this.header = header.length == HEADER_LENGTH ? header : Arrays.copyOf(header, HEADER_LENGTH);
+            this.segmentSize = readInt(header, MAGIC.length + 1);
+            if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new GeneralSecurityException("Bad segment size " + segmentSize);
+            }
+            this.fileKey = deriveFileKey(key, header, MAGIC.length + 5);
+            this.cipher = Cipher.getInstance(TRANSFORMATION);
+            System.arraycopy(header, MAGIC.length + 5 + SALT_LENGTH, nonce, 0, NONCE_PREFIX_LENGTH);
+        }
+
+        public int segmentSize() {
+            return segmentSize;
+        }
+
+        /** Segments in an encrypted file of {@code ciphertextLength} bytes. */
+        public long segmentCount(long ciphertextLength) {
+            long body = ciphertextLength - HEADER_LENGTH;
+            long full = segmentSize + TAG_LENGTH;
+            return Math.max(1, (body + full - 1) / full);
+        }
+
+        /** Plaintext size of an encrypted file of {@code ciphertextLength} bytes. */
+        public long plaintextLength(long ciphertextLength) {
+            return Math.max(0, ciphertextLength - HEADER_LENGTH - segmentCount(ciphertextLength) * TAG_LENGTH);
+        }
+
+        /** Offset of segment {@code index} in the encrypted file. */
+        public long ciphertextOffset(long index) {
+            return HEADER_LENGTH + index * (segmentSize + TAG_LENGTH);
+        }
+
+        /** Index of the segment holding plaintext byte {@code plaintextOffset}. */
+        public long segmentIndex(long plaintextOffset) {
+            return plaintextOffset / segmentSize;
+        }
+
+        /** Decrypts one segment ({@code length} bytes of ciphertext and tag). */
+        public synchronized byte[] decrypt(long index, boolean last, byte[] ciphertext, int length) throws GeneralSecurityException {
+            if (length < TAG_LENGTH || length > segmentSize + TAG_LENGTH) {
+                throw new GeneralSecurityException("Bad segment length " + length);
+            }
+            init(Cipher.DECRYPT_MODE, index, last);
+            return cipher.doFinal(ciphertext, 0, length);
+        }
+
+        synchronized int encrypt(long index, boolean last, byte[] plaintext, int length, byte[] out) throws GeneralSecurityException {
+            init(Cipher.ENCRYPT_MODE, index, last);
+            return cipher.doFinal(plaintext, 0, length, out, 0);
+        }
+
+        synchronized int decrypt(long index, boolean last, byte[] ciphertext, int length, byte[] out) throws GeneralSecurityException {
+            init(Cipher.DECRYPT_MODE, index, last);
+            return cipher.doFinal(ciphertext, 0, length, out, 0);
+        }
+
+        private void init(int mode, long index, boolean last) throws GeneralSecurityException {
+            if (index < 0 || index > 0xFFFFFFFFL) {
+                throw new GeneralSecurityException("Segment index out of range: " + index);
+            }
+            writeInt(nonce, NONCE_PREFIX_LENGTH, (int) index);
+            nonce[NONCE_LENGTH - 1] = (byte) (last ? 1 : 0);
+            cipher.init(mode, fileKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(header);
+        }
+    }
+
+    private static final class DecryptingInputStream extends InputStream {
+        private final InputStream in;
+        private final SecretKey key;
+        private Segments segments;
+        private byte[] ciphertext;
+        private byte[] plaintext;
+        private int position;
+        private int limit;
+        private long index;
+        private int lookahead = -1;
+        private boolean done;
+
+        DecryptingInputStream(InputStream in, SecretKey key) {
+            this.in = in;
+            this.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            while (position == limit) {
+                if (done) return -1;
+                nextSegment();
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(plaintext, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void nextSegment() throws IOException {
+            try {
+                if (segments == null) {
+                    byte[] header = new byte[HEADER_LENGTH];
+                    if (readFully(in, header, 0, HEADER_LENGTH) != HEADER_LENGTH) {
+                        throw new IOException("Encrypted media is missing its header");
+                    }
+                    segments = new Segments(header, key);
+                    ciphertext = new byte[segments.segmentSize() + TAG_LENGTH];
+                    plaintext = new byte[segments.segmentSize()];
+                    lookahead = in.read();
+                    if (lookahead == -1) {
+                        throw new IOException("Encrypted media has no segments");
+                    }
+                }
+                ciphertext[0] = (byte) lookahead;
+                int filled = 1 + readFully(in, ciphertext, 1, ciphertext.length - 1);
+                lookahead = filled == ciphertext.length ? in.read() : -1;
+                boolean last = lookahead == -1;
+                limit = segments.decrypt(index++, last, ciphertext, filled, plaintext);
+                position = 0;
+                done = last;
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Encrypted media failed authentication at segment " + (index - 1), e);
+            }
+        }
+    }
+
+    // HKDF-SHA256 (RFC 5869) with a single output block
+    private static SecretKey deriveFileKey(SecretKey key, byte[] header, int saltOffset) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(header, saltOffset, SALT_LENGTH, "HmacSHA256"));
+        byte[] prk = mac.doFinal(key.getEncoded());
+        mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+        mac.update(KEY_INFO);
+        mac.update((byte) 1);
+        byte[] okm = mac.doFinal();
+        return new SecretKeySpec(okm, 0, 32, "AES");
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, offset + total, length - total);
+            if (read == -1) break;
+            total += read;
+        }
+        return total;
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16
+                | (buffer[offset + 2] & 0xFF) << 8 | (buffer[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,185 @@
+package com.pingme.android.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Content-addressed record of media we have already uploaded.
+ *
+ * Uploads are keyed by a streaming SHA-256 of the file (plus the upload kind, and
+ * for images the preprocessing spec that deterministically produces the uploaded
+ * bytes). Before uploading, callers look the key up here and reuse the stored
+ * media map (URLs, duration, size) instead of uploading the same content again.
+ */
+public class MediaDedupStore {
+    private static final String TAG = "MediaDedupStore";
+    private static final String PREFS_NAME = "media_dedup";
+    private static final String FIELD_LAST_USED = "_lastUsed";
+    private static final int MAX_ENTRIES = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static MediaDedupStore instance;
+
+    private final SharedPreferences prefs;
+
+    public static synchronized MediaDedupStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaDedupStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MediaDedupStore(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Hashes the content behind {@code uri} off the caller thread and returns
+     * {@code prefix + ":" + sha256}.
+     */
+    public static CompletableFuture<String> contentKeyAsync(Context context, Uri uri, String prefix) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = appContext.getContentResolver().openInputStream(uri)) {
+                if (in == null) {
+                    throw new IOException("Cannot open " + uri);
+                }
+                return prefix + ":" + sha256Hex(in);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, AppExecutors.getInstance().io());
+    }
+
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Returns the media map stored for {@code contentKey}, or null if this content
+     * has not been uploaded from this device yet.
+     */
+    public synchronized Map<String, Object> get(String contentKey) {
+        if (contentKey == null) {
+            return null;
+        }
+        String stored = prefs.getString(contentKey, null);
+        if (stored == null) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(stored);
+            Map<String, Object> mediaData = new HashMap<>();
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!FIELD_LAST_USED.equals(key)) {
+                    mediaData.put(key, json.get(key));
+                }
+            }
+            // Touch so frequently forwarded media survives trimming
+            json.put(FIELD_LAST_USED, System.currentTimeMillis());
+            prefs.edit().putString(contentKey, json.toString()).apply();
+            Log.d(TAG, "Reusing upload for " + contentKey);
+            return mediaData;
+        } catch (JSONException e) {
+            Log.w(TAG, "Dropping corrupt entry " + contentKey, e);
+            prefs.edit().remove(contentKey).apply();
+            return null;
+        }
+    }
+
+    public synchronized void put(String contentKey, Map<String, Object> mediaData) {
+        if (contentKey == null || mediaData == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(mediaData);
+            json.put(FIELD_LAST_USED, System.currentTimeMillis());
+            prefs.edit().putString(contentKey, json.toString()).apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not store upload for " + contentKey, e);
+            return;
+        }
+        trimIfNeeded();
+    }
+
+    private void trimIfNeeded() {
+        List<String> evicted = keysToEvict(prefs.getAll(), MAX_ENTRIES);
+        if (evicted.isEmpty()) {
+            return;
+        }
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String key : evicted) {
+            editor.remove(key);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Keys to drop once the store holds more than {@code maxEntries}: the least
+     * recently used quarter, counted in entries rather than cut at a timestamp,
+     * since a forwarded batch stores many entries in the same millisecond.
+     */
+    static List<String> keysToEvict(Map<String, ?> all, int maxEntries) {
+        if (all.size() <= maxEntries) {
+            return Collections.emptyList();
+        }
+        List<Map.Entry<String, Long>> byLastUsed = new ArrayList<>(all.size());
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            byLastUsed.add(new AbstractMap.SimpleEntry<>(entry.getKey(), lastUsedOf(entry.getValue())));
+        }
+        byLastUsed.sort(Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+
+        int count = Math.max(all.size() / 4, all.size() - maxEntries);
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(byLastUsed.get(i).getKey());
+        }
+        return keys;
+    }
+
+    private static long lastUsedOf(Object value) {
+        try {
+            return new JSONObject(String.valueOf(value)).optLong(FIELD_LAST_USED);
+        } catch (JSONException e) {
+            return 0;
+        }
+    }
+}
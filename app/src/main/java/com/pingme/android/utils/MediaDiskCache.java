@@ -0,0 +1,237 @@
+package com.pingme.android.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Disk cache for downloaded chat media (videos, documents), shared by
+ * VideoPlayerUtil and DocumentViewerUtil.
+ *
+ *  - entries are keyed by a SHA-256 of the URL, so opening the same attachment
+ *    twice is served from disk
+ *  - the cache is held under a byte budget and evicts least recently used files
+ *  - downloads go to a temp file that is renamed into place only when complete,
+ *    so a killed download never leaves a truncated entry behind
+ *  - concurrent requests for the same URL share a single download
+ */
+public class MediaDiskCache {
+    private static final String TAG = "MediaDiskCache";
+    private static final String CACHE_DIR = "media";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MAX_BYTES = 256L * 1024 * 1024;
+    private static final long TRANSFER_CHUNK_BYTES = 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private static MediaDiskCache instance;
+
+    private final File directory;
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, File> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<File>> inFlight = new HashMap<>();
+    private long totalBytes;
+    private boolean loaded;
+
+    public static synchronized MediaDiskCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaDiskCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MediaDiskCache(Context context) {
+        this.directory = new File(context.getCacheDir(), CACHE_DIR);
+    }
+
+    /**
+     * Returns the cached file for {@code url}, downloading it first if needed.
+     * {@code extension} (without the dot, may be null) is kept on the cached file
+     * so viewers can resolve the MIME type.
+     */
+    public CompletableFuture<File> get(String url, String extension) {
+        String key = keyFor(url);
+        synchronized (inFlight) {
+            CompletableFuture<File> running = inFlight.get(key);
+            if (running != null) {
+                Log.d(TAG, "Joining in-flight download for " + key);
+                return running;
+            }
+            CompletableFuture<File> future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return lookupOrDownload(key, url, extension);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, AppExecutors.getInstance().io());
+            inFlight.put(key, future);
+            future.whenComplete((file, error) -> {
+                synchronized (inFlight) {
+                    inFlight.remove(key);
+                }
+            });
+            return future;
+        }
+    }
+
+    private File lookupOrDownload(String key, String url, String extension) throws IOException {
+        File cached;
+        synchronized (this) {
+            ensureLoaded();
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.exists()) {
+            // lastModified doubles as the LRU timestamp across restarts
+            cached.setLastModified(System.currentTimeMillis());
+            Log.d(TAG, "Cache hit for " + key);
+            return cached;
+        }
+
+        String fileName = extension != null && !extension.isEmpty() ? key + "." + extension : key;
+        File target = new File(directory, fileName);
+        File temp = new File(directory, fileName + TEMP_SUFFIX);
+        long bytes = download(url, temp);
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Could not move download into cache: " + target);
+        }
+        Log.d(TAG, "Cached " + bytes + " bytes for " + key);
+
+        synchronized (this) {
+            File previous = entries.put(key, target);
+            if (previous != null && !previous.equals(target)) {
+                totalBytes -= previous.length();
+                previous.delete();
+            }
+            totalBytes += target.length();
+            trimToBudget();
+        }
+        return target;
+    }
+
+    private long download(String url, File temp) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory: " + directory);
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        try {
+            connection.connect();
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Server returned HTTP " + connection.getResponseCode());
+            }
+            long expected = connection.getContentLengthLong();
+
+            long written = 0;
+            try (InputStream input = connection.getInputStream();
+                 ReadableByteChannel source = Channels.newChannel(input);
+                 FileOutputStream output = new FileOutputStream(temp);
+                 FileChannel channel = output.getChannel()) {
+                // Let the channel move data in large chunks instead of a 4 KB copy loop
+                long transferred;
+                while ((transferred = channel.transferFrom(source, written, TRANSFER_CHUNK_BYTES)) > 0) {
+                    written += transferred;
+                }
+                channel.force(false);
+            }
+
+            if (expected >= 0 && written != expected) {
+                temp.delete();
+                throw new IOException("Incomplete download: " + written + " of " + expected + " bytes");
+            }
+            return written;
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Oldest first so the access-ordered map starts out in LRU order
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // Left over from a download that was interrupted
+                file.delete();
+                continue;
+            }
+            int dot = name.indexOf('.');
+            entries.put(dot > 0 ? name.substring(0, dot) : name, file);
+            totalBytes += file.length();
+        }
+        Log.d(TAG, "Loaded " + entries.size() + " cached files, " + totalBytes + " bytes");
+        trimToBudget();
+    }
+
+    private void trimToBudget() {
+        if (totalBytes <= MAX_BYTES) {
+            return;
+        }
+        int evicted = 0;
+        Iterator<Map.Entry<String, File>> iterator = entries.entrySet().iterator();
+        // Always keep the most recent entry, even if it alone exceeds the budget
+        while (totalBytes > MAX_BYTES && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, File> entry = iterator.next();
+            File file = entry.getValue();
+            totalBytes -= file.length();
+            file.delete();
+            iterator.remove();
+            evicted++;
+        }
+        Log.d(TAG, "Evicted " + evicted + " files, " + totalBytes + " bytes remain");
+    }
+
+    public synchronized void clear() {
+        ensureLoaded();
+        for (File file : entries.values()) {
+            file.delete();
+        }
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    static String keyFor(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
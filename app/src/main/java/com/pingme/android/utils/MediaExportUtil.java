@@ -0,0 +1,228 @@
+package com.pingme.android.utils;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Shares and saves media by copying the original encoded bytes - typically
+ * Glide's or {@link MediaDiskCache}'s cached file - instead of decoding to a
+ * Bitmap and compressing it again. No pixels are held in memory and the output
+ * is byte-identical to what was received.
+ */
+public class MediaExportUtil {
+    private static final String TAG = "MediaExportUtil";
+    // Must match the cache-path entry in res/xml/file_paths.xml
+    private static final String SHARE_DIR = "shared_media";
+    private static final String GALLERY_ALBUM = "PingMe";
+    private static final long COPY_CHUNK_BYTES = 1024 * 1024;
+    // The receiving app may read a shared file well after the chooser closes
+    private static final long SHARED_FILE_MAX_AGE_MS = 60 * 60 * 1000L;
+
+    private MediaExportUtil() {
+    }
+
+    /**
+     * Copies {@code source} into the share directory and completes with a FileProvider URI
+     * suitable for ACTION_SEND; the file extension (and so the URI's type) follows the
+     * sniffed image format. Files from shares older than an hour are removed.
+     */
+    public static CompletableFuture<Uri> copyForSharing(Context context, File source) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                File dir = new File(appContext.getCacheDir(), SHARE_DIR);
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create share directory: " + dir);
+                }
+                deleteStaleFiles(dir);
+                String mimeType = sniffImageMimeType(source);
+                File target = new File(dir, "PingMe_" + System.currentTimeMillis() + extensionFor(mimeType));
+                long bytes;
+                try (FileOutputStream out = new FileOutputStream(target)) {
+                    bytes = copy(source, out);
+                }
+                Log.d(TAG, "Prepared " + bytes + " bytes for sharing: " + target.getName());
+                return FileProvider.getUriForFile(appContext, appContext.getPackageName() + ".fileprovider", target);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, AppExecutors.getInstance().io());
+    }
+
+    /**
+     * Writes {@code source} to the shared Pictures/PingMe album and completes with its URI.
+     */
+    public static CompletableFuture<Uri> saveToGallery(Context context, File source) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                String mimeType = sniffImageMimeType(source);
+                String displayName = "PingMe_" + System.currentTimeMillis() + extensionFor(mimeType);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    return saveToMediaStore(appContext, source, mimeType, displayName);
+                }
+                return saveToPicturesDirectory(appContext, source, mimeType, displayName);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, AppExecutors.getInstance().io());
+    }
+
+    private static Uri saveToMediaStore(Context context, File source, String mimeType, String displayName)
+            throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
+        values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/" + GALLERY_ALBUM);
+        // Hidden from other apps until the bytes are complete
+        values.put(MediaStore.Images.Media.IS_PENDING, 1);
+
+        Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) {
+            throw new IOException("MediaStore insert failed");
+        }
+        try (OutputStream out = resolver.openOutputStream(uri)) {
+            if (out == null) {
+                throw new IOException("Cannot open MediaStore output: " + uri);
+            }
+            long bytes = copy(source, out);
+            Log.d(TAG, "Saved " + bytes + " bytes to " + uri);
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+
+        values.clear();
+        values.put(MediaStore.Images.Media.IS_PENDING, 0);
+        resolver.update(uri, values, null, null);
+        return uri;
+    }
+
+    private static Uri saveToPicturesDirectory(Context context, File source, String mimeType, String displayName)
+            throws IOException {
+        File dir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), GALLERY_ALBUM);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create album directory: " + dir);
+        }
+        File target = new File(dir, displayName);
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            long bytes = copy(source, out);
+            Log.d(TAG, "Saved " + bytes + " bytes to " + target);
+        }
+        // Makes the file show up in gallery apps
+        MediaScannerConnection.scanFile(context, new String[]{target.getAbsolutePath()}, new String[]{mimeType}, null);
+        return Uri.fromFile(target);
+    }
+
+    /**
+     * Streams {@code source} to {@code out} through channels; file-to-file copies can be
+     * done by the kernel without passing through a Java buffer.
+     */
+    static long copy(File source, OutputStream out) throws IOException {
+        try (FileInputStream in = new FileInputStream(source); FileChannel channel = in.getChannel()) {
+            WritableByteChannel target = out instanceof FileOutputStream
+                    ? ((FileOutputStream) out).getChannel()
+                    : Channels.newChannel(out);
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = channel.transferTo(position, Math.min(COPY_CHUNK_BYTES, size - position), target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+            if (position != size) {
+                throw new IOException("Short copy: " + position + " of " + size + " bytes");
+            }
+            out.flush();
+            return position;
+        }
+    }
+
+    /**
+     * Image MIME type from the file's magic bytes; cached files carry no extension.
+     * Falls back to image/jpeg.
+     */
+    public static String sniffImageMimeType(File file) {
+        byte[] header = new byte[12];
+        int read = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            while (read < header.length) {
+                int count = in.read(header, read, header.length - read);
+                if (count < 0) break;
+                read += count;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read header of " + file, e);
+        }
+        return sniffImageMimeType(header, read);
+    }
+
+    static String sniffImageMimeType(byte[] header, int length) {
+        if (length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "image/png";
+        }
+        if (length >= 6 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "image/gif";
+        }
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        if (length >= 12 && header[4] == 'f' && header[5] == 't' && header[6] == 'y' && header[7] == 'p'
+                && header[8] == 'a' && header[9] == 'v' && header[10] == 'i' && header[11] == 'f') {
+            return "image/avif";
+        }
+        return "image/jpeg";
+    }
+
+    static String extensionFor(String mimeType) {
+        if (mimeType == null) return ".jpg";
+        switch (mimeType) {
+            case "image/png":
+                return ".png";
+            case "image/gif":
+                return ".gif";
+            case "image/webp":
+                return ".webp";
+            case "image/avif":
+                return ".avif";
+            default:
+                return ".jpg";
+        }
+    }
+
+    private static void deleteStaleFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - SHARED_FILE_MAX_AGE_MS;
+        for (File file : files) {
+            if (file.lastModified() < cutoff && !file.delete()) {
+                Log.w(TAG, "Could not delete old shared file: " + file);
+            }
+        }
+    }
+}
@@ -5,112 +5,218 @@ import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.util.Log;
+import android.view.Choreographer;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Plays voice notes from a small pool of prepared MediaPlayers.
+ *
+ * Players are kept for replay and for pre-buffering the next voice note, but at
+ * most {@link #MAX_POOLED_PLAYERS} of them; the least recently used idle player is
+ * released when the pool is full. Progress is reported from a single
+ * Choreographer ticker on the main thread, once per frame while audio plays.
+ *
+ * Must be used from the main thread; all listener callbacks arrive there too.
+ */
 public class MediaPlayerUtil {
     private static final String TAG = "MediaPlayerUtil";
+    private static final int MAX_POOLED_PLAYERS = 3;
     private static MediaPlayerUtil instance;
     private MediaPlayer currentPlayer;
     private String currentPlayingUrl;
     private MediaPlayerListener currentListener;
-    private final Map<String, MediaPlayer> playerCache = new HashMap<>();
-    
+    // Access-ordered so iteration starts at the least recently used player
+    private final Map<String, PooledPlayer> playerPool = new LinkedHashMap<>(8, 0.75f, true);
+    private boolean tickerRunning = false;
+    private int lastReportedPosition = -1;
+
     public interface MediaPlayerListener {
         void onPrepared();
         void onCompletion();
         void onError(String error);
         void onProgress(int currentPosition, int duration);
     }
-    
+
+    private static class PooledPlayer {
+        final MediaPlayer player;
+        boolean prepared;
+        // Set when playback was requested while the player was still preparing
+        boolean startWhenPrepared;
+
+        PooledPlayer(MediaPlayer player) {
+            this.player = player;
+        }
+    }
+
+    private final Choreographer.FrameCallback progressTicker = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!tickerRunning) return;
+            if (currentListener == null || !isPlaying()) {
+                tickerRunning = false;
+                return;
+            }
+            int position = getCurrentPosition();
+            // Positions only move every few frames; skip frames with nothing new to draw
+            if (position != lastReportedPosition) {
+                lastReportedPosition = position;
+                currentListener.onProgress(position, getDuration());
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
     public static MediaPlayerUtil getInstance() {
         if (instance == null) {
             instance = new MediaPlayerUtil();
         }
         return instance;
     }
-    
+
     private MediaPlayerUtil() {
         // Private constructor
     }
-    
+
     public void playAudio(String audioUrl, Context context, MediaPlayerListener listener) {
-        try {
-            // Stop current playback if any
-            stopCurrentPlayback();
-            
-            currentPlayingUrl = audioUrl;
-            currentListener = listener;
-            
-            // Check if we have a cached player for this URL
-            if (playerCache.containsKey(audioUrl)) {
-                currentPlayer = playerCache.get(audioUrl);
-                if (currentPlayer != null) {
-                    currentPlayer.seekTo(0);
-                    currentPlayer.start();
-                    if (listener != null) {
-                        listener.onPrepared();
-                    }
-                    startProgressUpdates();
-                    return;
-                }
+        // Stop current playback if any
+        stopCurrentPlayback();
+
+        currentPlayingUrl = audioUrl;
+        currentListener = listener;
+
+        // Replays and pre-buffered voice notes start without preparing again
+        PooledPlayer pooled = playerPool.get(audioUrl);
+        if (pooled != null) {
+            currentPlayer = pooled.player;
+            if (pooled.prepared) {
+                Log.d(TAG, "Playing pooled player: " + audioUrl);
+                startPrepared(pooled.player);
+            } else {
+                Log.d(TAG, "Waiting for pre-buffering player: " + audioUrl);
+                pooled.startWhenPrepared = true;
             }
-            
-            // Create new player
-            currentPlayer = new MediaPlayer();
-            currentPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            
-            currentPlayer.setOnPreparedListener(mp -> {
-                Log.d(TAG, "Audio prepared: " + audioUrl);
-                mp.start();
-                if (listener != null) {
-                    listener.onPrepared();
-                }
-                startProgressUpdates();
-                
-                // Cache the player
-                playerCache.put(audioUrl, mp);
-            });
-            
-            currentPlayer.setOnCompletionListener(mp -> {
-                Log.d(TAG, "Audio completed: " + audioUrl);
-                if (listener != null) {
-                    listener.onCompletion();
-                }
+            return;
+        }
+
+        pooled = createPlayer(audioUrl, context);
+        if (pooled != null) {
+            pooled.startWhenPrepared = true;
+            currentPlayer = pooled.player;
+        }
+    }
+
+    /**
+     * Prepares {@code audioUrl} in the background so a later {@link #playAudio}
+     * starts immediately. No-op if it is already pooled.
+     */
+    public void prebuffer(String audioUrl, Context context) {
+        if (audioUrl == null || audioUrl.isEmpty() || playerPool.containsKey(audioUrl)) {
+            return;
+        }
+        Log.d(TAG, "Pre-buffering: " + audioUrl);
+        createPlayer(audioUrl, context);
+    }
+
+    private PooledPlayer createPlayer(String audioUrl, Context context) {
+        MediaPlayer player = new MediaPlayer();
+        PooledPlayer pooled = new PooledPlayer(player);
+        player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+
+        player.setOnPreparedListener(mp -> {
+            Log.d(TAG, "Audio prepared: " + audioUrl);
+            pooled.prepared = true;
+            if (pooled.startWhenPrepared && mp == currentPlayer) {
+                pooled.startWhenPrepared = false;
+                startPrepared(mp);
+            }
+        });
+
+        player.setOnCompletionListener(mp -> {
+            Log.d(TAG, "Audio completed: " + audioUrl);
+            if (mp != currentPlayer) return;
+            MediaPlayerListener listener = currentListener;
+            tickerRunning = false;
+            currentPlayingUrl = null;
+            currentListener = null;
+            if (listener != null) {
+                listener.onCompletion();
+            }
+        });
+
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.e(TAG, "Audio error: " + audioUrl + ", what: " + what + ", extra: " + extra);
+            // A failed player cannot be reused
+            playerPool.remove(audioUrl);
+            boolean wasCurrent = mp == currentPlayer;
+            MediaPlayerListener listener = currentListener;
+            releaseQuietly(mp);
+            if (wasCurrent) {
+                tickerRunning = false;
+                currentPlayer = null;
                 currentPlayingUrl = null;
                 currentListener = null;
-            });
-            
-            currentPlayer.setOnErrorListener((mp, what, extra) -> {
-                Log.e(TAG, "Audio error: " + audioUrl + ", what: " + what + ", extra: " + extra);
                 if (listener != null) {
                     listener.onError("Audio playback error: " + what);
                 }
+            }
+            return true;
+        });
+
+        try {
+            player.setDataSource(context.getApplicationContext(), Uri.parse(audioUrl));
+            player.prepareAsync();
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            Log.e(TAG, "Error playing audio: " + audioUrl, e);
+            releaseQuietly(player);
+            if (currentListener != null && audioUrl.equals(currentPlayingUrl)) {
+                MediaPlayerListener listener = currentListener;
                 currentPlayingUrl = null;
                 currentListener = null;
-                return true;
-            });
-            
-            currentPlayer.setDataSource(context, Uri.parse(audioUrl));
-            currentPlayer.prepareAsync();
-            
-        } catch (IOException e) {
-            Log.e(TAG, "Error playing audio: " + audioUrl, e);
-            if (listener != null) {
                 listener.onError("Failed to play audio: " + e.getMessage());
             }
+            return null;
+        }
+
+        playerPool.put(audioUrl, pooled);
+        trimPool();
+        return pooled;
+    }
+
+    private void startPrepared(MediaPlayer player) {
+        player.seekTo(0);
+        player.start();
+        if (currentListener != null) {
+            currentListener.onPrepared();
         }
+        startProgressUpdates();
     }
-    
+
+    // Releases least recently used players that are not playing
+    private void trimPool() {
+        Iterator<Map.Entry<String, PooledPlayer>> iterator = playerPool.entrySet().iterator();
+        while (playerPool.size() > MAX_POOLED_PLAYERS && iterator.hasNext()) {
+            Map.Entry<String, PooledPlayer> entry = iterator.next();
+            if (entry.getValue().player == currentPlayer) {
+                continue;
+            }
+            Log.d(TAG, "Releasing pooled player: " + entry.getKey());
+            releaseQuietly(entry.getValue().player);
+            iterator.remove();
+        }
+    }
+
     public void pauseAudio() {
         if (currentPlayer != null && currentPlayer.isPlaying()) {
             currentPlayer.pause();
+            tickerRunning = false;
             Log.d(TAG, "Audio paused: " + currentPlayingUrl);
         }
     }
-    
+
     public void resumeAudio() {
         if (currentPlayer != null && !currentPlayer.isPlaying()) {
             currentPlayer.start();
@@ -118,41 +224,52 @@ public class MediaPlayerUtil {
             startProgressUpdates();
         }
     }
-    
+
     public void stopCurrentPlayback() {
+        tickerRunning = false;
         if (currentPlayer != null) {
             try {
+                // Keep the player prepared in the pool so a replay starts instantly
                 if (currentPlayer.isPlaying()) {
-                    currentPlayer.stop();
+                    currentPlayer.pause();
                 }
-                currentPlayer.reset();
                 Log.d(TAG, "Audio stopped: " + currentPlayingUrl);
             } catch (IllegalStateException e) {
                 Log.w(TAG, "Error stopping audio", e);
             }
+            PooledPlayer pooled = currentPlayingUrl != null ? playerPool.get(currentPlayingUrl) : null;
+            if (pooled != null) {
+                pooled.startWhenPrepared = false;
+            }
         }
+        currentPlayer = null;
         currentPlayingUrl = null;
         currentListener = null;
+        trimPool();
     }
-    
+
     public void seekTo(int position) {
         if (currentPlayer != null) {
             currentPlayer.seekTo(position);
         }
     }
-    
+
     public boolean isPlaying() {
-        return currentPlayer != null && currentPlayer.isPlaying();
+        try {
+            return currentPlayer != null && currentPlayer.isPlaying();
+        } catch (IllegalStateException e) {
+            return false;
+        }
     }
-    
+
     public boolean isPlayingUrl(String url) {
         return currentPlayingUrl != null && currentPlayingUrl.equals(url) && isPlaying();
     }
-    
+
     public boolean isCurrentUrl(String url) {
         return currentPlayingUrl != null && currentPlayingUrl.equals(url);
     }
-    
+
     public int getCurrentPosition() {
         if (currentPlayer != null) {
             try {
@@ -163,7 +280,7 @@ public class MediaPlayerUtil {
         }
         return 0;
     }
-    
+
     public int getDuration() {
         if (currentPlayer != null) {
             try {
@@ -174,49 +291,32 @@ public class MediaPlayerUtil {
         }
         return 0;
     }
-    
+
     private void startProgressUpdates() {
-        if (currentListener == null) return;
-        
-        new Thread(() -> {
-            while (currentPlayer != null && currentPlayer.isPlaying() && currentListener != null) {
-                try {
-                    int currentPosition = getCurrentPosition();
-                    int duration = getDuration();
-                    currentListener.onProgress(currentPosition, duration);
-                    Thread.sleep(100); // Update every 100ms
-                } catch (InterruptedException e) {
-                    break;
-                } catch (Exception e) {
-                    Log.w(TAG, "Error in progress updates", e);
-                    break;
-                }
-            }
-        }).start();
+        if (currentListener == null || tickerRunning) return;
+        tickerRunning = true;
+        lastReportedPosition = -1;
+        Choreographer.getInstance().postFrameCallback(progressTicker);
     }
-    
+
     public void release() {
         stopCurrentPlayback();
-        
-        // Release all cached players
-        for (MediaPlayer player : playerCache.values()) {
-            try {
-                if (player != null) {
-                    player.release();
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Error releasing cached player", e);
-            }
+        Choreographer.getInstance().removeFrameCallback(progressTicker);
+
+        // Release all pooled players
+        for (PooledPlayer pooled : playerPool.values()) {
+            releaseQuietly(pooled.player);
         }
-        playerCache.clear();
-        
-        if (currentPlayer != null) {
-            try {
-                currentPlayer.release();
-            } catch (Exception e) {
-                Log.w(TAG, "Error releasing current player", e);
+        playerPool.clear();
+    }
+
+    private static void releaseQuietly(MediaPlayer player) {
+        try {
+            if (player != null) {
+                player.release();
             }
-            currentPlayer = null;
+        } catch (Exception e) {
+            Log.w(TAG, "Error releasing player", e);
         }
     }
-}
\ No newline at end of file
+}
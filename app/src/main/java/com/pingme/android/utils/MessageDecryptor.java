@@ -0,0 +1,262 @@
+package com.pingme.android.utils;
+
+import androidx.annotation.Nullable;
+
+import com.pingme.android.models.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Decrypts end-to-end encrypted messages a page at a time, before they reach
+ * the adapter, so binding a bubble never waits on a cipher.
+ *
+ * A page's encrypted messages are split into chunks that are decrypted in
+ * parallel on the CPU pool; the page completes once every message in it has
+ * its plaintext. Plaintexts are kept in a bounded LRU keyed by message id (and
+ * checked against the ciphertext, so an edited message is decrypted again),
+ * which makes reopening a chat or re-delivering a page nearly free. Latency
+ * per page, cache hits and failures are recorded for {@link #snapshot()}.
+ *
+ * Parsed messages are never modified: decrypted messages are copies.
+ */
+public class MessageDecryptor {
+    /** Shown instead of the text when a message can't be decrypted (no key yet, or a bad ciphertext). */
+    public static final String UNREADABLE_TEXT = "🔒 Waiting for this message";
+
+    private static final int MAX_CACHED = 2000;
+    // Below this a chunk costs more to schedule than to decrypt
+    private static final int MIN_CHUNK = 8;
+
+    private static MessageDecryptor instance;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final TextDecrypter decrypter;
+    private final Map<String, Entry> plaintexts;
+
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong decrypted = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalPageNanos = new AtomicLong();
+    private final AtomicLong maxPageNanos = new AtomicLong();
+
+    /** The AES step for one message, e.g. {@link EncryptionUtil#decryptMessage}; null on failure. */
+    interface TextDecrypter {
+        @Nullable
+        String decrypt(String encryptedContent, SecretKey key);
+    }
+
+    /** One decrypted page: the messages in their original order plus what it cost. */
+    public static class Page {
+        public final List<Message> messages;
+        public final int decrypted;
+        public final int cacheHits;
+        public final int failures;
+        public final long elapsedNanos;
+
+        Page(List<Message> messages, int decrypted, int cacheHits, int failures, long elapsedNanos) {
+            this.messages = messages;
+            this.decrypted = decrypted;
+            this.cacheHits = cacheHits;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return messages.size() + " messages, " + decrypted + " decrypted, " + cacheHits + " cached, "
+                    + failures + " failed in " + String.format(Locale.US, "%.2f", elapsedNanos / 1e6) + " ms";
+        }
+    }
+
+    public static synchronized MessageDecryptor getInstance() {
+        if (instance == null) {
+            AppExecutors executors = AppExecutors.getInstance();
+            instance = new MessageDecryptor(executors.cpu(), executors.cpuThreadCount(),
+                    EncryptionUtil::decryptMessage, MAX_CACHED);
+        }
+        return instance;
+    }
+
+    MessageDecryptor(Executor executor, int parallelism, TextDecrypter decrypter, int maxCached) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.decrypter = decrypter;
+        this.plaintexts = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxCached;
+            }
+        };
+    }
+
+    public static boolean needsDecryption(@Nullable Message message) {
+        return message != null && message.isEncrypted() && message.getEncryptedContent() != null;
+    }
+
+    /**
+     * Decrypts the encrypted messages of {@code page} with {@code key} (null if
+     * the chat key isn't known yet) and completes with all of them in order.
+     * {@code onDecrypted} runs on the worker for each decrypted copy, e.g. to lay
+     * out its text. The future never completes exceptionally.
+     */
+    public CompletableFuture<Page> decryptPage(List<Message> page, @Nullable SecretKey key,
+                                               @Nullable Consumer<Message> onDecrypted) {
+        long start = System.nanoTime();
+        Message[] result = page.toArray(new Message[0]);
+        List<Integer> misses = new ArrayList<>();
+        int hits = 0;
+        for (int i = 0; i < result.length; i++) {
+            Message message = result[i];
+            if (!needsDecryption(message)) continue;
+            String plaintext = cached(message);
+            if (plaintext != null) {
+                result[i] = withText(message, plaintext);
+                hits++;
+            } else {
+                misses.add(i);
+            }
+        }
+        int cacheHitCount = hits;
+        if (misses.isEmpty()) {
+            return CompletableFuture.completedFuture(finish(result, 0, cacheHitCount, 0, start));
+        }
+
+        int chunkSize = Math.max(MIN_CHUNK, (misses.size() + parallelism - 1) / parallelism);
+        int[] failed = new int[(misses.size() + chunkSize - 1) / chunkSize];
+        CompletableFuture<?>[] chunks = new CompletableFuture<?>[failed.length];
+        for (int c = 0; c < chunks.length; c++) {
+            int chunk = c;
+            List<Integer> indices = misses.subList(c * chunkSize, Math.min(misses.size(), (c + 1) * chunkSize));
+            chunks[c] = CompletableFuture.runAsync(() -> {
+                for (int index : indices) {
+                    Message decryptedMessage = decrypt(result[index], key);
+                    if (decryptedMessage == null) {
+                        failed[chunk]++;
+                        result[index] = withText(result[index], UNREADABLE_TEXT);
+                        continue;
+                    }
+                    result[index] = decryptedMessage;
+                    if (onDecrypted != null) {
+                        onDecrypted.accept(decryptedMessage);
+                    }
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(chunks).handle((ignored, error) -> {
+            int failures = 0;
+            for (int count : failed) {
+                failures += count;
+            }
+            return finish(result, misses.size() - failures, cacheHitCount, failures, start);
+        });
+    }
+
+    /** Drops every cached plaintext, e.g. on sign-out. */
+    public void clear() {
+        synchronized (plaintexts) {
+            plaintexts.clear();
+        }
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(pages.get(), decrypted.get(), cacheHits.get(), failures.get(),
+                totalPageNanos.get(), maxPageNanos.get());
+    }
+
+    public String dumpMetrics() {
+        return snapshot().toString();
+    }
+
+    @Nullable
+    private Message decrypt(Message message, @Nullable SecretKey key) {
+        if (key == null) return null;
+        String plaintext;
+        try {
+            plaintext = decrypter.decrypt(message.getEncryptedContent(), key);
+        } catch (RuntimeException e) {
+            plaintext = null;
+        }
+        if (plaintext == null) return null;
+        synchronized (plaintexts) {
+            plaintexts.put(message.getId(), new Entry(message.getEncryptedContent(), plaintext));
+        }
+        return withText(message, plaintext);
+    }
+
+    @Nullable
+    private String cached(Message message) {
+        if (message.getId() == null) return null;
+        synchronized (plaintexts) {
+            Entry entry = plaintexts.get(message.getId());
+            return entry != null && entry.encryptedContent.equals(message.getEncryptedContent()) ? entry.plaintext : null;
+        }
+    }
+
+    private static Message withText(Message message, String text) {
+        Message copy = new Message(message);
+        copy.setText(text);
+        return copy;
+    }
+
+    private Page finish(Message[] result, int decryptedCount, int hits, int failureCount, long start) {
+        long elapsed = System.nanoTime() - start;
+        pages.incrementAndGet();
+        decrypted.addAndGet(decryptedCount);
+        cacheHits.addAndGet(hits);
+        failures.addAndGet(failureCount);
+        totalPageNanos.addAndGet(elapsed);
+        long current;
+        while (elapsed > (current = maxPageNanos.get()) && !maxPageNanos.compareAndSet(current, elapsed)) {
+            // retry
+        }
+        return new Page(Arrays.asList(result), decryptedCount, hits, failureCount, elapsed);
+    }
+
+    private static final class Entry {
+        final String encryptedContent;
+        final String plaintext;
+
+        Entry(String encryptedContent, String plaintext) {
+            this.encryptedContent = encryptedContent;
+            this.plaintext = plaintext;
+        }
+    }
+
+    static class Snapshot {
+        final long pages;
+        final long decrypted;
+        final long cacheHits;
+        final long failures;
+        final double averagePageMs;
+        final double maxPageMs;
+
+        Snapshot(long pages, long decrypted, long cacheHits, long failures, long totalPageNanos, long maxPageNanos) {
+            this.pages = pages;
+            this.decrypted = decrypted;
+            this.cacheHits = cacheHits;
+            this.failures = failures;
+            this.averagePageMs = pages > 0 ? totalPageNanos / (double) pages / 1e6 : 0;
+            this.maxPageMs = maxPageNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "decrypt: pages=%d, decrypted=%d, cached=%d, failed=%d, page avg/max=%.2f/%.2f ms",
+                    pages, decrypted, cacheHits, failures, averagePageMs, maxPageMs);
+        }
+    }
+}
@@ -156,6 +156,13 @@ public class MessageSharingUtil {
         if (originalMessage.getDuration() > 0) {
             messageData.put("duration", originalMessage.getDuration());
         }
+        if (originalMessage.getWidth() > 0 && originalMessage.getHeight() > 0) {
+            messageData.put("width", originalMessage.getWidth());
+            messageData.put("height", originalMessage.getHeight());
+        }
+        if (originalMessage.getBlurHash() != null) {
+            messageData.put("blurHash", originalMessage.getBlurHash());
+        }
         
         return messageData;
     }
@@ -0,0 +1,128 @@
+package com.pingme.android.utils;
+
+import android.graphics.Typeface;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.StyleSpan;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+
+/**
+ * Bubble text prepared off the main thread, one entry per message: the search
+ * highlight spans are applied once per message and query, and the result is
+ * measured into a {@link PrecomputedTextCompat} with the bubble TextView's
+ * metrics. Binding a cached message only hands finished layout to the TextView.
+ *
+ * An entry is reused only while the message text and the highlighted query are
+ * the same, so edits and new searches replace it. Thread-safe.
+ */
+public class MessageTextCache {
+    private final LruCache<String, Entry> entries;
+
+    public MessageTextCache(int maxMessages) {
+        entries = new LruCache<>(maxMessages);
+    }
+
+    /**
+     * Cached text for the message, or null if it hasn't been prepared for this
+     * text and query. The result is a PrecomputedTextCompat if it was measured.
+     */
+    @Nullable
+    public CharSequence get(String messageId, String text, @Nullable String query) {
+        if (messageId == null) return null;
+        Entry entry = entries.get(messageId);
+        return entry != null && entry.matches(text, query) ? entry.value : null;
+    }
+
+    /**
+     * Builds the highlighted text, measures it when {@code params} is known, and
+     * caches the result. Meant for a background thread; returns the cached value.
+     */
+    public CharSequence prepare(String messageId, String text, @Nullable String query, int highlightColor,
+                                @Nullable PrecomputedTextCompat.Params params) {
+        CharSequence cached = get(messageId, text, query);
+        if (cached instanceof PrecomputedTextCompat || (cached != null && params == null)) {
+            return cached;
+        }
+        CharSequence value = cached != null ? cached : highlight(text, query, highlightColor);
+        if (params != null && value != null && value.length() > 0) {
+            value = PrecomputedTextCompat.create(value, params);
+        }
+        if (messageId != null) {
+            entries.put(messageId, new Entry(text, query, value));
+        }
+        return value;
+    }
+
+    /**
+     * The text with every case-insensitive occurrence of {@code query} on the
+     * highlight background and in bold, or the text itself if nothing matches.
+     */
+    public static CharSequence highlight(String text, @Nullable String query, int highlightColor) {
+        int[] matches = findMatches(text, query);
+        if (matches.length == 0) return text;
+
+        SpannableString spannable = new SpannableString(text);
+        for (int i = 0; i < matches.length; i += 2) {
+            spannable.setSpan(new BackgroundColorSpan(highlightColor), matches[i], matches[i + 1],
+                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            spannable.setSpan(new StyleSpan(Typeface.BOLD), matches[i], matches[i + 1],
+                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return spannable;
+    }
+
+    /**
+     * Start/end pairs of the non-overlapping, case-insensitive occurrences of
+     * {@code query} in {@code text}, in order. Offsets index into {@code text}
+     * itself (no lower-cased copy whose length could differ).
+     */
+    static int[] findMatches(String text, @Nullable String query) {
+        if (text == null || query == null || query.isEmpty() || query.length() > text.length()) {
+            return new int[0];
+        }
+        int[] matches = new int[8];
+        int count = 0;
+        int last = text.length() - query.length();
+        char firstLower = Character.toLowerCase(query.charAt(0));
+        char firstUpper = Character.toUpperCase(query.charAt(0));
+        for (int i = 0; i <= last; i++) {
+            char c = text.charAt(i);
+            // Cheap reject on the first char; only non-ASCII needs the full case folding
+            if (c != firstLower && c != firstUpper && c < 128) continue;
+            if (text.regionMatches(true, i, query, 0, query.length())) {
+                if (count + 2 > matches.length) {
+                    int[] grown = new int[matches.length * 2];
+                    System.arraycopy(matches, 0, grown, 0, count);
+                    matches = grown;
+                }
+                matches[count++] = i;
+                matches[count++] = i + query.length();
+                i += query.length() - 1;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(matches, 0, result, 0, count);
+        return result;
+    }
+
+    private static final class Entry {
+        final String text;
+        final String query;
+        final CharSequence value;
+
+        Entry(String text, String query, CharSequence value) {
+            this.text = text;
+            this.query = query;
+            this.value = value;
+        }
+
+        boolean matches(String text, String query) {
+            return this.text != null && this.text.equals(text)
+                    && (this.query == null ? query == null : this.query.equals(query));
+        }
+    }
+}
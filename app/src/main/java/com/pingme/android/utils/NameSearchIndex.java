@@ -0,0 +1,262 @@
+package com.pingme.android.utils;
+
+import com.pingme.android.models.User;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory n-gram index over the searchable names of a list of items
+ * (display name, personal name, email, ...).
+ *
+ * Every normalised field is broken into its distinct 1-, 2- and 3-grams and each
+ * gram keeps a sorted posting list of item positions. A query is answered by
+ * intersecting the posting lists of its grams (shortest first) and only the few
+ * surviving candidates are verified and ranked, so filtering thousands of contacts
+ * on every keystroke stays well under a millisecond.
+ *
+ * Matching keeps the old "contains" semantics of the list filters. Results are
+ * ranked exact match > field prefix > word prefix > substring, earlier fields win
+ * over later ones, and ties keep the order the items were indexed in.
+ *
+ * The index is immutable; build a new one whenever the backing list changes, or
+ * let {@link SearchIndexUpdater} do that off the main thread.
+ */
+public class NameSearchIndex<T> {
+
+    // Supplies the searchable fields of an item, most important first
+    public interface FieldExtractor<T> {
+        String[] getFields(T item);
+    }
+
+    private static final int MAX_GRAM = 3;
+
+    private static final int SCORE_EXACT = 4;
+    private static final int SCORE_PREFIX = 3;
+    private static final int SCORE_WORD_PREFIX = 2;
+    private static final int SCORE_SUBSTRING = 1;
+
+    private final List<T> items;
+    private final String[][] normalizedFields;
+    private final Map<String, int[]> postings;
+
+    private NameSearchIndex(List<T> items, FieldExtractor<T> extractor) {
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.normalizedFields = new String[this.items.size()][];
+
+        Map<String, IntList> builder = new HashMap<>();
+        for (int i = 0; i < this.items.size(); i++) {
+            String[] raw = extractor.getFields(this.items.get(i));
+            String[] fields = new String[raw != null ? raw.length : 0];
+            for (int f = 0; f < fields.length; f++) {
+                fields[f] = normalize(raw[f]);
+                addGrams(builder, fields[f], i);
+            }
+            normalizedFields[i] = fields;
+        }
+
+        this.postings = new HashMap<>(builder.size() * 2);
+        for (Map.Entry<String, IntList> entry : builder.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    public static <T> NameSearchIndex<T> build(List<T> items, FieldExtractor<T> extractor) {
+        return new NameSearchIndex<>(items != null ? items : Collections.<T>emptyList(), extractor);
+    }
+
+    // Personal name first so it ranks above the user's own name, then name and email
+    static final FieldExtractor<User> USER_FIELDS = user -> new String[] {
+            user.getPersonalName(),
+            user.getDisplayName(),
+            user.getName(),
+            user.getEmail()
+    };
+
+    public static NameSearchIndex<User> forUsers(List<User> users) {
+        return build(users, USER_FIELDS);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Returns every item matching {@code query}, best match first. An empty query
+     * returns all items in their indexed order.
+     */
+    public List<T> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    public List<T> search(String query, int limit) {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.isEmpty()) {
+            return items.size() <= limit ? items : items.subList(0, limit);
+        }
+
+        int[] candidates = findCandidates(normalizedQuery);
+        if (candidates.length == 0) {
+            return Collections.emptyList();
+        }
+
+        // Score packs (rank, field position, item position) into one sortable long
+        long[] scored = new long[candidates.length];
+        int matches = 0;
+        for (int candidate : candidates) {
+            String[] fields = normalizedFields[candidate];
+            int bestRank = 0;
+            int bestField = fields.length;
+            for (int f = 0; f < fields.length; f++) {
+                int rank = rank(fields[f], normalizedQuery);
+                if (rank > bestRank) {
+                    bestRank = rank;
+                    bestField = f;
+                }
+            }
+            if (bestRank > 0) {
+                scored[matches++] = ((long) (SCORE_EXACT - bestRank) << 56)
+                        | ((long) bestField << 40)
+                        | candidate;
+            }
+        }
+
+        Arrays.sort(scored, 0, matches);
+        int count = Math.min(matches, limit);
+        List<T> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(items.get((int) (scored[i] & 0xFFFFFFFFL)));
+        }
+        return results;
+    }
+
+    private int[] findCandidates(String query) {
+        int gramLength = Math.min(MAX_GRAM, query.length());
+        List<int[]> lists = new ArrayList<>();
+        for (int start = 0; start + gramLength <= query.length(); start++) {
+            int[] list = postings.get(query.substring(start, start + gramLength));
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+
+        // Intersect smallest lists first so the candidate set shrinks fastest
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    private static int rank(String field, String query) {
+        if (field.isEmpty()) {
+            return 0;
+        }
+        int index = field.indexOf(query);
+        if (index < 0) {
+            return 0;
+        }
+        if (index == 0) {
+            return field.length() == query.length() ? SCORE_EXACT : SCORE_PREFIX;
+        }
+        // A later occurrence may still start a word ("john smith" for "sm")
+        while (index > 0) {
+            if (!Character.isLetterOrDigit(field.charAt(index - 1))) {
+                return SCORE_WORD_PREFIX;
+            }
+            index = field.indexOf(query, index + 1);
+        }
+        return SCORE_SUBSTRING;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                out[n++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    private static void addGrams(Map<String, IntList> builder, String field, int item) {
+        for (int length = 1; length <= MAX_GRAM; length++) {
+            for (int start = 0; start + length <= field.length(); start++) {
+                String gram = field.substring(start, start + length);
+                IntList list = builder.get(gram);
+                if (list == null) {
+                    list = new IntList();
+                    builder.put(gram, list);
+                }
+                // Items are added in ascending order, so a duplicate can only be the last entry
+                list.addIfLastDiffers(item);
+            }
+        }
+    }
+
+    /**
+     * Lower-cases, strips accents and collapses whitespace so "José  Ñúñez" matches "jose nunez".
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(trimmed, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean lastWasSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                if (!lastWasSpace) {
+                    sb.append(' ');
+                }
+                lastWasSpace = true;
+            } else {
+                sb.append(c);
+                lastWasSpace = false;
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void addIfLastDiffers(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
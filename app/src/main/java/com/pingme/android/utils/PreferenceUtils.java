@@ -71,6 +71,8 @@ public class PreferenceUtils {
     public static void clearUserData(Context context) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
         prefs.edit().clear().apply();
+        ChatKeyStore.getInstance(context).clear();
+        MessageDecryptor.getInstance().clear();
     }
 
     // FIXED: Save theme selection with immediate UI update
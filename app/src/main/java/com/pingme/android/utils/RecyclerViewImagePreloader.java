@@ -0,0 +1,143 @@
+package com.pingme.android.utils;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts Glide loads for rows just ahead of the visible range, in the direction
+ * the list is scrolling, so images are in memory by the time the row binds.
+ *
+ * The lookahead grows with scroll speed (up to twice the configured row count
+ * during a fling), and preloads for rows that fall out of range - e.g. after a
+ * direction change - are cancelled so they do not compete with visible rows.
+ * Adapters supply the requests through {@link PreloadProvider}; those must be
+ * built the same way as in onBind so the memory cache key matches.
+ */
+public class RecyclerViewImagePreloader extends RecyclerView.OnScrollListener {
+    // Above this many rows per second the list is flinging
+    private static final float FAST_ROWS_PER_SECOND = 20f;
+
+    public interface PreloadProvider {
+        /**
+         * Requests for every image the row at {@code position} will show, sized for
+         * its views. Return an empty list for rows without images.
+         */
+        @NonNull
+        List<RequestBuilder<?>> getPreloadRequests(int position);
+    }
+
+    private final RequestManager glide;
+    private final PreloadProvider provider;
+    private final int maxPreloadRows;
+    private final Map<Integer, List<Target<?>>> activePreloads = new HashMap<>();
+
+    private int lastFirstVisible = RecyclerView.NO_POSITION;
+    private long lastScrollTime;
+    private float rowsPerSecond;
+
+    public RecyclerViewImagePreloader(RequestManager glide, PreloadProvider provider, int maxPreloadRows) {
+        this.glide = glide;
+        this.provider = provider;
+        this.maxPreloadRows = maxPreloadRows;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+        if (!(layoutManager instanceof LinearLayoutManager) || adapter == null) return;
+
+        LinearLayoutManager linear = (LinearLayoutManager) layoutManager;
+        int first = linear.findFirstVisibleItemPosition();
+        int last = linear.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return;
+
+        updateVelocity(first);
+        int lookahead = currentLookahead();
+
+        // dy == 0 on the first layout pass - warm both directions a little
+        int from;
+        int to;
+        if (dy > 0) {
+            from = last + 1;
+            to = last + lookahead;
+        } else if (dy < 0) {
+            from = first - lookahead;
+            to = first - 1;
+        } else {
+            from = first - maxPreloadRows / 2;
+            to = last + maxPreloadRows / 2;
+        }
+        from = Math.max(0, from);
+        to = Math.min(adapter.getItemCount() - 1, to);
+
+        cancelOutside(Math.min(from, first), Math.max(to, last));
+        for (int position = from; position <= to; position++) {
+            if (position >= first && position <= last) continue;
+            preload(position);
+        }
+    }
+
+    private void updateVelocity(int first) {
+        long now = SystemClock.uptimeMillis();
+        if (lastFirstVisible != RecyclerView.NO_POSITION && now > lastScrollTime) {
+            float instant = Math.abs(first - lastFirstVisible) * 1000f / (now - lastScrollTime);
+            // Smooth out per-frame jitter
+            rowsPerSecond = rowsPerSecond * 0.7f + instant * 0.3f;
+        }
+        lastFirstVisible = first;
+        lastScrollTime = now;
+    }
+
+    private int currentLookahead() {
+        float speedFactor = Math.min(1f, rowsPerSecond / FAST_ROWS_PER_SECOND);
+        return maxPreloadRows + Math.round(maxPreloadRows * speedFactor);
+    }
+
+    private void preload(int position) {
+        if (activePreloads.containsKey(position)) return;
+        List<RequestBuilder<?>> requests = provider.getPreloadRequests(position);
+        List<Target<?>> targets = new ArrayList<>(requests.size());
+        for (RequestBuilder<?> request : requests) {
+            // Requests carry override() sizes, so preload() decodes at the row's size
+            targets.add(request.preload());
+        }
+        activePreloads.put(position, targets);
+    }
+
+    private void cancelOutside(int from, int to) {
+        Iterator<Map.Entry<Integer, List<Target<?>>>> iterator = activePreloads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, List<Target<?>>> entry = iterator.next();
+            int position = entry.getKey();
+            if (position >= from && position <= to) continue;
+            for (Target<?> target : entry.getValue()) {
+                // No-op for finished preloads; the bitmap stays in the memory cache
+                glide.clear(target);
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Forgets all preloads, e.g. after the adapter contents were replaced.
+     */
+    public void reset() {
+        cancelOutside(0, -1);
+        lastFirstVisible = RecyclerView.NO_POSITION;
+        rowsPerSecond = 0;
+    }
+}
@@ -0,0 +1,106 @@
+package com.pingme.android.utils;
+
+import com.pingme.android.models.User;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps a {@link NameSearchIndex} in step with a list that is changed on the main
+ * thread. Changes are debounced: a list that grows one item per callback is
+ * indexed once per {@link #DEBOUNCE_MILLIS}, not once per item. Each build copies
+ * the searchable fields on the main thread (safe from later edits to the items)
+ * and builds the index on the CPU pool. The finished index replaces the current
+ * one on the main thread unless a newer change was submitted in the meantime, and
+ * the listener then re-runs its search.
+ *
+ * Until the first build lands, {@link #current()} is an empty index.
+ */
+public class SearchIndexUpdater<T> {
+    static final long DEBOUNCE_MILLIS = 150;
+
+    public interface Listener<T> {
+        void onIndexUpdated(NameSearchIndex<T> index);
+    }
+
+    /** Runs work on the main thread, now or after a delay. */
+    interface MainScheduler {
+        void postDelayed(Runnable runnable, long delayMillis);
+    }
+
+    private final NameSearchIndex.FieldExtractor<T> extractor;
+    private final Executor background;
+    private final MainScheduler main;
+    private final Listener<T> listener;
+
+    // Main thread only
+    private NameSearchIndex<T> index;
+    // Latest submitted list while a build is scheduled but has not started
+    private List<T> pendingItems;
+    // Written on the main thread; read by builds so superseded ones are skipped
+    private volatile int generation;
+
+    public static SearchIndexUpdater<User> forUsers(Listener<User> listener) {
+        AppExecutors executors = AppExecutors.getInstance();
+        return new SearchIndexUpdater<>(NameSearchIndex.USER_FIELDS, executors.cpu(), executors::postToMainDelayed,
+                listener);
+    }
+
+    SearchIndexUpdater(NameSearchIndex.FieldExtractor<T> extractor, Executor background, MainScheduler main,
+                       Listener<T> listener) {
+        this.extractor = extractor;
+        this.background = background;
+        this.main = main;
+        this.listener = listener;
+        this.index = NameSearchIndex.build(null, extractor);
+    }
+
+    /**
+     * Call on the main thread after every change to the list: items added or
+     * removed, and names edited in place. Cheap; the build follows within
+     * {@link #DEBOUNCE_MILLIS} and sees the list as it is then.
+     */
+    public void submit(List<T> items) {
+        // Builds of earlier lists still running are now stale
+        generation++;
+        boolean scheduled = pendingItems != null;
+        pendingItems = items;
+        if (!scheduled) {
+            main.postDelayed(this::build, DEBOUNCE_MILLIS);
+        }
+    }
+
+    private void build() {
+        List<T> items = pendingItems;
+        pendingItems = null;
+        int submitted = generation;
+        List<T> snapshot = new ArrayList<>(items);
+        Map<T, String[]> fields = new IdentityHashMap<>(snapshot.size());
+        for (T item : snapshot) {
+            String[] raw = extractor.getFields(item);
+            fields.put(item, raw != null ? raw.clone() : null);
+        }
+        background.execute(() -> {
+            if (submitted != generation) {
+                return;
+            }
+            NameSearchIndex<T> built = NameSearchIndex.build(snapshot, fields::get);
+            main.postDelayed(() -> {
+                if (submitted != generation) {
+                    // A newer list is already being indexed
+                    return;
+                }
+                index = built;
+                listener.onIndexUpdated(built);
+            }, 0);
+        });
+    }
+
+    /** The index of the most recent list whose build has finished. */
+    public NameSearchIndex<T> current() {
+        return index;
+    }
+}
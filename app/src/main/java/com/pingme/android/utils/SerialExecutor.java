@@ -0,0 +1,133 @@
+package com.pingme.android.utils;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one at a time, in submission order, on a shared backing pool. Used
+ * for per-chat work so events of one chat stay ordered without a thread per chat.
+ */
+class SerialExecutor implements Executor {
+    /** Told when the executor has run its last queued task. */
+    interface IdleListener {
+        void onIdle(SerialExecutor executor);
+    }
+
+    private final Executor backing;
+    @Nullable
+    private final IdleListener idleListener;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private Runnable active;
+
+    SerialExecutor(Executor backing) {
+        this(backing, null);
+    }
+
+    SerialExecutor(Executor backing, @Nullable IdleListener idleListener) {
+        this.backing = backing;
+        this.idleListener = idleListener;
+    }
+
+    @Override
+    public synchronized void execute(Runnable command) {
+        tasks.offer(() -> {
+            try {
+                command.run();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+
+    private void scheduleNext() {
+        boolean idle;
+        synchronized (this) {
+            active = tasks.poll();
+            idle = active == null;
+            if (!idle) {
+                backing.execute(active);
+            }
+        }
+        // Outside our lock: the listener may take its own
+        if (idle && idleListener != null) {
+            idleListener.onIdle(this);
+        }
+    }
+
+    synchronized boolean isIdle() {
+        return active == null && tasks.isEmpty();
+    }
+
+    synchronized int pendingCount() {
+        return tasks.size() + (active != null ? 1 : 0);
+    }
+
+    /**
+     * One serial queue per key, created on first use and dropped again once it
+     * has drained, so keys that come and go (one per chat) don't accumulate.
+     * Every task goes through the map, so a key never has two queues running at
+     * the same time.
+     */
+    static class Keyed implements IdleListener {
+        private final Executor backing;
+        private final Map<String, SerialExecutor> executors = new HashMap<>();
+        private final Map<SerialExecutor, String> keys = new HashMap<>();
+
+        Keyed(Executor backing) {
+            this.backing = backing;
+        }
+
+        /** Executor for {@code key}; it holds no queue itself and can be kept for as long as needed. */
+        Executor forKey(String key) {
+            return command -> execute(key, command);
+        }
+
+        private void execute(String key, Runnable command) {
+            synchronized (executors) {
+                SerialExecutor executor = executors.get(key);
+                if (executor == null) {
+                    executor = new SerialExecutor(backing, this);
+                    executors.put(key, executor);
+                    keys.put(executor, key);
+                }
+                executor.execute(command);
+            }
+        }
+
+        @Override
+        public void onIdle(SerialExecutor executor) {
+            synchronized (executors) {
+                // A task may have arrived since the queue drained
+                if (executor.isIdle()) {
+                    String key = keys.remove(executor);
+                    if (key != null) {
+                        executors.remove(key);
+                    }
+                }
+            }
+        }
+
+        int size() {
+            synchronized (executors) {
+                return executors.size();
+            }
+        }
+
+        int pendingCount() {
+            synchronized (executors) {
+                int pending = 0;
+                for (SerialExecutor executor : executors.values()) {
+                    pending += executor.pendingCount();
+                }
+                return pending;
+            }
+        }
+    }
+}
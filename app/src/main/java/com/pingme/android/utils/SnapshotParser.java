@@ -0,0 +1,12 @@
+package com.pingme.android.utils;
+
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Turns a Realtime Database snapshot into a model object. Called on a worker
+ * thread by {@link BackgroundChildEventListener} and
+ * {@link BackgroundValueEventListener}, so it must not touch views.
+ */
+public interface SnapshotParser<T> {
+    T parse(DataSnapshot snapshot);
+}
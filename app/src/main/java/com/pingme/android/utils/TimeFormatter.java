@@ -0,0 +1,324 @@
+package com.pingme.android.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.LongSupplier;
+
+/**
+ * The app's timestamp strings: bubble times, chat list times, date headers and
+ * last seen. Formatters are created once per locale, and every result is cached
+ * by local minute or local epoch day, so binding a row returns a cached String
+ * instead of building a SimpleDateFormat and Calendars each time.
+ *
+ * Labels relative to today ("Yesterday", weekday names, "5 minutes ago") are
+ * dropped when the local day changes; everything is dropped on a locale change
+ * (checked on each call) or a time zone / clock change (via {@link #register}).
+ * All methods are thread-safe.
+ */
+public class TimeFormatter {
+    private static final String TAG = "TimeFormatter";
+    private static final long MINUTE_MS = 60 * 1000L;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+    // Enough for a few screens of distinct minutes/days; must be powers of two
+    private static final int MINUTE_CACHE_SIZE = 1024;
+    private static final int DAY_CACHE_SIZE = 256;
+
+    private static TimeFormatter instance;
+
+    private final LongSupplier clock;
+    private final Map<Locale, Formats> formatsByLocale = new HashMap<>();
+
+    private final LabelCache bubbleTimes = new LabelCache(MINUTE_CACHE_SIZE);
+    private final LabelCache clockTimes = new LabelCache(MINUTE_CACHE_SIZE);
+    private final LabelCache chatListDays = new LabelCache(DAY_CACHE_SIZE);
+    private final LabelCache dateHeaders = new LabelCache(DAY_CACHE_SIZE);
+    private final LabelCache lastSeenDates = new LabelCache(DAY_CACHE_SIZE);
+    // "n minutes/hours/days ago", built on first use
+    private final String[] minutesAgo = new String[60];
+    private final String[] hoursAgo = new String[24];
+    private final String[] daysAgo = new String[7];
+
+    private Locale locale;
+    private TimeZone zone;
+    private Formats formats;
+    private long todayEpochDay = Long.MIN_VALUE;
+
+    public static synchronized TimeFormatter getInstance() {
+        if (instance == null) {
+            instance = new TimeFormatter(System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    TimeFormatter(LongSupplier clock) {
+        this.clock = clock;
+        invalidate();
+    }
+
+    /**
+     * Drops cached strings when the time zone, date or clock is changed in system settings.
+     * Locale changes are noticed without this.
+     */
+    public void register(Context context) {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_DATE_CHANGED);
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Log.d(TAG, "Invalidating cached times: " + intent.getAction());
+                invalidate();
+            }
+        }, filter);
+    }
+
+    /**
+     * Re-reads the default time zone and locale and drops every cached string.
+     */
+    public synchronized void invalidate() {
+        zone = TimeZone.getDefault();
+        for (Formats cached : formatsByLocale.values()) {
+            cached.setTimeZone(zone);
+        }
+        useLocale(Locale.getDefault());
+    }
+
+    /**
+     * Message bubble time, e.g. "3:07 PM".
+     */
+    public synchronized String formatTime(long timestamp) {
+        refresh();
+        long minute = localMinute(timestamp);
+        String label = bubbleTimes.get(minute);
+        if (label == null) {
+            label = formats.bubbleTime.format(new Date(timestamp));
+            bubbleTimes.put(minute, label);
+        }
+        return label;
+    }
+
+    /**
+     * Chat list time: "15:07" today, "Yesterday", a short weekday within the
+     * last week, otherwise "dd/MM/yy".
+     */
+    public synchronized String formatChatListTime(long timestamp) {
+        if (timestamp <= 0) return "";
+        refresh();
+        long day = localEpochDay(timestamp);
+        if (day == todayEpochDay) {
+            long minute = localMinute(timestamp);
+            String label = clockTimes.get(minute);
+            if (label == null) {
+                label = formats.clockTime.format(new Date(timestamp));
+                clockTimes.put(minute, label);
+            }
+            return label;
+        }
+        String label = chatListDays.get(day);
+        if (label == null) {
+            long daysBefore = todayEpochDay - day;
+            if (daysBefore == 1) {
+                label = "Yesterday";
+            } else if (daysBefore > 1 && daysBefore < 7) {
+                label = formats.shortWeekday.format(new Date(timestamp));
+            } else {
+                label = formats.shortDate.format(new Date(timestamp));
+            }
+            chatListDays.put(day, label);
+        }
+        return label;
+    }
+
+    /**
+     * Date separator in a chat: "Today", "Yesterday", a weekday within the last
+     * week, "MMMM dd" this year, otherwise "MMMM dd, yyyy".
+     */
+    public synchronized String formatDateHeader(long timestamp) {
+        refresh();
+        long day = localEpochDay(timestamp);
+        String label = dateHeaders.get(day);
+        if (label == null) {
+            long daysBefore = todayEpochDay - day;
+            if (daysBefore == 0) {
+                label = "Today";
+            } else if (daysBefore == 1) {
+                label = "Yesterday";
+            } else if (daysBefore > 1 && daysBefore < 7) {
+                label = formats.weekday.format(new Date(timestamp));
+            } else if (formats.year.format(new Date(timestamp)).equals(formats.year.format(new Date(clock.getAsLong())))) {
+                label = formats.monthDay.format(new Date(timestamp));
+            } else {
+                label = formats.fullDate.format(new Date(timestamp));
+            }
+            dateHeaders.put(day, label);
+        }
+        return label;
+    }
+
+    /**
+     * Last seen relative to now: "just now", "5 minutes ago", "2 hours ago",
+     * "yesterday", "3 days ago", otherwise "on dd/MM/yyyy".
+     */
+    public synchronized String formatLastSeen(long timestamp) {
+        refresh();
+        long diff = clock.getAsLong() - timestamp;
+        long minutes = diff / MINUTE_MS;
+        long hours = minutes / 60;
+        long days = hours / 24;
+
+        if (minutes < 1) {
+            return "just now";
+        } else if (minutes < 60) {
+            int index = (int) minutes;
+            if (minutesAgo[index] == null) {
+                minutesAgo[index] = minutes + " minute" + (minutes > 1 ? "s" : "") + " ago";
+            }
+            return minutesAgo[index];
+        } else if (hours < 24) {
+            int index = (int) hours;
+            if (hoursAgo[index] == null) {
+                hoursAgo[index] = hours + " hour" + (hours > 1 ? "s" : "") + " ago";
+            }
+            return hoursAgo[index];
+        } else if (days == 1) {
+            return "yesterday";
+        } else if (days < 7) {
+            int index = (int) days;
+            if (daysAgo[index] == null) {
+                daysAgo[index] = days + " days ago";
+            }
+            return daysAgo[index];
+        }
+        long day = localEpochDay(timestamp);
+        String label = lastSeenDates.get(day);
+        if (label == null) {
+            label = "on " + formats.numericDate.format(new Date(timestamp));
+            lastSeenDates.put(day, label);
+        }
+        return label;
+    }
+
+    // Picks up locale switches and midnight; must hold the lock
+    private void refresh() {
+        Locale current = Locale.getDefault();
+        if (current != locale) {
+            useLocale(current);
+        }
+        long today = localEpochDay(clock.getAsLong());
+        if (today != todayEpochDay) {
+            todayEpochDay = today;
+            chatListDays.clear();
+            dateHeaders.clear();
+        }
+    }
+
+    private void useLocale(Locale newLocale) {
+        locale = newLocale;
+        formats = formatsByLocale.get(newLocale);
+        if (formats == null) {
+            formats = new Formats(newLocale, zone);
+            formatsByLocale.put(newLocale, formats);
+        }
+        bubbleTimes.clear();
+        clockTimes.clear();
+        chatListDays.clear();
+        dateHeaders.clear();
+        lastSeenDates.clear();
+        Arrays.fill(minutesAgo, null);
+        Arrays.fill(hoursAgo, null);
+        Arrays.fill(daysAgo, null);
+        todayEpochDay = localEpochDay(clock.getAsLong());
+    }
+
+    private long localMinute(long timestamp) {
+        return Math.floorDiv(timestamp + zone.getOffset(timestamp), MINUTE_MS);
+    }
+
+    private long localEpochDay(long timestamp) {
+        return Math.floorDiv(timestamp + zone.getOffset(timestamp), DAY_MS);
+    }
+
+    // SimpleDateFormat is not thread-safe; instances are only used under the TimeFormatter lock
+    private static final class Formats {
+        final SimpleDateFormat bubbleTime;
+        final SimpleDateFormat clockTime;
+        final SimpleDateFormat shortWeekday;
+        final SimpleDateFormat weekday;
+        final SimpleDateFormat shortDate;
+        final SimpleDateFormat numericDate;
+        final SimpleDateFormat monthDay;
+        final SimpleDateFormat fullDate;
+        final SimpleDateFormat year;
+
+        Formats(Locale locale, TimeZone zone) {
+            bubbleTime = new SimpleDateFormat("h:mm a", locale);
+            clockTime = new SimpleDateFormat("HH:mm", locale);
+            shortWeekday = new SimpleDateFormat("EEE", locale);
+            weekday = new SimpleDateFormat("EEEE", locale);
+            shortDate = new SimpleDateFormat("dd/MM/yy", locale);
+            numericDate = new SimpleDateFormat("dd/MM/yyyy", locale);
+            monthDay = new SimpleDateFormat("MMMM dd", locale);
+            fullDate = new SimpleDateFormat("MMMM dd, yyyy", locale);
+            year = new SimpleDateFormat("yyyy", locale);
+            setTimeZone(zone);
+        }
+
+        void setTimeZone(TimeZone zone) {
+            for (SimpleDateFormat format : new SimpleDateFormat[]{bubbleTime, clockTime, shortWeekday, weekday,
+                    shortDate, numericDate, monthDay, fullDate, year}) {
+                format.setTimeZone(zone);
+            }
+        }
+    }
+
+    /**
+     * Direct-mapped long -> String cache: a lookup is an array index and a key
+     * compare, with no boxing. A colliding key replaces the previous entry.
+     */
+    static final class LabelCache {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private final long[] keys;
+        private final String[] values;
+        private final int mask;
+
+        LabelCache(int size) {
+            keys = new long[size];
+            values = new String[size];
+            mask = size - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        String get(long key) {
+            int index = index(key);
+            return keys[index] == key ? values[index] : null;
+        }
+
+        void put(long key, String value) {
+            int index = index(key);
+            keys[index] = key;
+            values[index] = value;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, null);
+        }
+
+        private int index(long key) {
+            // Consecutive minutes/days spread over the table instead of clustering
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        }
+    }
+}
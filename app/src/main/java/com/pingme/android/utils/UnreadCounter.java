@@ -0,0 +1,75 @@
+package com.pingme.android.utils;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.Map;
+
+/**
+ * Unread badges, counted on the server. Each participant has their own counter
+ * at user_chats/{uid}/{chatId}/unreadCount:
+ *
+ * - sending a message adds a server-side increment of the receiver's counter to
+ *   the same multi-path write that stores the message, so the two can't diverge
+ *   and no client transaction round-trips per message;
+ * - opening a chat resets the reader's counter with a single write;
+ * - the chat list reads the counter as-is and never scans messages for it.
+ */
+public final class UnreadCounter {
+    private static final String TAG = "UnreadCounter";
+    static final String FIELD = "unreadCount";
+
+    private UnreadCounter() {
+    }
+
+    /** Root-relative path of {@code userId}'s counter for {@code chatId}. */
+    static String path(String userId, String chatId) {
+        return "user_chats/" + userId + "/" + chatId + "/" + FIELD;
+    }
+
+    /**
+     * The other participant of a one-to-one chat ("uidA_uidB"), or null if
+     * {@code chatId} isn't in that form.
+     */
+    @Nullable
+    static String receiverOf(String chatId, String senderId) {
+        if (chatId == null || senderId == null) return null;
+        String[] userIds = chatId.split("_");
+        if (userIds.length != 2) return null;
+        return userIds[0].equals(senderId) ? userIds[1] : userIds[0];
+    }
+
+    /**
+     * Adds the receiver's increment to a root-level multi-path update for a
+     * message {@code senderId} is sending to {@code chatId}. Returns false (and
+     * adds nothing) if there is no single receiver to count for.
+     */
+    public static boolean addIncrement(Map<String, Object> updates, String chatId, String senderId) {
+        String receiverId = receiverOf(chatId, senderId);
+        if (receiverId == null) return false;
+        updates.put(path(receiverId, chatId), ServerValue.increment(1));
+        return true;
+    }
+
+    /** Marks everything in the chat as read for {@code userId}: one write, no read. */
+    public static void reset(String userId, String chatId) {
+        if (userId == null || chatId == null) return;
+        FirebaseDatabase.getInstance().getReference(path(userId, chatId)).setValue(0)
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to reset unread count for " + chatId, e));
+    }
+
+    /** The badge count stored in a user_chats/{uid}/{chatId} entry; 0 when it has none. */
+    public static int read(DataSnapshot userChat) {
+        return toCount(userChat.child(FIELD).getValue(Long.class));
+    }
+
+    static int toCount(@Nullable Long stored) {
+        if (stored == null || stored <= 0) return 0;
+        return (int) Math.min(stored, Integer.MAX_VALUE);
+    }
+}
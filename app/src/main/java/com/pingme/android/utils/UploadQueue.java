@@ -0,0 +1,950 @@
+package com.pingme.android.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.cloudinary.android.MediaManager;
+import com.cloudinary.android.callback.ErrorInfo;
+import com.cloudinary.android.callback.UploadCallback;
+import com.cloudinary.android.policy.UploadPolicy;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Persistent queue for large chat attachments (video, audio, documents).
+ *
+ * Each upload is dispatched through MediaManager as a chunked request under an
+ * {@link UploadPolicy}, so the SDK's job scheduler owns network constraints and
+ * retries and resumes a failed upload from the last confirmed chunk instead of
+ * byte zero. Queue entries (and the message to send once the upload finishes)
+ * are persisted in SharedPreferences, so neither the upload nor the message is
+ * lost when ChatActivity is closed or the process dies.
+ *
+ * The SDK persists its requests too. An upload that was running when the process
+ * died is left to the SDK as long as it still holds the request, so it resumes
+ * where it stopped. Every task keeps one Cloudinary public id for all of its
+ * attempts; an upload whose request failed or is gone is first looked up under
+ * that id, and only dispatched again if nothing is stored there yet.
+ *
+ * Sources the app could lose access to after a restart are copied into app
+ * storage when queued, and the copy is deleted with the task.
+ *
+ * Progress for all entries is published through {@link #getTasks()}.
+ */
+public class UploadQueue {
+    private static final String TAG = "UploadQueue";
+    private static final String PREFS_NAME = "upload_queue";
+    private static final String KEY_TASKS = "tasks";
+    // Private copies of sources whose URI grant would not survive a restart
+    private static final String SOURCES_DIR = "upload_sources";
+
+    // Cloudinary's minimum chunk is 5 MB; 6 MB keeps a lost chunk cheap on mobile links
+    private static final int CHUNK_SIZE = 6 * 1024 * 1024;
+    private static final int MAX_RETRIES = 8;
+    private static final long BACKOFF_MILLIS = 5000;
+    private static final int LOOKUP_TIMEOUT_MS = 15000;
+
+    public static final String KIND_VIDEO = "video";
+    public static final String KIND_AUDIO = "audio";
+    public static final String KIND_DOCUMENT = "document";
+
+    public static final int STATE_QUEUED = 0;
+    public static final int STATE_UPLOADING = 1;
+    public static final int STATE_UPLOADED = 2;
+    public static final int STATE_FAILED = 3;
+
+    private static UploadQueue instance;
+
+    private final TaskPersistence persistence;
+    private final UploadBackend backend;
+    private final Map<String, UploadTask> tasks = new LinkedHashMap<>();
+    private final Map<String, String> taskIdByRequestId = new HashMap<>();
+    // Cancelled by the caller before enqueueMessage ran; in memory only, like the caller
+    private final Set<String> cancelledTaskIds = new HashSet<>();
+    // Only populated for callers still alive in this process
+    private final Map<String, CompletableFuture<Map<String, Object>>> futures = new HashMap<>();
+    private final MutableLiveData<List<UploadTask>> tasksLiveData = new MutableLiveData<>(new ArrayList<>());
+
+    public static class UploadTask {
+        public String id;
+        public String kind;
+        public String uri;
+        public String fileName;
+        public int state = STATE_QUEUED;
+        public String requestId;
+        // Cloudinary public id, fixed on first dispatch and reused by every later attempt
+        public String publicId;
+        public long bytesUploaded;
+        public long totalBytes;
+        public String error;
+        public Map<String, Object> mediaData;
+        // Fields known before upload (e.g. video poster URL, size); merged into mediaData
+        public Map<String, Object> localMediaData;
+        // SHA-256 based key used to reuse this upload for identical content
+        public String contentKey;
+
+        // Message to send once uploaded - null for plain uploads
+        public String chatId;
+        public String senderId;
+        public String messageText;
+        public String messageType;
+
+        public int getProgressPercent() {
+            return totalBytes > 0 ? (int) (bytesUploaded * 100 / totalBytes) : 0;
+        }
+
+        UploadTask copy() {
+            try {
+                return fromJson(toJson());
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("kind", kind);
+            json.put("uri", uri);
+            json.putOpt("fileName", fileName);
+            json.put("state", state);
+            json.putOpt("requestId", requestId);
+            json.putOpt("publicId", publicId);
+            json.put("bytesUploaded", bytesUploaded);
+            json.put("totalBytes", totalBytes);
+            json.putOpt("error", error);
+            json.putOpt("contentKey", contentKey);
+            if (mediaData != null) {
+                json.put("mediaData", new JSONObject(mediaData));
+            }
+            if (localMediaData != null) {
+                json.put("localMediaData", new JSONObject(localMediaData));
+            }
+            json.putOpt("chatId", chatId);
+            json.putOpt("senderId", senderId);
+            json.putOpt("messageText", messageText);
+            json.putOpt("messageType", messageType);
+            return json;
+        }
+
+        static UploadTask fromJson(JSONObject json) throws JSONException {
+            UploadTask task = new UploadTask();
+            task.id = json.getString("id");
+            task.kind = json.getString("kind");
+            task.uri = json.getString("uri");
+            task.fileName = json.optString("fileName", null);
+            task.state = json.optInt("state", STATE_QUEUED);
+            task.requestId = json.optString("requestId", null);
+            task.publicId = json.optString("publicId", null);
+            task.bytesUploaded = json.optLong("bytesUploaded");
+            task.totalBytes = json.optLong("totalBytes");
+            task.error = json.optString("error", null);
+            task.contentKey = json.optString("contentKey", null);
+            task.mediaData = toMap(json.optJSONObject("mediaData"));
+            task.localMediaData = toMap(json.optJSONObject("localMediaData"));
+            task.chatId = json.optString("chatId", null);
+            task.senderId = json.optString("senderId", null);
+            task.messageText = json.optString("messageText", null);
+            task.messageType = json.optString("messageType", null);
+            return task;
+        }
+
+        private static Map<String, Object> toMap(JSONObject json) throws JSONException {
+            if (json == null) {
+                return null;
+            }
+            Map<String, Object> map = new HashMap<>();
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                map.put(key, json.get(key));
+            }
+            return map;
+        }
+    }
+
+    /** Stores the serialized queue across process restarts. */
+    interface TaskPersistence {
+        @Nullable
+        String load();
+
+        void save(String tasksJson);
+    }
+
+    /** The queue's side effects: the upload itself, looking an upload up, and sending its message. */
+    interface UploadBackend {
+        /**
+         * Keeps read access to the task's file across restarts, pointing {@code task.uri}
+         * at a private copy where the provider allows nothing longer-lived. Called off the
+         * main thread.
+         */
+        void retainSource(UploadTask task);
+
+        /** Deletes the private copy {@link #retainSource} may have made. */
+        void releaseSource(UploadTask task);
+
+        /**
+         * Starts uploading the task's file under {@code task.publicId} and returns the
+         * request id its results are reported under.
+         */
+        String dispatch(UploadTask task);
+
+        void cancel(String requestId);
+
+        /**
+         * Completes with true while the SDK still holds {@code requestId} queued or running,
+         * and so resumes it and reports its outcome; false once it failed, finished or is
+         * unknown.
+         */
+        CompletableFuture<Boolean> isPending(String requestId);
+
+        /**
+         * Completes with upload result data (secure_url, bytes) if an asset is already
+         * stored under {@code task.publicId}, or with null if there is none.
+         */
+        CompletableFuture<Map<String, Object>> lookup(UploadTask task);
+
+        CompletableFuture<Void> sendMessage(UploadTask task);
+
+        /** Records finished uploads for reuse by identical content. */
+        void remember(String contentKey, Map<String, Object> mediaData);
+    }
+
+    public static synchronized UploadQueue getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new UploadQueue(new PrefsPersistence(appContext), new CloudinaryBackend(appContext));
+            MediaManager.get().registerCallback(instance.globalCallback);
+        }
+        return instance;
+    }
+
+    UploadQueue(TaskPersistence persistence, UploadBackend backend) {
+        this.persistence = persistence;
+        this.backend = backend;
+    }
+
+    public LiveData<List<UploadTask>> getTasks() {
+        return tasksLiveData;
+    }
+
+    /**
+     * Reloads persisted entries after a process restart. Entries that never got
+     * dispatched are dispatched now, uploads that were running are resumed, and
+     * finished uploads whose message was not sent yet are sent. Failed entries wait for {@link #retry(String)} or {@link #cancel(String)}.
+     */
+    public synchronized void restore() {
+        String stored = persistence.load();
+        if (stored == null) {
+            return;
+        }
+        try {
+            JSONArray array = new JSONArray(stored);
+            for (int i = 0; i < array.length(); i++) {
+                UploadTask task = UploadTask.fromJson(array.getJSONObject(i));
+                tasks.put(task.id, task);
+                if (task.requestId != null) {
+                    taskIdByRequestId.put(task.requestId, task.id);
+                }
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Corrupt upload queue, discarding", e);
+            tasks.clear();
+            taskIdByRequestId.clear();
+        }
+
+        for (UploadTask task : new ArrayList<>(tasks.values())) {
+            if (task.state == STATE_QUEUED) {
+                dispatch(task);
+            } else if (task.state == STATE_UPLOADING) {
+                resume(task);
+            } else if (task.state == STATE_UPLOADED) {
+                finish(task);
+            }
+        }
+        Log.d(TAG, "Restored " + tasks.size() + " queued uploads");
+        persist();
+        publish();
+    }
+
+    /**
+     * Uploads {@code uri} and completes with the same media map the direct
+     * CloudinaryUtil uploads produce (videoUrl/audioUrl/fileUrl, duration, ...).
+     * Call off the main thread; the source may be copied first.
+     */
+    public CompletableFuture<Map<String, Object>> enqueue(Uri uri, String kind, String fileName, long totalBytes,
+                                                        String contentKey) {
+        return enqueueInternal(null, uri, kind, fileName, totalBytes, contentKey, null, null, null, null, null);
+    }
+
+    /**
+     * Uploads {@code uri} and then sends it as a message to {@code chatId}. The
+     * message is sent even if the caller is gone by the time the upload finishes.
+     */
+    public CompletableFuture<Map<String, Object>> enqueueMessage(Uri uri, String kind, String fileName, long totalBytes,
+                                                               String contentKey, String chatId, String senderId,
+                                                               String messageText, String messageType) {
+        return enqueueInternal(null, uri, kind, fileName, totalBytes, contentKey, chatId, senderId, messageText, messageType,
+                null);
+    }
+
+    /**
+     * Same as above under the caller's {@code taskId}, so the caller can
+     * {@link #cancel(String)} it even before it is enqueued. {@code localMediaData}
+     * (may be null) is merged into the message fields, taking precedence over what
+     * the upload response reports.
+     */
+    public CompletableFuture<Map<String, Object>> enqueueMessage(String taskId, Uri uri, String kind, String fileName,
+                                                               long totalBytes, String contentKey, String chatId,
+                                                               String senderId, String messageText, String messageType,
+                                                               Map<String, Object> localMediaData) {
+        return enqueueInternal(taskId, uri, kind, fileName, totalBytes, contentKey, chatId, senderId, messageText,
+                messageType, localMediaData);
+    }
+
+    private CompletableFuture<Map<String, Object>> enqueueInternal(String taskId, Uri uri, String kind, String fileName,
+                                                                 long totalBytes, String contentKey, String chatId,
+                                                                 String senderId, String messageText, String messageType,
+                                                                 Map<String, Object> localMediaData) {
+        if (taskId != null && takeCancellation(taskId)) {
+            return cancelledFuture();
+        }
+        UploadTask task = new UploadTask();
+        task.id = taskId != null ? taskId : UUID.randomUUID().toString();
+        task.kind = kind;
+        task.uri = uri.toString();
+        task.fileName = fileName;
+        task.totalBytes = totalBytes;
+        task.contentKey = contentKey;
+        task.chatId = chatId;
+        task.senderId = senderId;
+        task.messageText = messageText;
+        task.messageType = messageType;
+        task.localMediaData = localMediaData;
+        // May copy the whole file, so not under the queue's lock
+        backend.retainSource(task);
+
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        synchronized (this) {
+            // Cancelled while the source was being copied
+            if (cancelledTaskIds.remove(task.id)) {
+                backend.releaseSource(task);
+                return cancelledFuture();
+            }
+            futures.put(task.id, future);
+            tasks.put(task.id, task);
+            dispatch(task);
+            persist();
+            publish();
+        }
+        return future;
+    }
+
+    /**
+     * Retries a failed upload under the public id it already has. If the failure
+     * was only the lost response and the file is stored, it is not uploaded again;
+     * otherwise it is dispatched again. The last reported progress is kept until
+     * the new request reports its own.
+     */
+    public synchronized void retry(String taskId) {
+        UploadTask task = tasks.get(taskId);
+        if (task == null || task.state != STATE_FAILED) {
+            return;
+        }
+        task.error = null;
+        task.state = STATE_UPLOADING;
+        reconcile(task);
+        persist();
+        publish();
+    }
+
+    /**
+     * Cancels the upload and the message it would send. An id that is not queued
+     * (yet) is remembered, so a later {@link #enqueueMessage} under it does nothing.
+     */
+    public synchronized void cancel(String taskId) {
+        UploadTask task = tasks.remove(taskId);
+        if (task == null) {
+            cancelledTaskIds.add(taskId);
+            return;
+        }
+        if (task.requestId != null) {
+            backend.cancel(task.requestId);
+            taskIdByRequestId.remove(task.requestId);
+        }
+        backend.releaseSource(task);
+        CompletableFuture<Map<String, Object>> future = futures.remove(taskId);
+        if (future != null) {
+            future.cancel(false);
+        }
+        persist();
+        publish();
+    }
+
+    /**
+     * True, once, if {@code taskId} was cancelled before it was enqueued. For callers
+     * that may send without enqueueing, such as a dedup hit.
+     */
+    public synchronized boolean takeCancellation(String taskId) {
+        return cancelledTaskIds.remove(taskId);
+    }
+
+    private static CompletableFuture<Map<String, Object>> cancelledFuture() {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        future.cancel(false);
+        return future;
+    }
+
+    private void dispatch(UploadTask task) {
+        if (task.publicId == null) {
+            task.publicId = publicIdFor(task);
+        }
+        String requestId = backend.dispatch(task);
+        task.requestId = requestId;
+        task.state = STATE_UPLOADING;
+        taskIdByRequestId.put(requestId, task.id);
+        Log.d(TAG, "Dispatched " + task.kind + " upload " + task.id + " as request " + requestId);
+    }
+
+    /**
+     * Picks up an upload that was running when the process died. While the SDK
+     * still holds its request, the SDK resumes it from the last uploaded chunk and
+     * reports back through the global callback, so nothing is done here. A request
+     * the SDK failed or no longer knows is reconciled.
+     */
+    private void resume(UploadTask task) {
+        String requestId = task.requestId;
+        if (requestId == null) {
+            reconcile(task);
+            return;
+        }
+        backend.isPending(requestId).whenComplete((pending, error) -> {
+            synchronized (UploadQueue.this) {
+                // Cancelled, or the SDK already reported back
+                if (tasks.get(task.id) != task || task.state != STATE_UPLOADING
+                        || !Objects.equals(task.requestId, requestId)) {
+                    return;
+                }
+                if (Boolean.TRUE.equals(pending)) {
+                    Log.d(TAG, "Upload " + task.id + " resumes as request " + requestId);
+                    return;
+                }
+                if (error != null) {
+                    Log.w(TAG, "Could not query request " + requestId + ", reconciling upload " + task.id, error);
+                }
+                reconcile(task);
+                persist();
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Settles an upload whose outcome this process has not seen: it may have been
+     * stored after the process died, or its failure may have been a lost response.
+     * Done if Cloudinary has the asset, dispatched again under the same public id
+     * otherwise. An unsigned upload never overwrites, so should the earlier request
+     * still finish, Cloudinary answers the second one with the same asset.
+     */
+    private void reconcile(UploadTask task) {
+        if (task.publicId == null) {
+            // Persisted before public ids were kept, so there is nothing to look up
+            redispatch(task);
+            return;
+        }
+        String requestId = task.requestId;
+        backend.lookup(task).whenComplete((resultData, error) -> {
+            synchronized (UploadQueue.this) {
+                // Cancelled, or the SDK reported back while we were looking
+                if (tasks.get(task.id) != task || task.state != STATE_UPLOADING
+                        || !Objects.equals(task.requestId, requestId)) {
+                    return;
+                }
+                if (resultData != null) {
+                    Log.d(TAG, "Upload " + task.id + " was already stored as " + task.publicId);
+                    complete(task, resultData);
+                    return;
+                }
+                if (error != null) {
+                    Log.w(TAG, "Lookup failed for upload " + task.id + ", dispatching again", error);
+                }
+                redispatch(task);
+                persist();
+                publish();
+            }
+        });
+    }
+
+    private void redispatch(UploadTask task) {
+        // Only a request we still track can be running; a failed one is already over
+        if (task.requestId != null && taskIdByRequestId.remove(task.requestId) != null) {
+            backend.cancel(task.requestId);
+        }
+        dispatch(task);
+    }
+
+    /**
+     * One public id per task, never per attempt, so every retry and restore of the
+     * task resolves to the asset an earlier attempt may already have stored.
+     */
+    static String publicIdFor(UploadTask task) {
+        String publicId = folderFor(task.kind) + "/" + task.kind + "_" + task.id;
+        // Raw files keep their extension in the id; video and audio get a format from the delivery URL
+        if (KIND_DOCUMENT.equals(task.kind) && task.fileName != null && task.fileName.contains(".")) {
+            publicId += task.fileName.substring(task.fileName.lastIndexOf(".")).toLowerCase();
+        }
+        return publicId;
+    }
+
+    private static String resourceTypeFor(String kind) {
+        return KIND_DOCUMENT.equals(kind) ? "raw" : "video";
+    }
+
+    private static String folderFor(String kind) {
+        switch (kind) {
+            case KIND_VIDEO:
+                return "chat_videos";
+            case KIND_AUDIO:
+                return "chat_audio";
+            default:
+                return "chat_documents";
+        }
+    }
+
+    private final UploadCallback globalCallback = new UploadCallback() {
+        @Override
+        public void onStart(String requestId) {
+            Log.d(TAG, "Queued upload started: " + requestId);
+        }
+
+        @Override
+        public void onProgress(String requestId, long bytes, long totalBytes) {
+            onUploadProgress(requestId, bytes, totalBytes);
+        }
+
+        @Override
+        public void onSuccess(String requestId, Map resultData) {
+            onUploadSuccess(requestId, resultData);
+        }
+
+        @Override
+        public void onError(String requestId, ErrorInfo error) {
+            onUploadError(requestId, error != null ? error.getDescription() : "Unknown error");
+        }
+
+        @Override
+        public void onReschedule(String requestId, ErrorInfo error) {
+            // The SDK retries from the last uploaded chunk - nothing to restart here
+            Log.w(TAG, "Queued upload rescheduled: " + requestId + ", error: " + (error != null ? error.getDescription() : "null"));
+        }
+    };
+
+    synchronized void onUploadProgress(String requestId, long bytes, long totalBytes) {
+        UploadTask task = taskFor(requestId);
+        if (task == null) {
+            return;
+        }
+        task.bytesUploaded = bytes;
+        task.totalBytes = totalBytes;
+        // Progress is transient - publish it but don't rewrite prefs every tick
+        publish();
+    }
+
+    @SuppressWarnings("rawtypes")
+    synchronized void onUploadSuccess(String requestId, Map resultData) {
+        UploadTask task = taskFor(requestId);
+        if (task != null) {
+            complete(task, resultData);
+        }
+    }
+
+    synchronized void onUploadError(String requestId, String error) {
+        UploadTask task = taskFor(requestId);
+        if (task != null) {
+            fail(task, error);
+        }
+    }
+
+    private UploadTask taskFor(String requestId) {
+        String taskId = taskIdByRequestId.get(requestId);
+        return taskId != null ? tasks.get(taskId) : null;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void complete(UploadTask task, Map resultData) {
+        Map<String, Object> mediaData = toMediaData(task, resultData);
+        if (mediaData == null) {
+            fail(task, "Upload completed but no URL received");
+            return;
+        }
+        task.mediaData = mediaData;
+        task.state = STATE_UPLOADED;
+        backend.remember(task.contentKey, new HashMap<>(mediaData));
+        task.bytesUploaded = task.totalBytes;
+        persist();
+        publish();
+        finish(task);
+    }
+
+    private void finish(UploadTask task) {
+        CompletableFuture<Map<String, Object>> future = futures.remove(task.id);
+        if (task.chatId == null) {
+            remove(task);
+            if (future != null) {
+                future.complete(task.mediaData);
+            }
+            return;
+        }
+
+        backend.sendMessage(task).whenComplete((ignored, error) -> {
+            if (error != null) {
+                // Stays STATE_UPLOADED so the next restore() sends it again
+                Log.e(TAG, "Failed to send message for upload " + task.id, error);
+                if (future != null) {
+                    future.completeExceptionally(error);
+                }
+                return;
+            }
+            synchronized (UploadQueue.this) {
+                remove(task);
+            }
+            if (future != null) {
+                future.complete(task.mediaData);
+            }
+        });
+    }
+
+    private void fail(UploadTask task, String error) {
+        // Kept in the queue so the user can retry or cancel it
+        Log.e(TAG, "Upload " + task.id + " failed: " + error);
+        task.state = STATE_FAILED;
+        task.error = error;
+        taskIdByRequestId.remove(task.requestId);
+        persist();
+        publish();
+        CompletableFuture<Map<String, Object>> future = futures.remove(task.id);
+        if (future != null) {
+            future.completeExceptionally(new Exception("Upload failed: " + error));
+        }
+    }
+
+    private void remove(UploadTask task) {
+        tasks.remove(task.id);
+        taskIdByRequestId.remove(task.requestId);
+        backend.releaseSource(task);
+        persist();
+        publish();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map<String, Object> toMediaData(UploadTask task, Map resultData) {
+        if (resultData == null) {
+            return null;
+        }
+        Object url = resultData.get("secure_url");
+        if (url == null) {
+            url = resultData.get("url");
+        }
+        if (url == null) {
+            return null;
+        }
+
+        Map<String, Object> mediaData = new HashMap<>();
+        switch (task.kind) {
+            case KIND_VIDEO:
+                mediaData.put("videoUrl", url.toString());
+                Object thumbnailUrl = resultData.get("thumbnail_url");
+                if (thumbnailUrl != null) {
+                    mediaData.put("thumbnailUrl", thumbnailUrl.toString());
+                }
+                putDuration(mediaData, resultData.get("duration"));
+                // Lets the bubble reserve the right aspect ratio before the poster loads
+                putDimension(mediaData, "width", resultData.get("width"));
+                putDimension(mediaData, "height", resultData.get("height"));
+                break;
+            case KIND_AUDIO:
+                mediaData.put("audioUrl", url.toString());
+                putDuration(mediaData, resultData.get("duration"));
+                break;
+            default:
+                mediaData.put("fileUrl", url.toString());
+                Object originalName = resultData.get("original_filename");
+                mediaData.put("fileName", task.fileName != null ? task.fileName
+                        : (originalName != null ? originalName.toString() : "document"));
+                Object bytes = resultData.get("bytes");
+                try {
+                    mediaData.put("fileSize", bytes != null ? Long.parseLong(bytes.toString()) : task.totalBytes);
+                } catch (NumberFormatException e) {
+                    mediaData.put("fileSize", task.totalBytes);
+                }
+                break;
+        }
+        if (task.localMediaData != null) {
+            // Measured on the device (rotation-aware) and our own poster, so prefer them
+            mediaData.putAll(task.localMediaData);
+        }
+        return mediaData;
+    }
+
+    private static void putDuration(Map<String, Object> mediaData, Object duration) {
+        if (duration == null) {
+            return;
+        }
+        try {
+            // Cloudinary reports seconds, messages store milliseconds
+            mediaData.put("duration", (long) (Double.parseDouble(duration.toString()) * 1000));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Could not parse duration: " + duration, e);
+            mediaData.put("duration", 0L);
+        }
+    }
+
+    private static void putDimension(Map<String, Object> mediaData, String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            mediaData.put(key, (int) Double.parseDouble(value.toString()));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Could not parse " + key + ": " + value, e);
+        }
+    }
+
+    private void persist() {
+        JSONArray array = new JSONArray();
+        try {
+            for (UploadTask task : tasks.values()) {
+                array.put(task.toJson());
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to serialize upload queue", e);
+            return;
+        }
+        persistence.save(array.toString());
+    }
+
+    private void publish() {
+        tasksLiveData.postValue(snapshot());
+    }
+
+    /** Copies of the current entries, in queue order. */
+    synchronized List<UploadTask> snapshot() {
+        List<UploadTask> snapshot = new ArrayList<>(tasks.size());
+        for (UploadTask task : tasks.values()) {
+            snapshot.add(task.copy());
+        }
+        return snapshot;
+    }
+
+    private static final class PrefsPersistence implements TaskPersistence {
+        private final SharedPreferences prefs;
+
+        PrefsPersistence(Context context) {
+            this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        }
+
+        @Override
+        public String load() {
+            return prefs.getString(KEY_TASKS, null);
+        }
+
+        @Override
+        public void save(String tasksJson) {
+            prefs.edit().putString(KEY_TASKS, tasksJson).apply();
+        }
+    }
+
+    private static final class CloudinaryBackend implements UploadBackend {
+        private final Context context;
+
+        CloudinaryBackend(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void retainSource(UploadTask task) {
+            Uri uri = Uri.parse(task.uri);
+            if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && !isUnder(uri, context.getCacheDir())) {
+                return;
+            }
+            // Only picker documents can keep their grant; camera, FileProvider and MediaStore URIs can't
+            if (DocumentsContract.isDocumentUri(context, uri)) {
+                try {
+                    context.getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    return;
+                } catch (SecurityException e) {
+                    Log.w(TAG, "Persistable permission not available for " + task.uri + ", copying it");
+                }
+            }
+            File copy = new File(sourcesDir(), task.id);
+            try (InputStream in = context.getContentResolver().openInputStream(uri);
+                 OutputStream out = new FileOutputStream(copy)) {
+                if (in == null) {
+                    throw new IOException("No stream for " + uri);
+                }
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                // Still uploads now; only a restore after process death would lose it
+                Log.e(TAG, "Could not copy " + task.uri + " for upload " + task.id, e);
+                copy.delete();
+                return;
+            }
+            task.uri = Uri.fromFile(copy).toString();
+        }
+
+        @Override
+        public void releaseSource(UploadTask task) {
+            Uri uri = Uri.parse(task.uri);
+            if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && isUnder(uri, sourcesDir())) {
+                new File(uri.getPath()).delete();
+            }
+        }
+
+        private File sourcesDir() {
+            File dir = new File(context.getFilesDir(), SOURCES_DIR);
+            dir.mkdirs();
+            return dir;
+        }
+
+        private static boolean isUnder(Uri fileUri, File dir) {
+            String path = fileUri.getPath();
+            return path != null && path.startsWith(dir.getAbsolutePath() + File.separator);
+        }
+
+        @Override
+        public String dispatch(UploadTask task) {
+            UploadPolicy policy = new UploadPolicy.Builder()
+                    .networkPolicy(UploadPolicy.NetworkType.ANY)
+                    .maxRetries(MAX_RETRIES)
+                    .backoffCriteria(BACKOFF_MILLIS, UploadPolicy.BackoffPolicy.EXPONENTIAL)
+                    .build();
+
+            return MediaManager.get().upload(Uri.parse(task.uri))
+                    .unsigned("pingme_upload_preset")
+                    .option("public_id", task.publicId)
+                    .option("resource_type", resourceTypeFor(task.kind))
+                    .option("chunk_size", CHUNK_SIZE)
+                    .policy(policy)
+                    .dispatch(context);
+        }
+
+        @Override
+        public void cancel(String requestId) {
+            MediaManager.get().cancelRequest(requestId);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> isPending(String requestId) {
+            // The SDK enqueues each request as unique WorkManager work named after its id
+            ListenableFuture<List<WorkInfo>> workInfos = WorkManager.getInstance(context)
+                    .getWorkInfosForUniqueWork(requestId);
+            CompletableFuture<Boolean> pending = new CompletableFuture<>();
+            workInfos.addListener(() -> {
+                try {
+                    for (WorkInfo info : workInfos.get()) {
+                        if (!info.getState().isFinished()) {
+                            pending.complete(true);
+                            return;
+                        }
+                    }
+                    pending.complete(false);
+                } catch (ExecutionException | InterruptedException e) {
+                    pending.completeExceptionally(e);
+                }
+            }, AppExecutors.getInstance().io());
+            return pending;
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Object>> lookup(UploadTask task) {
+            String url = MediaManager.get().url()
+                    .resourceType(resourceTypeFor(task.kind))
+                    .secure(true)
+                    .generate(task.publicId);
+            return CompletableFuture.supplyAsync(() -> {
+                HttpURLConnection connection = null;
+                try {
+                    // A HEAD on the delivery URL needs no signed API call
+                    connection = (HttpURLConnection) new URL(url).openConnection();
+                    connection.setRequestMethod("HEAD");
+                    connection.setConnectTimeout(LOOKUP_TIMEOUT_MS);
+                    connection.setReadTimeout(LOOKUP_TIMEOUT_MS);
+                    int code = connection.getResponseCode();
+                    if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                        return null;
+                    }
+                    if (code != HttpURLConnection.HTTP_OK) {
+                        throw new IOException("Lookup of " + url + " returned " + code);
+                    }
+                    Map<String, Object> resultData = new HashMap<>();
+                    resultData.put("secure_url", url);
+                    long length = connection.getContentLengthLong();
+                    if (length >= 0) {
+                        resultData.put("bytes", length);
+                    }
+                    return resultData;
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
+                }
+            }, AppExecutors.getInstance().io());
+        }
+
+        @Override
+        public CompletableFuture<Void> sendMessage(UploadTask task) {
+            CompletableFuture<Void> sent = new CompletableFuture<>();
+            FirebaseUtil.sendMessageWithDeliveryTracking(task.chatId, task.senderId, task.messageText,
+                            task.messageType, task.mediaData)
+                    .addOnSuccessListener(aVoid -> sent.complete(null))
+                    .addOnFailureListener(sent::completeExceptionally);
+            return sent;
+        }
+
+        @Override
+        public void remember(String contentKey, Map<String, Object> mediaData) {
+            MediaDedupStore.getInstance(context).put(contentKey, mediaData);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.pingme.android.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Schedules attachment sends so a batch of picked files cannot saturate the uplink.
+ *
+ *  - at most {@link #parallelismFor} uploads run at once, sized from the
+ *    active network's upstream bandwidth
+ *  - small files are uploaded first so a quick photo is not stuck behind a video
+ *  - messages are still sent in the order the user chose them, per chat: a finished
+ *    upload waits for the ones queued before it in the same chat
+ *  - each message can be cancelled until it has been sent
+ *
+ * Jobs whose upload also sends the message (the persistent UploadQueue path) are
+ * only started once everything before them in the chat has been sent. Each one
+ * carries the UploadQueue task id it enqueues under, so cancelling the job
+ * cancels the queued upload and its message as well.
+ *
+ * Text messages never go through here, so they are not queued behind uploads.
+ */
+public class UploadScheduler {
+    private static final String TAG = "UploadScheduler";
+
+    private static final long SMALL_FILE_BYTES = 2L * 1024 * 1024;
+    private static final long MEDIUM_FILE_BYTES = 20L * 1024 * 1024;
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_UPLOADING = 1;
+    private static final int STATE_UPLOADED = 2;
+    private static final int STATE_SENDING = 3;
+    private static final int STATE_DONE = 4;
+    private static final int STATE_CANCELLED = 5;
+
+    private static UploadScheduler instance;
+
+    public interface JobListener {
+        void onSent(Map<String, Object> mediaData);
+        void onFailed(Throwable error);
+    }
+
+    /** Sends the message for a finished upload. */
+    interface MessageSender {
+        CompletableFuture<Void> send(String chatId, String senderId, String text, String type,
+                                     Map<String, Object> mediaData);
+    }
+
+    /** Cancels the UploadQueue task of a self-sending job, whether or not it was enqueued yet. */
+    interface UploadCanceller {
+        void cancel(String uploadTaskId);
+    }
+
+    private static class Job {
+        final String id = UUID.randomUUID().toString();
+        final long sequence;
+        final String chatId;
+        final long sizeBytes;
+        final Supplier<CompletableFuture<Map<String, Object>>> upload;
+        final String senderId;
+        final String text;
+        final String type;
+        final JobListener listener;
+        // Upload future completes only after the message itself was sent
+        final boolean sendsItself;
+        // UploadQueue task the self-sending upload is enqueued under
+        final String uploadTaskId;
+        int state = STATE_PENDING;
+        Map<String, Object> mediaData;
+
+        Job(long sequence, String chatId, long sizeBytes, Supplier<CompletableFuture<Map<String, Object>>> upload,
+            String senderId, String text, String type, JobListener listener, String uploadTaskId) {
+            this.sequence = sequence;
+            this.chatId = chatId;
+            this.sizeBytes = sizeBytes;
+            this.upload = upload;
+            this.senderId = senderId;
+            this.text = text;
+            this.type = type;
+            this.listener = listener;
+            this.sendsItself = uploadTaskId != null;
+            this.uploadTaskId = uploadTaskId;
+        }
+
+        int sizeClass() {
+            if (sizeBytes <= 0 || sizeBytes > MEDIUM_FILE_BYTES) return 2;
+            return sizeBytes > SMALL_FILE_BYTES ? 1 : 0;
+        }
+    }
+
+    private final IntSupplier parallelism;
+    private final MessageSender sender;
+    private final UploadCanceller canceller;
+    private final Executor callbackExecutor;
+
+    // Small files first, then in the order they were chosen
+    private final PriorityQueue<Job> pending = new PriorityQueue<>(
+            Comparator.comparingInt(Job::sizeClass).thenComparingLong(job -> job.sequence));
+    private final Map<String, ArrayDeque<Job>> sendOrderByChat = new HashMap<>();
+    private final Map<String, Job> jobs = new HashMap<>();
+    private final Set<String> chatsSending = new HashSet<>();
+    private long nextSequence;
+    private int running;
+
+    public static synchronized UploadScheduler getInstance(Context context) {
+        if (instance == null) {
+            ConnectivityManager connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                    .getSystemService(Context.CONNECTIVITY_SERVICE);
+            AppExecutors executors = AppExecutors.getInstance();
+            UploadQueue uploadQueue = UploadQueue.getInstance(context);
+            instance = new UploadScheduler(() -> parallelismFor(connectivityManager),
+                    UploadScheduler::sendWithDeliveryTracking, uploadQueue::cancel, executors::postToMain);
+        }
+        return instance;
+    }
+
+    UploadScheduler(IntSupplier parallelism, MessageSender sender, UploadCanceller canceller,
+                    Executor callbackExecutor) {
+        this.parallelism = parallelism;
+        this.sender = sender;
+        this.canceller = canceller;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Queues an attachment: {@code upload} produces the media map once a slot is
+     * free, then the message is sent in order behind earlier attachments of the
+     * same chat. Listener callbacks arrive on the main thread.
+     *
+     * @return job id for {@link #cancel(String)}
+     */
+    public synchronized String schedule(String chatId, long sizeBytes, Supplier<CompletableFuture<Map<String, Object>>> upload,
+                                        String senderId, String text, String type, JobListener listener) {
+        return add(new Job(nextSequence++, chatId, sizeBytes, upload, senderId, text, type, listener, null));
+    }
+
+    /**
+     * Queues an upload that sends its own message through UploadQueue. It is started
+     * only once every earlier attachment of the chat has been sent, and
+     * {@code uploadAndSend} is given the UploadQueue task id to enqueue under.
+     */
+    public synchronized String scheduleSelfSending(String chatId, long sizeBytes,
+                                                   Function<String, CompletableFuture<Map<String, Object>>> uploadAndSend,
+                                                   JobListener listener) {
+        String uploadTaskId = UUID.randomUUID().toString();
+        return add(new Job(nextSequence++, chatId, sizeBytes, () -> uploadAndSend.apply(uploadTaskId),
+                null, null, null, listener, uploadTaskId));
+    }
+
+    private String add(Job job) {
+        jobs.put(job.id, job);
+        pending.add(job);
+        ArrayDeque<Job> order = sendOrderByChat.get(job.chatId);
+        if (order == null) {
+            order = new ArrayDeque<>();
+            sendOrderByChat.put(job.chatId, order);
+        }
+        order.add(job);
+        Log.d(TAG, "Scheduled job " + job.id + " (" + job.sizeBytes + " bytes) for chat " + job.chatId + ", pending " + pending.size());
+        pump();
+        return job.id;
+    }
+
+    /**
+     * Cancels a queued message. A self-sending job's UploadQueue task is cancelled
+     * with it. Any other upload already in progress finishes in the background (and
+     * stays reusable through the dedup store) but is not sent. No listener callback
+     * follows a successful cancel.
+     */
+    public synchronized boolean cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null || job.state == STATE_SENDING || job.state == STATE_DONE
+                || job.state == STATE_CANCELLED) {
+            return false;
+        }
+        pending.remove(job);
+        if (job.sendsItself && job.state == STATE_UPLOADING) {
+            canceller.cancel(job.uploadTaskId);
+        }
+        job.state = STATE_CANCELLED;
+        Log.d(TAG, "Cancelled job " + jobId);
+        drainChat(job.chatId);
+        pump();
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return jobs.size();
+    }
+
+    private void pump() {
+        int limit = parallelism.getAsInt();
+        List<Job> deferred = new ArrayList<>();
+        while (running < limit && !pending.isEmpty()) {
+            Job job = pending.poll();
+            if (job.sendsItself && !isNextToSend(job)) {
+                deferred.add(job);
+                continue;
+            }
+            job.state = STATE_UPLOADING;
+            running++;
+            start(job);
+        }
+        pending.addAll(deferred);
+    }
+
+    private boolean isNextToSend(Job job) {
+        ArrayDeque<Job> order = sendOrderByChat.get(job.chatId);
+        if (order == null) {
+            return true;
+        }
+        for (Job queued : order) {
+            if (queued.state != STATE_CANCELLED) {
+                return queued == job;
+            }
+        }
+        return true;
+    }
+
+    private void start(Job job) {
+        CompletableFuture<Map<String, Object>> future;
+        try {
+            future = job.upload.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((mediaData, error) -> {
+            synchronized (UploadScheduler.this) {
+                running--;
+                if (job.state != STATE_CANCELLED) {
+                    if (error != null || mediaData == null) {
+                        fail(job, error != null ? error : new Exception("Upload returned no data"));
+                    } else if (job.sendsItself) {
+                        job.mediaData = mediaData;
+                        job.state = STATE_DONE;
+                        ArrayDeque<Job> order = sendOrderByChat.get(job.chatId);
+                        if (order != null) {
+                            order.remove(job);
+                        }
+                        jobs.remove(job.id);
+                        notifySent(job);
+                    } else {
+                        job.mediaData = mediaData;
+                        job.state = STATE_UPLOADED;
+                    }
+                }
+                drainChat(job.chatId);
+                pump();
+            }
+        });
+    }
+
+    // Sends finished uploads from the head of the chat's queue, one at a time
+    private void drainChat(String chatId) {
+        ArrayDeque<Job> order = sendOrderByChat.get(chatId);
+        if (order == null || chatsSending.contains(chatId)) {
+            return;
+        }
+        while (!order.isEmpty()) {
+            Job head = order.peek();
+            if (head.state == STATE_CANCELLED) {
+                order.poll();
+                jobs.remove(head.id);
+                continue;
+            }
+            if (head.state != STATE_UPLOADED) {
+                // Earlier message still uploading - later ones wait to keep the chosen order
+                return;
+            }
+            head.state = STATE_SENDING;
+            chatsSending.add(chatId);
+            CompletableFuture<Void> sent;
+            try {
+                sent = sender.send(chatId, head.senderId, head.text, head.type, head.mediaData);
+            } catch (Exception e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((ignored, error) -> {
+                synchronized (UploadScheduler.this) {
+                    chatsSending.remove(chatId);
+                    order.remove(head);
+                    jobs.remove(head.id);
+                    head.state = STATE_DONE;
+                    if (error == null) {
+                        notifySent(head);
+                    } else {
+                        notifyFailed(head, error);
+                    }
+                    drainChat(chatId);
+                    pump();
+                }
+            });
+            return;
+        }
+        sendOrderByChat.remove(chatId);
+    }
+
+    private void fail(Job job, Throwable error) {
+        Log.e(TAG, "Upload failed for job " + job.id, error);
+        // Treated like a cancellation for ordering so later messages are not held back
+        job.state = STATE_CANCELLED;
+        notifyFailed(job, error);
+    }
+
+    private void notifySent(Job job) {
+        if (job.listener != null) {
+            Map<String, Object> mediaData = job.mediaData;
+            callbackExecutor.execute(() -> job.listener.onSent(mediaData));
+        }
+    }
+
+    private void notifyFailed(Job job, Throwable error) {
+        if (job.listener != null) {
+            callbackExecutor.execute(() -> job.listener.onFailed(error));
+        }
+    }
+
+    /**
+     * Parallel uploads for the active network: enough to hide per-request latency
+     * on fast links, a single stream on slow ones where parallelism only adds contention.
+     */
+    private static int parallelismFor(ConnectivityManager connectivityManager) {
+        if (connectivityManager == null) {
+            return 2;
+        }
+        try {
+            Network network = connectivityManager.getActiveNetwork();
+            NetworkCapabilities capabilities = network != null ? connectivityManager.getNetworkCapabilities(network) : null;
+            if (capabilities == null) {
+                return 1;
+            }
+            int upstreamKbps = capabilities.getLinkUpstreamBandwidthKbps();
+            boolean unmetered = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+            if (upstreamKbps >= 10_000 && unmetered) {
+                return 3;
+            }
+            if (upstreamKbps >= 1_000) {
+                return 2;
+            }
+            return 1;
+        } catch (SecurityException e) {
+            return 2;
+        }
+    }
+
+    private static CompletableFuture<Void> sendWithDeliveryTracking(String chatId, String senderId, String text,
+                                                                   String type, Map<String, Object> mediaData) {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        FirebaseUtil.sendMessageWithDeliveryTracking(chatId, senderId, text, type, mediaData)
+                .addOnSuccessListener(aVoid -> sent.complete(null))
+                .addOnFailureListener(sent::completeExceptionally);
+        return sent;
+    }
+}
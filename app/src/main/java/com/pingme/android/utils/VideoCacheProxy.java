@@ -0,0 +1,656 @@
+package com.pingme.android.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback HTTP server that sits between the in-app video player and the media
+ * CDN so playback can start while the file is still downloading.
+ *
+ *  - the player requests {@link #getProxyUrl(String)} and issues normal HTTP
+ *    range requests against it
+ *  - each request is answered from the local sparse cache file where bytes are
+ *    already present, and from an origin range request where they are not;
+ *    origin bytes are streamed to the player and written to the cache at once
+ *  - downloaded ranges are recorded next to the data file, so replays and seeks
+ *    into already watched parts never touch the network again
+ *
+ * A seek only fetches the bytes from the seek position on, instead of the whole
+ * file that {@link VideoPlayerUtil#downloadVideo} needs before anything plays.
+ *
+ * The port is reachable by every app on the device, so proxy URLs carry a random
+ * per-process token and only Cloudinary http(s) URLs are fetched; anything else
+ * is refused rather than relayed. The cache is trimmed to its budget as new data
+ * lands, skipping videos that a player is still reading.
+ */
+public class VideoCacheProxy {
+    private static final String TAG = "VideoCacheProxy";
+    private static final String CACHE_DIR = "media_stream";
+    private static final String PATH_PREFIX = "/video/";
+    private static final String QUERY_PREFIX = "?u=";
+    private static final String ORIGIN_HOST = "res.cloudinary.com";
+    private static final long MAX_CACHE_BYTES = 256L * 1024 * 1024;
+    // New data cached between two trim passes
+    private static final long TRIM_INTERVAL_BYTES = 8L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Persist the range table at least this often while a long fetch is running
+    private static final long META_SAVE_INTERVAL_BYTES = 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private static VideoCacheProxy instance;
+
+    private final File directory;
+    private final String token = newToken();
+    private final Map<String, CachedVideo> videos = new HashMap<>();
+    private final AtomicLong bytesSinceTrim = new AtomicLong();
+    private final AtomicBoolean trimPending = new AtomicBoolean();
+    private ServerSocket serverSocket;
+
+    public static synchronized VideoCacheProxy getInstance(Context context) {
+        if (instance == null) {
+            instance = new VideoCacheProxy(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private VideoCacheProxy(Context context) {
+        this.directory = new File(context.getCacheDir(), CACHE_DIR);
+    }
+
+    /**
+     * Returns a loopback URL the player can stream {@code originUrl} from, starting
+     * the proxy on first use. Falls back to the origin URL if the proxy cannot start
+     * or the URL is not a Cloudinary http(s) URL.
+     */
+    public synchronized String getProxyUrl(String originUrl) {
+        if (!isAllowedOrigin(originUrl)) {
+            Log.w(TAG, "Not proxying non-Cloudinary URL");
+            return originUrl;
+        }
+        if (!ensureStarted()) {
+            return originUrl;
+        }
+        try {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + PATH_PREFIX + token + QUERY_PREFIX
+                    + URLEncoder.encode(originUrl, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return originUrl;
+        }
+    }
+
+    private boolean ensureStarted() {
+        if (serverSocket != null && !serverSocket.isClosed()) {
+            return true;
+        }
+        try {
+            serverSocket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start video proxy", e);
+            return false;
+        }
+        ServerSocket socket = serverSocket;
+        AppExecutors.getInstance().newDedicatedThread(() -> acceptLoop(socket), "VideoCacheProxy").start();
+        scheduleTrim();
+        Log.d(TAG, "Video proxy listening on port " + socket.getLocalPort());
+        return true;
+    }
+
+    private void acceptLoop(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                // A client that connects and goes quiet must not hold a streaming thread
+                client.setSoTimeout(READ_TIMEOUT_MS);
+                AppExecutors.getInstance().streaming().execute(() -> handleClient(client));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    Log.e(TAG, "Error accepting player connection", e);
+                }
+            }
+        }
+    }
+
+    private void handleClient(Socket client) {
+        try (Socket socket = client) {
+            InputStream in = socket.getInputStream();
+            String requestLine = readLine(in);
+            if (requestLine == null) {
+                return;
+            }
+            String rangeHeader = null;
+            String header;
+            while ((header = readLine(in)) != null && !header.isEmpty()) {
+                int colon = header.indexOf(':');
+                if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    rangeHeader = header.substring(colon + 1).trim();
+                }
+            }
+
+            String[] parts = requestLine.split(" ");
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            String originUrl = parts.length < 2 ? null : originFromPath(parts[1], token);
+            if (originUrl == null) {
+                writeStatus(out, "403 Forbidden", 0);
+                return;
+            }
+            boolean headOnly = "HEAD".equals(parts[0]);
+            CachedVideo video = openReader(originUrl);
+            try {
+                serve(video, rangeHeader, headOnly, out);
+            } finally {
+                closeReader(video);
+            }
+        } catch (IOException e) {
+            // Players drop connections on every seek - not an error
+            Log.d(TAG, "Player connection closed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error serving player request", e);
+        }
+    }
+
+    /**
+     * The origin URL a proxy request path asks for, or null unless the path
+     * carries {@code token} and names an allowed origin.
+     */
+    @Nullable
+    static String originFromPath(String path, String token) {
+        if (path == null || !path.startsWith(PATH_PREFIX)) {
+            return null;
+        }
+        int query = path.indexOf(QUERY_PREFIX, PATH_PREFIX.length());
+        if (query < 0) {
+            return null;
+        }
+        byte[] presented = path.substring(PATH_PREFIX.length(), query).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(presented, token.getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        String originUrl;
+        try {
+            originUrl = URLDecoder.decode(path.substring(query + QUERY_PREFIX.length()), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+        return isAllowedOrigin(originUrl) ? originUrl : null;
+    }
+
+    /** Only Cloudinary delivery URLs over http(s) are fetched. */
+    static boolean isAllowedOrigin(@Nullable String originUrl) {
+        if (originUrl == null) {
+            return false;
+        }
+        try {
+            URL url = new URL(originUrl);
+            String protocol = url.getProtocol().toLowerCase(Locale.US);
+            return ("https".equals(protocol) || "http".equals(protocol))
+                    && url.getUserInfo() == null
+                    && ORIGIN_HOST.equalsIgnoreCase(url.getHost());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private void serve(CachedVideo video, String rangeHeader, boolean headOnly, OutputStream out) throws IOException {
+        long length = video.ensureLength();
+
+        long start = 0;
+        long end = length - 1;
+        boolean partial = rangeHeader != null && rangeHeader.startsWith("bytes=");
+        if (partial) {
+            String spec = rangeHeader.substring("bytes=".length());
+            int dash = spec.indexOf('-');
+            try {
+                if (dash < 0) {
+                    throw new NumberFormatException("Malformed range: " + spec);
+                } else if (dash == 0) {
+                    // Suffix range: last N bytes
+                    start = Math.max(0, length - Long.parseLong(spec.substring(1)));
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash < spec.length() - 1) {
+                        end = Math.min(end, Long.parseLong(spec.substring(dash + 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Serve the whole file rather than failing playback
+                partial = false;
+                start = 0;
+                end = length - 1;
+            }
+        }
+        if (start > end) {
+            out.write(("HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: bytes */" + length
+                    + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return;
+        }
+
+        StringBuilder headers = new StringBuilder();
+        headers.append(partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+        headers.append("Content-Type: ").append(video.contentType).append("\r\n");
+        headers.append("Content-Length: ").append(end - start + 1).append("\r\n");
+        if (partial) {
+            headers.append("Content-Range: bytes ").append(start).append('-').append(end)
+                    .append('/').append(length).append("\r\n");
+        }
+        headers.append("Accept-Ranges: bytes\r\nConnection: close\r\n\r\n");
+        out.write(headers.toString().getBytes(StandardCharsets.US_ASCII));
+        if (!headOnly) {
+            video.copyRange(start, end + 1, out);
+        }
+        out.flush();
+    }
+
+    // Readers are counted so trimming never deletes a file that is being served
+    private synchronized CachedVideo openReader(String originUrl) throws IOException {
+        String key = MediaDiskCache.keyFor(originUrl);
+        CachedVideo video = videos.get(key);
+        if (video == null) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Cannot create cache directory: " + directory);
+            }
+            video = new CachedVideo(originUrl, new File(directory, key + ".data"), new File(directory, key + ".meta"));
+            videos.put(key, video);
+        }
+        video.dataFile.setLastModified(System.currentTimeMillis());
+        video.readers++;
+        return video;
+    }
+
+    private synchronized void closeReader(CachedVideo video) {
+        video.readers--;
+    }
+
+    // Called after each origin write; trims once enough new data has been cached
+    private void onCached(long bytes) {
+        if (bytesSinceTrim.addAndGet(bytes) >= TRIM_INTERVAL_BYTES) {
+            scheduleTrim();
+        }
+    }
+
+    private void scheduleTrim() {
+        if (!trimPending.compareAndSet(false, true)) {
+            return;
+        }
+        bytesSinceTrim.set(0);
+        AppExecutors.getInstance().io().execute(() -> {
+            try {
+                trimCache();
+            } finally {
+                trimPending.set(false);
+            }
+        });
+    }
+
+    // Drops the least recently played videos until the cache fits its budget
+    private void trimCache() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".data"));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_CACHE_BYTES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        synchronized (this) {
+            for (File file : files) {
+                if (total <= MAX_CACHE_BYTES) {
+                    break;
+                }
+                String key = file.getName().substring(0, file.getName().length() - ".data".length());
+                CachedVideo video = videos.get(key);
+                if (video != null && video.readers > 0) {
+                    // Still being served to a player
+                    continue;
+                }
+                videos.remove(key);
+                total -= file.length();
+                file.delete();
+                new File(directory, key + ".meta").delete();
+            }
+        }
+        Log.d(TAG, "Video cache trimmed to " + total + " bytes");
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+
+    private static void writeStatus(OutputStream out, String status, long contentLength) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Length: " + contentLength
+                + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static long parseTotalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * One video: a sparse data file plus the sorted list of byte ranges already in it.
+     */
+    private class CachedVideo {
+        final String originUrl;
+        final File dataFile;
+        final File metaFile;
+        final RangeSet ranges = new RangeSet();
+        long length = -1;
+        String contentType = "video/mp4";
+        // Open player connections; guarded by the proxy's lock
+        int readers;
+
+        CachedVideo(String originUrl, File dataFile, File metaFile) {
+            this.originUrl = originUrl;
+            this.dataFile = dataFile;
+            this.metaFile = metaFile;
+            loadMeta();
+        }
+
+        // First request only: learn the total length and type from a one-byte probe
+        synchronized long ensureLength() throws IOException {
+            if (length >= 0) {
+                return length;
+            }
+            HttpURLConnection connection = openOrigin(0, 0);
+            try {
+                int code = connection.getResponseCode();
+                if (code == HttpURLConnection.HTTP_PARTIAL) {
+                    length = parseTotalLength(connection.getHeaderField("Content-Range"));
+                } else if (code == HttpURLConnection.HTTP_OK) {
+                    length = connection.getContentLengthLong();
+                } else {
+                    throw new IOException("Origin returned HTTP " + code);
+                }
+                if (length < 0) {
+                    throw new IOException("Origin did not report a content length");
+                }
+                String type = connection.getContentType();
+                if (type != null) {
+                    contentType = type;
+                }
+            } finally {
+                connection.disconnect();
+            }
+            saveMeta();
+            return length;
+        }
+
+        void copyRange(long start, long end, OutputStream out) throws IOException {
+            long position = start;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (position < end) {
+                long cachedEnd;
+                long nextCached;
+                synchronized (this) {
+                    cachedEnd = ranges.endOfRangeContaining(position);
+                    nextCached = ranges.nextStartAfter(position);
+                }
+                if (cachedEnd > position) {
+                    long stop = Math.min(cachedEnd, end);
+                    copyFromDisk(position, stop, buffer, out);
+                    position = stop;
+                } else {
+                    // Only fetch the hole up to the next range we already have
+                    position = fetchFromOrigin(position, Math.min(nextCached, end), buffer, out);
+                }
+            }
+        }
+
+        private void copyFromDisk(long start, long end, byte[] buffer, OutputStream out) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(dataFile, "r")) {
+                file.seek(start);
+                long remaining = end - start;
+                while (remaining > 0) {
+                    int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1) {
+                        throw new IOException("Cache file shorter than recorded ranges");
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+        }
+
+        private long fetchFromOrigin(long start, long end, byte[] buffer, OutputStream out) throws IOException {
+            HttpURLConnection connection = openOrigin(start, end - 1);
+            long position = start;
+            long unsaved = 0;
+            long written = 0;
+            try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+                int code = connection.getResponseCode();
+                long streamPosition;
+                if (code == HttpURLConnection.HTTP_PARTIAL) {
+                    streamPosition = start;
+                } else if (code == HttpURLConnection.HTTP_OK) {
+                    // Origin ignored the range - the body starts at byte 0
+                    streamPosition = 0;
+                } else {
+                    throw new IOException("Origin returned HTTP " + code);
+                }
+
+                try (InputStream in = connection.getInputStream()) {
+                    file.seek(streamPosition);
+                    int read;
+                    while (position < end && (read = in.read(buffer)) != -1) {
+                        long chunkStart = streamPosition;
+                        streamPosition += read;
+                        file.write(buffer, 0, read);
+                        recordRange(chunkStart, streamPosition);
+                        unsaved += read;
+                        written += read;
+
+                        // Bytes before the requested start only happen when the origin ignored the range
+                        if (streamPosition > position) {
+                            int offset = (int) Math.max(0, position - chunkStart);
+                            int count = (int) (Math.min(streamPosition, end) - chunkStart) - offset;
+                            out.write(buffer, offset, count);
+                            position += count;
+                        }
+
+                        if (unsaved >= META_SAVE_INTERVAL_BYTES) {
+                            saveMeta();
+                            unsaved = 0;
+                        }
+                    }
+                }
+            } finally {
+                connection.disconnect();
+                saveMeta();
+                onCached(written);
+            }
+            if (position < end) {
+                throw new IOException("Origin closed early at " + position + " of " + end);
+            }
+            return position;
+        }
+
+        private synchronized void recordRange(long start, long end) {
+            ranges.add(start, end);
+        }
+
+        private HttpURLConnection openOrigin(long first, long last) throws IOException {
+            URLConnection opened = new URL(originUrl).openConnection();
+            if (!(opened instanceof HttpURLConnection)) {
+                throw new IOException("Not an HTTP origin: " + originUrl);
+            }
+            HttpURLConnection connection = (HttpURLConnection) opened;
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("Range", "bytes=" + first + "-" + last);
+            connection.connect();
+            return connection;
+        }
+
+        private void loadMeta() {
+            if (!metaFile.exists() || !dataFile.exists()) {
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(new FileReader(metaFile))) {
+                length = Long.parseLong(reader.readLine());
+                contentType = reader.readLine();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] bounds = line.split(" ");
+                    ranges.add(Long.parseLong(bounds[0]), Long.parseLong(bounds[1]));
+                }
+                Log.d(TAG, "Resuming cached video with " + ranges.totalBytes() + " of " + length + " bytes");
+            } catch (Exception e) {
+                Log.w(TAG, "Discarding unreadable video cache metadata", e);
+                length = -1;
+                contentType = "video/mp4";
+                ranges.clear();
+                dataFile.delete();
+            }
+        }
+
+        private synchronized void saveMeta() {
+            File temp = new File(metaFile.getPath() + ".tmp");
+            try (PrintWriter writer = new PrintWriter(new FileWriter(temp))) {
+                writer.println(length);
+                writer.println(contentType);
+                for (long[] range : ranges.asList()) {
+                    writer.println(range[0] + " " + range[1]);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not save video cache metadata", e);
+                return;
+            }
+            if (!temp.renameTo(metaFile)) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Sorted, non-overlapping half-open byte ranges [start, end).
+     */
+    static class RangeSet {
+        private final List<long[]> ranges = new ArrayList<>();
+
+        void add(long start, long end) {
+            if (end <= start) {
+                return;
+            }
+            int i = 0;
+            while (i < ranges.size() && ranges.get(i)[1] < start) {
+                i++;
+            }
+            // Merge every range that touches or overlaps [start, end)
+            while (i < ranges.size() && ranges.get(i)[0] <= end) {
+                long[] existing = ranges.remove(i);
+                start = Math.min(start, existing[0]);
+                end = Math.max(end, existing[1]);
+            }
+            ranges.add(i, new long[] {start, end});
+        }
+
+        // End of the range covering position, or position itself if it is not cached
+        long endOfRangeContaining(long position) {
+            for (long[] range : ranges) {
+                if (range[0] <= position && position < range[1]) {
+                    return range[1];
+                }
+                if (range[0] > position) {
+                    break;
+                }
+            }
+            return position;
+        }
+
+        long nextStartAfter(long position) {
+            for (long[] range : ranges) {
+                if (range[0] > position) {
+                    return range[0];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        long totalBytes() {
+            long total = 0;
+            for (long[] range : ranges) {
+                total += range[1] - range[0];
+            }
+            return total;
+        }
+
+        List<long[]> asList() {
+            return ranges;
+        }
+
+        void clear() {
+            ranges.clear();
+        }
+    }
+}
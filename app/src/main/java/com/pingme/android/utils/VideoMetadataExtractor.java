@@ -0,0 +1,221 @@
+package com.pingme.android.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reads a picked video's duration, display size and a poster frame on the
+ * device, before anything is uploaded.
+ *
+ * The sender's bubble can show the poster and duration straight away, and the
+ * poster is uploaded as its own small image so recipients get a thumbnail
+ * without waiting on a server-side video transformation.
+ */
+public class VideoMetadataExtractor {
+    private static final String TAG = "VideoMetadataExtractor";
+    private static final String POSTER_DIR = "video_posters";
+    // Same long edge as the largest video bubble variant; posters are never shown full screen
+    private static final int POSTER_LONG_EDGE = 480;
+    private static final int POSTER_QUALITY = 75;
+    // Posters back pending bubbles; anything older belongs to a long-finished upload
+    private static final long POSTER_MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+    // A little way in, so fade-ins do not give a black poster
+    private static final long POSTER_FRAME_TIME_US = 500_000L;
+
+    public static class Result {
+        public final File posterFile;
+        public final int width;
+        public final int height;
+        public final long durationMs;
+        public final String blurHash;
+
+        Result(File posterFile, int width, int height, long durationMs, String blurHash) {
+            this.posterFile = posterFile;
+            this.width = width;
+            this.height = height;
+            this.durationMs = durationMs;
+            this.blurHash = blurHash;
+        }
+
+        /**
+         * Message media fields known before upload; "thumbnailUrl" is added once the poster is uploaded.
+         */
+        public Map<String, Object> toMediaData() {
+            Map<String, Object> mediaData = new HashMap<>();
+            if (durationMs > 0) {
+                mediaData.put("duration", durationMs);
+            }
+            if (width > 0 && height > 0) {
+                mediaData.put("width", width);
+                mediaData.put("height", height);
+            }
+            if (blurHash != null) {
+                mediaData.put("blurHash", blurHash);
+            }
+            return mediaData;
+        }
+    }
+
+    private VideoMetadataExtractor() {
+    }
+
+    public static CompletableFuture<Result> extract(Context context, Uri videoUri) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return extractBlocking(appContext, videoUri);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, AppExecutors.getInstance().io());
+    }
+
+    public static Result extractBlocking(Context context, Uri videoUri) throws IOException {
+        long start = System.currentTimeMillis();
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, videoUri);
+
+            long durationMs = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            int rawWidth = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            int rawHeight = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+            int rotation = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+            int[] display = displaySize(rawWidth, rawHeight, rotation);
+
+            Bitmap frame = grabPosterFrame(retriever, display[0], display[1]);
+            File poster = null;
+            String blurHash = null;
+            int width = display[0];
+            int height = display[1];
+            if (frame != null) {
+                try {
+                    // Frames come back already rotated; trust them over the container metadata
+                    if (width <= 0 || height <= 0) {
+                        width = frame.getWidth();
+                        height = frame.getHeight();
+                    }
+                    poster = writePoster(context, frame);
+                    blurHash = BlurHash.encode(frame);
+                } finally {
+                    frame.recycle();
+                }
+            } else {
+                Log.w(TAG, "No poster frame for " + videoUri);
+            }
+
+            Log.d(TAG, "Extracted " + width + "x" + height + ", " + durationMs + " ms in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return new Result(poster, width, height, durationMs, blurHash);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // Thrown by setDataSource for unreadable or unsupported files
+            throw new IOException("Cannot read video: " + videoUri, e);
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.w(TAG, "Error releasing retriever", e);
+            }
+        }
+    }
+
+    private static Bitmap grabPosterFrame(MediaMetadataRetriever retriever, int width, int height) {
+        int[] target = posterSize(width, height, POSTER_LONG_EDGE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1 && target[0] > 0 && target[1] > 0) {
+            // Decoder scales for us - no full-resolution frame in memory
+            Bitmap scaled = retriever.getScaledFrameAtTime(POSTER_FRAME_TIME_US,
+                    MediaMetadataRetriever.OPTION_CLOSEST_SYNC, target[0], target[1]);
+            if (scaled != null) {
+                return scaled;
+            }
+        }
+        Bitmap frame = retriever.getFrameAtTime(POSTER_FRAME_TIME_US, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+        if (frame == null) {
+            // Clips shorter than the poster offset
+            frame = retriever.getFrameAtTime();
+        }
+        if (frame == null) {
+            return null;
+        }
+        int[] size = posterSize(frame.getWidth(), frame.getHeight(), POSTER_LONG_EDGE);
+        if (size[0] == frame.getWidth() && size[1] == frame.getHeight()) {
+            return frame;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(frame, size[0], size[1], true);
+        if (scaled != frame) {
+            frame.recycle();
+        }
+        return scaled;
+    }
+
+    private static File writePoster(Context context, Bitmap frame) throws IOException {
+        File dir = new File(context.getCacheDir(), POSTER_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create poster directory: " + dir);
+        }
+        deleteStalePosters(dir);
+        File poster = File.createTempFile("poster_", ".jpg", dir);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(poster), 32 * 1024)) {
+            if (!frame.compress(Bitmap.CompressFormat.JPEG, POSTER_QUALITY, out)) {
+                throw new IOException("Poster compression failed");
+            }
+        }
+        Log.d(TAG, "Poster " + frame.getWidth() + "x" + frame.getHeight() + ": " + poster.length() + " bytes");
+        return poster;
+    }
+
+    private static void deleteStalePosters(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - POSTER_MAX_AGE_MS;
+        for (File file : files) {
+            if (file.lastModified() < cutoff && !file.delete()) {
+                Log.w(TAG, "Could not delete stale poster: " + file);
+            }
+        }
+    }
+
+    // Width/height as displayed, i.e. swapped for portrait clips recorded with a rotation flag
+    static int[] displaySize(int width, int height, int rotation) {
+        int normalized = ((rotation % 360) + 360) % 360;
+        if (normalized == 90 || normalized == 270) {
+            return new int[]{height, width};
+        }
+        return new int[]{width, height};
+    }
+
+    // Scales down to fit maxLongEdge, never up; {0, 0} if the size is unknown
+    static int[] posterSize(int width, int height, int maxLongEdge) {
+        if (width <= 0 || height <= 0) {
+            return new int[]{0, 0};
+        }
+        int longEdge = Math.max(width, height);
+        if (longEdge <= maxLongEdge) {
+            return new int[]{width, height};
+        }
+        float scale = (float) maxLongEdge / longEdge;
+        return new int[]{Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale))};
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
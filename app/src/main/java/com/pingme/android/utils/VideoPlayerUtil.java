@@ -7,10 +7,9 @@ import android.net.Uri;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.pingme.android.activities.VideoPlayerActivity;
+
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.concurrent.CompletableFuture;
@@ -36,6 +35,25 @@ public class VideoPlayerUtil {
             return;
         }
         
+        // In-app player streams through VideoCacheProxy and starts before the download completes
+        try {
+            Intent intent = VideoPlayerActivity.createIntent(context, videoUrl);
+            if (!(context instanceof Activity)) {
+                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            }
+            context.startActivity(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Error opening in-app player", e);
+            playVideoExternally(videoUrl, context);
+        }
+    }
+    
+    public void playVideoExternally(String videoUrl, Context context) {
+        if (videoUrl == null || videoUrl.isEmpty()) {
+            Toast.makeText(context, "Invalid video URL", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
         try {
             Intent intent = new Intent(Intent.ACTION_VIEW);
             intent.setDataAndType(Uri.parse(videoUrl), "video/*");
@@ -48,48 +66,8 @@ public class VideoPlayerUtil {
     }
     
     public CompletableFuture<File> downloadVideo(String videoUrl, Context context) {
-        CompletableFuture<File> future = new CompletableFuture<>();
-        
-        new Thread(() -> {
-            try {
-                URL url = new URL(videoUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.connect();
-                
-                if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                    future.completeExceptionally(new IOException("Server returned HTTP " + connection.getResponseCode()));
-                    return;
-                }
-                
-                // Create cache directory
-                File cacheDir = new File(context.getCacheDir(), "videos");
-                if (!cacheDir.exists()) {
-                    cacheDir.mkdirs();
-                }
-                
-                // Create output file
-                String fileName = "video_" + System.currentTimeMillis() + ".mp4";
-                File outputFile = new File(cacheDir, fileName);
-                
-                try (InputStream input = connection.getInputStream();
-                     FileOutputStream output = new FileOutputStream(outputFile)) {
-                    
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = input.read(buffer)) != -1) {
-                        output.write(buffer, 0, bytesRead);
-                    }
-                }
-                
-                future.complete(outputFile);
-                
-            } catch (Exception e) {
-                Log.e(TAG, "Error downloading video", e);
-                future.completeExceptionally(e);
-            }
-        }).start();
-        
-        return future;
+        // Served from the shared media cache; repeat opens of the same video do not re-download
+        return MediaDiskCache.getInstance(context).get(videoUrl, "mp4");
     }
     
     public void openVideoInExternalPlayer(String videoUrl, Context context) {
@@ -110,7 +88,7 @@ public class VideoPlayerUtil {
                         } catch (Exception e) {
                             Log.e(TAG, "Error opening video in external player", e);
                             // Fallback to direct URL
-                            playVideo(videoUrl, context);
+                            playVideoExternally(videoUrl, context);
                         }
                     });
                 }
@@ -120,7 +98,7 @@ public class VideoPlayerUtil {
                     ((Activity) context).runOnUiThread(() -> {
                         Log.e(TAG, "Error downloading video for external player", throwable);
                         // Fallback to direct URL
-                        playVideo(videoUrl, context);
+                        playVideoExternally(videoUrl, context);
                     });
                 }
                 return null;
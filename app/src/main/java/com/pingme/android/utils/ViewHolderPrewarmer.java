@@ -0,0 +1,100 @@
+package com.pingme.android.utils;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Fills a {@link RecyclerView.RecycledViewPool} with ViewHolders while the main
+ * thread is idle, so the first screen of a list binds recycled rows instead of
+ * inflating fresh ones in the frame that shows them.
+ *
+ * Holders are created on the main thread through the adapter's own
+ * {@link RecyclerView.Adapter#createViewHolder}, so they get the activity's theme
+ * and AppCompat view substitutions exactly like rows created on demand. The work
+ * runs from a {@link MessageQueue.IdleHandler} in slices of a few milliseconds,
+ * filling the gaps while the first messages load rather than delaying frames.
+ */
+public class ViewHolderPrewarmer implements MessageQueue.IdleHandler {
+    private static final String TAG = "ViewHolderPrewarmer";
+    private static final long SLICE_NANOS = 4_000_000L;
+
+    private final RecyclerView.Adapter<?> adapter;
+    private final RecyclerView parent;
+    private final RecyclerView.RecycledViewPool pool;
+    // One entry per holder still to create, in the order given
+    private final int[] viewTypes;
+    private final int[] targets;
+    private int next;
+    private long busyNanos;
+
+    private ViewHolderPrewarmer(RecyclerView.Adapter<?> adapter, RecyclerView parent,
+                                RecyclerView.RecycledViewPool pool, int[] viewTypes, int[] targets) {
+        this.adapter = adapter;
+        this.parent = parent;
+        this.pool = pool;
+        this.viewTypes = viewTypes;
+        this.targets = targets;
+    }
+
+    /**
+     * Queues up to {@code count} holders of each {@code {viewType, count}} pair,
+     * minus the ones the pool already holds, and raises the pool's limit for each
+     * type so they are all kept. Call on the main thread.
+     */
+    public static void prewarm(@NonNull RecyclerView.Adapter<?> adapter, @NonNull RecyclerView parent,
+                               @NonNull RecyclerView.RecycledViewPool pool, @NonNull int[][] typeAndCounts) {
+        int total = 0;
+        for (int[] typeAndCount : typeAndCounts) {
+            total += Math.max(0, typeAndCount[1] - pool.getRecycledViewCount(typeAndCount[0]));
+        }
+        if (total == 0) return;
+
+        int[] viewTypes = new int[total];
+        int[] targets = new int[total];
+        int i = 0;
+        for (int[] typeAndCount : typeAndCounts) {
+            pool.setMaxRecycledViews(typeAndCount[0], typeAndCount[1]);
+            int missing = typeAndCount[1] - pool.getRecycledViewCount(typeAndCount[0]);
+            for (int n = 0; n < missing; n++, i++) {
+                viewTypes[i] = typeAndCount[0];
+                targets[i] = typeAndCount[1];
+            }
+        }
+        Looper.myQueue().addIdleHandler(new ViewHolderPrewarmer(adapter, parent, pool, viewTypes, targets));
+    }
+
+    @Override
+    public boolean queueIdle() {
+        long start = System.nanoTime();
+        while (next < viewTypes.length && System.nanoTime() - start < SLICE_NANOS) {
+            int i = next++;
+            int viewType = viewTypes[i];
+            // The list may have started laying out and filled the pool itself
+            if (pool.getRecycledViewCount(viewType) >= targets[i]) continue;
+            try {
+                pool.putRecycledView(adapter.createViewHolder(parent, viewType));
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Could not prewarm view type " + viewType, e);
+                skipRemaining(viewType);
+            }
+        }
+        busyNanos += System.nanoTime() - start;
+
+        if (next < viewTypes.length) return true;
+        Log.d(TAG, "Prewarmed " + viewTypes.length + " holders in " + busyNanos / 1_000_000 + " ms of idle time");
+        return false;
+    }
+
+    // A type that failed once will fail again; leave it to the adapter on demand
+    private void skipRemaining(int viewType) {
+        for (int i = next; i < viewTypes.length; i++) {
+            if (viewTypes[i] == viewType) {
+                targets[i] = 0;
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import androidx.lifecycle.ViewModel;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.pingme.android.models.User;
+import com.pingme.android.models.UserCodec;
 import com.pingme.android.utils.FirebaseUtil;
 
 public class EditProfileViewModel extends ViewModel {
@@ -41,7 +42,7 @@ public class EditProfileViewModel extends ViewModel {
         FirebaseUtil.getUserRef(userId).get()
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User currentUser = documentSnapshot.toObject(User.class);
+                        User currentUser = UserCodec.fromDocument(documentSnapshot);
                         if (currentUser != null) {
                             currentUser.setId(userId);
                             user.setValue(currentUser);
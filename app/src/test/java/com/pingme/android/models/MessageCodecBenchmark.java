@@ -0,0 +1,47 @@
+package com.pingme.android.models;
+
+import com.google.firebase.database.core.utilities.encoding.CustomClassMapper;
+import com.pingme.android.utils.Benchmarks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decode time of {@link MessageCodec} against Firebase's reflection-based mapper.
+ * See {@link Benchmarks} for how to run it.
+ */
+public class MessageCodecBenchmark {
+
+    @Test
+    public void tenThousandMessages() throws Exception {
+        List<Map<String, Object>> payload = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            payload.add(MessageCodec.toMap(MessageCodecTest.sampleMessage(i)));
+        }
+        int[] sink = new int[1];
+
+        double codecMs = Benchmarks.averageMillis(5, 10, () -> {
+            for (Map<String, Object> data : payload) {
+                if (MessageCodec.fromMap(data) != null) sink[0]++;
+            }
+        });
+
+        String mapperResult;
+        try {
+            double mapperMs = Benchmarks.averageMillis(5, 10, () -> {
+                for (Map<String, Object> data : payload) {
+                    if (CustomClassMapper.convertToCustomClass(data, Message.class) != null) sink[0]++;
+                }
+            });
+            mapperResult = String.format("%.1f ms (%.1fx)", mapperMs, mapperMs / codecMs);
+        } catch (RuntimeException | LinkageError e) {
+            mapperResult = "unavailable on this JVM (" + e.getClass().getSimpleName() + ")";
+        }
+
+        Benchmarks.report("MessageCodec: %.1f ms per %d messages, reflection mapper: %s [%d]",
+                codecMs, payload.size(), mapperResult, sink[0]);
+    }
+}
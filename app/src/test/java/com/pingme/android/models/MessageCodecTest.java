@@ -0,0 +1,280 @@
+package com.pingme.android.models;
+
+import com.google.firebase.database.core.utilities.encoding.CustomClassMapper;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the model codecs; timings are in {@link MessageCodecBenchmark}.
+ */
+public class MessageCodecTest {
+
+    static Message sampleMessage(int i) {
+        Message message = Message.createImageMessage("sender" + (i % 2), "https://res.cloudinary.com/demo/image/upload/" + i + ".jpg");
+        message.setId("-Nmsg" + i);
+        message.setText("Message number " + i);
+        message.setTimestamp(1_700_000_000_000L + i * 1000L);
+        message.setStatus(Message.STATUS_DELIVERED);
+        message.setWidth(1080);
+        message.setHeight(1350);
+        message.setBlurHash("LEHV6nWB2yk8pyo0adR*.7kCMdnj");
+        message.setFileSize(200_000 + i);
+        message.setReply(i % 3 == 0);
+        message.setReplyToMessageId(i % 3 == 0 ? "-Nmsg" + (i - 1) : null);
+        Map<String, Long> deliveredTo = new HashMap<>();
+        deliveredTo.put("receiver", 1_700_000_000_500L + i);
+        message.setDeliveredTo(deliveredTo);
+        Map<String, Long> readBy = new HashMap<>();
+        readBy.put("receiver", 1_700_000_001_000L + i);
+        message.setReadBy(readBy);
+        return message;
+    }
+
+    @Test
+    public void message_roundTripsThroughMap() {
+        Message original = sampleMessage(3);
+        original.setEdited(true);
+        original.setEditedText("edited");
+        original.setEditTimestamp(42);
+        original.markAsDeletedForUser("someone");
+
+        Message decoded = MessageCodec.fromMap(MessageCodec.toMap(original));
+
+        assertEquals(original, decoded);
+    }
+
+    @Test
+    public void message_readsAppWrittenKeysAndLooseTypes() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("senderId", "alice");
+        data.put("text", "hi");
+        // Firestore/JSON imports can hand back doubles
+        data.put("timestamp", 1234.0);
+        data.put("status", 3L);
+        data.put("isEdited", true);
+        data.put("isForwarded", true);
+        Map<String, Object> deletedFor = new HashMap<>();
+        // deleteMessageForUser() stores true rather than a timestamp
+        deletedFor.put("bob", true);
+        data.put("deletedFor", deletedFor);
+
+        Message message = MessageCodec.fromMap(data);
+
+        assertEquals(1234L, message.getTimestamp());
+        assertEquals(Message.STATUS_READ, message.getStatus());
+        assertEquals(Message.TYPE_TEXT, message.getType());
+        assertTrue(message.isEdited());
+        assertTrue(message.isForwarded());
+        assertFalse(message.isVisibleForUser("bob"));
+        assertTrue(message.isVisibleForUser("alice"));
+    }
+
+    @Test
+    public void wireMap_isCompactAndRoundTripsContent() {
+        Message original = sampleMessage(3);
+        original.setDeliveredTo(null);
+        original.setReadBy(null);
+
+        Map<String, Object> wire = MessageCodec.toWireMap(original);
+        Message decoded = MessageCodec.fromMap(wire);
+        decoded.setId(original.getId());
+
+        assertEquals(MessageCodec.SCHEMA_VERSION, wire.get(MessageCodec.KEY_VERSION));
+        assertFalse(wire.containsKey("id"));
+        assertFalse(wire.containsKey("status"));
+        assertFalse(wire.containsKey("deliveredTo"));
+        assertTrue(wire.toString().length() * 2 < MessageCodec.toMap(original).toString().length());
+
+        assertEquals(original.getSenderId(), decoded.getSenderId());
+        assertEquals(original.getText(), decoded.getText());
+        assertEquals(original.getTimestamp(), decoded.getTimestamp());
+        assertEquals(Message.TYPE_IMAGE, decoded.getType());
+        assertEquals(original.getImageUrl(), decoded.getImageUrl());
+        assertEquals(original.getWidth(), decoded.getWidth());
+        assertEquals(original.getBlurHash(), decoded.getBlurHash());
+        assertEquals(original.getFileSize(), decoded.getFileSize());
+        assertTrue(decoded.isReply());
+        assertEquals(original.getReplyToMessageId(), decoded.getReplyToMessageId());
+        assertEquals(Message.STATUS_SENT, decoded.getStatus());
+    }
+
+    @Test
+    public void legacyMessage_takesV2EditsAndSiblingReceipts() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("senderId", "alice");
+        data.put("text", "helo");
+        data.put("timestamp", 1000L);
+        data.put("status", 2L);
+        Map<String, Object> deliveredTo = new HashMap<>();
+        deliveredTo.put("bob", 1100L);
+        data.put("deliveredTo", deliveredTo);
+        // What editMessage() writes today, on top of the legacy node
+        data.putAll(MessageCodec.editUpdates("hello", 2000L));
+
+        Message message = MessageCodec.fromMap(data);
+        assertEquals("hello", message.getText());
+        assertTrue(message.isEdited());
+        assertEquals(2000L, message.getEditTimestamp());
+
+        Map<String, Long> readBy = new HashMap<>();
+        readBy.put("bob", 3000L);
+        MessageCodec.applyReceipts(message, new MessageReceipts(null, readBy));
+        assertTrue(message.isDeliveredTo("bob"));
+        assertTrue(message.isReadBy("bob"));
+        assertEquals(Message.STATUS_READ, message.getStatus());
+
+        Map<String, Long> flags = new HashMap<>();
+        flags.put(MessageCodec.FLAG_CLEARED, 4000L);
+        MessageCodec.applyUserFlags(message, "bob", flags);
+        assertFalse(message.isVisibleForUser("bob"));
+        assertTrue(message.isVisibleForUser("alice"));
+    }
+
+    @Test
+    public void transitionMap_carriesTheLegacyKeysOlderClientsRead() {
+        Message original = sampleMessage(3);
+
+        Map<String, Object> transition = MessageCodec.toTransitionMap(original);
+        // An older client ignores "v" and the short keys
+        Map<String, Object> legacyView = new HashMap<>(transition);
+        legacyView.remove(MessageCodec.KEY_VERSION);
+        Message asLegacy = MessageCodec.fromMap(legacyView);
+
+        assertEquals(original.getSenderId(), asLegacy.getSenderId());
+        assertEquals(original.getText(), asLegacy.getText());
+        assertEquals(original.getTimestamp(), asLegacy.getTimestamp());
+        assertEquals(Message.TYPE_IMAGE, asLegacy.getType());
+        assertEquals(original.getImageUrl(), asLegacy.getImageUrl());
+        assertEquals(original.getWidth(), asLegacy.getWidth());
+        assertTrue(asLegacy.isReply());
+        assertEquals(original.getReplyToMessageId(), asLegacy.getReplyToMessageId());
+        assertEquals(Message.STATUS_SENT, asLegacy.getStatus());
+
+        Message asV2 = MessageCodec.fromMap(transition);
+        assertEquals(original.getText(), asV2.getText());
+        assertEquals(original.getImageUrl(), asV2.getImageUrl());
+        assertNull(asV2.getDeliveredTo());
+    }
+
+    @Test
+    public void transitionMap_readsWritesFromOlderClients() {
+        Map<String, Object> data = MessageCodec.toTransitionMap(Message.createTextMessage("alice", "helo"));
+        data.putAll(MessageCodec.editUpdates("hello", 2000L));
+        // What an older client's editMessage(), delivery tick and delete-for-me write
+        data.put("text", "hello!");
+        data.put("isEdited", true);
+        data.put("editTimestamp", 3000L);
+        Map<String, Object> readBy = new HashMap<>();
+        readBy.put("bob", 2500L);
+        data.put("readBy", readBy);
+        data.put("status", 3L);
+        Map<String, Object> deletedFor = new HashMap<>();
+        deletedFor.put("bob", true);
+        data.put("deletedFor", deletedFor);
+
+        Message message = MessageCodec.fromMap(data);
+
+        assertEquals("hello!", message.getText());
+        assertEquals(3000L, message.getEditTimestamp());
+        assertTrue(message.isReadBy("bob"));
+        assertEquals(Message.STATUS_READ, message.getStatus());
+        assertFalse(message.isVisibleForUser("bob"));
+
+        // A newer edit from a v2 client wins again
+        data.putAll(MessageCodec.editUpdates("hello again", 4000L));
+        assertEquals("hello again", MessageCodec.fromMap(data).getText());
+    }
+
+    @Test
+    public void deleteForEveryone_clearsContentInBothSchemas() {
+        Message original = sampleMessage(4);
+        Map<String, Object> wire = MessageCodec.toWireMap(original);
+        Map<String, Object> legacy = MessageCodec.toMap(original);
+        for (Map<String, Object> data : Arrays.asList(wire, legacy)) {
+            // updateChildren() removes keys written as null
+            for (Map.Entry<String, Object> update : MessageCodec.deleteForEveryoneUpdates("alice", 5000L).entrySet()) {
+                if (update.getValue() == null) {
+                    data.remove(update.getKey());
+                } else {
+                    data.put(update.getKey(), update.getValue());
+                }
+            }
+            Message deleted = MessageCodec.fromMap(data);
+            assertTrue(deleted.isDeletedForEveryone());
+            assertEquals("alice", deleted.getDeletedBy());
+            assertEquals("", deleted.getText());
+            assertNull(deleted.getImageUrl());
+        }
+        // Older clients see the deletion through the legacy keys
+        assertEquals(true, MessageCodec.deleteForEveryoneUpdates("alice", 5000L).get("deletedForEveryone"));
+    }
+
+    @Test
+    public void user_prefersAnnotatedKeysOverBeanNames() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Alice");
+        data.put("read_receipts_enabled", false);
+        data.put("readReceiptsEnabled", true);
+        data.put("lastSeenEnabled", false);
+        data.put("online", true);
+
+        User user = UserCodec.fromMap(data);
+
+        assertEquals("Alice", user.getName());
+        assertFalse(user.isReadReceiptsEnabled());
+        assertFalse(user.isLastSeenEnabled());
+        assertTrue(user.isProfilePhotoEnabled());
+        assertTrue(user.isOnline());
+
+        User decoded = UserCodec.fromMap(UserCodec.toMap(user));
+        assertEquals(user.isReadReceiptsEnabled(), decoded.isReadReceiptsEnabled());
+        assertEquals(user.isLastSeenEnabled(), decoded.isLastSeenEnabled());
+        assertEquals(user.getJoinedAt(), decoded.getJoinedAt());
+    }
+
+    @Test
+    public void chatAndStatus_readStoredFields() {
+        Map<String, Object> chatData = new HashMap<>();
+        chatData.put("lastMessage", "hey");
+        chatData.put("lastMessageTimestamp", 99L);
+        chatData.put("isActive", true);
+        Map<String, Object> participants = new HashMap<>();
+        participants.put("a", true);
+        participants.put("b", true);
+        chatData.put("participants", participants);
+
+        Chat chat = ChatCodec.fromMap(chatData);
+        assertEquals("hey", chat.getLastMessage());
+        assertEquals(99L, chat.getLastMessageTimestamp());
+        assertTrue(chat.isActive());
+        assertEquals(2, chat.getParticipants().size());
+
+        Status status = new Status("u1", "Alice", null, "hello", "text");
+        status.getViewers().put("u2", 5L);
+        Status decoded = StatusCodec.fromMap(StatusCodec.toMap(status));
+        assertEquals(status.getContent(), decoded.getContent());
+        assertEquals(status.getExpiryTime(), decoded.getExpiryTime());
+        assertEquals(Long.valueOf(5L), decoded.getViewers().get("u2"));
+    }
+
+    @Test
+    public void codec_agreesWithTheReflectionMapper() {
+        Map<String, Object> data = MessageCodec.toMap(sampleMessage(3));
+        Message viaMapper;
+        try {
+            viaMapper = CustomClassMapper.convertToCustomClass(data, Message.class);
+        } catch (RuntimeException | LinkageError e) {
+            // The mapper needs parts of the Android runtime on some SDK versions
+            Assume.assumeNoException(e);
+            return;
+        }
+        assertEquals(viaMapper, MessageCodec.fromMap(data));
+    }
+}
@@ -0,0 +1,40 @@
+package com.pingme.android.utils;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Timing loop shared by the {@code *Benchmark} classes. The build leaves those out
+ * of the unit test run, so no test depends on how fast the machine is; run them
+ * with {@code ./gradlew testDebugUnitTest -Pbenchmarks --tests '*Benchmark'}.
+ * Results are logged, never asserted.
+ */
+public final class Benchmarks {
+    private static final Logger LOG = Logger.getLogger("Benchmarks");
+
+    public interface Body {
+        void run() throws Exception;
+    }
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Runs {@code body} {@code warmups} times untimed, then returns its mean wall
+     * time in milliseconds over {@code rounds} runs.
+     */
+    public static double averageMillis(int warmups, int rounds, Body body) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            body.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            body.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / rounds;
+    }
+
+    public static void report(String format, Object... args) {
+        LOG.info(String.format(Locale.US, format, args));
+    }
+}
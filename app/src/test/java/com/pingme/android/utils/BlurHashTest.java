@@ -0,0 +1,73 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BlurHash}.
+ */
+public class BlurHashTest {
+
+    @Test
+    public void encode_lengthMatchesComponentCount() {
+        int[] pixels = gradient(32, 24);
+        String hash = BlurHash.encode(pixels, 32, 24, 4, 3);
+        assertEquals(4 + 2 * 4 * 3, hash.length());
+        // Size flag: (4 - 1) + (3 - 1) * 9 = 21
+        assertEquals('L', hash.charAt(0));
+    }
+
+    @Test
+    public void solidColor_roundTripsToSameColor() {
+        int[] pixels = new int[16 * 16];
+        Arrays.fill(pixels, 0xFF3366CC);
+
+        int[] decoded = BlurHash.decode(BlurHash.encode(pixels, 16, 16, 4, 3), 8, 8, 1f);
+
+        assertNotNull(decoded);
+        // The reference basis is not exactly orthogonal on a pixel grid, so allow a little ripple
+        long r = 0;
+        long g = 0;
+        long b = 0;
+        for (int pixel : decoded) {
+            r += (pixel >> 16) & 0xFF;
+            g += (pixel >> 8) & 0xFF;
+            b += pixel & 0xFF;
+        }
+        assertEquals(0x33, r / decoded.length, 16);
+        assertEquals(0x66, g / decoded.length, 16);
+        assertEquals(0xCC, b / decoded.length, 16);
+    }
+
+    @Test
+    public void gradient_keepsBrightSideBright() {
+        int[] decoded = BlurHash.decode(BlurHash.encode(gradient(32, 24), 32, 24, 4, 3), 16, 12, 1f);
+
+        assertNotNull(decoded);
+        int left = decoded[6 * 16] & 0xFF;
+        int right = decoded[6 * 16 + 15] & 0xFF;
+        assertTrue("left=" + left + " right=" + right, right > left + 100);
+    }
+
+    @Test
+    public void malformedHash_decodesToNull() {
+        assertNull(BlurHash.decode(null, 8, 8, 1f));
+        assertNull(BlurHash.decode("LEHV6n", 8, 8, 1f));
+        assertNull(BlurHash.decode("LEHV6nWB2yk8pyo0adR*.7kCMdné", 8, 8, 1f));
+    }
+
+    // Grey ramp from black on the left to white on the right
+    private static int[] gradient(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = x * 255 / (width - 1);
+                pixels[y * width + x] = 0xFF000000 | (v << 16) | (v << 8) | v;
+            }
+        }
+        return pixels;
+    }
+}
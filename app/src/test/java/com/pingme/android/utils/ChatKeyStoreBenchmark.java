@@ -0,0 +1,76 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Decrypt time for a page of messages with the chat key held by {@link ChatKeyStore}
+ * against an RSA unwrap per message. See {@link Benchmarks} for how to run it.
+ */
+public class ChatKeyStoreBenchmark {
+
+    @Test
+    public void decryptPageOf50() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        SecretKey key = new SecretKeySpec(new byte[32], "AES");
+        byte[] wrapped = EncryptionUtil.wrapAESKey(key, keyPair.getPublic());
+        String wrappedKey = Base64.getEncoder().encodeToString(wrapped);
+        byte[][] page = new byte[50][];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = EncryptionUtil.encrypt(("Message " + i).getBytes(StandardCharsets.UTF_8), key);
+        }
+
+        Map<String, SecretKey> persisted = new HashMap<>();
+        ChatKeyStore store = new ChatKeyStore(new ChatKeyStore.KeyPersistence() {
+            @Override
+            public SecretKey load(String chatId, String fingerprint) {
+                return persisted.get(chatId + ":" + fingerprint);
+            }
+
+            @Override
+            public void save(String chatId, String fingerprint, SecretKey saved) {
+                persisted.put(chatId + ":" + fingerprint, saved);
+            }
+
+            @Override
+            public void clear() {
+                persisted.clear();
+            }
+        }, (wrappedChatKey, privateKey) -> {
+            try {
+                return EncryptionUtil.unwrapAESKey(Base64.getDecoder().decode(wrappedChatKey), privateKey);
+            } catch (Exception e) {
+                return null;
+            }
+        }, 8);
+        long[] sink = new long[1];
+
+        double storeMs = Benchmarks.averageMillis(1, 20, () -> {
+            for (byte[] message : page) {
+                sink[0] += EncryptionUtil.decrypt(message,
+                        store.getChatKey("chat1", wrappedKey, keyPair.getPrivate())).length;
+            }
+        });
+        // Unwrapping the chat key for every message, as a per-message decryptAESKey would
+        double rsaMs = Benchmarks.averageMillis(0, 1, () -> {
+            for (byte[] message : page) {
+                sink[0] += EncryptionUtil.decrypt(message,
+                        EncryptionUtil.unwrapAESKey(wrapped, keyPair.getPrivate())).length;
+            }
+        });
+
+        Benchmarks.report("decrypt page of %d: session key %.2f ms, RSA unwrap per message %.1f ms [%d]",
+                page.length, storeMs, rsaMs, sink[0]);
+    }
+}
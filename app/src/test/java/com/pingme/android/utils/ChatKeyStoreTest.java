@@ -0,0 +1,130 @@
+package com.pingme.android.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ChatKeyStore}, with an in-memory stand-in for the
+ * Keystore-backed persistence. Timings are in {@link ChatKeyStoreBenchmark}.
+ */
+public class ChatKeyStoreTest {
+    private static KeyPair keyPair;
+
+    private final Map<String, SecretKey> persisted = new HashMap<>();
+    private final AtomicInteger unwraps = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        if (keyPair == null) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            keyPair = generator.generateKeyPair();
+        }
+        persisted.clear();
+        unwraps.set(0);
+    }
+
+    private ChatKeyStore newStore(int maxKeys) {
+        ChatKeyStore.KeyPersistence persistence = new ChatKeyStore.KeyPersistence() {
+            @Override
+            public SecretKey load(String chatId, String fingerprint) {
+                return persisted.get(chatId + ":" + fingerprint);
+            }
+
+            @Override
+            public void save(String chatId, String fingerprint, SecretKey key) {
+                persisted.put(chatId + ":" + fingerprint, key);
+            }
+
+            @Override
+            public void clear() {
+                persisted.clear();
+            }
+        };
+        return new ChatKeyStore(persistence, this::unwrap, maxKeys);
+    }
+
+    private SecretKey unwrap(String wrappedKey, PrivateKey privateKey) {
+        unwraps.incrementAndGet();
+        try {
+            return EncryptionUtil.unwrapAESKey(Base64.getDecoder().decode(wrappedKey), privateKey);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String wrap(SecretKey key) throws Exception {
+        return Base64.getEncoder().encodeToString(EncryptionUtil.wrapAESKey(key, keyPair.getPublic()));
+    }
+
+    private static SecretKey newKey(int seed) {
+        byte[] bytes = new byte[32];
+        bytes[0] = (byte) seed;
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    @Test
+    public void getChatKey_unwrapsOncePerChat() throws Exception {
+        ChatKeyStore store = newStore(8);
+        SecretKey key = newKey(1);
+        String wrapped = wrap(key);
+
+        for (int i = 0; i < 50; i++) {
+            assertArrayEquals(key.getEncoded(), store.getChatKey("chat1", wrapped, keyPair.getPrivate()).getEncoded());
+        }
+        assertEquals(1, unwraps.get());
+    }
+
+    @Test
+    public void getChatKey_unwrapsAgainWhenTheChatKeyRotates() throws Exception {
+        ChatKeyStore store = newStore(8);
+        store.getChatKey("chat1", wrap(newKey(1)), keyPair.getPrivate());
+
+        SecretKey rotated = newKey(2);
+        assertArrayEquals(rotated.getEncoded(),
+                store.getChatKey("chat1", wrap(rotated), keyPair.getPrivate()).getEncoded());
+        assertEquals(2, unwraps.get());
+    }
+
+    @Test
+    public void getChatKey_fallsBackToPersistedKeysAfterEviction() throws Exception {
+        ChatKeyStore store = newStore(1);
+        String first = wrap(newKey(1));
+        String second = wrap(newKey(2));
+        store.getChatKey("chat1", first, keyPair.getPrivate());
+        store.getChatKey("chat2", second, keyPair.getPrivate());
+
+        // chat1 was evicted from memory but is read back without an RSA step
+        assertNotNull(store.getChatKey("chat1", first, null));
+        assertEquals(2, unwraps.get());
+
+        // A fresh store (cold start) sharing the persistence skips RSA as well
+        assertNotNull(newStore(8).getChatKey("chat2", second, null));
+        assertEquals(2, unwraps.get());
+    }
+
+    @Test
+    public void clear_dropsMemoryAndPersistedKeys() throws Exception {
+        ChatKeyStore store = newStore(8);
+        String wrapped = wrap(newKey(1));
+        store.getChatKey("chat1", wrapped, keyPair.getPrivate());
+
+        store.clear();
+
+        assertTrue(persisted.isEmpty());
+        assertNull(store.getChatKey("chat1", wrapped, null));
+    }
+}
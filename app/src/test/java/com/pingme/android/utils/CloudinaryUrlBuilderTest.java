@@ -0,0 +1,56 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CloudinaryUrlBuilder}.
+ */
+public class CloudinaryUrlBuilderTest {
+    private static final String ORIGINAL =
+            "https://res.cloudinary.com/demo/image/upload/v1712345678/chat_images/abc.jpg";
+
+    @Test
+    public void fill_insertsSizedTransformationBeforeVersion() {
+        assertEquals("https://res.cloudinary.com/demo/image/upload/c_fill,g_auto,w_128,h_128,f_auto,q_auto/"
+                        + "v1712345678/chat_images/abc.jpg",
+                CloudinaryUrlBuilder.fill(ORIGINAL, 96, 96));
+    }
+
+    @Test
+    public void fill_roundsUpToBucketAndKeepsAspect() {
+        // 120x80 dp thumbnail at 2.625x density
+        String url = CloudinaryUrlBuilder.fill(ORIGINAL, 315, 210);
+        assertTrue(url, url.contains("w_384,h_256"));
+    }
+
+    @Test
+    public void limit_capsAtLargestBucket() {
+        assertTrue(CloudinaryUrlBuilder.limit(ORIGINAL, 4000).contains("c_limit,w_1600,f_auto,q_auto/"));
+    }
+
+    @Test
+    public void thumbnail_isTinyLowQualityVariant() {
+        assertTrue(CloudinaryUrlBuilder.thumbnail(ORIGINAL).contains("/upload/c_limit,w_32,f_auto,q_auto:low/v1712345678/"));
+    }
+
+    @Test
+    public void nonCloudinaryAndTransformedUrls_areUnchanged() {
+        String google = "https://lh3.googleusercontent.com/a/photo.jpg";
+        String transformed = "https://res.cloudinary.com/demo/image/upload/w_100/v1/abc.jpg";
+        String video = "https://res.cloudinary.com/demo/video/upload/v1/clip.mp4";
+
+        assertEquals(google, CloudinaryUrlBuilder.fill(google, 100, 100));
+        assertEquals(transformed, CloudinaryUrlBuilder.fill(transformed, 100, 100));
+        assertEquals(video, CloudinaryUrlBuilder.fill(video, 100, 100));
+        assertNull(CloudinaryUrlBuilder.fill(null, 100, 100));
+    }
+
+    @Test
+    public void publicIdWithoutVersion_isTransformed() {
+        String url = "https://res.cloudinary.com/demo/image/upload/profile_pictures/me.jpg";
+        assertEquals("https://res.cloudinary.com/demo/image/upload/c_limit,w_64,f_auto,q_auto/profile_pictures/me.jpg",
+                CloudinaryUrlBuilder.limit(url, 40));
+    }
+}
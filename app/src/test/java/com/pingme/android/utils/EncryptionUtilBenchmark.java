@@ -0,0 +1,60 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypt and decrypt time of {@link EncryptionUtil}'s per-thread ciphers against a
+ * new {@link Cipher} and {@link SecureRandom} per call. See {@link Benchmarks} for
+ * how to run it.
+ */
+public class EncryptionUtilBenchmark {
+
+    @Test
+    public void encryptDecrypt10kMessages() throws Exception {
+        SecretKey key = EncryptionUtilTest.newKey();
+        byte[][] messages = new byte[10_000][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = ("Message " + i + ": are we still meeting at the station tomorrow?")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        long[] sink = new long[1];
+
+        double cachedMs = Benchmarks.averageMillis(1, 5, () -> sink[0] += runCached(messages, key));
+        double perCallMs = Benchmarks.averageMillis(1, 5, () -> sink[0] += runPerCall(messages, key));
+
+        Benchmarks.report("encrypt+decrypt %d messages: cached cipher %.1f ms, per-call getInstance %.1f ms [%d]",
+                messages.length, cachedMs, perCallMs, sink[0]);
+    }
+
+    private static long runCached(byte[][] messages, SecretKey key) throws Exception {
+        long total = 0;
+        for (byte[] message : messages) {
+            total += EncryptionUtil.decrypt(EncryptionUtil.encrypt(message, key), key).length;
+        }
+        return total;
+    }
+
+    // What encryptMessage/decryptMessage used to do: new Cipher and SecureRandom per call
+    private static long runPerCall(byte[][] messages, SecretKey key) throws Exception {
+        long total = 0;
+        for (byte[] message : messages) {
+            byte[] iv = new byte[12];
+            new SecureRandom().nextBytes(iv);
+            Cipher encrypt = Cipher.getInstance("AES/GCM/NoPadding");
+            encrypt.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+            byte[] encrypted = encrypt.doFinal(message);
+
+            Cipher decrypt = Cipher.getInstance("AES/GCM/NoPadding");
+            decrypt.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+            total += decrypt.doFinal(encrypted).length;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,64 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the byte-level AES-GCM helpers in {@link EncryptionUtil};
+ * timings are in {@link EncryptionUtilBenchmark}.
+ */
+public class EncryptionUtilTest {
+
+    static SecretKey newKey() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    @Test
+    public void encrypt_roundTripsWithAFreshIvEachTime() throws Exception {
+        SecretKey key = newKey();
+        byte[] plaintext = "Héllo 👋".getBytes(StandardCharsets.UTF_8);
+
+        byte[] first = EncryptionUtil.encrypt(plaintext, key);
+        byte[] second = EncryptionUtil.encrypt(plaintext, key);
+
+        assertEquals(12 + plaintext.length + 16, first.length);
+        assertFalse(java.util.Arrays.equals(first, second));
+        assertArrayEquals(plaintext, EncryptionUtil.decrypt(first, key));
+        assertArrayEquals(plaintext, EncryptionUtil.decrypt(second, key));
+        assertArrayEquals(new byte[0], EncryptionUtil.decrypt(EncryptionUtil.encrypt(new byte[0], key), key));
+    }
+
+    @Test
+    public void decrypt_rejectsTamperedDataAndWrongKeys() throws Exception {
+        SecretKey key = newKey();
+        byte[] combined = EncryptionUtil.encrypt("secret".getBytes(StandardCharsets.UTF_8), key);
+
+        byte[] tampered = combined.clone();
+        tampered[tampered.length - 1] ^= 1;
+        assertDecryptFails(tampered, key);
+        assertDecryptFails(combined, newKey());
+        assertDecryptFails(new byte[10], key);
+
+        // The thread's cipher is still usable after a failed decryption
+        assertEquals("secret", new String(EncryptionUtil.decrypt(combined, key), StandardCharsets.UTF_8));
+    }
+
+    private static void assertDecryptFails(byte[] combined, SecretKey key) {
+        try {
+            EncryptionUtil.decrypt(combined, key);
+            fail("Expected decryption to fail");
+        } catch (GeneralSecurityException expected) {
+            // expected
+        }
+    }
+}
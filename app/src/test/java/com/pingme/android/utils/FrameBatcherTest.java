@@ -0,0 +1,80 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FrameBatcher}, with a fake main-thread queue.
+ */
+public class FrameBatcherTest {
+
+    private final ArrayDeque<Runnable> mainQueue = new ArrayDeque<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final List<List<Integer>> batches = new ArrayList<>();
+
+    private FrameBatcher<Integer> newBatcher(int maxPerFrame) {
+        return new FrameBatcher<>((runnable, delayMillis) -> {
+            delays.add(delayMillis);
+            mainQueue.add(runnable);
+        }, 16, maxPerFrame, batches::add);
+    }
+
+    private void runMainQueue() {
+        Runnable next;
+        while ((next = mainQueue.poll()) != null) {
+            next.run();
+        }
+    }
+
+    @Test
+    public void itemsOfOneFrameAreDeliveredTogether() {
+        FrameBatcher<Integer> batcher = newBatcher(100);
+        batcher.offer(1);
+        batcher.offer(2);
+        batcher.offer(3);
+
+        // One post for the whole frame
+        assertEquals(1, mainQueue.size());
+        assertEquals(Long.valueOf(16), delays.get(0));
+
+        runMainQueue();
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(1, 2, 3), batches.get(0));
+
+        batcher.offer(4);
+        runMainQueue();
+        assertEquals(Arrays.asList(4), batches.get(1));
+    }
+
+    @Test
+    public void largeBurstIsSplitAcrossFramesInOrder() {
+        FrameBatcher<Integer> batcher = newBatcher(2);
+        for (int i = 0; i < 5; i++) {
+            batcher.offer(i);
+        }
+
+        runMainQueue();
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(2, 3), Arrays.asList(4)), batches);
+        // Follow-up frames are posted without the initial wait
+        assertEquals(Arrays.asList(16L, 0L, 0L), delays);
+        assertEquals(0, batcher.pendingCount());
+    }
+
+    @Test
+    public void cancelDropsPendingAndLaterItems() {
+        FrameBatcher<Integer> batcher = newBatcher(100);
+        batcher.offer(1);
+        batcher.cancel();
+        batcher.offer(2);
+
+        runMainQueue();
+        assertTrue(batches.isEmpty());
+        assertEquals(0, batcher.pendingCount());
+    }
+}
@@ -0,0 +1,199 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link InstrumentedExecutor} and {@link SerialExecutor}.
+ */
+public class InstrumentedExecutorTest {
+
+    private final List<Throwable> failures = new ArrayList<>();
+    private final List<String> slowTasks = new ArrayList<>();
+
+    private final InstrumentedExecutor.Reporter reporter = new InstrumentedExecutor.Reporter() {
+        @Override
+        public synchronized void onTaskFailed(String pool, Throwable error) {
+            failures.add(error);
+        }
+
+        @Override
+        public synchronized void onSlowTask(String pool, long waitMs, long runMs) {
+            slowTasks.add(pool);
+        }
+    };
+
+    @Test
+    public void countsTasksAndReportsFailuresWithoutThrowing() {
+        // Direct executor: tasks run on the calling thread
+        InstrumentedExecutor executor = new InstrumentedExecutor("test", Runnable::run, reporter, 10_000);
+
+        executor.execute(() -> { });
+        executor.execute(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        InstrumentedExecutor.Snapshot snapshot = executor.snapshot();
+        assertEquals(2, snapshot.submitted);
+        assertEquals(2, snapshot.completed);
+        assertEquals(1, snapshot.failed);
+        assertEquals(0, snapshot.queueDepth);
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void tracksQueueDepthAndSlowTasks() throws InterruptedException {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        InstrumentedExecutor executor = new InstrumentedExecutor("io", single, reporter, 20);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        try {
+            executor.execute(() -> {
+                awaitQuietly(release);
+                done.countDown();
+            });
+            executor.execute(done::countDown);
+            executor.execute(done::countDown);
+
+            assertTrue(executor.snapshot().maxQueueDepth >= 2);
+            Thread.sleep(50);
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            single.shutdown();
+        }
+
+        assertTrue(single.awaitTermination(5, TimeUnit.SECONDS));
+        InstrumentedExecutor.Snapshot snapshot = executor.snapshot();
+        assertEquals(3, snapshot.completed);
+        assertTrue(snapshot.maxRunMs >= 40);
+        assertTrue(snapshot.maxWaitMs >= 40);
+        assertFalse(slowTasks.isEmpty());
+    }
+
+    @Test
+    public void serialExecutor_runsTasksInOrderOneAtATime() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        SerialExecutor serial = new SerialExecutor(pool);
+        List<Integer> order = new ArrayList<>();
+        int[] concurrent = {0, 0};
+        CountDownLatch done = new CountDownLatch(50);
+        try {
+            for (int i = 0; i < 50; i++) {
+                int value = i;
+                serial.execute(() -> {
+                    synchronized (order) {
+                        concurrent[0]++;
+                        concurrent[1] = Math.max(concurrent[1], concurrent[0]);
+                    }
+                    synchronized (order) {
+                        order.add(value);
+                        concurrent[0]--;
+                    }
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+        assertEquals(1, concurrent[1]);
+    }
+
+    @Test
+    public void keyedSerial_dropsDrainedQueues() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        SerialExecutor.Keyed keyed = new SerialExecutor.Keyed(pool);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(100);
+        try {
+            keyed.forKey("blocked").execute(() -> awaitQuietly(release));
+            for (int i = 0; i < 100; i++) {
+                keyed.forKey("chat:" + i).execute(done::countDown);
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(waitFor(() -> keyed.size() == 1));
+            assertEquals(1, keyed.pendingCount());
+
+            release.countDown();
+            assertTrue(waitFor(() -> keyed.size() == 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void keyedSerial_keepsOrderAcrossHandlesAndEviction() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        SerialExecutor.Keyed keyed = new SerialExecutor.Keyed(pool);
+        // A listener keeps the executor it was built with; other callers ask again each time
+        Executor held = keyed.forKey("messages:a");
+        List<Integer> order = new ArrayList<>();
+        int[] concurrent = {0, 0};
+        CountDownLatch done = new CountDownLatch(400);
+        try {
+            for (int i = 0; i < 400; i++) {
+                int value = i;
+                Executor executor = i % 2 == 0 ? held : keyed.forKey("messages:a");
+                executor.execute(() -> {
+                    synchronized (order) {
+                        concurrent[0]++;
+                        concurrent[1] = Math.max(concurrent[1], concurrent[0]);
+                        order.add(value);
+                    }
+                    synchronized (order) {
+                        concurrent[0]--;
+                    }
+                    done.countDown();
+                });
+                if (i % 50 == 0) {
+                    // Let the queue drain so it is evicted and recreated mid-stream
+                    waitFor(() -> keyed.size() == 0);
+                }
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < 400; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+        assertEquals(1, concurrent[1]);
+        assertTrue(waitFor(() -> keyed.size() == 0));
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encrypt and decrypt throughput of {@link MediaCipher} at its default segment
+ * size. See {@link Benchmarks} for how to run it.
+ */
+public class MediaCipherBenchmark {
+
+    @Test
+    public void throughput() throws Exception {
+        byte[] plaintext = MediaCipherTest.randomBytes(32 * 1024 * 1024);
+        byte[] ciphertext = MediaCipherTest.encrypt(plaintext, MediaCipher.DEFAULT_SEGMENT_SIZE);
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        long[] sink = new long[1];
+
+        double encryptMs = Benchmarks.averageMillis(1, 3,
+                () -> MediaCipher.encrypt(new ByteArrayInputStream(plaintext), discard, MediaCipherTest.KEY));
+        double decryptMs = Benchmarks.averageMillis(1, 3, () -> {
+            try (InputStream in = MediaCipher.decrypt(new ByteArrayInputStream(ciphertext), MediaCipherTest.KEY)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    sink[0] += read;
+                }
+            }
+        });
+
+        double megabytes = plaintext.length / (1024.0 * 1024.0);
+        Benchmarks.report("MediaCipher %d KB segments: encrypt %.0f MB/s, decrypt %.0f MB/s (%.0f MB) [%d]",
+                MediaCipher.DEFAULT_SEGMENT_SIZE / 1024, megabytes * 1000 / encryptMs, megabytes * 1000 / decryptMs,
+                megabytes, sink[0]);
+    }
+}
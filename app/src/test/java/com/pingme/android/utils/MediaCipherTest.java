@@ -0,0 +1,124 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the segmented media format in {@link MediaCipher};
+ * throughput is measured in {@link MediaCipherBenchmark}.
+ */
+public class MediaCipherTest {
+    private static final int SEGMENT = 1024;
+    static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    static byte[] encrypt(byte[] plaintext, int segmentSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MediaCipher.encrypt(new ByteArrayInputStream(plaintext), out, KEY, segmentSize);
+        return out.toByteArray();
+    }
+
+    private static byte[] decrypt(byte[] ciphertext, SecretKey key) throws IOException {
+        try (InputStream in = MediaCipher.decrypt(new ByteArrayInputStream(ciphertext), key)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[700];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void roundTripsAtSegmentBoundaries() throws Exception {
+        for (int length : new int[]{0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 3 * SEGMENT, 3 * SEGMENT + 17}) {
+            byte[] plaintext = randomBytes(length);
+            byte[] ciphertext = encrypt(plaintext, SEGMENT);
+
+            MediaCipher.Segments segments = MediaCipher.segments(Arrays.copyOf(ciphertext, MediaCipher.HEADER_LENGTH), KEY);
+            assertEquals("length " + length, length, segments.plaintextLength(ciphertext.length));
+            assertArrayEquals("length " + length, plaintext, decrypt(ciphertext, KEY));
+        }
+    }
+
+    @Test
+    public void rejectsTamperingTruncationAndWrongKeys() throws Exception {
+        byte[] ciphertext = encrypt(randomBytes(3 * SEGMENT), SEGMENT);
+        int segment = SEGMENT + 16;
+
+        byte[] flipped = ciphertext.clone();
+        flipped[MediaCipher.HEADER_LENGTH + segment + 5] ^= 1;
+        assertDecryptFails(flipped, KEY);
+
+        byte[] headerChanged = ciphertext.clone();
+        headerChanged[10] ^= 1;
+        assertDecryptFails(headerChanged, KEY);
+
+        // Dropping the final segment leaves a complete-looking file whose last segment isn't marked last
+        assertDecryptFails(Arrays.copyOf(ciphertext, MediaCipher.HEADER_LENGTH + 2 * segment), KEY);
+        assertDecryptFails(Arrays.copyOf(ciphertext, ciphertext.length - 1), KEY);
+
+        byte[] swapped = ciphertext.clone();
+        System.arraycopy(ciphertext, MediaCipher.HEADER_LENGTH, swapped, MediaCipher.HEADER_LENGTH + segment, segment);
+        System.arraycopy(ciphertext, MediaCipher.HEADER_LENGTH + segment, swapped, MediaCipher.HEADER_LENGTH, segment);
+        assertDecryptFails(swapped, KEY);
+
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+        assertDecryptFails(ciphertext, new SecretKeySpec(otherKey, "AES"));
+    }
+
+    private static void assertDecryptFails(byte[] ciphertext, SecretKey key) {
+        try {
+            decrypt(ciphertext, key);
+            fail("Expected decryption to fail");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void segmentsDecryptAnyRangeIndependently() throws Exception {
+        byte[] plaintext = randomBytes(5 * SEGMENT + 300);
+        byte[] ciphertext = encrypt(plaintext, SEGMENT);
+        MediaCipher.Segments segments = MediaCipher.segments(Arrays.copyOf(ciphertext, MediaCipher.HEADER_LENGTH), KEY);
+        long lastIndex = segments.segmentCount(ciphertext.length) - 1;
+        assertEquals(5, lastIndex);
+
+        // Decrypt only the segments covering a range, as the video proxy does for a seek
+        long start = 2 * SEGMENT + 100;
+        long index = segments.segmentIndex(start);
+        int offset = (int) segments.ciphertextOffset(index);
+        int end = (int) Math.min(segments.ciphertextOffset(index + 1), ciphertext.length);
+        byte[] segment = segments.decrypt(index, index == lastIndex, Arrays.copyOfRange(ciphertext, offset, end), end - offset);
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 2 * SEGMENT, 3 * SEGMENT), segment);
+
+        offset = (int) segments.ciphertextOffset(lastIndex);
+        byte[] last = segments.decrypt(lastIndex, true, Arrays.copyOfRange(ciphertext, offset, ciphertext.length),
+                ciphertext.length - offset);
+        assertArrayEquals(Arrays.copyOfRange(plaintext, 5 * SEGMENT, plaintext.length), last);
+    }
+
+    @Test
+    public void roundTripsWithTheDefaultSegmentSize() throws Exception {
+        byte[] plaintext = randomBytes(3 * MediaCipher.DEFAULT_SEGMENT_SIZE + 17);
+        assertArrayEquals(plaintext, decrypt(encrypt(plaintext, MediaCipher.DEFAULT_SEGMENT_SIZE), KEY));
+    }
+}
@@ -0,0 +1,89 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the content keys and LRU trimming of {@link MediaDedupStore}.
+ */
+public class MediaDedupStoreTest {
+    private static final int MAX_ENTRIES = 500;
+
+    private static String entry(long lastUsed) {
+        return "{\"videoUrl\":\"https://res.cloudinary.com/v.mp4\",\"_lastUsed\":" + lastUsed + "}";
+    }
+
+    private static void fill(Map<String, Object> all, String prefix, int count, long lastUsed) {
+        for (int i = 0; i < count; i++) {
+            all.put(prefix + i, entry(lastUsed));
+        }
+    }
+
+    @Test
+    public void nothingIsEvictedUpToTheLimit() {
+        Map<String, Object> all = new TreeMap<>();
+        fill(all, "video:", MAX_ENTRIES, 1000);
+        assertTrue(MediaDedupStore.keysToEvict(all, MAX_ENTRIES).isEmpty());
+    }
+
+    @Test
+    public void entriesSharingOneTimestampAreStillEvicted() {
+        // A forwarded batch: every entry stored in the same millisecond
+        Map<String, Object> all = new TreeMap<>();
+        fill(all, "video:", MAX_ENTRIES + 1, 1000);
+
+        List<String> evicted = MediaDedupStore.keysToEvict(all, MAX_ENTRIES);
+
+        assertEquals((MAX_ENTRIES + 1) / 4, evicted.size());
+        assertEquals(evicted.size(), new HashSet<>(evicted).size());
+    }
+
+    @Test
+    public void leastRecentlyUsedGoFirst() {
+        Map<String, Object> all = new TreeMap<>();
+        fill(all, "old:", 100, 1000);
+        fill(all, "new:", 500, 2000);
+
+        List<String> evicted = MediaDedupStore.keysToEvict(all, MAX_ENTRIES);
+
+        assertEquals(150, evicted.size());
+        Set<String> evictedKeys = new HashSet<>(evicted);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(evictedKeys.contains("old:" + i));
+        }
+    }
+
+    @Test
+    public void evictsAtLeastDownToTheLimit() {
+        Map<String, Object> all = new TreeMap<>();
+        fill(all, "video:", 100, 1000);
+
+        assertEquals(60, MediaDedupStore.keysToEvict(all, 40).size());
+    }
+
+    @Test
+    public void corruptEntriesAreEvictedFirst() {
+        Map<String, Object> all = new TreeMap<>();
+        fill(all, "video:", MAX_ENTRIES, 1000);
+        all.put("zz:corrupt", "not json");
+
+        List<String> evicted = MediaDedupStore.keysToEvict(all, MAX_ENTRIES);
+
+        assertEquals("zz:corrupt", evicted.get(0));
+    }
+
+    @Test
+    public void sha256MatchesKnownDigest() throws Exception {
+        String hash = MediaDedupStore.sha256Hex(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", hash);
+    }
+}
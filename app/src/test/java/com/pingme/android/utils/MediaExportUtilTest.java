@@ -0,0 +1,66 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MediaExportUtil}.
+ */
+public class MediaExportUtilTest {
+
+    @Test
+    public void sniffImageMimeType_recognisesCommonFormats() {
+        assertEquals("image/png", sniff(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A));
+        assertEquals("image/gif", sniff('G', 'I', 'F', '8', '9', 'a'));
+        assertEquals("image/webp", sniff('R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P'));
+        assertEquals("image/avif", sniff(0, 0, 0, 0x1C, 'f', 't', 'y', 'p', 'a', 'v', 'i', 'f'));
+        assertEquals("image/jpeg", sniff(0xFF, 0xD8, 0xFF, 0xE0));
+        assertEquals("image/jpeg", sniff());
+    }
+
+    @Test
+    public void extensionFor_matchesMimeType() {
+        assertEquals(".png", MediaExportUtil.extensionFor("image/png"));
+        assertEquals(".webp", MediaExportUtil.extensionFor("image/webp"));
+        assertEquals(".jpg", MediaExportUtil.extensionFor(null));
+    }
+
+    @Test
+    public void copy_isByteIdenticalForFileAndStreamTargets() throws IOException {
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(data);
+        File source = File.createTempFile("export_src", ".bin");
+        File target = File.createTempFile("export_dst", ".bin");
+        try {
+            Files.write(source.toPath(), data);
+
+            try (FileOutputStream out = new FileOutputStream(target)) {
+                assertEquals(data.length, MediaExportUtil.copy(source, out));
+            }
+            assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            assertEquals(data.length, MediaExportUtil.copy(source, buffer));
+            assertArrayEquals(data, buffer.toByteArray());
+        } finally {
+            source.delete();
+            target.delete();
+        }
+    }
+
+    private static String sniff(int... bytes) {
+        byte[] header = new byte[12];
+        for (int i = 0; i < bytes.length; i++) {
+            header[i] = (byte) bytes[i];
+        }
+        return MediaExportUtil.sniffImageMimeType(header, bytes.length);
+    }
+}
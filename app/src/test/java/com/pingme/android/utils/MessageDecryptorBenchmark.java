@@ -0,0 +1,74 @@
+package com.pingme.android.utils;
+
+import com.pingme.android.models.Message;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Per-page decrypt time of {@link MessageDecryptor}, in parallel and from its cache,
+ * against decrypting each message in turn. See {@link Benchmarks} for how to run it.
+ */
+public class MessageDecryptorBenchmark {
+    private static final int PAGES = 40;
+    private static final int PAGE_SIZE = 50;
+
+    private static String decrypt(String encryptedContent, SecretKey key) {
+        try {
+            return new String(EncryptionUtil.decrypt(Base64.getDecoder().decode(encryptedContent), key),
+                    StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void decryptPages() throws Exception {
+        List<List<Message>> input = new ArrayList<>();
+        for (int p = 0; p < PAGES; p++) {
+            List<Message> page = new ArrayList<>();
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                page.add(MessageDecryptorTest.encryptedMessage(p * PAGE_SIZE + i));
+            }
+            input.add(page);
+        }
+        SecretKey key = MessageDecryptorTest.KEY;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            int[] sink = new int[1];
+            // Warm up the pool threads along with the cipher path
+            MessageDecryptor uncached = new MessageDecryptor(pool, 4, MessageDecryptorBenchmark::decrypt, 0);
+            double parallelMs = Benchmarks.averageMillis(1, 3, () -> {
+                for (List<Message> page : input) {
+                    sink[0] += uncached.decryptPage(page, key, null).get().decrypted;
+                }
+            }) / PAGES;
+            double sequentialMs = Benchmarks.averageMillis(1, 3, () -> {
+                for (List<Message> page : input) {
+                    for (Message message : page) {
+                        sink[0] += decrypt(message.getEncryptedContent(), key).length();
+                    }
+                }
+            }) / PAGES;
+            MessageDecryptor cached = new MessageDecryptor(pool, 4, MessageDecryptorBenchmark::decrypt, PAGES * PAGE_SIZE);
+            double cachedMs = Benchmarks.averageMillis(1, 3, () -> {
+                for (List<Message> page : input) {
+                    sink[0] += cached.decryptPage(page, key, null).get().cacheHits;
+                }
+            }) / PAGES;
+
+            Benchmarks.report("page of %d: parallel %.2f ms, sequential %.2f ms, cached %.2f ms [%d]%n%s",
+                    PAGE_SIZE, parallelMs, sequentialMs, cachedMs, sink[0], cached.dumpMetrics());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
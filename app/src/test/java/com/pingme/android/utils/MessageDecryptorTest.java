@@ -0,0 +1,133 @@
+package com.pingme.android.utils;
+
+import com.pingme.android.models.Message;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the page decryption in {@link MessageDecryptor}; timings
+ * are in {@link MessageDecryptorBenchmark}.
+ */
+public class MessageDecryptorTest {
+    static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private final AtomicInteger decryptions = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    // EncryptionUtil.decryptMessage with java.util.Base64, which local tests can run
+    private String decrypt(String encryptedContent, SecretKey key) {
+        decryptions.incrementAndGet();
+        try {
+            return new String(EncryptionUtil.decrypt(Base64.getDecoder().decode(encryptedContent), key),
+                    StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String encrypt(String text) throws Exception {
+        return Base64.getEncoder().encodeToString(EncryptionUtil.encrypt(text.getBytes(StandardCharsets.UTF_8), KEY));
+    }
+
+    static Message encryptedMessage(int i) throws Exception {
+        Message message = new Message();
+        message.setId("-Nmsg" + i);
+        message.setEncrypted(true);
+        message.setEncryptedContent(encrypt("Secret message " + i));
+        return message;
+    }
+
+    private static Message plainMessage(int i) {
+        Message message = new Message();
+        message.setId("-Nplain" + i);
+        message.setText("Plain message " + i);
+        return message;
+    }
+
+    private MessageDecryptor newDecryptor(int maxCached) {
+        return new MessageDecryptor(pool, 4, this::decrypt, maxCached);
+    }
+
+    @Test
+    public void decryptPage_keepsOrderAndLeavesParsedMessagesAlone() throws Exception {
+        List<Message> page = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            page.add(i % 4 == 0 ? plainMessage(i) : encryptedMessage(i));
+        }
+        AtomicInteger prepared = new AtomicInteger();
+
+        MessageDecryptor.Page result = newDecryptor(100).decryptPage(page, KEY, m -> prepared.incrementAndGet()).get();
+
+        assertEquals(40, result.messages.size());
+        assertEquals(30, result.decrypted);
+        assertEquals(30, prepared.get());
+        for (int i = 0; i < 40; i++) {
+            Message message = result.messages.get(i);
+            if (i % 4 == 0) {
+                assertSame(page.get(i), message);
+            } else {
+                assertEquals("Secret message " + i, message.getText());
+                assertEquals(page.get(i).getId(), message.getId());
+                assertEquals("", page.get(i).getText());
+            }
+        }
+    }
+
+    @Test
+    public void decryptPage_servesRepeatsFromTheCacheButNotEdits() throws Exception {
+        MessageDecryptor decryptor = newDecryptor(100);
+        List<Message> page = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            page.add(encryptedMessage(i));
+        }
+        decryptor.decryptPage(page, KEY, null).get();
+        MessageDecryptor.Page again = decryptor.decryptPage(page, KEY, null).get();
+        assertEquals(10, again.cacheHits);
+        assertEquals(10, decryptions.get());
+
+        Message edited = new Message(page.get(3));
+        edited.setEncryptedContent(encrypt("Edited"));
+        List<Message> editedPage = new ArrayList<>();
+        editedPage.add(edited);
+        assertEquals("Edited", decryptor.decryptPage(editedPage, KEY, null).get().messages.get(0).getText());
+        assertEquals(11, decryptions.get());
+    }
+
+    @Test
+    public void decryptPage_showsPlaceholderWithoutKeyOrForBadCiphertext() throws Exception {
+        MessageDecryptor decryptor = newDecryptor(100);
+        List<Message> page = new ArrayList<>();
+        page.add(encryptedMessage(1));
+        Message corrupt = encryptedMessage(2);
+        corrupt.setEncryptedContent(Base64.getEncoder().encodeToString(new byte[40]));
+        page.add(corrupt);
+
+        MessageDecryptor.Page noKey = decryptor.decryptPage(page, null, null).get();
+        assertEquals(2, noKey.failures);
+        assertEquals(MessageDecryptor.UNREADABLE_TEXT, noKey.messages.get(0).getText());
+
+        MessageDecryptor.Page withKey = decryptor.decryptPage(page, KEY, null).get();
+        assertEquals("Secret message 1", withKey.messages.get(0).getText());
+        assertEquals(MessageDecryptor.UNREADABLE_TEXT, withKey.messages.get(1).getText());
+        assertEquals(3, decryptor.snapshot().failures);
+    }
+}
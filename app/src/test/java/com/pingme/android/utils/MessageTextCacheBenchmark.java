@@ -0,0 +1,41 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+/**
+ * Highlight matching with {@link MessageTextCache#findMatches} against scanning
+ * lower-cased copies of the text and query. See {@link Benchmarks} for how to run it.
+ */
+public class MessageTextCacheBenchmark {
+    private static final int SCANS = 20_000;
+
+    @Test
+    public void findMatches() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            builder.append("Are we still meeting at the station tomorrow? ");
+        }
+        String text = builder.toString();
+        int[] sink = new int[1];
+
+        double matchMs = Benchmarks.averageMillis(1, 5, () -> {
+            for (int i = 0; i < SCANS; i++) {
+                sink[0] += MessageTextCache.findMatches(text, "Station").length;
+            }
+        });
+        double lowerMs = Benchmarks.averageMillis(1, 5, () -> {
+            for (int i = 0; i < SCANS; i++) {
+                String lowerText = text.toLowerCase();
+                String lowerQuery = "Station".toLowerCase();
+                int index = 0;
+                while ((index = lowerText.indexOf(lowerQuery, index)) != -1) {
+                    sink[0] += 2;
+                    index += lowerQuery.length();
+                }
+            }
+        });
+
+        Benchmarks.report("findMatches: %.1f ms for %d scans of %d chars, lower-case copies: %.1f ms [%d]",
+                matchMs, SCANS, text.length(), lowerMs, sink[0]);
+    }
+}
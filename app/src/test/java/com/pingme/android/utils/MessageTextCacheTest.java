@@ -0,0 +1,45 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the search highlight matching in {@link MessageTextCache};
+ * timings are in {@link MessageTextCacheBenchmark}.
+ */
+public class MessageTextCacheTest {
+
+    @Test
+    public void findMatches_isCaseInsensitiveAndNonOverlapping() {
+        assertArrayEquals(new int[]{0, 5, 12, 17}, MessageTextCache.findMatches("Hello there hello", "HELLO"));
+        assertArrayEquals(new int[]{0, 2, 2, 4}, MessageTextCache.findMatches("aaaaa", "aa"));
+        assertArrayEquals(new int[0], MessageTextCache.findMatches("Hello", "bye"));
+        assertArrayEquals(new int[0], MessageTextCache.findMatches("Hi", "Hello"));
+        assertArrayEquals(new int[0], MessageTextCache.findMatches("Hello", ""));
+        assertArrayEquals(new int[0], MessageTextCache.findMatches(null, "a"));
+    }
+
+    @Test
+    public void findMatches_offsetsIndexTheOriginalText() {
+        // "İ" lower-cases to two chars, which shifted offsets when matching on a lower-cased copy
+        String text = "İstanbul trip";
+        int[] matches = MessageTextCache.findMatches(text, "trip");
+        assertArrayEquals(new int[]{9, 13}, matches);
+        assertEquals("trip", text.substring(matches[0], matches[1]));
+        assertNotEquals(9, text.toLowerCase(Locale.ROOT).indexOf("trip"));
+    }
+
+    @Test
+    public void findMatches_growsPastInitialCapacity() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("ok ");
+        }
+        int[] matches = MessageTextCache.findMatches(text.toString(), "OK");
+        assertEquals(200, matches.length);
+        assertEquals(297, matches[198]);
+    }
+}
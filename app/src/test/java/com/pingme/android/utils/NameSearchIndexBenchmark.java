@@ -0,0 +1,36 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Search time of {@link NameSearchIndex} over thousands of contacts against the
+ * linear contains() scan it replaced. See {@link Benchmarks} for how to run it.
+ */
+public class NameSearchIndexBenchmark {
+    private static final String[] QUERIES = {"a", "ro", "ken", "sofia", "müll", "user49", "@exa", "friend 12", "zzz", "li"};
+
+    @Test
+    public void thousandsOfContacts() throws Exception {
+        List<String[]> contacts = NameSearchIndexTest.generatedContacts(5000);
+        int[] sink = new int[1];
+
+        double buildMs = Benchmarks.averageMillis(5, 20,
+                () -> sink[0] += NameSearchIndex.build(contacts, contact -> contact).size());
+        NameSearchIndex<String[]> index = NameSearchIndex.build(contacts, contact -> contact);
+        double indexMs = Benchmarks.averageMillis(200, 500, () -> {
+            for (String query : QUERIES) {
+                sink[0] += index.search(query).size();
+            }
+        });
+        double scanMs = Benchmarks.averageMillis(20, 100, () -> {
+            for (String query : QUERIES) {
+                sink[0] += NameSearchIndexTest.linearScan(contacts, query).size();
+            }
+        });
+
+        Benchmarks.report("NameSearchIndex: build %.2f ms for %d contacts, search %.1f us/query (linear scan %.1f us/query) [%d]",
+                buildMs, contacts.size(), indexMs * 1000 / QUERIES.length, scanMs * 1000 / QUERIES.length, sink[0]);
+    }
+}
@@ -0,0 +1,129 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NameSearchIndex}; timings are in {@link NameSearchIndexBenchmark}.
+ */
+public class NameSearchIndexTest {
+
+    // Each contact is {personalName, name, email}
+    private static NameSearchIndex<String[]> indexOf(List<String[]> contacts) {
+        return NameSearchIndex.build(contacts, contact -> contact);
+    }
+
+    private static List<String> names(List<String[]> results) {
+        List<String> names = new ArrayList<>();
+        for (String[] contact : results) {
+            names.add(contact[1]);
+        }
+        return names;
+    }
+
+    @Test
+    public void emptyQuery_returnsAllInIndexedOrder() {
+        List<String[]> contacts = Arrays.asList(
+                new String[] {null, "Bob", "bob@mail.com"},
+                new String[] {null, "Alice", "alice@mail.com"});
+
+        assertEquals(Arrays.asList("Bob", "Alice"), names(indexOf(contacts).search("  ")));
+    }
+
+    @Test
+    public void search_matchesSubstringOfAnyField() {
+        List<String[]> contacts = Arrays.asList(
+                new String[] {"Mum", "Sarah Connor", "sarah@mail.com"},
+                new String[] {null, "John Smith", "js@work.org"},
+                new String[] {null, "Kyle Reese", "kyle@mail.com"});
+        NameSearchIndex<String[]> index = indexOf(contacts);
+
+        assertEquals(Collections.singletonList("Sarah Connor"), names(index.search("mum")));
+        assertEquals(Collections.singletonList("John Smith"), names(index.search("WORK")));
+        assertEquals(Collections.singletonList("Kyle Reese"), names(index.search("ees")));
+        assertTrue(index.search("xyz").isEmpty());
+    }
+
+    @Test
+    public void search_ranksExactThenPrefixThenWordThenSubstring() {
+        List<String[]> contacts = Arrays.asList(
+                new String[] {null, "Manna", "m1@mail.com"},
+                new String[] {null, "Bob Ann", "m2@mail.com"},
+                new String[] {null, "Annabel", "m3@mail.com"},
+                new String[] {null, "Ann", "m4@mail.com"});
+
+        assertEquals(Arrays.asList("Ann", "Annabel", "Bob Ann", "Manna"),
+                names(indexOf(contacts).search("ann")));
+    }
+
+    @Test
+    public void search_ignoresAccentsCaseAndExtraSpaces() {
+        List<String[]> contacts = Collections.singletonList(
+                new String[] {null, "José  Núñez", "jose@mail.com"});
+
+        assertEquals(1, indexOf(contacts).search("jose nunez").size());
+        assertEquals(1, indexOf(contacts).search("NÚÑ").size());
+    }
+
+    @Test
+    public void search_doesNotMatchGramsSpreadAcrossFields() {
+        // "ab" only exists as "a" in one field and "b" in another
+        List<String[]> contacts = Collections.singletonList(new String[] {"xa", "by", "c@d"});
+
+        assertTrue(indexOf(contacts).search("ab").isEmpty());
+    }
+
+    @Test
+    public void search_respectsLimit() {
+        List<String[]> contacts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            contacts.add(new String[] {null, "Sam " + i, "sam" + i + "@mail.com"});
+        }
+
+        assertEquals(3, indexOf(contacts).search("sam", 3).size());
+    }
+
+    @Test
+    public void selectiveQueries_matchTheOldContainsFilter() {
+        List<String[]> contacts = generatedContacts(5000);
+        NameSearchIndex<String[]> index = indexOf(contacts);
+
+        for (String query : new String[] {"user49", "friend 12", "müll", "zzz"}) {
+            assertEquals(query, linearScan(contacts, query).size(), index.search(query).size());
+        }
+    }
+
+    static List<String[]> generatedContacts(int count) {
+        Random random = new Random(42);
+        String[] first = {"Aarav", "Sofia", "Liam", "Mei", "Noah", "Priya", "Lucas", "Zara", "Omar", "Elena"};
+        String[] last = {"Roy", "Garcia", "Chen", "Smith", "Khan", "Müller", "Rossi", "Sato", "Das", "Novak"};
+        List<String[]> contacts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = first[random.nextInt(first.length)] + " " + last[random.nextInt(last.length)] + " " + i;
+            String personal = random.nextInt(4) == 0 ? "Friend " + i : null;
+            contacts.add(new String[] {personal, name, "user" + i + "@example.com"});
+        }
+        return contacts;
+    }
+
+    static List<String[]> linearScan(List<String[]> contacts, String query) {
+        String lowerQuery = query.toLowerCase();
+        List<String[]> result = new ArrayList<>();
+        for (String[] contact : contacts) {
+            for (String field : contact) {
+                if (field != null && field.toLowerCase().contains(lowerQuery)) {
+                    result.add(contact);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
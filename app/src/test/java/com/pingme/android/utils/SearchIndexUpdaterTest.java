@@ -0,0 +1,157 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SearchIndexUpdater}, with hand-driven executors
+ * standing in for the CPU pool and the main thread.
+ */
+public class SearchIndexUpdaterTest {
+    private final ArrayDeque<Runnable> background = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> main = new ArrayDeque<>();
+    private final List<Long> mainDelays = new ArrayList<>();
+    private final List<NameSearchIndex<String[]>> delivered = new ArrayList<>();
+
+    // Each contact is {name, email}, mutable like a User
+    private SearchIndexUpdater<String[]> newUpdater() {
+        return new SearchIndexUpdater<>(contact -> contact, background::add, (runnable, delayMillis) -> {
+            mainDelays.add(delayMillis);
+            main.add(runnable);
+        }, delivered::add);
+    }
+
+    private static void runAll(ArrayDeque<Runnable> queue) {
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+    }
+
+    // Debounce delay, build, delivery
+    private void settle() {
+        runAll(main);
+        runAll(background);
+        runAll(main);
+    }
+
+    private static List<String> names(List<String[]> results) {
+        List<String> names = new ArrayList<>();
+        for (String[] contact : results) {
+            names.add(contact[0]);
+        }
+        return names;
+    }
+
+    @Test
+    public void buildsOffTheCallingThread_afterTheDebounce_andDeliversOnMain() {
+        SearchIndexUpdater<String[]> updater = newUpdater();
+        List<String[]> contacts = new ArrayList<>();
+        contacts.add(new String[] {"Alice", "alice@mail.com"});
+
+        updater.submit(contacts);
+        assertTrue(background.isEmpty());
+        assertEquals(List.of(SearchIndexUpdater.DEBOUNCE_MILLIS), mainDelays);
+
+        runAll(main);
+        assertEquals(1, background.size());
+        runAll(background);
+        assertEquals(0, updater.current().size());
+        runAll(main);
+
+        assertEquals(1, delivered.size());
+        assertEquals(Arrays.asList("Alice"), names(updater.current().search("ali")));
+    }
+
+    @Test
+    public void oneSubmitPerArrivingItem_isIndexedOnce() {
+        SearchIndexUpdater<String[]> updater = newUpdater();
+        List<String[]> contacts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            contacts.add(new String[] {"Friend" + i, i + "@mail.com"});
+            updater.submit(contacts);
+        }
+        assertEquals(1, main.size());
+
+        runAll(main);
+        assertEquals(1, background.size());
+        runAll(background);
+        runAll(main);
+
+        assertEquals(1, delivered.size());
+        assertEquals(50, updater.current().size());
+    }
+
+    @Test
+    public void renameInPlace_isPickedUpByTheNextSubmit() {
+        SearchIndexUpdater<String[]> updater = newUpdater();
+        String[] bob = {"Bob", "b@mail.com"};
+        List<String[]> contacts = new ArrayList<>(Arrays.asList(new String[] {"Alice", "a@mail.com"}, bob));
+        updater.submit(contacts);
+        settle();
+
+        // Same size as before, so a size check would have kept the stale index
+        bob[0] = "Robert";
+        updater.submit(contacts);
+        settle();
+
+        assertEquals(Arrays.asList("Robert"), names(updater.current().search("robert")));
+        assertTrue(updater.current().search("bob").isEmpty());
+    }
+
+    @Test
+    public void removeThenAdd_isPickedUp() {
+        SearchIndexUpdater<String[]> updater = newUpdater();
+        List<String[]> contacts = new ArrayList<>(Arrays.asList(new String[] {"Alice", "a@mail.com"},
+                new String[] {"Bob", "b@mail.com"}));
+        updater.submit(contacts);
+        settle();
+
+        contacts.remove(1);
+        contacts.add(new String[] {"Carol", "c@mail.com"});
+        updater.submit(contacts);
+        settle();
+
+        assertTrue(updater.current().search("bob").isEmpty());
+        assertEquals(Arrays.asList("Carol"), names(updater.current().search("car")));
+    }
+
+    @Test
+    public void fieldsAreCopiedWhenTheBuildIsQueued() {
+        SearchIndexUpdater<String[]> updater = newUpdater();
+        String[] alice = {"Alice", "a@mail.com"};
+        updater.submit(Collections.singletonList(alice));
+        runAll(main);
+
+        // Edited after the build was queued but before it ran
+        alice[0] = "Zed";
+        runAll(background);
+        runAll(main);
+
+        assertEquals(1, updater.current().search("alice").size());
+    }
+
+    @Test
+    public void olderBuildFinishingLate_doesNotReplaceTheNewerIndex() {
+        SearchIndexUpdater<String[]> updater = newUpdater();
+        List<String[]> contacts = new ArrayList<>();
+        contacts.add(new String[] {"Alice", "a@mail.com"});
+        updater.submit(contacts);
+        runAll(main);
+
+        contacts.add(new String[] {"Bob", "b@mail.com"});
+        updater.submit(contacts);
+        // The first build finishes after the second submit
+        runAll(background);
+        settle();
+
+        assertEquals(1, delivered.size());
+        assertEquals(2, updater.current().size());
+    }
+}
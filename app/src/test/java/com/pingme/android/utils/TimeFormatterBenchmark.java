@@ -0,0 +1,44 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Bind-time formatting through the cached {@link TimeFormatter} against building a
+ * {@link SimpleDateFormat} per bind. See {@link Benchmarks} for how to run it.
+ */
+public class TimeFormatterBenchmark {
+    private static final long NOW = 1710342420000L;
+    private static final long MINUTE = 60 * 1000L;
+    private static final int ROWS = 200_000;
+
+    @Test
+    public void bindTimes() throws Exception {
+        TimeFormatter formatter = new TimeFormatter(() -> NOW);
+        long[] timestamps = new long[500];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = NOW - i * 7 * MINUTE;
+        }
+        int[] sink = new int[1];
+
+        double cachedMs = Benchmarks.averageMillis(1, 3, () -> {
+            for (int i = 0; i < ROWS; i++) {
+                sink[0] += formatter.formatTime(timestamps[i % timestamps.length]).length();
+                sink[0] += formatter.formatDateHeader(timestamps[i % timestamps.length]).length();
+            }
+        });
+        double perBindMs = Benchmarks.averageMillis(1, 3, () -> {
+            for (int i = 0; i < ROWS; i++) {
+                Date date = new Date(timestamps[i % timestamps.length]);
+                sink[0] += new SimpleDateFormat("h:mm a", Locale.getDefault()).format(date).length();
+                sink[0] += new SimpleDateFormat("EEEE", Locale.getDefault()).format(date).length();
+            }
+        });
+
+        Benchmarks.report("TimeFormatter: %.1f ms for %d rows, new SimpleDateFormat per bind: %.1f ms [%d]",
+                cachedMs, ROWS, perBindMs, sink[0]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.pingme.android.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TimeFormatter}; timings are in {@link TimeFormatterBenchmark}.
+ */
+public class TimeFormatterTest {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    // Wednesday 2024-03-13 15:07 UTC
+    private static final long NOW = 1710342420000L;
+
+    private TimeZone savedZone;
+    private Locale savedLocale;
+    private long now;
+    private TimeFormatter formatter;
+
+    @Before
+    public void setUp() {
+        savedZone = TimeZone.getDefault();
+        savedLocale = Locale.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        Locale.setDefault(Locale.US);
+        now = NOW;
+        formatter = new TimeFormatter(() -> now);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(savedZone);
+        Locale.setDefault(savedLocale);
+    }
+
+    @Test
+    public void chatListTime_followsDayBuckets() {
+        assertEquals("15:07", formatter.formatChatListTime(NOW));
+        // Just after local midnight is still today
+        assertEquals("00:01", formatter.formatChatListTime(NOW - 15 * HOUR - 6 * MINUTE));
+        assertEquals("Yesterday", formatter.formatChatListTime(NOW - 15 * HOUR - 8 * MINUTE));
+        assertEquals("Sun", formatter.formatChatListTime(NOW - 3 * DAY));
+        assertEquals("06/03/24", formatter.formatChatListTime(NOW - 7 * DAY));
+        assertEquals("", formatter.formatChatListTime(0));
+    }
+
+    @Test
+    public void dateHeaderAndLastSeen_matchPreviousWording() {
+        assertEquals("Today", formatter.formatDateHeader(NOW - HOUR));
+        assertEquals("Yesterday", formatter.formatDateHeader(NOW - DAY));
+        assertEquals("Monday", formatter.formatDateHeader(NOW - 2 * DAY));
+        assertEquals("January 02", formatter.formatDateHeader(NOW - 71 * DAY));
+        assertEquals("December 31, 2023", formatter.formatDateHeader(NOW - 73 * DAY));
+
+        assertEquals("just now", formatter.formatLastSeen(NOW - 10_000));
+        assertEquals("1 minute ago", formatter.formatLastSeen(NOW - MINUTE));
+        assertEquals("5 hours ago", formatter.formatLastSeen(NOW - 5 * HOUR));
+        assertEquals("yesterday", formatter.formatLastSeen(NOW - 30 * HOUR));
+        assertEquals("3 days ago", formatter.formatLastSeen(NOW - 3 * DAY));
+        assertEquals("on 01/03/2024", formatter.formatLastSeen(NOW - 12 * DAY));
+    }
+
+    @Test
+    public void labels_areCachedAndDroppedAtMidnightAndOnLocaleChange() {
+        String time = formatter.formatTime(NOW);
+        assertEquals("3:07 PM", time);
+        // Same minute, same cached instance
+        assertSame(time, formatter.formatTime(NOW + 30_000));
+
+        long messageTime = NOW - 2 * HOUR;
+        assertEquals("Today", formatter.formatDateHeader(messageTime));
+        now = NOW + DAY;
+        assertEquals("Yesterday", formatter.formatDateHeader(messageTime));
+
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals("Montag", formatter.formatDateHeader(NOW - 2 * DAY));
+    }
+}
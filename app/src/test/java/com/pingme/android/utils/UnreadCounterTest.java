@@ -0,0 +1,53 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link UnreadCounter}.
+ */
+public class UnreadCounterTest {
+
+    @Test
+    public void receiverIsTheOtherParticipant() {
+        assertEquals("bob", UnreadCounter.receiverOf("alice_bob", "alice"));
+        assertEquals("alice", UnreadCounter.receiverOf("alice_bob", "bob"));
+        assertNull(UnreadCounter.receiverOf("group", "alice"));
+        assertNull(UnreadCounter.receiverOf("a_b_c", "a"));
+        assertNull(UnreadCounter.receiverOf(null, "alice"));
+    }
+
+    @Test
+    public void incrementTargetsOnlyTheReceiversCounter() {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("messages/alice_bob/m1", "message");
+
+        assertTrue(UnreadCounter.addIncrement(updates, "alice_bob", "alice"));
+
+        assertEquals(2, updates.size());
+        assertTrue(updates.containsKey("user_chats/bob/alice_bob/unreadCount"));
+        assertFalse(updates.containsKey("user_chats/alice/alice_bob/unreadCount"));
+        // Never a literal number: the server adds to whatever is stored
+        assertFalse(updates.get("user_chats/bob/alice_bob/unreadCount") instanceof Number);
+    }
+
+    @Test
+    public void noIncrementWithoutASingleReceiver() {
+        Map<String, Object> updates = new HashMap<>();
+        assertFalse(UnreadCounter.addIncrement(updates, "broadcast", "alice"));
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    public void missingOrNegativeCountsReadAsZero() {
+        assertEquals(0, UnreadCounter.toCount(null));
+        assertEquals(0, UnreadCounter.toCount(-3L));
+        assertEquals(0, UnreadCounter.toCount(0L));
+        assertEquals(1500, UnreadCounter.toCount(1500L));
+        assertEquals(Integer.MAX_VALUE, UnreadCounter.toCount(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,419 @@
+package com.pingme.android.utils;
+
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the persisted state machine of {@link UploadQueue}, with
+ * in-memory stand-ins for SharedPreferences, Cloudinary and the message send.
+ */
+public class UploadQueueTest {
+    private static final String PUBLIC_ID = "chat_videos/video_t1";
+
+    private String persisted;
+    private final List<String> dispatched = new ArrayList<>();
+    private final List<String> cancelled = new ArrayList<>();
+    private final List<String> released = new ArrayList<>();
+    // Requests the SDK still holds queued or running
+    private final Set<String> pendingRequests = new HashSet<>();
+    private final List<UploadQueue.UploadTask> sent = new ArrayList<>();
+    private final Map<String, Map<String, Object>> remembered = new HashMap<>();
+    // Assets Cloudinary has stored, by public id
+    private final Map<String, Map<String, Object>> assets = new HashMap<>();
+    private CompletableFuture<Map<String, Object>> pendingLookup;
+    private Throwable lookupError;
+    private Throwable sendError;
+
+    private final UploadQueue.TaskPersistence persistence = new UploadQueue.TaskPersistence() {
+        @Override
+        public String load() {
+            return persisted;
+        }
+
+        @Override
+        public void save(String tasksJson) {
+            persisted = tasksJson;
+        }
+    };
+
+    private final UploadQueue.UploadBackend backend = new UploadQueue.UploadBackend() {
+        @Override
+        public void retainSource(UploadQueue.UploadTask task) {
+        }
+
+        @Override
+        public void releaseSource(UploadQueue.UploadTask task) {
+            released.add(task.uri);
+        }
+
+        @Override
+        public String dispatch(UploadQueue.UploadTask task) {
+            dispatched.add(task.publicId);
+            return "request-" + dispatched.size();
+        }
+
+        @Override
+        public void cancel(String requestId) {
+            cancelled.add(requestId);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> isPending(String requestId) {
+            return CompletableFuture.completedFuture(pendingRequests.contains(requestId));
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Object>> lookup(UploadQueue.UploadTask task) {
+            if (pendingLookup != null) {
+                return pendingLookup;
+            }
+            if (lookupError != null) {
+                return CompletableFuture.failedFuture(lookupError);
+            }
+            return CompletableFuture.completedFuture(assets.get(task.publicId));
+        }
+
+        @Override
+        public CompletableFuture<Void> sendMessage(UploadQueue.UploadTask task) {
+            if (sendError != null) {
+                return CompletableFuture.failedFuture(sendError);
+            }
+            sent.add(task);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void remember(String contentKey, Map<String, Object> mediaData) {
+            remembered.put(contentKey, mediaData);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        persisted = null;
+        dispatched.clear();
+        cancelled.clear();
+        released.clear();
+        pendingRequests.clear();
+        sent.clear();
+        remembered.clear();
+        assets.clear();
+        pendingLookup = null;
+        lookupError = null;
+        sendError = null;
+    }
+
+    private static UploadQueue.UploadTask videoMessage(int state) {
+        UploadQueue.UploadTask task = new UploadQueue.UploadTask();
+        task.id = "t1";
+        task.kind = UploadQueue.KIND_VIDEO;
+        task.uri = "content://media/video/1";
+        task.state = state;
+        task.totalBytes = 100;
+        task.contentKey = "video:abc";
+        task.chatId = "alice_bob";
+        task.senderId = "alice";
+        task.messageText = "Video";
+        task.messageType = "video";
+        return task;
+    }
+
+    private void persist(UploadQueue.UploadTask... tasks) throws Exception {
+        JSONArray array = new JSONArray();
+        for (UploadQueue.UploadTask task : tasks) {
+            array.put(task.toJson());
+        }
+        persisted = array.toString();
+    }
+
+    private UploadQueue restoredQueue() {
+        UploadQueue queue = new UploadQueue(persistence, backend);
+        queue.restore();
+        return queue;
+    }
+
+    private static Map<String, Object> storedAsset(String url) {
+        Map<String, Object> resultData = new HashMap<>();
+        resultData.put("secure_url", url);
+        resultData.put("duration", "2.5");
+        return resultData;
+    }
+
+    private static UploadQueue.UploadTask only(UploadQueue queue) {
+        List<UploadQueue.UploadTask> tasks = queue.snapshot();
+        assertEquals(1, tasks.size());
+        return tasks.get(0);
+    }
+
+    @Test
+    public void queuedTask_isDispatchedOnRestore_andSentOnceUploaded() throws Exception {
+        persist(videoMessage(UploadQueue.STATE_QUEUED));
+
+        UploadQueue queue = restoredQueue();
+        assertEquals(1, dispatched.size());
+        UploadQueue.UploadTask task = only(queue);
+        assertEquals(UploadQueue.STATE_UPLOADING, task.state);
+        assertNotNull(task.publicId);
+        // The id is fixed before dispatch and survives the next restart
+        assertTrue(persisted.contains(task.publicId));
+
+        queue.onUploadSuccess(task.requestId, storedAsset("https://res.cloudinary.com/v.mp4"));
+
+        assertEquals(1, sent.size());
+        assertEquals("https://res.cloudinary.com/v.mp4", sent.get(0).mediaData.get("videoUrl"));
+        assertEquals(2500L, sent.get(0).mediaData.get("duration"));
+        assertTrue(remembered.containsKey("video:abc"));
+        assertTrue(queue.snapshot().isEmpty());
+        assertEquals("[]", persisted);
+    }
+
+    @Test
+    public void uploadingTask_stillHeldByTheSdk_isLeftToResume() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADING);
+        task.publicId = PUBLIC_ID;
+        task.requestId = "old-request";
+        task.bytesUploaded = 40;
+        persist(task);
+        pendingRequests.add("old-request");
+
+        UploadQueue queue = restoredQueue();
+
+        assertTrue(dispatched.isEmpty());
+        assertTrue(cancelled.isEmpty());
+        UploadQueue.UploadTask restored = only(queue);
+        assertEquals("old-request", restored.requestId);
+        assertEquals(40, restored.bytesUploaded);
+
+        // The resumed request reports through the global callback as before
+        queue.onUploadProgress("old-request", 80, 100);
+        assertEquals(80, only(queue).getProgressPercent());
+        queue.onUploadSuccess("old-request", storedAsset("https://res.cloudinary.com/v.mp4"));
+        assertEquals(1, sent.size());
+        assertTrue(queue.snapshot().isEmpty());
+    }
+
+    @Test
+    public void uploadingTask_storedBeforeTheProcessDied_isSentWithoutUploadingAgain() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADING);
+        task.publicId = PUBLIC_ID;
+        task.requestId = "old-request";
+        persist(task);
+        assets.put(PUBLIC_ID, storedAsset("https://res.cloudinary.com/stored.mp4"));
+
+        UploadQueue queue = restoredQueue();
+
+        assertTrue(dispatched.isEmpty());
+        assertEquals(1, sent.size());
+        assertEquals("https://res.cloudinary.com/stored.mp4", sent.get(0).mediaData.get("videoUrl"));
+        assertTrue(queue.snapshot().isEmpty());
+    }
+
+    @Test
+    public void uploadingTask_notStored_isDispatchedAgainUnderTheSameId() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADING);
+        task.publicId = PUBLIC_ID;
+        task.requestId = "old-request";
+        task.bytesUploaded = 40;
+        persist(task);
+
+        UploadQueue queue = restoredQueue();
+
+        assertEquals(1, dispatched.size());
+        assertEquals(PUBLIC_ID, dispatched.get(0));
+        assertEquals(1, cancelled.size());
+        assertEquals("old-request", cancelled.get(0));
+        UploadQueue.UploadTask restored = only(queue);
+        assertEquals(UploadQueue.STATE_UPLOADING, restored.state);
+        assertEquals("request-1", restored.requestId);
+        assertEquals(40, restored.bytesUploaded);
+
+        // A late report from the replaced request is ignored; the new one completes it
+        queue.onUploadSuccess("old-request", storedAsset("https://res.cloudinary.com/old.mp4"));
+        assertTrue(sent.isEmpty());
+        queue.onUploadSuccess("request-1", storedAsset("https://res.cloudinary.com/new.mp4"));
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void uploadingTask_lookupFails_isDispatchedAgain() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADING);
+        task.publicId = PUBLIC_ID;
+        task.requestId = "old-request";
+        persist(task);
+        lookupError = new Exception("offline");
+
+        UploadQueue queue = restoredQueue();
+
+        assertEquals(1, dispatched.size());
+        assertEquals(PUBLIC_ID, dispatched.get(0));
+        assertEquals(UploadQueue.STATE_UPLOADING, only(queue).state);
+    }
+
+    @Test
+    public void uploadingTask_withoutPublicId_isDispatchedWithOne() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADING);
+        task.requestId = "old-request";
+        persist(task);
+
+        UploadQueue queue = restoredQueue();
+
+        assertEquals(1, dispatched.size());
+        assertEquals(UploadQueue.publicIdFor(task), dispatched.get(0));
+        assertEquals(dispatched.get(0), only(queue).publicId);
+    }
+
+    @Test
+    public void sdkReportDuringLookup_winsAndTheLookupIsIgnored() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADING);
+        task.publicId = PUBLIC_ID;
+        task.requestId = "old-request";
+        persist(task);
+        pendingLookup = new CompletableFuture<>();
+
+        UploadQueue queue = restoredQueue();
+        queue.onUploadSuccess("old-request", storedAsset("https://res.cloudinary.com/v.mp4"));
+        pendingLookup.complete(null);
+
+        assertEquals(1, sent.size());
+        assertTrue(dispatched.isEmpty());
+        assertTrue(queue.snapshot().isEmpty());
+    }
+
+    @Test
+    public void cancelDuringLookup_dispatchesNothing() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADING);
+        task.publicId = PUBLIC_ID;
+        task.requestId = "old-request";
+        persist(task);
+        pendingLookup = new CompletableFuture<>();
+
+        UploadQueue queue = restoredQueue();
+        queue.cancel("t1");
+        pendingLookup.complete(null);
+
+        assertTrue(dispatched.isEmpty());
+        assertTrue(sent.isEmpty());
+        assertEquals("[]", persisted);
+    }
+
+    @Test
+    public void uploadedTask_isSentOnRestore_andKeptUntilTheSendSucceeds() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_UPLOADED);
+        task.publicId = PUBLIC_ID;
+        task.mediaData = new HashMap<>();
+        task.mediaData.put("videoUrl", "https://res.cloudinary.com/v.mp4");
+        persist(task);
+        sendError = new Exception("offline");
+
+        UploadQueue queue = restoredQueue();
+        assertEquals(UploadQueue.STATE_UPLOADED, only(queue).state);
+        assertTrue(dispatched.isEmpty());
+
+        // Next start: still stored as uploaded, so it is sent and not uploaded again
+        sendError = null;
+        UploadQueue next = restoredQueue();
+        assertEquals(1, sent.size());
+        assertEquals("https://res.cloudinary.com/v.mp4", sent.get(0).mediaData.get("videoUrl"));
+        assertTrue(dispatched.isEmpty());
+        assertTrue(next.snapshot().isEmpty());
+    }
+
+    @Test
+    public void retry_keepsThePublicIdAndProgress() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_QUEUED);
+        persist(task);
+        UploadQueue queue = restoredQueue();
+        String requestId = only(queue).requestId;
+        String publicId = only(queue).publicId;
+        queue.onUploadProgress(requestId, 60, 100);
+        queue.onUploadError(requestId, "Connection reset");
+        assertEquals(UploadQueue.STATE_FAILED, only(queue).state);
+        assertEquals("Connection reset", only(queue).error);
+
+        queue.retry("t1");
+
+        assertEquals(2, dispatched.size());
+        assertEquals(publicId, dispatched.get(1));
+        // The failed request is already over, there is nothing to cancel
+        assertTrue(cancelled.isEmpty());
+        UploadQueue.UploadTask retried = only(queue);
+        assertEquals(UploadQueue.STATE_UPLOADING, retried.state);
+        assertNull(retried.error);
+        assertEquals(60, retried.bytesUploaded);
+        assertEquals(60, retried.getProgressPercent());
+    }
+
+    @Test
+    public void retry_ofAnUploadThatWasStored_sendsWithoutUploadingAgain() throws Exception {
+        UploadQueue.UploadTask task = videoMessage(UploadQueue.STATE_FAILED);
+        task.publicId = PUBLIC_ID;
+        task.requestId = "failed-request";
+        task.error = "Timeout";
+        persist(task);
+        UploadQueue queue = restoredQueue();
+        assertTrue(dispatched.isEmpty());
+        assertEquals(UploadQueue.STATE_FAILED, only(queue).state);
+
+        assets.put(PUBLIC_ID, storedAsset("https://res.cloudinary.com/v.mp4"));
+        queue.retry("t1");
+
+        assertTrue(dispatched.isEmpty());
+        assertEquals(1, sent.size());
+        assertTrue(queue.snapshot().isEmpty());
+    }
+
+    @Test
+    public void source_isReleasedOnceTheMessageIsSent() throws Exception {
+        persist(videoMessage(UploadQueue.STATE_QUEUED));
+        UploadQueue queue = restoredQueue();
+
+        queue.onUploadSuccess(only(queue).requestId, storedAsset("https://res.cloudinary.com/v.mp4"));
+
+        assertEquals(1, sent.size());
+        assertEquals(List.of("content://media/video/1"), released);
+    }
+
+    @Test
+    public void cancel_releasesTheSource() throws Exception {
+        persist(videoMessage(UploadQueue.STATE_QUEUED));
+        UploadQueue queue = restoredQueue();
+
+        queue.cancel("t1");
+
+        assertEquals(List.of("content://media/video/1"), released);
+        assertEquals(1, cancelled.size());
+    }
+
+    @Test
+    public void cancelBeforeEnqueue_isRememberedOnce() {
+        UploadQueue queue = new UploadQueue(persistence, backend);
+
+        queue.cancel("not-yet-enqueued");
+
+        assertTrue(queue.takeCancellation("not-yet-enqueued"));
+        assertFalse(queue.takeCancellation("not-yet-enqueued"));
+        assertTrue(cancelled.isEmpty());
+    }
+
+    @Test
+    public void retry_ignoresTasksThatHaveNotFailed() throws Exception {
+        persist(videoMessage(UploadQueue.STATE_QUEUED));
+        UploadQueue queue = restoredQueue();
+
+        queue.retry("t1");
+        queue.retry("missing");
+
+        assertEquals(1, dispatched.size());
+    }
+}
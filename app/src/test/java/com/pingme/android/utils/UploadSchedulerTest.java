@@ -0,0 +1,258 @@
+package com.pingme.android.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the ordering rules of {@link UploadScheduler}, with uploads
+ * and message sends the test completes by hand.
+ */
+public class UploadSchedulerTest {
+    private static final long SMALL = 1024 * 1024;
+    private static final long LARGE = 50L * 1024 * 1024;
+
+    private final List<String> started = new ArrayList<>();
+    private final Map<String, CompletableFuture<Map<String, Object>>> uploads = new HashMap<>();
+    private final List<String> sent = new ArrayList<>();
+    private final List<String> failed = new ArrayList<>();
+    private final List<String> selfSent = new ArrayList<>();
+    private final List<String> uploadsCancelled = new ArrayList<>();
+    private final List<String> uploadTaskIds = new ArrayList<>();
+    private CompletableFuture<Void> pendingSend;
+    private int parallelism;
+
+    @Before
+    public void setUp() {
+        started.clear();
+        uploads.clear();
+        sent.clear();
+        failed.clear();
+        selfSent.clear();
+        uploadsCancelled.clear();
+        uploadTaskIds.clear();
+        pendingSend = null;
+        parallelism = 3;
+    }
+
+    private UploadScheduler newScheduler() {
+        UploadScheduler.MessageSender sender = (chatId, senderId, text, type, mediaData) -> {
+            sent.add(text);
+            return pendingSend != null ? pendingSend : CompletableFuture.completedFuture(null);
+        };
+        // Callbacks run inline instead of on the main thread
+        return new UploadScheduler(() -> parallelism, sender, uploadsCancelled::add, Runnable::run);
+    }
+
+    private Supplier<CompletableFuture<Map<String, Object>>> upload(String name) {
+        return () -> {
+            started.add(name);
+            CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+            uploads.put(name, future);
+            return future;
+        };
+    }
+
+    // Stands in for CloudinaryUtil.sendChatMediaMessage: enqueues under the id it is given
+    private Function<String, CompletableFuture<Map<String, Object>>> queuedUpload(String name) {
+        return uploadTaskId -> {
+            uploadTaskIds.add(uploadTaskId);
+            return upload(name).get();
+        };
+    }
+
+    private void finishUpload(String name) {
+        uploads.get(name).complete(Collections.singletonMap("url", name));
+    }
+
+    private UploadScheduler.JobListener listener(String name, List<String> onSent) {
+        return new UploadScheduler.JobListener() {
+            @Override
+            public void onSent(Map<String, Object> mediaData) {
+                onSent.add(name);
+            }
+
+            @Override
+            public void onFailed(Throwable error) {
+                failed.add(name);
+            }
+        };
+    }
+
+    private String schedule(UploadScheduler scheduler, String chatId, long size, String name) {
+        return scheduler.schedule(chatId, size, upload(name), "alice", name, "file", listener(name, new ArrayList<>()));
+    }
+
+    @Test
+    public void smallFileFinishingFirst_waitsForTheLargeOneChosenBeforeIt() {
+        UploadScheduler scheduler = newScheduler();
+        schedule(scheduler, "chat", LARGE, "video");
+        schedule(scheduler, "chat", SMALL, "photo");
+        assertEquals(2, started.size());
+
+        finishUpload("photo");
+        assertTrue(sent.isEmpty());
+
+        finishUpload("video");
+        assertEquals(List.of("video", "photo"), sent);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void smallFilesUploadFirst_whenSlotsAreScarce() {
+        parallelism = 1;
+        UploadScheduler scheduler = newScheduler();
+        schedule(scheduler, "chat", LARGE, "video1");
+        schedule(scheduler, "chat", LARGE, "video2");
+        schedule(scheduler, "chat", SMALL, "photo");
+        assertEquals(List.of("video1"), started);
+
+        finishUpload("video1");
+        assertEquals(List.of("video1", "photo"), started);
+        finishUpload("photo");
+        finishUpload("video2");
+
+        assertEquals(List.of("video1", "video2", "photo"), sent);
+    }
+
+    @Test
+    public void otherChatsAreNotHeldBack() {
+        UploadScheduler scheduler = newScheduler();
+        schedule(scheduler, "chatA", LARGE, "video");
+        schedule(scheduler, "chatB", SMALL, "photo");
+
+        finishUpload("photo");
+
+        assertEquals(List.of("photo"), sent);
+    }
+
+    @Test
+    public void cancellingAnEarlierJob_releasesTheLaterOnes() {
+        UploadScheduler scheduler = newScheduler();
+        String video = schedule(scheduler, "chat", LARGE, "video");
+        schedule(scheduler, "chat", SMALL, "photo");
+        finishUpload("photo");
+        assertTrue(sent.isEmpty());
+
+        assertTrue(scheduler.cancel(video));
+
+        assertEquals(List.of("photo"), sent);
+        // The cancelled upload may still finish, but its message is never sent
+        finishUpload("video");
+        assertEquals(List.of("photo"), sent);
+        assertFalse(scheduler.cancel(video));
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void failedUpload_releasesTheLaterOnes() {
+        UploadScheduler scheduler = newScheduler();
+        schedule(scheduler, "chat", LARGE, "video");
+        schedule(scheduler, "chat", SMALL, "photo");
+        finishUpload("photo");
+
+        uploads.get("video").completeExceptionally(new Exception("network"));
+
+        assertEquals(List.of("video"), failed);
+        assertEquals(List.of("photo"), sent);
+    }
+
+    @Test
+    public void messagesOfAChatAreSentOneAtATime() {
+        UploadScheduler scheduler = newScheduler();
+        pendingSend = new CompletableFuture<>();
+        CompletableFuture<Void> firstSend = pendingSend;
+        schedule(scheduler, "chat", SMALL, "photo1");
+        schedule(scheduler, "chat", SMALL, "photo2");
+        finishUpload("photo1");
+        finishUpload("photo2");
+        assertEquals(List.of("photo1"), sent);
+
+        pendingSend = null;
+        firstSend.complete(null);
+
+        assertEquals(List.of("photo1", "photo2"), sent);
+    }
+
+    @Test
+    public void selfSendingJob_startsOnlyOnceEarlierMessagesWereSent() {
+        UploadScheduler scheduler = newScheduler();
+        pendingSend = new CompletableFuture<>();
+        CompletableFuture<Void> photoSend = pendingSend;
+        schedule(scheduler, "chat", SMALL, "photo");
+        scheduler.scheduleSelfSending("chat", SMALL, queuedUpload("video"), listener("video", selfSent));
+        assertEquals(List.of("photo"), started);
+
+        finishUpload("photo");
+        // Uploaded but not yet sent: the self-sending job still waits
+        assertEquals(List.of("photo"), started);
+
+        photoSend.complete(null);
+        assertEquals(List.of("photo", "video"), started);
+
+        finishUpload("video");
+        assertEquals(List.of("video"), selfSent);
+        assertEquals(List.of("photo"), sent);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void deferredSelfSendingJob_doesNotBlockOtherChats() {
+        parallelism = 1;
+        UploadScheduler scheduler = newScheduler();
+        schedule(scheduler, "chatA", SMALL, "photo");
+        scheduler.scheduleSelfSending("chatA", SMALL, queuedUpload("video"), listener("video", selfSent));
+        schedule(scheduler, "chatB", SMALL, "doc");
+
+        finishUpload("photo");
+
+        // The slot freed by photo went to the self-sending job now that photo was sent
+        assertEquals(List.of("photo", "video"), started);
+        finishUpload("video");
+        assertEquals(List.of("photo", "video", "doc"), started);
+    }
+
+    @Test
+    public void cancelledSelfSendingJob_cancelsItsQueuedUploadAndNeverSends() {
+        UploadScheduler scheduler = newScheduler();
+        String video = scheduler.scheduleSelfSending("chat", LARGE, queuedUpload("video"), listener("video", selfSent));
+        schedule(scheduler, "chat", SMALL, "photo");
+        assertEquals(1, uploadTaskIds.size());
+
+        assertTrue(scheduler.cancel(video));
+
+        assertEquals(uploadTaskIds, uploadsCancelled);
+        // UploadQueue.cancel cancels the future the job is waiting on
+        uploads.get("video").cancel(false);
+        finishUpload("photo");
+        assertTrue(selfSent.isEmpty());
+        assertTrue(failed.isEmpty());
+        assertEquals(List.of("photo"), sent);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void selfSendingJobCancelledBeforeItStarts_neverReachesTheQueue() {
+        UploadScheduler scheduler = newScheduler();
+        schedule(scheduler, "chat", SMALL, "photo");
+        String video = scheduler.scheduleSelfSending("chat", SMALL, queuedUpload("video"), listener("video", selfSent));
+
+        assertTrue(scheduler.cancel(video));
+        finishUpload("photo");
+
+        assertTrue(uploadTaskIds.isEmpty());
+        assertTrue(uploadsCancelled.isEmpty());
+        assertEquals(List.of("photo"), started);
+        assertFalse(scheduler.cancel(video));
+    }
+}
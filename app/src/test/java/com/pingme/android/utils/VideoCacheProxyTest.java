@@ -0,0 +1,78 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import java.net.URLEncoder;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the request checks and range bookkeeping of {@link VideoCacheProxy}.
+ */
+public class VideoCacheProxyTest {
+    private static final String TOKEN = "0123456789abcdef0123456789abcdef";
+    private static final String VIDEO = "https://res.cloudinary.com/demo/video/upload/v1/chat/clip.mp4";
+
+    private static String path(String token, String originUrl) throws Exception {
+        return "/video/" + token + "?u=" + URLEncoder.encode(originUrl, "UTF-8");
+    }
+
+    @Test
+    public void acceptsCloudinaryUrlWithToken() throws Exception {
+        assertEquals(VIDEO, VideoCacheProxy.originFromPath(path(TOKEN, VIDEO), TOKEN));
+    }
+
+    @Test
+    public void rejectsMissingOrWrongToken() throws Exception {
+        assertNull(VideoCacheProxy.originFromPath(path("", VIDEO), TOKEN));
+        assertNull(VideoCacheProxy.originFromPath(path(TOKEN.substring(1), VIDEO), TOKEN));
+        assertNull(VideoCacheProxy.originFromPath(path(TOKEN.replace('0', '1'), VIDEO), TOKEN));
+        assertNull(VideoCacheProxy.originFromPath("/video?u=" + URLEncoder.encode(VIDEO, "UTF-8"), TOKEN));
+        assertNull(VideoCacheProxy.originFromPath("/video/" + TOKEN, TOKEN));
+        assertNull(VideoCacheProxy.originFromPath(null, TOKEN));
+    }
+
+    @Test
+    public void rejectsOtherSchemesAndHosts() throws Exception {
+        String[] refused = {
+                "file:///data/data/com.pingme.android/shared_prefs/chat_keys.xml",
+                "ftp://res.cloudinary.com/clip.mp4",
+                "jar:https://res.cloudinary.com/a.jar!/clip.mp4",
+                "https://evil.example.com/clip.mp4",
+                "https://res.cloudinary.com.evil.example.com/clip.mp4",
+                "https://res.cloudinary.com@evil.example.com/clip.mp4",
+                "http://127.0.0.1:8080/admin",
+                "not a url",
+        };
+        for (String url : refused) {
+            assertFalse(url, VideoCacheProxy.isAllowedOrigin(url));
+            assertNull(url, VideoCacheProxy.originFromPath(path(TOKEN, url), TOKEN));
+        }
+        assertTrue(VideoCacheProxy.isAllowedOrigin("http://RES.cloudinary.com/demo/clip.mp4"));
+    }
+
+    @Test
+    public void rejectsMalformedEscapes() {
+        assertNull(VideoCacheProxy.originFromPath("/video/" + TOKEN + "?u=%zz", TOKEN));
+    }
+
+    @Test
+    public void rangeSetMergesTouchingAndOverlappingRanges() {
+        VideoCacheProxy.RangeSet ranges = new VideoCacheProxy.RangeSet();
+        ranges.add(100, 200);
+        ranges.add(300, 400);
+        ranges.add(200, 250);
+        ranges.add(240, 310);
+
+        List<long[]> merged = ranges.asList();
+        assertEquals(1, merged.size());
+        assertEquals(100, merged.get(0)[0]);
+        assertEquals(400, merged.get(0)[1]);
+        assertEquals(400, ranges.endOfRangeContaining(150));
+        assertEquals(50, ranges.endOfRangeContaining(50));
+        assertEquals(100, ranges.nextStartAfter(50));
+        assertEquals(Long.MAX_VALUE, ranges.nextStartAfter(100));
+        assertEquals(300, ranges.totalBytes());
+    }
+}
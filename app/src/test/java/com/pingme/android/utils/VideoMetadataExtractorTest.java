@@ -0,0 +1,36 @@
+package com.pingme.android.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the size math in {@link VideoMetadataExtractor}.
+ */
+public class VideoMetadataExtractorTest {
+
+    @Test
+    public void displaySize_swapsForPortraitRotation() {
+        assertArrayEquals(new int[]{1080, 1920}, VideoMetadataExtractor.displaySize(1920, 1080, 90));
+        assertArrayEquals(new int[]{1080, 1920}, VideoMetadataExtractor.displaySize(1920, 1080, 270));
+        assertArrayEquals(new int[]{1080, 1920}, VideoMetadataExtractor.displaySize(1920, 1080, -90));
+    }
+
+    @Test
+    public void displaySize_keepsLandscapeAndUpsideDown() {
+        assertArrayEquals(new int[]{1920, 1080}, VideoMetadataExtractor.displaySize(1920, 1080, 0));
+        assertArrayEquals(new int[]{1920, 1080}, VideoMetadataExtractor.displaySize(1920, 1080, 180));
+    }
+
+    @Test
+    public void posterSize_fitsLongEdgeAndKeepsAspect() {
+        assertArrayEquals(new int[]{270, 480}, VideoMetadataExtractor.posterSize(1080, 1920, 480));
+        assertArrayEquals(new int[]{480, 270}, VideoMetadataExtractor.posterSize(3840, 2160, 480));
+    }
+
+    @Test
+    public void posterSize_neverUpscalesOrGuesses() {
+        assertArrayEquals(new int[]{320, 240}, VideoMetadataExtractor.posterSize(320, 240, 480));
+        assertArrayEquals(new int[]{0, 0}, VideoMetadataExtractor.posterSize(0, 240, 480));
+    }
+}